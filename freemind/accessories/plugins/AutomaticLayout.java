@@ -52,6 +52,7 @@ import freemind.controller.Controller;
 import freemind.controller.actions.generated.instance.Pattern;
 import freemind.controller.actions.generated.instance.Patterns;
 import freemind.extensions.HookRegistration;
+import freemind.modes.CompiledPattern;
 import freemind.modes.MindMap;
 import freemind.modes.MindMapNode;
 import freemind.modes.ModeController;
@@ -92,7 +93,7 @@ public class AutomaticLayout extends PermanentMindMapNodeHookAdapter {
 			public void propertyChanged(String propertyName, String newValue,
 					String oldValue) {
 				if (propertyName.startsWith(AUTOMATIC_FORMAT_LEVEL)) {
-					patterns = null;
+					styles = null;
 				}
 			}
 		};
@@ -362,7 +363,11 @@ public class AutomaticLayout extends PermanentMindMapNodeHookAdapter {
 		}
 	}
 
-	private static Patterns patterns = null;
+	/**
+	 * The patterns of the levels, compiled once. The last one is used for all
+	 * deeper levels.
+	 */
+	private static CompiledPattern[] styles = null;
 
 	/**
      * 
@@ -376,20 +381,61 @@ public class AutomaticLayout extends PermanentMindMapNodeHookAdapter {
 		logger.finest("updating node id="
 				+ node.getObjectId(getMindMapController()) + " and text:"
 				+ node);
+		applyStyles(node, false);
+	}
+
+	/**
+	 * @param pRecursive
+	 *            if true, the descendants of the node are formatted as well.
+	 */
+	private void applyStyles(MindMapNode node, boolean pRecursive) {
+		CompiledPattern[] levelStyles = reloadPatterns();
+		if (levelStyles.length == 0) {
+			return;
+		}
 		int depth = depth(node);
 		logger.finest("COLOR, depth=" + (depth));
-		reloadPatterns();
-		int myIndex = patterns.sizeChoiceList() - 1;
-		if (depth < patterns.sizeChoiceList())
-			myIndex = depth;
-		Pattern p = (Pattern) patterns.getChoice(myIndex);
-		getMindMapController().applyPattern(node, p);
+		if (isNodeLocal(levelStyles)) {
+			StylePatternFactory.applyPatternsByDepth(node, depth, levelStyles,
+					pRecursive, getMindMapController());
+		} else {
+			// child patterns and scripts need the complete machinery:
+			applyPatternsRecursively(node, depth, levelStyles, pRecursive);
+		}
+	}
+
+	private void applyPatternsRecursively(MindMapNode node, int depth,
+			CompiledPattern[] levelStyles, boolean pRecursive) {
+		getMindMapController().applyPattern(node,
+				getStyle(levelStyles, depth).getPattern());
+		if (pRecursive) {
+			for (Iterator<MindMapNode> i = node.childrenUnfolded(); i.hasNext();) {
+				applyPatternsRecursively(i.next(), depth + 1, levelStyles, true);
+			}
+		}
+	}
+
+	private static CompiledPattern getStyle(CompiledPattern[] levelStyles,
+			int depth) {
+		return levelStyles[Math.min(depth, levelStyles.length - 1)];
+	}
+
+	private static boolean isNodeLocal(CompiledPattern[] levelStyles) {
+		for (int i = 0; i < levelStyles.length; i++) {
+			if (!levelStyles[i].isNodeLocal()) {
+				return false;
+			}
+		}
+		return true;
 	}
 
 	private int depth(MindMapNode node) {
-		if (node.isRoot())
-			return 0;
-		return depth(node.getParentNode()) + 1;
+		int depth = 0;
+		for (MindMapNode parent = node.getParentNode(); parent != null; parent = parent
+				.getParentNode()) {
+			depth++;
+		}
+		return depth;
 	}
 
 	/*
@@ -438,24 +484,28 @@ public class AutomaticLayout extends PermanentMindMapNodeHookAdapter {
 	}
 
 	/** get styles from preferences: */
-	private void reloadPatterns() {
-		if (patterns == null) {
+	private CompiledPattern[] reloadPatterns() {
+		CompiledPattern[] levelStyles = styles;
+		if (levelStyles == null) {
 			String property = getMindMapController().getFrame().getProperty(
 					AUTOMATIC_FORMAT_LEVEL);
-			patterns = StylePatternFactory.getPatternsFromString(property);
+			Patterns patterns = StylePatternFactory
+					.getPatternsFromString(property);
+			levelStyles = new CompiledPattern[patterns.sizeChoiceList()];
+			for (int i = 0; i < levelStyles.length; i++) {
+				levelStyles[i] = new CompiledPattern(
+						(Pattern) patterns.getChoice(i));
+			}
+			styles = levelStyles;
 		}
+		return levelStyles;
 	}
 
 	/**
      */
 	private void setStyleRecursive(MindMapNode node) {
 		logger.finest("setStyle " + node);
-		setStyle(node);
-		// recurse:
-		for (Iterator<MindMapNode> i = node.childrenUnfolded(); i.hasNext();) {
-			MindMapNode child = i.next();
-			invoke(child);
-		}
+		applyStyles(node, true);
 	}
 
 }
@@ -28,17 +28,17 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.net.URL;
 
 import javax.imageio.ImageIO;
 import javax.xml.transform.Result;
 import javax.xml.transform.Source;
 import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.stream.StreamResult;
-import javax.xml.transform.stream.StreamSource;
 
 import freemind.extensions.ExportHook;
+import freemind.main.XsltTemplateCache;
+import freemind.view.mindmapview.TiledMapRenderer;
 
 /**
  * @author foltin
@@ -62,6 +62,12 @@ public class ExportToImage extends ExportHook {
 	 */
 	public void startupMapHook() {
 		super.startupMapHook();
+		String type = getResourceString("image_type");
+		if ("png".equals(type)
+				|| TiledMapRenderer.DEEP_ZOOM_EXTENSION.equals(type)) {
+			exportTiledImage(type, getResourceString("image_description"));
+			return;
+		}
 		BufferedImage image = createBufferedImage();
 		if (image != null) {
 			String imageType = getResourceString("image_type");
@@ -96,19 +102,34 @@ public class ExportToImage extends ExportHook {
 		return true;
 	}
 
-	public void transForm(Source xmlSource, InputStream xsltStream,
+	/**
+	 * Export the map without creating a single image of it.
+	 */
+	public boolean exportTiledImage(String type, String description) {
+		File chosenFile = chooseFile(type, description, null);
+		if (chosenFile == null) {
+			return false;
+		}
+		try {
+			getController().getFrame().setWaitingCursor(true);
+			writeTiledImage(chosenFile);
+		} catch (IOException e1) {
+			freemind.main.Resources.getInstance().logException(e1);
+		} finally {
+			getController().getFrame().setWaitingCursor(false);
+		}
+		return true;
+	}
+
+	public void transForm(Source xmlSource, URL xsltUrl,
 			File resultFile, String areaCode) throws FileNotFoundException {
-		// System.out.println("set xsl");
-		Source xsltSource = new StreamSource(xsltStream);
 		// System.out.println("set result");
-		Result result = new StreamResult(new FileOutputStream(resultFile));
+		FileOutputStream resultStream = new FileOutputStream(resultFile);
+		Result result = new StreamResult(resultStream);
 
-		// create an instance of TransformerFactory
 		try {
-			// System.out.println("make transform instance");
-			TransformerFactory transFact = TransformerFactory.newInstance();
-
-			Transformer trans = transFact.newTransformer(xsltSource);
+			// the stylesheet is compiled only once:
+			Transformer trans = XsltTemplateCache.newTransformer(xsltUrl);
 			// set parameter:
 			// relative directory <filename>_files
 			trans.setParameter("destination_dir", resultFile.getName()
@@ -120,6 +141,12 @@ public class ExportToImage extends ExportHook {
 		} catch (Exception e) {
 			// System.err.println("error applying the xslt file "+e);
 			freemind.main.Resources.getInstance().logException(e);
+		} finally {
+			try {
+				resultStream.close();
+			} catch (IOException e) {
+				freemind.main.Resources.getInstance().logException(e);
+			}
 		}
 		return;
 	}
@@ -28,8 +28,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.StringReader;
-import java.io.StringWriter;
+import java.io.Writer;
 import java.net.URL;
 import java.text.DateFormat;
 import java.util.Date;
@@ -38,14 +37,12 @@ import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
 import javax.xml.transform.Result;
-import javax.xml.transform.Source;
 import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.stream.StreamResult;
-import javax.xml.transform.stream.StreamSource;
 
 import freemind.extensions.ExportHook;
 import freemind.main.Tools;
+import freemind.main.XsltTemplateCache;
 
 /**
  * @author foltin
@@ -92,44 +89,37 @@ public class ExportToOoWriter extends ExportHook {
 	}
 
 	public boolean exportToOoWriter(File chosenFile) throws IOException {
-		// get output:
-		StringWriter writer = new StringWriter();
-		// get XML
-		getController().getMap().getFilteredXml(writer);
+		// the XML of the map is streamed into each transformation:
+		XsltTemplateCache.XmlProducer mapXml = new XsltTemplateCache.XmlProducer() {
+			public void write(Writer pWriter) throws IOException {
+				getController().getMap().getFilteredXml(pWriter);
+			}
+		};
 		String xslts = getResourceString("files");
-		return exportToOoWriter(chosenFile, writer, xslts);
+		return exportToOoWriter(chosenFile, mapXml, xslts);
 	}
 
 	/**
 	 * @return true, if successful.
 	 */
-	private boolean applyXsltFile(String xsltFileName, StringWriter writer,
-			Result result) throws IOException {
+	private boolean applyXsltFile(String xsltFileName,
+			XsltTemplateCache.XmlProducer mapXml, Result result)
+			throws IOException {
 		URL xsltUrl = getResource(xsltFileName);
 		if (xsltUrl == null) {
 			logger.severe("Can't find " + xsltFileName + " as resource.");
 			throw new IllegalArgumentException("Can't find " + xsltFileName
 					+ " as resource.");
 		}
-		InputStream xsltStream = xsltUrl.openStream();
-		// System.out.println("set xsl");
-		Source xsltSource = new StreamSource(xsltStream);
-
-		// create an instance of TransformerFactory
 		try {
-			StringReader reader = new StringReader(writer.getBuffer()
-					.toString());
-
-			// System.out.println("make transform instance");
-			TransformerFactory transFact = TransformerFactory.newInstance();
-
-			Transformer trans = transFact.newTransformer(xsltSource);
+			// the stylesheet is compiled only once:
+			Transformer trans = XsltTemplateCache.newTransformer(xsltUrl);
 			trans.setParameter(
 					"date",
 					DateFormat.getDateInstance(DateFormat.SHORT).format(
 							new Date()));
 
-			trans.transform(new StreamSource(reader), result);
+			XsltTemplateCache.transform(trans, mapXml, result);
 			return true;
 		} catch (Exception e) {
 			// System.err.println("error applying the xslt file "+e);
@@ -138,7 +128,8 @@ public class ExportToOoWriter extends ExportHook {
 		}
 	}
 
-	public boolean exportToOoWriter(File file, StringWriter writer, String xslts)
+	public boolean exportToOoWriter(File file,
+			XsltTemplateCache.XmlProducer mapXml, String xslts)
 			throws IOException {
 		boolean resultValue = true;
 		ZipOutputStream zipout = new ZipOutputStream(new FileOutputStream(file));
@@ -154,7 +145,7 @@ public class ExportToOoWriter extends ExportHook {
 				if (files[0].endsWith(".xsl")) {
 					logger.info("Transforming with xslt " + files[0]
 							+ " to file " + files[1]);
-					resultValue &= applyXsltFile(files[0], writer, result);
+					resultValue &= applyXsltFile(files[0], mapXml, result);
 				} else {
 					logger.info("Copying resource from " + files[0]
 							+ " to file " + files[1]);
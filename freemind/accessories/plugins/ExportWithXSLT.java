@@ -25,35 +25,29 @@
  */
 package accessories.plugins;
 
-import java.awt.image.BufferedImage;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStreamWriter;
-import java.io.StringReader;
-import java.io.StringWriter;
+import java.io.Writer;
 import java.net.URL;
 import java.util.StringTokenizer;
 import java.util.Vector;
 
-import javax.imageio.ImageIO;
 import javax.swing.JOptionPane;
 import javax.xml.transform.Result;
-import javax.xml.transform.Source;
 import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.stream.StreamResult;
-import javax.xml.transform.stream.StreamSource;
 
 import accessories.plugins.util.html.ClickableImageCreator;
 import accessories.plugins.util.xslt.ExportDialog;
 import freemind.extensions.ExportHook;
 import freemind.main.Resources;
 import freemind.main.Tools;
+import freemind.main.XsltTemplateCache;
 import freemind.modes.MindIcon;
 import freemind.modes.MindMap;
 import freemind.modes.MindMapNode;
@@ -224,12 +218,9 @@ public class ExportWithXSLT extends ExportHook {
 		if (getController().getView() == null)
 			return;
 		// create image:
-		BufferedImage image = createBufferedImage();
 		try {
-			FileOutputStream out = new FileOutputStream(directoryName
-					+ File.separator + "image.png");
-			ImageIO.write(image, "png", out);
-			out.close();
+			writeTiledImage(new File(directoryName + File.separator
+					+ "image.png"));
 		} catch (IOException e1) {
 			freemind.main.Resources.getInstance().logException(e1);
 		}
@@ -292,8 +283,6 @@ public class ExportWithXSLT extends ExportHook {
 	 */
 	private boolean transformMapWithXslt(String xsltFileName, File saveFile,
 			String areaCode) throws IOException {
-		StringWriter writer = getMapXml();
-		StringReader reader = new StringReader(writer.getBuffer().toString());
 		// search for xslt file:
 		URL xsltUrl = getResource(xsltFileName);
 		if (xsltUrl == null) {
@@ -301,19 +290,11 @@ public class ExportWithXSLT extends ExportHook {
 			throw new IllegalArgumentException("Can't find " + xsltFileName
 					+ " as resource.");
 		}
-		InputStream xsltFile = xsltUrl.openStream();
-		return transform(new StreamSource(reader), xsltFile, saveFile, areaCode);
-	}
-
-	/**
-	 * @throws IOException
-	 */
-	private StringWriter getMapXml() throws IOException {
-		// get output:
-		StringWriter writer = new StringWriter();
-		// get XML
-		getController().getMap().getFilteredXml(writer);
-		return writer;
+		return transform(new XsltTemplateCache.XmlProducer() {
+			public void write(Writer pWriter) throws IOException {
+				getController().getMap().getFilteredXml(pWriter);
+			}
+		}, xsltUrl, saveFile, areaCode);
 	}
 
 	/**
@@ -336,19 +317,16 @@ public class ExportWithXSLT extends ExportHook {
 		exp.setVisible(true);
 	}
 
-	public boolean transform(Source xmlSource, InputStream xsltStream,
-			File resultFile, String areaCode) throws FileNotFoundException {
-		// System.out.println("set xsl");
-		Source xsltSource = new StreamSource(xsltStream);
+	public boolean transform(XsltTemplateCache.XmlProducer pMapXml,
+			URL xsltUrl, File resultFile, String areaCode)
+			throws FileNotFoundException {
 		// System.out.println("set result");
-		Result result = new StreamResult(new FileOutputStream(resultFile));
+		FileOutputStream resultStream = new FileOutputStream(resultFile);
+		Result result = new StreamResult(resultStream);
 
-		// create an instance of TransformerFactory
 		try {
-			// System.out.println("make transform instance");
-			TransformerFactory transFact = TransformerFactory.newInstance();
-
-			Transformer trans = transFact.newTransformer(xsltSource);
+			// the stylesheet is compiled only once:
+			Transformer trans = XsltTemplateCache.newTransformer(xsltUrl);
 			// set parameter:
 			// relative directory <filename>_files
 			trans.setParameter("destination_dir", Tools.fileToRelativeUrlString(new File(resultFile.getAbsolutePath()
@@ -356,13 +334,18 @@ public class ExportWithXSLT extends ExportHook {
 			trans.setParameter("area_code", areaCode);
 			trans.setParameter("folding_type", getController().getFrame()
 					.getProperty("html_export_folding"));
-			trans.transform(xmlSource, result);
+			XsltTemplateCache.transform(trans, pMapXml, result);
 		} catch (Exception e) {
 			// System.err.println("error applying the xslt file "+e);
 			freemind.main.Resources.getInstance().logException(e);
 			return false;
+		} finally {
+			try {
+				resultStream.close();
+			} catch (IOException e) {
+				freemind.main.Resources.getInstance().logException(e);
+			}
 		}
-		;
 		return true;
 	}
 
@@ -22,7 +22,11 @@ package accessories.plugins;
 
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
 import java.util.TreeSet;
+import java.util.Vector;
+import java.util.WeakHashMap;
 
 import freemind.extensions.UndoEventReceiver;
 import freemind.modes.MindIcon;
@@ -30,16 +34,36 @@ import freemind.modes.MindMapNode;
 import freemind.modes.mindmapmode.hooks.PermanentMindMapNodeHookAdapter;
 import freemind.view.mindmapview.MultipleImage;
 
-/** */
+/**
+ * Shows the icons of all descendants of a node at the node (except for its
+ * own icons).
+ *
+ * For each node, the icons of its descendants are counted. A change of the
+ * icons of a node or an added or removed subtree only changes the counts of
+ * the ancestors, and only nodes whose shown icons change are refreshed.
+ */
 public class HierarchicalIcons extends PermanentMindMapNodeHookAdapter
 		implements UndoEventReceiver {
 
-	private HashMap<MindMapNode, TreeSet<String>> nodeIconSets = new HashMap<>();
+	private static class NodeIcons {
+		/** The own icons of the node, as they are counted. */
+		Vector<String> mOwnIcons = new Vector<>();
+		/** Icon name -> number of occurrences at the descendants. */
+		HashMap<String, Integer> mDescendantIcons = new HashMap<>();
+		TreeSet<String> mShownIcons = new TreeSet<>();
+	}
+
+	/**
+	 * Weak, as the nodes of removed subtrees are kept, until they are either
+	 * inserted again (moved) or gone.
+	 */
+	private WeakHashMap<MindMapNode, NodeIcons> mNodeIcons = new WeakHashMap<>();
 
 	public void shutdownMapHook() {
 		// remove all icons:
 		MindMapNode root = getMindMapController().getRootNode();
 		removeIcons(root);
+		mNodeIcons.clear();
 		super.shutdownMapHook();
 	}
 
@@ -62,60 +86,151 @@ public class HierarchicalIcons extends PermanentMindMapNodeHookAdapter
 
 	}
 
-	private void setStyle(MindMapNode node) {
-		// precondition: all children are contained in nodeIconSets
-
-		// gather all icons of my children and of me here:
-		TreeSet<String> iconSet = new TreeSet<>();
+	/**
+	 * Counts the icons of the subtree of the node and shows them at its
+	 * nodes.
+	 * 
+	 * @param pIcons
+	 *            if not null, the icons of the node and its descendants are
+	 *            added to it.
+	 */
+	private void countSubtree(MindMapNode node, HashMap<String, Integer> pIcons) {
+		NodeIcons nodeIcons = new NodeIcons();
+		mNodeIcons.put(node, nodeIcons);
 		for (Iterator<MindMapNode> i = node.childrenUnfolded(); i.hasNext();) {
-			MindMapNode child = i.next();
-			addAccumulatedIconsToTreeSet(child, iconSet, (TreeSet<String>) nodeIconSets.get(child));
-		}
-		// remove my icons from the treeset:
-		for (MindIcon icon :node.getIcons()) {
-			iconSet.remove(icon.getName());
-		}
-		boolean dirty = true;
-		// look for a change:
-		if (nodeIconSets.containsKey(node)) {
-			TreeSet<String> storedIconSet = nodeIconSets.get(node);
-			if (storedIconSet.equals(iconSet)) {
-				dirty = false;
-			}
+			countSubtree(i.next(), nodeIcons.mDescendantIcons);
 		}
-		nodeIconSets.put(node, iconSet);
-
-		if (dirty) {
-			if (iconSet.size() > 0) {
-				// create multiple image:
-				MultipleImage image = new MultipleImage(0.75f);
-				for (String iconName : iconSet) {
-					// logger.info("Adding icon "+iconName + " to node "+
-					// node.toString());
-					MindIcon icon = MindIcon.factory(iconName);
-					image.addImage(icon.getIcon());
-				}
-				node.setStateIcon(getName(), image);
-			} else {
-				node.setStateIcon(getName(), null);
-			}
-			getMindMapController().nodeRefresh(node);
+		nodeIcons.mOwnIcons = getIconNames(node);
+		setStyle(node, nodeIcons);
+		if (pIcons != null) {
+			addIcons(pIcons, getSubtreeIcons(nodeIcons), 1);
+		}
+	}
+
+	private static Vector<String> getIconNames(MindMapNode node) {
+		Vector<String> names = new Vector<>();
+		for (MindIcon icon : node.getIcons()) {
+			names.add(icon.getName());
 		}
+		return names;
+	}
 
+	private static HashMap<String, Integer> getSubtreeIcons(
+			NodeIcons pNodeIcons) {
+		HashMap<String, Integer> icons = new HashMap<>(
+				pNodeIcons.mDescendantIcons);
+		for (String name : pNodeIcons.mOwnIcons) {
+			addIcon(icons, name, 1);
+		}
+		return icons;
 	}
 
 	/**
-     */
-	private void addAccumulatedIconsToTreeSet(MindMapNode child,
-			TreeSet<String> iconSet, TreeSet<String> childsTreeSet) {
-		for (MindIcon icon : child.getIcons()) {
-			iconSet.add(icon.getName());
+	 * @return true, if an icon appeared or disappeared.
+	 */
+	private static boolean addIcons(HashMap<String, Integer> pIcons,
+			Map<String, Integer> pDelta, int pSign) {
+		boolean changed = false;
+		for (Map.Entry<String, Integer> entry : pDelta.entrySet()) {
+			changed |= addIcon(pIcons, entry.getKey(), pSign
+					* entry.getValue().intValue());
+		}
+		return changed;
+	}
+
+	private static boolean addIcon(HashMap<String, Integer> pIcons,
+			String pName, int pCount) {
+		Integer old = pIcons.get(pName);
+		int oldCount = (old == null) ? 0 : old.intValue();
+		int newCount = oldCount + pCount;
+		if (newCount > 0) {
+			pIcons.put(pName, Integer.valueOf(newCount));
+		} else {
+			pIcons.remove(pName);
+		}
+		return (oldCount > 0) != (newCount > 0);
+	}
+
+	/**
+	 * Adds the delta to the counts of the node and its ancestors.
+	 */
+	private void changeAncestors(MindMapNode pNode,
+			HashMap<String, Integer> pDelta, int pSign) {
+		if (pDelta.isEmpty()) {
+			return;
+		}
+		for (MindMapNode node = pNode; node != null; node = node
+				.getParentNode()) {
+			NodeIcons nodeIcons = mNodeIcons.get(node);
+			if (nodeIcons == null) {
+				// not counted yet, see invoke.
+				return;
+			}
+			if (addIcons(nodeIcons.mDescendantIcons, pDelta, pSign)) {
+				setStyle(node, nodeIcons);
+			}
+		}
+	}
+
+	/**
+	 * Takes the changed own icons of the node into account.
+	 */
+	private void updateOwnIcons(MindMapNode node) {
+		NodeIcons nodeIcons = mNodeIcons.get(node);
+		if (nodeIcons == null) {
+			return;
+		}
+		Vector<String> ownIcons = getIconNames(node);
+		if (ownIcons.equals(nodeIcons.mOwnIcons)) {
+			return;
+		}
+		HashMap<String, Integer> delta = new HashMap<>();
+		for (String name : ownIcons) {
+			addIcon(delta, name, 1);
+		}
+		for (String name : nodeIcons.mOwnIcons) {
+			Integer count = delta.get(name);
+			delta.put(name, Integer.valueOf((count == null) ? -1 : count
+					.intValue() - 1));
 		}
-		if (childsTreeSet == null)
+		nodeIcons.mOwnIcons = ownIcons;
+		setStyle(node, nodeIcons);
+		changeAncestors(node.getParentNode(), delta, 1);
+	}
+
+	private void setStyle(MindMapNode node, NodeIcons pNodeIcons) {
+		// the icons of the descendants without my icons:
+		TreeSet<String> iconSet = new TreeSet<>(
+				pNodeIcons.mDescendantIcons.keySet());
+		iconSet.removeAll(pNodeIcons.mOwnIcons);
+		if (iconSet.equals(pNodeIcons.mShownIcons)) {
 			return;
-		for (String iconName : childsTreeSet) {
-			iconSet.add(iconName);
 		}
+		pNodeIcons.mShownIcons = iconSet;
+		if (iconSet.size() > 0) {
+			// create multiple image:
+			MultipleImage image = new MultipleImage(0.75f);
+			for (String iconName : iconSet) {
+				MindIcon icon = MindIcon.factory(iconName);
+				image.addImage(icon.getIcon());
+			}
+			node.setStateIcon(getName(), image);
+		} else {
+			node.setStateIcon(getName(), null);
+		}
+		getMindMapController().nodeRefresh(node);
+	}
+
+	/**
+	 * @return the names of the icons shown at the node, empty, if the node
+	 *         isn't counted.
+	 */
+	public Set<String> getShownIcons(MindMapNode pNode) {
+		NodeIcons nodeIcons = mNodeIcons.get(pNode);
+		if (nodeIcons == null) {
+			return new TreeSet<>();
+		}
+		return new TreeSet<>(nodeIcons.mShownIcons);
 	}
 
 	/*
@@ -128,13 +243,25 @@ public class HierarchicalIcons extends PermanentMindMapNodeHookAdapter
 	public void onAddChildren(MindMapNode newChildNode) {
 		logger.finest("onAddChildren " + newChildNode);
 		super.onAddChild(newChildNode);
-		setStyleRecursive(newChildNode);
+		HashMap<String, Integer> icons;
+		NodeIcons nodeIcons = mNodeIcons.get(newChildNode);
+		if (nodeIcons != null) {
+			// moved: the subtree is already counted.
+			icons = getSubtreeIcons(nodeIcons);
+		} else {
+			icons = new HashMap<>();
+			countSubtree(newChildNode, icons);
+		}
+		changeAncestors(newChildNode.getParentNode(), icons, 1);
 	}
 
 	public void onRemoveChildren(MindMapNode removedChild, MindMapNode oldDad) {
 		logger.finest("onRemoveChildren " + removedChild);
 		super.onRemoveChildren(removedChild, oldDad);
-		setStyleRecursive(oldDad);
+		NodeIcons nodeIcons = mNodeIcons.get(removedChild);
+		if (nodeIcons != null) {
+			changeAncestors(oldDad, getSubtreeIcons(nodeIcons), -1);
+		}
 	}
 
 	/*
@@ -146,7 +273,7 @@ public class HierarchicalIcons extends PermanentMindMapNodeHookAdapter
 	 */
 	public void onUpdateChildrenHook(MindMapNode updatedNode) {
 		super.onUpdateChildrenHook(updatedNode);
-		setStyleRecursive(updatedNode);
+		updateOwnIcons(updatedNode);
 	}
 
 	/*
@@ -156,7 +283,7 @@ public class HierarchicalIcons extends PermanentMindMapNodeHookAdapter
 	 */
 	public void onUpdateNodeHook() {
 		super.onUpdateNodeHook();
-		setStyle(getNode());
+		updateOwnIcons(getNode());
 	}
 
 	/*
@@ -166,49 +293,8 @@ public class HierarchicalIcons extends PermanentMindMapNodeHookAdapter
 	 */
 	public void invoke(MindMapNode node) {
 		super.invoke(node);
-		gatherLeavesAndSetStyle(node);
-		gatherLeavesAndSetParentsStyle(node);
-	}
-
-	/**
-     */
-	private void gatherLeavesAndSetStyle(MindMapNode node) {
-		if (node.getChildCount() == 0) {
-			// call setStyle for all leaves:
-			setStyle(node);
-			return;
-		}
-		for (Iterator<MindMapNode> i = node.childrenUnfolded(); i.hasNext();) {
-			MindMapNode child = i.next();
-			gatherLeavesAndSetStyle(child);
-		}
-	}
-
-	/**
-     */
-	private void gatherLeavesAndSetParentsStyle(MindMapNode node) {
-		if (node.getChildCount() == 0) {
-			// call setStyleRecursive for all parents:
-			if (node.getParentNode() != null) {
-				setStyleRecursive(node.getParentNode());
-			}
-			return;
-		}
-		for (Iterator<MindMapNode> i = node.childrenUnfolded(); i.hasNext();) {
-			MindMapNode child = i.next();
-			gatherLeavesAndSetParentsStyle(child);
-		}
-	}
-
-	/**
-     */
-	private void setStyleRecursive(MindMapNode node) {
-		// logger.finest("setStyle " + node);
-		setStyle(node);
-		// recurse:
-		if (node.getParentNode() != null) {
-			setStyleRecursive(node.getParentNode());
-		}
+		mNodeIcons.clear();
+		countSubtree(node, null);
 	}
 
 }
@@ -23,33 +23,93 @@
  */
 package accessories.plugins;
 
-import java.awt.datatransfer.Transferable;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.TreeSet;
 import java.util.Vector;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.swing.JOptionPane;
 
 import freemind.main.Tools;
 import freemind.modes.MindMapNode;
+import freemind.modes.mindmapmode.MindMapController;
 import freemind.modes.mindmapmode.hooks.MindMapNodeHookAdapter;
 
 /**
+ * Sorts the children of a node by their text, the first number or date in
+ * their text or the value of an attribute. If the children are sorted
+ * already, the order is reversed. The keys are computed once per child and
+ * the children are reordered in a single action.
+ * 
  * @author foltin
  */
 public class SortNodes extends MindMapNodeHookAdapter {
 
-	private final class NodeTextComparator implements Comparator<MindMapNode> {
-		private boolean mNegative = false;
+	public static final String SORT_KEY_PROPERTY = "sort_key";
+	public static final String SORT_BY_TEXT = "text";
+	public static final String SORT_BY_NUMBER = "number";
+	public static final String SORT_BY_DATE = "date";
+	public static final String SORT_BY_ATTRIBUTE = "attribute";
+
+	private static final Pattern NUMBER_PATTERN = Pattern
+			.compile(MindMapController.REGEXP_FOR_NUMBERS_IN_STRINGS);
+	private static final Pattern ISO_DATE_PATTERN = Pattern
+			.compile("\\b[0-9]{4}-[0-9]{2}-[0-9]{2}\\b");
+
+	/**
+	 * A child with its sort key. Children without key are sorted behind the
+	 * others.
+	 */
+	private static final class SortEntry {
+		final MindMapNode mNode;
+		final boolean mHasKey;
+		final String mText;
+		/** NaN, if the key is not a number. */
+		final double mNumber;
+
+		SortEntry(MindMapNode pNode, boolean pHasKey, String pText,
+				double pNumber) {
+			mNode = pNode;
+			mHasKey = pHasKey;
+			mText = pText;
+			mNumber = pNumber;
+		}
+	}
 
-		public int compare(MindMapNode node1, MindMapNode node2) {
+	/**
+	 * Orders numbers before texts, as comparing a number with a text by text
+	 * and two numbers numerically is not transitive. Children without key
+	 * stay behind the others, even if the order is reversed.
+	 */
+	private static final class SortEntryComparator implements
+			Comparator<SortEntry> {
+		private boolean mNegative = false;
 
-			String nodeText1 = node1.getPlainTextContent();
-			String nodeText2 = node2.getPlainTextContent();
-			int retValue = nodeText1.compareToIgnoreCase(nodeText2);
-			if (mNegative) {
+		public int compare(SortEntry entry1, SortEntry entry2) {
+			if (entry1.mHasKey != entry2.mHasKey) {
+				return entry1.mHasKey ? -1 : 1;
+			}
+			final boolean isNumber1 = !Double.isNaN(entry1.mNumber);
+			final boolean isNumber2 = !Double.isNaN(entry2.mNumber);
+			int retValue;
+			if (isNumber1 != isNumber2) {
+				retValue = isNumber1 ? -1 : 1;
+			} else if (isNumber1 && entry1.mNumber != entry2.mNumber) {
+				retValue = Double.compare(entry1.mNumber, entry2.mNumber);
+			} else {
+				retValue = entry1.mText.compareToIgnoreCase(entry2.mText);
+			}
+			if (mNegative && entry1.mHasKey) {
 				return -retValue;
 			}
 			return retValue;
-
 		}
 
 		public void setNegative() {
@@ -71,37 +131,161 @@ public class SortNodes extends MindMapNodeHookAdapter {
 	 * java.util.List)
 	 */
 	public void invoke(MindMapNode node) {
-		// we want to sort the children of the node:
-		Vector<MindMapNode> sortVector = new Vector<>();
-		// put in all children of the node
-		sortVector.addAll(node.getChildren());
-		NodeTextComparator comparator = new NodeTextComparator();
-		MindMapNode last = null;
+		String sortKey = getResourceString(SORT_KEY_PROPERTY);
+		String attribute = null;
+		if (SORT_BY_ATTRIBUTE.equals(sortKey)) {
+			attribute = chooseAttribute(node);
+			if (attribute == null) {
+				return;
+			}
+		}
+		getMindMapController().reorderChildren(node,
+				getSortedChildren(node, sortKey, attribute));
+		getController().select(node, Tools.getVectorWithSingleElement(node));
+		obtainFocusForSelected();
+
+	}
+
+	/**
+	 * @param pSortKey
+	 *            one of the SORT_BY constants, text if unknown.
+	 * @param pAttribute
+	 *            the attribute name, if sorted by attribute.
+	 * @return the children of the node in ascending order, or in descending
+	 *         order, if they are sorted ascending already.
+	 */
+	public static List<MindMapNode> getSortedChildren(MindMapNode pNode,
+			String pSortKey, String pAttribute) {
+		Vector<SortEntry> sortVector = createSortEntries(pNode, pSortKey,
+				pAttribute);
+		sort(sortVector);
+		Vector<MindMapNode> newOrder = new Vector<>();
+		for (SortEntry entry : sortVector) {
+			newOrder.add(entry.mNode);
+		}
+		return newOrder;
+	}
+
+	/**
+	 * Sorts ascending, or descending, if the entries are ordered already. The
+	 * entries without key are sorted ascending behind the others in both
+	 * cases.
+	 */
+	private static void sort(Vector<SortEntry> pEntries) {
+		SortEntryComparator comparator = new SortEntryComparator();
+		SortEntry last = null;
 		boolean isOrdered = true;
-		for (MindMapNode listNode : sortVector) {
-			if(last != null){
-				if(comparator.compare(listNode, last)<0){
-					isOrdered=false;
+		for (SortEntry entry : pEntries) {
+			if (last != null) {
+				if (comparator.compare(entry, last) < 0) {
+					isOrdered = false;
 					break;
 				}
 			}
-			last = listNode;
+			last = entry;
 		}
-		if(isOrdered){
+		if (isOrdered) {
 			comparator.setNegative();
 		}
-		Collections.sort(sortVector, comparator);
-		// now, as it is sorted. we cut the children
-		for (MindMapNode child : sortVector) {
-			Vector<MindMapNode> childList = Tools.getVectorWithSingleElement(child);
-			Transferable cut = getMindMapController().cut(childList);
-			// paste directly again causes that the node is added as the last
-			// one.
-			getMindMapController().paste(cut, node);
+		Collections.sort(pEntries, comparator);
+	}
+
+	private static Vector<SortEntry> createSortEntries(MindMapNode pNode,
+			String pSortKey, String pAttribute) {
+		Vector<SortEntry> entries = new Vector<>();
+		DateFormat[] dateFormats = null;
+		if (SORT_BY_DATE.equals(pSortKey)) {
+			dateFormats = new DateFormat[] {
+					DateFormat.getDateInstance(DateFormat.SHORT),
+					DateFormat.getDateInstance(DateFormat.MEDIUM),
+					new SimpleDateFormat("yyyy-MM-dd") };
 		}
-		getController().select(node, Tools.getVectorWithSingleElement(node));
-		obtainFocusForSelected();
+		for (MindMapNode child : pNode.getChildren()) {
+			String text = child.getPlainTextContent();
+			if (SORT_BY_NUMBER.equals(pSortKey)) {
+				double number = parseNumber(text, false);
+				entries.add(new SortEntry(child, !Double.isNaN(number), text,
+						number));
+			} else if (SORT_BY_DATE.equals(pSortKey)) {
+				double date = parseDate(text, dateFormats);
+				entries.add(new SortEntry(child, !Double.isNaN(date), text,
+						date));
+			} else if (SORT_BY_ATTRIBUTE.equals(pSortKey)) {
+				String value = child.getAttribute(pAttribute);
+				entries.add(new SortEntry(child, value != null,
+						value != null ? value : text, parseNumber(value, true)));
+			} else {
+				entries.add(new SortEntry(child, true, text, Double.NaN));
+			}
+		}
+		return entries;
+	}
 
+	/**
+	 * @param pWhole
+	 *            if set, the number must be the complete text, otherwise the
+	 *            first number within the text is taken.
+	 * @return NaN, if there is no number.
+	 */
+	private static double parseNumber(String pText, boolean pWhole) {
+		if (pText == null) {
+			return Double.NaN;
+		}
+		Matcher matcher = NUMBER_PATTERN.matcher(pText.trim());
+		if (pWhole ? !matcher.matches() : !matcher.find()) {
+			return Double.NaN;
+		}
+		try {
+			return Double.parseDouble(matcher.group(1).replace(',', '.'));
+		} catch (NumberFormatException e) {
+			return Double.NaN;
+		}
+	}
+
+	/**
+	 * @return the time of the date at the start of the text or of the first
+	 *         ISO date (yyyy-mm-dd) within it, NaN if there is none.
+	 */
+	private static double parseDate(String pText, DateFormat[] pFormats) {
+		String text = pText.trim();
+		for (DateFormat format : pFormats) {
+			try {
+				Date date = format.parse(text);
+				return date.getTime();
+			} catch (ParseException e) {
+				// try the next one.
+			}
+		}
+		Matcher matcher = ISO_DATE_PATTERN.matcher(text);
+		if (matcher.find()) {
+			try {
+				return pFormats[pFormats.length - 1].parse(matcher.group())
+						.getTime();
+			} catch (ParseException e) {
+				// no date.
+			}
+		}
+		return Double.NaN;
+	}
+
+	/**
+	 * @return the chosen attribute name or null, if none.
+	 */
+	private String chooseAttribute(MindMapNode pNode) {
+		TreeSet<String> names = new TreeSet<>();
+		for (MindMapNode child : pNode.getChildren()) {
+			names.addAll(child.getAttributeKeyList());
+		}
+		if (names.isEmpty()) {
+			return null;
+		}
+		String[] values = names.toArray(new String[names.size()]);
+		return (String) JOptionPane.showInputDialog(getMindMapController()
+				.getFrame().getJFrame(), getMindMapController().getText(
+				"accessories/plugins/SortNodes.properties_choose_attribute"),
+				getMindMapController().getText(
+						"accessories/plugins/SortNodesByAttribute.properties_name"),
+				JOptionPane.QUESTION_MESSAGE, null, values, values[0]);
 	}
 
 }
@@ -950,8 +950,7 @@ public class TimeList extends MindMapHookAdapter implements
 							.equals(nodeText))) {
 				originalNodeText = nodeText;
 				// remove tags:
-				untaggedNodeText = HtmlTools.htmlToPlain(nodeText)
-						.replaceAll("\\s+", " ");
+				untaggedNodeText = node.getPlainText().replaceAll("\\s+", " ");
 			}
 			return untaggedNodeText;
 		}
@@ -994,8 +993,8 @@ public class TimeList extends MindMapHookAdapter implements
 							.equals(notesText))) {
 				originalNotesText = notesText;
 				// remove tags:
-				untaggedNotesText = HtmlTools.removeHtmlTagsFromString(
-						notesText).replaceAll("\\s+", " ");
+				untaggedNotesText = node.getPlainNoteText().replaceAll("\\s+",
+						" ");
 			}
 			return untaggedNotesText;
 		}
@@ -33,10 +33,12 @@ import java.io.IOException;
 import javax.xml.transform.Result;
 import javax.xml.transform.Source;
 import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 
+import freemind.main.Tools;
+import freemind.main.XsltTemplateCache;
+
 /**
  * 
  * @author joerg
@@ -50,17 +52,15 @@ public class XmlExporter {
 	public void transForm(File xmlFile, File xsltFile, File resultFile) throws FileNotFoundException {
 	    Source xmlSource = new StreamSource(xmlFile);
 	    // System.out.println("set xsl");
-	    Source xsltSource = new StreamSource(xsltFile);
 	    // System.out.println("set result");
 	    FileOutputStream resultOutputStream = new FileOutputStream(resultFile);
 	    Result result = new StreamResult(resultOutputStream);
 
 	    // create an instance of TransformerFactory
 	    try {
-	        // System.out.println("make transform instance");
-	        TransformerFactory transFact = TransformerFactory.newInstance();
-
-	        Transformer trans = transFact.newTransformer(xsltSource);
+	        // the stylesheet is compiled again only after a change:
+	        Transformer trans = XsltTemplateCache.newTransformer(Tools
+	                .fileToUrl(xsltFile));
 
 	        trans.transform(xmlSource, result);
 	    } catch (Exception e) {
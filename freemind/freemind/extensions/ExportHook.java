@@ -27,9 +27,11 @@ import java.awt.Container;
 import java.awt.Graphics;
 import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URL;
@@ -43,6 +45,7 @@ import freemind.main.Tools;
 import freemind.modes.FreeMindFileDialog;
 import freemind.modes.ModeController;
 import freemind.view.mindmapview.MapView;
+import freemind.view.mindmapview.TiledMapRenderer;
 
 /**
  * @author foltin
@@ -177,6 +180,33 @@ public class ExportHook extends ModeControllerHookAdapter {
 		// return image;
 	}
 
+	/**
+	 * Writes the map as PNG in tiles, thus the image size is not limited by
+	 * the heap as in {@link #createBufferedImage()}.
+	 * 
+	 * @return false, if there is no view.
+	 */
+	public boolean writeTiledImage(File pFile) throws IOException {
+		MapView mapView = getController().getView();
+		if (mapView == null) {
+			return false;
+		}
+		TiledMapRenderer renderer = new TiledMapRenderer(mapView);
+		if (Tools.safeEqualsIgnoreCase(Tools.getExtension(pFile.getName()),
+				TiledMapRenderer.DEEP_ZOOM_EXTENSION)) {
+			renderer.writeDeepZoom(pFile);
+			return true;
+		}
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(
+				pFile));
+		try {
+			renderer.writePng(out);
+		} finally {
+			out.close();
+		}
+		return true;
+	}
+
 	/**
      */
 	protected void copyFromResource(String prefix, String fileName,
@@ -0,0 +1,283 @@
+/*FreeMind - A Program for creating and viewing Mindmaps
+ *Copyright (C) 2000-2014 Christian Foltin, Joerg Mueller, Daniel Polansky, Dimitri Polivaev and others.
+ *
+ *See COPYING for Details
+ *
+ *This program is free software; you can redistribute it and/or
+ *modify it under the terms of the GNU General Public License
+ *as published by the Free Software Foundation; either version 2
+ *of the License, or (at your option) any later version.
+ *
+ *This program is distributed in the hope that it will be useful,
+ *but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *GNU General Public License for more details.
+ *
+ *You should have received a copy of the GNU General Public License
+ *along with this program; if not, write to the Free Software
+ *Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package freemind.main;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes an opaque RGB image as PNG row by row, so that the whole image never
+ * has to be in memory. {@link javax.imageio.ImageIO} needs a complete
+ * {@link java.awt.image.RenderedImage} instead.
+ *
+ * The rows must be written from top to bottom, after the last one
+ * {@link #finish()} writes the end of the image. The underlying stream is not
+ * closed.
+ */
+public class PngStreamWriter {
+
+	private static final byte[] SIGNATURE = { (byte) 137, 80, 78, 71, 13, 10,
+			26, 10 };
+	private static final int IDAT_SIZE = 64 * 1024;
+	private static final int BYTES_PER_PIXEL = 3;
+
+	private static final int FILTER_NONE = 0;
+	private static final int FILTER_SUB = 1;
+	private static final int FILTER_UP = 2;
+	private static final int FILTER_PAETH = 4;
+	/** Up and Paeth are the same as None and Sub without a previous row. */
+	private static final int[] FIRST_ROW_FILTERS = { FILTER_NONE, FILTER_SUB };
+	private static final int[] ROW_FILTERS = { FILTER_NONE, FILTER_SUB,
+			FILTER_UP, FILTER_PAETH };
+
+	private final DataOutputStream mOut;
+	private final int mWidth;
+	private final int mHeight;
+	private final DeflaterOutputStream mData;
+	private final Deflater mDeflater;
+	private int mRow = 0;
+	private byte[] mCurrent;
+	private byte[] mPrevious;
+	/** Filtered row, the first byte is the filter type. */
+	private byte[] mFiltered;
+	private byte[] mBest;
+
+	public PngStreamWriter(OutputStream pOut, int pWidth, int pHeight)
+			throws IOException {
+		if (pWidth <= 0 || pHeight <= 0) {
+			throw new IllegalArgumentException("Empty image " + pWidth + "x"
+					+ pHeight);
+		}
+		mOut = new DataOutputStream(pOut);
+		mWidth = pWidth;
+		mHeight = pHeight;
+		int rowLength = pWidth * BYTES_PER_PIXEL;
+		mCurrent = new byte[rowLength];
+		mPrevious = new byte[rowLength];
+		mFiltered = new byte[rowLength + 1];
+		mBest = new byte[rowLength + 1];
+		mOut.write(SIGNATURE);
+		ChunkOutputStream header = new ChunkOutputStream("IHDR", 13);
+		DataOutputStream headerData = new DataOutputStream(header);
+		headerData.writeInt(pWidth);
+		headerData.writeInt(pHeight);
+		// 8 bit truecolor, deflate, adaptive filtering, no interlace:
+		headerData.write(new byte[] { 8, 2, 0, 0, 0 });
+		header.close();
+		// the level of the PNG writer of the JDK:
+		mDeflater = new Deflater(4);
+		mData = new DeflaterOutputStream(new ChunkOutputStream("IDAT",
+				IDAT_SIZE), mDeflater, IDAT_SIZE);
+	}
+
+	public int getWidth() {
+		return mWidth;
+	}
+
+	public int getHeight() {
+		return mHeight;
+	}
+
+	/**
+	 * Writes the next rows.
+	 * 
+	 * @param pPixels
+	 *            RGB values as in
+	 *            {@link java.awt.image.BufferedImage#TYPE_INT_RGB}.
+	 * @param pScanSize
+	 *            distance of two rows in pPixels.
+	 */
+	public void writeRows(int[] pPixels, int pOffset, int pScanSize,
+			int pRows) throws IOException {
+		if (mRow + pRows > mHeight) {
+			throw new IllegalStateException("Only " + mHeight
+					+ " rows expected.");
+		}
+		for (int row = 0; row < pRows; row++) {
+			int index = pOffset + row * pScanSize;
+			byte[] current = mCurrent;
+			for (int i = 0, x = 0; x < mWidth; x++) {
+				int rgb = pPixels[index + x];
+				current[i++] = (byte) (rgb >> 16);
+				current[i++] = (byte) (rgb >> 8);
+				current[i++] = (byte) rgb;
+			}
+			writeFiltered();
+			mCurrent = mPrevious;
+			mPrevious = current;
+			mRow++;
+		}
+	}
+
+	/**
+	 * Chooses the filter with the smallest sum of absolute differences, the
+	 * heuristic recommended by the PNG specification.
+	 */
+	private void writeFiltered() throws IOException {
+		boolean first = mRow == 0;
+		byte[] best = mBest;
+		long bestSum = Long.MAX_VALUE;
+		int[] filters = first ? FIRST_ROW_FILTERS : ROW_FILTERS;
+		for (int filter : filters) {
+			byte[] filtered = mFiltered;
+			long sum = filter(filter, mCurrent, first ? null : mPrevious,
+					filtered);
+			if (sum < bestSum) {
+				bestSum = sum;
+				mFiltered = best;
+				best = filtered;
+			}
+		}
+		mBest = best;
+		mData.write(best, 0, best.length);
+	}
+
+	/**
+	 * @return the sum of the absolute values of the filtered bytes.
+	 */
+	private static long filter(int pFilter, byte[] pCurrent, byte[] pPrevious,
+			byte[] pFiltered) {
+		int length = pCurrent.length;
+		int bpp = BYTES_PER_PIXEL;
+		long sum = 0;
+		pFiltered[0] = (byte) pFilter;
+		switch (pFilter) {
+		case FILTER_NONE:
+			for (int i = 0; i < length; i++) {
+				byte value = pCurrent[i];
+				pFiltered[i + 1] = value;
+				sum += Math.abs(value);
+			}
+			break;
+		case FILTER_SUB:
+			for (int i = 0; i < length; i++) {
+				int left = i >= bpp ? pCurrent[i - bpp] : 0;
+				byte value = (byte) (pCurrent[i] - left);
+				pFiltered[i + 1] = value;
+				sum += Math.abs(value);
+			}
+			break;
+		case FILTER_UP:
+			for (int i = 0; i < length; i++) {
+				byte value = (byte) (pCurrent[i] - pPrevious[i]);
+				pFiltered[i + 1] = value;
+				sum += Math.abs(value);
+			}
+			break;
+		case FILTER_PAETH:
+			for (int i = 0; i < length; i++) {
+				int a = i >= bpp ? pCurrent[i - bpp] & 0xff : 0;
+				int b = pPrevious[i] & 0xff;
+				int c = i >= bpp ? pPrevious[i - bpp] & 0xff : 0;
+				byte value = (byte) (pCurrent[i] - paeth(a, b, c));
+				pFiltered[i + 1] = value;
+				sum += Math.abs(value);
+			}
+			break;
+		}
+		return sum;
+	}
+
+	private static int paeth(int a, int b, int c) {
+		int p = a + b - c;
+		int pa = Math.abs(p - a);
+		int pb = Math.abs(p - b);
+		int pc = Math.abs(p - c);
+		if (pa <= pb && pa <= pc) {
+			return a;
+		}
+		return pb <= pc ? b : c;
+	}
+
+	/**
+	 * Writes the remaining image data and the end of the image.
+	 */
+	public void finish() throws IOException {
+		if (mRow != mHeight) {
+			throw new IllegalStateException("Only " + mRow + " of " + mHeight
+					+ " rows written.");
+		}
+		mData.close();
+		mDeflater.end();
+		new ChunkOutputStream("IEND", 0).close();
+		mOut.flush();
+	}
+
+	/**
+	 * Buffers the data of one chunk type and writes it as chunks of at most
+	 * the given size.
+	 */
+	private class ChunkOutputStream extends OutputStream {
+		private final byte[] mType;
+		private final byte[] mBuffer;
+		private int mLength = 0;
+		private boolean mWritten = false;
+
+		public ChunkOutputStream(String pType, int pSize) {
+			mType = pType.getBytes(StandardCharsets.US_ASCII);
+			mBuffer = new byte[pSize];
+		}
+
+		public void write(int pByte) throws IOException {
+			if (mLength == mBuffer.length) {
+				writeChunk();
+			}
+			mBuffer[mLength++] = (byte) pByte;
+		}
+
+		public void write(byte[] pBytes, int pOffset, int pLength)
+				throws IOException {
+			while (pLength > 0) {
+				if (mLength == mBuffer.length) {
+					writeChunk();
+				}
+				int length = Math.min(pLength, mBuffer.length - mLength);
+				System.arraycopy(pBytes, pOffset, mBuffer, mLength, length);
+				mLength += length;
+				pOffset += length;
+				pLength -= length;
+			}
+		}
+
+		private void writeChunk() throws IOException {
+			CRC32 crc = new CRC32();
+			crc.update(mType);
+			crc.update(mBuffer, 0, mLength);
+			mOut.writeInt(mLength);
+			mOut.write(mType);
+			mOut.write(mBuffer, 0, mLength);
+			mOut.writeInt((int) crc.getValue());
+			mLength = 0;
+			mWritten = true;
+		}
+
+		public void close() throws IOException {
+			if (mLength > 0 || !mWritten) {
+				writeChunk();
+			}
+		}
+	}
+}
@@ -45,18 +45,22 @@ import java.awt.event.KeyEvent;
 import java.awt.print.Paper;
 import java.io.BufferedReader;
 import java.io.ByteArrayOutputStream;
+import java.io.CharArrayWriter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.Reader;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
+import java.io.Writer;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.net.InetAddress;
@@ -66,8 +70,11 @@ import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLDecoder;
 import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.DosFileAttributes;
 import java.security.spec.AlgorithmParameterSpec;
 import java.security.spec.KeySpec;
@@ -103,12 +110,7 @@ import javax.swing.KeyStroke;
 import javax.swing.SwingUtilities;
 import javax.swing.Timer;
 import javax.swing.UIManager;
-import javax.xml.transform.Result;
-import javax.xml.transform.Source;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.stream.StreamResult;
-import javax.xml.transform.stream.StreamSource;
+import javax.xml.transform.Templates;
 
 import freemind.common.UnicodeReader;
 import freemind.common.XmlBindingTools;
@@ -1028,105 +1030,35 @@ public class Tools {
 	 * Creates a reader that pipes the input file through a XSLT-Script that
 	 * updates the version to the current.
 	 * 
+	 * The file is not read into memory: invalid characters are removed while
+	 * reading, and the transformation runs in its own thread, whose result is
+	 * read while it is produced.
+	 * 
 	 * @throws IOException
 	 */
 	public static Reader getUpdateReader(Reader pReader, String xsltScript) throws IOException {
-		StringWriter writer = null;
-		InputStream inputStream = null;
 		final java.util.logging.Logger logger = Resources.getInstance().getLogger(Tools.class
 				.getName());
 		logger.info("Updating the reader " + pReader
 				+ " to the current version.");
-		boolean successful = false;
-		String errorMessage = null;
 		try {
 			// try to convert map with xslt:
-			URL updaterUrl = null;
-			updaterUrl = Resources.getInstance().getResource(xsltScript);
+			URL updaterUrl = Resources.getInstance().getResource(xsltScript);
 			if (updaterUrl == null) {
 				throw new IllegalArgumentException(xsltScript + " not found.");
 			}
-			inputStream = updaterUrl.openStream();
-			final Source xsltSource = new StreamSource(inputStream);
-			// get output:
-			writer = new StringWriter();
-			final Result result = new StreamResult(writer);
-
-			String fileContents = getFile(pReader);
-			if (fileContents.length() > 10) {
-				logger.info("File start before UTF8 replacement: '"
-						+ fileContents.substring(0, 9) + "'");
-			}
-			fileContents = replaceUtf8AndIllegalXmlChars(fileContents);
-			if (fileContents.length() > 10) {
-				logger.info("File start after UTF8 replacement: '"
-						+ fileContents.substring(0, 9) + "'");
-			}
-			final StreamSource sr = new StreamSource(new StringReader(
-					fileContents));
-			// Dimitry: to avoid a memory leak and properly release resources
-			// after the XSLT transformation
-			// everything should run in own thread. Only after the thread dies
-			// the resources are released.
-			class TransformerRunnable implements Runnable {
-				private boolean successful = false;
-				private String errorMessage;
-
-				public void run() {
-					// create an instance of TransformerFactory
-					TransformerFactory transFact = TransformerFactory
-							.newInstance();
-					logger.info("TransformerFactory class: "
-							+ transFact.getClass());
-					Transformer trans;
-					try {
-						trans = transFact.newTransformer(xsltSource);
-						trans.transform(sr, result);
-						successful = true;
-					} catch (Exception ex) {
-						freemind.main.Resources.getInstance().logException(ex);
-						errorMessage = ex.toString();
-					}
-				}
-
-				public boolean isSuccessful() {
-					return successful;
-				}
-
-				public String getErrorMessage() {
-					return errorMessage;
-				}
-			}
-			final TransformerRunnable transformer = new TransformerRunnable();
-			Thread transformerThread = new Thread(transformer, "XSLT");
-			transformerThread.start();
-			transformerThread.join();
-			logger.info("Updating the reader " + pReader
-					+ " to the current version. Done."); // +
-															// writer.getBuffer().toString());
-			successful = transformer.isSuccessful();
-			errorMessage = transformer.getErrorMessage();
+			// the stylesheet is compiled only once:
+			Templates templates = XsltTemplateCache.getTemplates(updaterUrl);
+			Reader transformedReader = XsltTemplateCache.getTransformedReader(
+					templates, new InvalidXmlCharacterFilterReader(pReader));
+			return new BufferedReader(new InvalidXmlCharacterFilterReader(
+					transformedReader));
 		} catch (Exception ex) {
 			Resources.getInstance().logException(ex, xsltScript);
-			errorMessage = ex.getLocalizedMessage();
-		} finally {
-			if (inputStream != null) {
-				inputStream.close();
-			}
-			if (writer != null) {
-				writer.close();
-			}
-		}
-		if (successful) {
-			String content = writer.getBuffer().toString();
-			// logger.info("Content before transformation: " + content);
-			String replacedContent = Tools
-					.replaceUtf8AndIllegalXmlChars(content);
-			// logger.info("Content after transformation: " + replacedContent);
-			return new StringReader(replacedContent);
-		} else {
+			pReader.close();
 			return new StringReader("<map><node TEXT='"
-					+ HtmlTools.toXMLEscapedText(errorMessage) + "'/></map>");
+					+ HtmlTools.toXMLEscapedText(ex.getLocalizedMessage())
+					+ "'/></map>");
 		}
 	}
 
@@ -1275,6 +1207,64 @@ public class Tools {
 		}
 	}
 
+	/**
+	 * Writes the content (UTF-8) to a temporary file next to pFile, forces it
+	 * to the disk and renames it to pFile. Thus, pFile contains either the old
+	 * or the new content, but never a partially written one.
+	 */
+	public static void writeFileAtomically(File pFile, CharArrayWriter pContent)
+			throws IOException {
+		File file = pFile.getAbsoluteFile();
+		File tempFile = new File(file.getParentFile(), file.getName() + ".tmp");
+		FileOutputStream out = new FileOutputStream(tempFile);
+		try {
+			Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+			pContent.writeTo(writer);
+			writer.flush();
+			out.getFD().sync();
+		} finally {
+			out.close();
+		}
+		replaceFile(tempFile, file);
+	}
+
+	/**
+	 * As {@link #writeFileAtomically(File, CharArrayWriter)}, the snapshot is
+	 * encoded while it is written.
+	 */
+	public static void writeFileAtomically(File pFile, XMLSnapshot pContent)
+			throws IOException {
+		File file = pFile.getAbsoluteFile();
+		File tempFile = new File(file.getParentFile(), file.getName() + ".tmp");
+		FileOutputStream out = new FileOutputStream(tempFile);
+		try {
+			Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+			XMLWriter xmlWriter = new XMLWriter(writer);
+			try {
+				pContent.writeTo(xmlWriter);
+			} finally {
+				xmlWriter.finish();
+			}
+			writer.flush();
+			out.getFD().sync();
+		} finally {
+			out.close();
+		}
+		replaceFile(tempFile, file);
+	}
+
+	private static void replaceFile(File pSource, File pTarget)
+			throws IOException {
+		try {
+			Files.move(pSource.toPath(), pTarget.toPath(),
+					StandardCopyOption.ATOMIC_MOVE,
+					StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(pSource.toPath(), pTarget.toPath(),
+					StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
 	public static Point convertPointToAncestor(Component c, Point p,
 			Component destination) {
 		int x, y;
@@ -2027,8 +2017,11 @@ public class Tools {
 		return classString;
 	}
 
+	/**
+	 * @see XmlActionCopier
+	 */
 	public static XmlAction deepCopy(XmlAction action) {
-		return (XmlAction) unMarshall(marshall(action));
+		return XmlActionCopier.copy(action);
 	}
 
 	public static String generateID(String proposedID, Map map,
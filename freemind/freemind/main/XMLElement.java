@@ -2282,6 +2282,10 @@ public class XMLElement {
 	 * </dl>
 	 */
 	protected void writeEncoded(Writer writer, String str) throws IOException {
+		if (writer instanceof XMLWriter) {
+			((XMLWriter) writer).writeEncoded(str);
+			return;
+		}
 		for (int i = 0; i < str.length(); i += 1) {
 			char ch = str.charAt(i);
 			switch (ch) {
@@ -0,0 +1,625 @@
+/*FreeMind - A Program for creating and viewing Mindmaps
+*Copyright (C) 2000-2014 Christian Foltin, Joerg Mueller, Daniel Polansky, Dimitri Polivaev and others.
+*
+*See COPYING for Details
+*
+*This program is free software; you can redistribute it and/or
+*modify it under the terms of the GNU General Public License
+*as published by the Free Software Foundation; either version 2
+*of the License, or (at your option) any later version.
+*
+*This program is distributed in the hope that it will be useful,
+*but WITHOUT ANY WARRANTY; without even the implied warranty of
+*MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+*GNU General Public License for more details.
+*
+*You should have received a copy of the GNU General Public License
+*along with this program; if not, write to the Free Software
+*Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+*/
+
+package freemind.main;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Streaming (StAX like) cursor over a single XML element read from a
+ * {@link Reader}. In contrast to {@link XMLElement}, no element tree is built:
+ * the caller pulls {@link #START_ELEMENT}, {@link #CHARACTERS} and
+ * {@link #END_ELEMENT} events via {@link #next()} and reads the name and the
+ * attributes of the current element.
+ *
+ * The input is read block wise into a char array. The lexical rules are the
+ * ones of {@link XMLElement} (same entities, attribute values are not
+ * normalized, attribute names are upper cased), such that both parsers
+ * deliver identical values. The content of elements like
+ * {@link XMLElement#XML_NODE_XHTML_CONTENT_TAG} can be read verbatim via
+ * {@link #readRawContent()}.
+ */
+public class XMLPullParser {
+
+	public static final int START_ELEMENT = 1;
+	public static final int END_ELEMENT = 2;
+	public static final int CHARACTERS = 4;
+	public static final int END_DOCUMENT = 8;
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final int NAME_CACHE_SIZE = 256;
+
+	private final Reader mReader;
+	private final char[] mBuffer = new char[BUFFER_SIZE];
+	private int mPosition = 0;
+	private int mLimit = 0;
+	private int mLineNr = 1;
+
+	/** Scratch buffer for names, attribute values and text. */
+	private final StringBuilder mToken = new StringBuilder();
+	/** Element and attribute names are few, thus they are shared. */
+	private final String[] mElementNameCache = new String[NAME_CACHE_SIZE];
+	private final String[] mAttributeNameCache = new String[NAME_CACHE_SIZE];
+
+	private String[] mElementStack = new String[32];
+	private int mDepth = 0;
+	private boolean mStarted = false;
+	private boolean mPendingEndElement = false;
+
+	private String mName;
+	private String mText;
+	private String[] mAttributeNames = new String[16];
+	private String[] mAttributeValues = new String[16];
+	private int mAttributeCount = 0;
+
+	public XMLPullParser(Reader pReader) {
+		mReader = pReader;
+	}
+
+	/**
+	 * Advances to the next event.
+	 *
+	 * @return one of {@link #START_ELEMENT}, {@link #END_ELEMENT},
+	 *         {@link #CHARACTERS} or {@link #END_DOCUMENT}. The document ends
+	 *         with the end of the first (root) element, the rest of the
+	 *         reader is not consumed.
+	 */
+	public int next() throws IOException, XMLParseException {
+		if (mPendingEndElement) {
+			mPendingEndElement = false;
+			mAttributeCount = 0;
+			--mDepth;
+			return END_ELEMENT;
+		}
+		if (mStarted && mDepth == 0) {
+			return END_DOCUMENT;
+		}
+		mText = null;
+		for (;;) {
+			if (mDepth == 0) {
+				if (skipWhitespace() != '<') {
+					throw expectedInput("<");
+				}
+			} else {
+				mToken.setLength(0);
+				boolean onlyWhitespace = scanText();
+				if (!onlyWhitespace) {
+					mText = mToken.toString();
+					// the '<' is read again at the next call.
+					--mPosition;
+					return CHARACTERS;
+				}
+			}
+			char ch = readChar();
+			if (ch == '!') {
+				if (!scanSpecial()) {
+					// CDATA: text.
+					mText = mToken.toString();
+					return CHARACTERS;
+				}
+			} else if (ch == '?') {
+				skipSpecialTag(0);
+			} else if (ch == '/') {
+				if (mDepth == 0) {
+					throw expectedInput("Element");
+				}
+				scanEndTag();
+				return END_ELEMENT;
+			} else {
+				unread(ch);
+				scanStartTag();
+				return START_ELEMENT;
+			}
+		}
+	}
+
+	/**
+	 * @return the name of the current element (for start and end events).
+	 */
+	public String getLocalName() {
+		return mName;
+	}
+
+	public String getText() {
+		return mText;
+	}
+
+	public int getAttributeCount() {
+		return mAttributeCount;
+	}
+
+	/**
+	 * @return the upper cased attribute name.
+	 */
+	public String getAttributeName(int pIndex) {
+		return mAttributeNames[pIndex];
+	}
+
+	public String getAttributeValue(int pIndex) {
+		return mAttributeValues[pIndex];
+	}
+
+	/**
+	 * @return the value of the (upper cased) attribute name or null.
+	 */
+	public String getAttributeValue(String pName) {
+		for (int i = 0; i < mAttributeCount; i++) {
+			if (mAttributeNames[i].equals(pName)) {
+				return mAttributeValues[i];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return true, if the current start element was closed by "/&gt;".
+	 */
+	public boolean isEmptyElement() {
+		return mPendingEndElement;
+	}
+
+	public int getLineNr() {
+		return mLineNr;
+	}
+
+	/**
+	 * Must be called directly after a {@link #START_ELEMENT}. Collects the
+	 * content up to the closing tag of the current element without any
+	 * interpretation (as {@link XMLElement} does for
+	 * {@link XMLElement#XML_NODE_XHTML_CONTENT_TAG}). The next call to
+	 * {@link #next()} returns the corresponding {@link #END_ELEMENT}.
+	 *
+	 * @return the trimmed content.
+	 */
+	public String readRawContent() throws IOException, XMLParseException {
+		if (mPendingEndElement) {
+			return "";
+		}
+		StringBuilder content = new StringBuilder();
+		for (;;) {
+			int start = mPosition;
+			while (mPosition < mLimit && mBuffer[mPosition] != '<') {
+				if (mBuffer[mPosition] == '\n') {
+					mLineNr++;
+				}
+				mPosition++;
+			}
+			content.append(mBuffer, start, mPosition - start);
+			if (mPosition == mLimit) {
+				fill();
+				continue;
+			}
+			// '<' found.
+			int tagStart = content.length();
+			content.append(readChar());
+			if (matchesEndTag(content)) {
+				content.setLength(tagStart);
+				mPendingEndElement = true;
+				return content.toString().trim();
+			}
+		}
+	}
+
+	/**
+	 * Reads "\s*&#47;\s*name\s*&gt;" and appends what was read.
+	 */
+	private boolean matchesEndTag(StringBuilder pContent) throws IOException {
+		char ch = readChar();
+		pContent.append(ch);
+		while (isWhitespace(ch)) {
+			ch = readChar();
+			pContent.append(ch);
+		}
+		if (ch != '/') {
+			unread(ch, pContent);
+			return false;
+		}
+		ch = readChar();
+		pContent.append(ch);
+		while (isWhitespace(ch)) {
+			ch = readChar();
+			pContent.append(ch);
+		}
+		for (int i = 0; i < mName.length(); i++) {
+			if (ch != mName.charAt(i)) {
+				unread(ch, pContent);
+				return false;
+			}
+			ch = readChar();
+			pContent.append(ch);
+		}
+		while (isWhitespace(ch)) {
+			ch = readChar();
+			pContent.append(ch);
+		}
+		if (ch != '>') {
+			unread(ch, pContent);
+			return false;
+		}
+		return true;
+	}
+
+	private void unread(char ch, StringBuilder pContent) {
+		unread(ch);
+		pContent.setLength(pContent.length() - 1);
+	}
+
+	private void scanStartTag() throws IOException, XMLParseException {
+		mName = scanName(mElementNameCache, false);
+		mStarted = true;
+		push(mName);
+		mAttributeCount = 0;
+		char ch = skipWhitespace();
+		while (ch != '>' && ch != '/') {
+			unread(ch);
+			String key = scanName(mAttributeNameCache, true);
+			if (skipWhitespace() != '=') {
+				throw expectedInput("=");
+			}
+			char delimiter = skipWhitespace();
+			if (delimiter != '\'' && delimiter != '"') {
+				throw expectedInput("' or \"");
+			}
+			mToken.setLength(0);
+			scanAttributeValue(delimiter);
+			addAttribute(key, mToken.toString());
+			ch = skipWhitespace();
+		}
+		if (ch == '/') {
+			if (readChar() != '>') {
+				throw expectedInput(">");
+			}
+			mPendingEndElement = true;
+		}
+	}
+
+	private void scanEndTag() throws IOException, XMLParseException {
+		String expected = mElementStack[mDepth - 1];
+		unread(skipWhitespace());
+		for (int i = 0; i < expected.length(); i++) {
+			if (readChar() != expected.charAt(i)) {
+				throw expectedInput(expected);
+			}
+		}
+		if (skipWhitespace() != '>') {
+			throw expectedInput(">");
+		}
+		mName = expected;
+		mAttributeCount = 0;
+		--mDepth;
+	}
+
+	/**
+	 * Collects the text up to the next '&lt;' (which is consumed) into
+	 * mToken.
+	 *
+	 * @return true, if the text consists of whitespace only.
+	 */
+	private boolean scanText() throws IOException, XMLParseException {
+		boolean onlyWhitespace = true;
+		for (;;) {
+			int start = mPosition;
+			while (mPosition < mLimit) {
+				char ch = mBuffer[mPosition];
+				if (ch == '<' || ch == '&') {
+					break;
+				}
+				if (ch == '\n') {
+					mLineNr++;
+				} else if (onlyWhitespace && !isWhitespace(ch)) {
+					onlyWhitespace = false;
+				}
+				mPosition++;
+			}
+			mToken.append(mBuffer, start, mPosition - start);
+			if (mPosition == mLimit) {
+				fill();
+				continue;
+			}
+			char ch = mBuffer[mPosition++];
+			if (ch == '<') {
+				return onlyWhitespace;
+			}
+			resolveEntity();
+			onlyWhitespace = false;
+		}
+	}
+
+	private void scanAttributeValue(char pDelimiter) throws IOException,
+			XMLParseException {
+		for (;;) {
+			int start = mPosition;
+			while (mPosition < mLimit) {
+				char ch = mBuffer[mPosition];
+				if (ch == pDelimiter || ch == '&') {
+					break;
+				}
+				if (ch == '\n') {
+					mLineNr++;
+				}
+				mPosition++;
+			}
+			mToken.append(mBuffer, start, mPosition - start);
+			if (mPosition == mLimit) {
+				fill();
+				continue;
+			}
+			if (mBuffer[mPosition++] == pDelimiter) {
+				return;
+			}
+			resolveEntity();
+		}
+	}
+
+	/**
+	 * Appends the entity (the '&amp;' is already read) to mToken.
+	 */
+	private void resolveEntity() throws IOException, XMLParseException {
+		int start = mToken.length();
+		char ch;
+		while ((ch = readChar()) != ';') {
+			mToken.append(ch);
+		}
+		String key = mToken.substring(start);
+		mToken.setLength(start);
+		if (key.length() > 1 && key.charAt(0) == '#') {
+			try {
+				if (key.charAt(1) == 'x') {
+					ch = (char) Integer.parseInt(key.substring(2), 16);
+				} else {
+					ch = (char) Integer.parseInt(key.substring(1), 10);
+				}
+			} catch (NumberFormatException e) {
+				throw unknownEntity(key);
+			}
+			mToken.append(ch);
+		} else if ("amp".equals(key)) {
+			mToken.append('&');
+		} else if ("lt".equals(key)) {
+			mToken.append('<');
+		} else if ("gt".equals(key)) {
+			mToken.append('>');
+		} else if ("quot".equals(key)) {
+			mToken.append('"');
+		} else if ("apos".equals(key)) {
+			mToken.append('\'');
+		} else {
+			throw unknownEntity(key);
+		}
+	}
+
+	/**
+	 * Handles "&lt;!": comments and doctype are skipped.
+	 *
+	 * @return false, if a CDATA section was read into mToken.
+	 */
+	private boolean scanSpecial() throws IOException, XMLParseException {
+		char ch = readChar();
+		if (ch == '-') {
+			if (readChar() != '-') {
+				throw expectedInput("Comment or Element");
+			}
+			skipComment();
+			return true;
+		}
+		if (ch == '[') {
+			if (!checkLiteral("CDATA[")) {
+				skipSpecialTag(1);
+				return true;
+			}
+			mToken.setLength(0);
+			for (;;) {
+				ch = readChar();
+				if (ch == '>' && mToken.length() >= 2
+						&& mToken.charAt(mToken.length() - 1) == ']'
+						&& mToken.charAt(mToken.length() - 2) == ']') {
+					mToken.setLength(mToken.length() - 2);
+					return false;
+				}
+				mToken.append(ch);
+			}
+		}
+		skipSpecialTag(0);
+		return true;
+	}
+
+	private void skipComment() throws IOException, XMLParseException {
+		int dashesToRead = 2;
+		while (dashesToRead > 0) {
+			if (readChar() == '-') {
+				dashesToRead -= 1;
+			} else {
+				dashesToRead = 2;
+			}
+		}
+		if (readChar() != '>') {
+			throw expectedInput(">");
+		}
+	}
+
+	/**
+	 * Skips processing instructions and declarations including nested
+	 * brackets and strings.
+	 */
+	private void skipSpecialTag(int pBracketLevel) throws IOException,
+			XMLParseException {
+		int tagLevel = 1;
+		int bracketLevel = pBracketLevel;
+		char stringDelimiter = '\0';
+		while (tagLevel > 0) {
+			char ch = readChar();
+			if (stringDelimiter == '\0') {
+				if (ch == '"' || ch == '\'') {
+					stringDelimiter = ch;
+				} else if (ch == '[') {
+					bracketLevel += 1;
+				} else if (ch == ']') {
+					bracketLevel -= 1;
+				} else if (bracketLevel <= 0) {
+					if (ch == '<') {
+						tagLevel += 1;
+					} else if (ch == '>') {
+						tagLevel -= 1;
+					}
+				}
+			} else if (ch == stringDelimiter) {
+				stringDelimiter = '\0';
+			}
+		}
+	}
+
+	private boolean checkLiteral(String pLiteral) throws IOException,
+			XMLParseException {
+		for (int i = 0; i < pLiteral.length(); i++) {
+			if (readChar() != pLiteral.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Scans an identifier and returns the shared instance of it.
+	 */
+	private String scanName(String[] pCache, boolean pUpperCase)
+			throws IOException, XMLParseException {
+		mToken.setLength(0);
+		int hash = 0;
+		for (;;) {
+			char ch = readChar();
+			if (((ch < 'A') || (ch > 'Z')) && ((ch < 'a') || (ch > 'z'))
+					&& ((ch < '0') || (ch > '9')) && (ch != '_') && (ch != '.')
+					&& (ch != ':') && (ch != '-') && (ch <= '~')) {
+				unread(ch);
+				break;
+			}
+			if (pUpperCase) {
+				ch = Character.toUpperCase(ch);
+			}
+			mToken.append(ch);
+			hash = 31 * hash + ch;
+		}
+		int index = hash & (NAME_CACHE_SIZE - 1);
+		String cached = pCache[index];
+		if (cached != null && contentEquals(cached, mToken)) {
+			return cached;
+		}
+		String name = mToken.toString();
+		pCache[index] = name;
+		return name;
+	}
+
+	private static boolean contentEquals(String pString, StringBuilder pBuilder) {
+		int length = pBuilder.length();
+		if (pString.length() != length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (pString.charAt(i) != pBuilder.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void addAttribute(String pKey, String pValue) {
+		if (mAttributeCount == mAttributeNames.length) {
+			String[] names = new String[mAttributeCount * 2];
+			String[] values = new String[mAttributeCount * 2];
+			System.arraycopy(mAttributeNames, 0, names, 0, mAttributeCount);
+			System.arraycopy(mAttributeValues, 0, values, 0, mAttributeCount);
+			mAttributeNames = names;
+			mAttributeValues = values;
+		}
+		mAttributeNames[mAttributeCount] = pKey;
+		mAttributeValues[mAttributeCount] = pValue;
+		mAttributeCount++;
+	}
+
+	private void push(String pName) {
+		if (mDepth == mElementStack.length) {
+			String[] stack = new String[mDepth * 2];
+			System.arraycopy(mElementStack, 0, stack, 0, mDepth);
+			mElementStack = stack;
+		}
+		mElementStack[mDepth++] = pName;
+	}
+
+	/**
+	 * Pushes the last read char back.
+	 */
+	private void unread(char ch) {
+		--mPosition;
+		if (ch == '\n') {
+			mLineNr--;
+		}
+	}
+
+	private char skipWhitespace() throws IOException, XMLParseException {
+		for (;;) {
+			char ch = readChar();
+			if (!isWhitespace(ch)) {
+				return ch;
+			}
+		}
+	}
+
+	private static boolean isWhitespace(char ch) {
+		return ch == ' ' || ch == '\t' || ch == '\n' || ch == '\r';
+	}
+
+	private char readChar() throws IOException, XMLParseException {
+		if (mPosition >= mLimit) {
+			fill();
+		}
+		char ch = mBuffer[mPosition++];
+		if (ch == '\n') {
+			mLineNr++;
+		}
+		return ch;
+	}
+
+	/**
+	 * Refills the buffer. Afterwards, at least one char is available.
+	 */
+	private void fill() throws IOException, XMLParseException {
+		int read;
+		do {
+			read = mReader.read(mBuffer, 0, mBuffer.length);
+		} while (read == 0);
+		if (read < 0) {
+			throw new XMLParseException(mName, mLineNr,
+					"Unexpected end of data reached");
+		}
+		mPosition = 0;
+		mLimit = read;
+	}
+
+	private XMLParseException expectedInput(String pCharSet) {
+		return new XMLParseException(mName, mLineNr, "Expected: " + pCharSet);
+	}
+
+	private XMLParseException unknownEntity(String pName) {
+		return new XMLParseException(mName, mLineNr,
+				"Unknown or invalid entity: &" + pName + ";");
+	}
+
+}
@@ -0,0 +1,179 @@
+/*FreeMind - A Program for creating and viewing Mindmaps
+ *Copyright (C) 2000-2014 Christian Foltin, Joerg Mueller, Daniel Polansky, Dimitri Polivaev and others.
+ *
+ *See COPYING for Details
+ *
+ *This program is free software; you can redistribute it and/or
+ *modify it under the terms of the GNU General Public License
+ *as published by the Free Software Foundation; either version 2
+ *of the License, or (at your option) any later version.
+ *
+ *This program is distributed in the hope that it will be useful,
+ *but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *GNU General Public License for more details.
+ *
+ *You should have received a copy of the GNU General Public License
+ *along with this program; if not, write to the Free Software
+ *Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package freemind.main;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Records the output instead of encoding and writing it. Only strings and
+ * elements that were built for the output are kept, so the snapshot doesn't
+ * change anymore and can be written by another thread with
+ * {@link #writeTo(XMLWriter)}. Thus, a map is walked on the event dispatch
+ * thread, but its serialization can happen in the background.
+ */
+public class XMLSnapshot extends XMLWriter {
+
+	private enum Operation {
+		TEXT, ENCODED_TEXT, START_ELEMENT, ATTRIBUTE, CLOSE_START_TAG,
+		END_ELEMENT, ENCODED_CONTENT, XML_CONTENT, ELEMENT
+	}
+
+	/** Each operation followed by its arguments. */
+	private final ArrayList<Object> mRecord = new ArrayList<>();
+	private boolean mClosed = false;
+
+	public XMLSnapshot() {
+	}
+
+	private void record(Operation pOperation, Object... pArguments)
+			throws IOException {
+		if (mClosed) {
+			throw new IOException("Stream closed");
+		}
+		mRecord.add(pOperation);
+		for (Object argument : pArguments) {
+			mRecord.add(argument);
+		}
+	}
+
+	public void write(int c) throws IOException {
+		record(Operation.TEXT, String.valueOf((char) c));
+	}
+
+	public void write(char[] pChars, int pOffset, int pLength)
+			throws IOException {
+		record(Operation.TEXT, new String(pChars, pOffset, pLength));
+	}
+
+	public void write(String pString, int pOffset, int pLength)
+			throws IOException {
+		record(Operation.TEXT, pString.substring(pOffset, pOffset + pLength));
+	}
+
+	/**
+	 * The string is encoded when the snapshot is written.
+	 */
+	public void writeEncoded(String pString) throws IOException {
+		record(Operation.ENCODED_TEXT, pString);
+	}
+
+	public void startElement(String pName) throws IOException {
+		record(Operation.START_ELEMENT, pName);
+	}
+
+	public void writeAttribute(String pName, String pValue)
+			throws IOException {
+		record(Operation.ATTRIBUTE, pName, pValue);
+	}
+
+	public void closeStartTag() throws IOException {
+		record(Operation.CLOSE_START_TAG);
+	}
+
+	public void endElement(String pName) throws IOException {
+		record(Operation.END_ELEMENT, pName);
+	}
+
+	public void writeElementWithEncodedContent(String pName,
+			String pAttributeName, String pAttributeValue,
+			String pEncodedContent) throws IOException {
+		record(Operation.ENCODED_CONTENT, pName, pAttributeName,
+				pAttributeValue, pEncodedContent);
+	}
+
+	/**
+	 * The content is encoded when the snapshot is written.
+	 */
+	public void writeElementWithXmlContent(String pName,
+			String pAttributeName, String pAttributeValue, String pXmlContent)
+			throws IOException {
+		record(Operation.XML_CONTENT, pName, pAttributeName, pAttributeValue,
+				pXmlContent);
+	}
+
+	/**
+	 * The element must not be changed afterwards.
+	 */
+	public void writeElement(XMLElement pElement) throws IOException {
+		record(Operation.ELEMENT, pElement);
+	}
+
+	public void finish() {
+		mClosed = true;
+	}
+
+	public void flush() {
+	}
+
+	public void close() {
+		mClosed = true;
+	}
+
+	/**
+	 * Writes the recorded output. The writer is neither finished nor closed.
+	 */
+	public void writeTo(XMLWriter pWriter) throws IOException {
+		int i = 0;
+		while (i < mRecord.size()) {
+			Operation operation = (Operation) mRecord.get(i++);
+			switch (operation) {
+			case TEXT:
+				pWriter.write((String) mRecord.get(i++));
+				break;
+			case ENCODED_TEXT:
+				pWriter.writeEncoded((String) mRecord.get(i++));
+				break;
+			case START_ELEMENT:
+				pWriter.startElement((String) mRecord.get(i++));
+				break;
+			case ATTRIBUTE:
+				pWriter.writeAttribute((String) mRecord.get(i),
+						(String) mRecord.get(i + 1));
+				i += 2;
+				break;
+			case CLOSE_START_TAG:
+				pWriter.closeStartTag();
+				break;
+			case END_ELEMENT:
+				pWriter.endElement((String) mRecord.get(i++));
+				break;
+			case ENCODED_CONTENT:
+				pWriter.writeElementWithEncodedContent(
+						(String) mRecord.get(i), (String) mRecord.get(i + 1),
+						(String) mRecord.get(i + 2),
+						(String) mRecord.get(i + 3));
+				i += 4;
+				break;
+			case XML_CONTENT:
+				pWriter.writeElementWithXmlContent((String) mRecord.get(i),
+						(String) mRecord.get(i + 1),
+						(String) mRecord.get(i + 2),
+						(String) mRecord.get(i + 3));
+				i += 4;
+				break;
+			case ELEMENT:
+				pWriter.writeElement((XMLElement) mRecord.get(i++));
+				break;
+			}
+		}
+	}
+}
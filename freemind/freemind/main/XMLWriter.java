@@ -0,0 +1,336 @@
+/*FreeMind - A Program for creating and viewing Mindmaps
+ *Copyright (C) 2000-2014 Christian Foltin, Joerg Mueller, Daniel Polansky, Dimitri Polivaev and others.
+ *
+ *See COPYING for Details
+ *
+ *This program is free software; you can redistribute it and/or
+ *modify it under the terms of the GNU General Public License
+ *as published by the Free Software Foundation; either version 2
+ *of the License, or (at your option) any later version.
+ *
+ *This program is distributed in the hope that it will be useful,
+ *but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *GNU General Public License for more details.
+ *
+ *You should have received a copy of the GNU General Public License
+ *along with this program; if not, write to the Free Software
+ *Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package freemind.main;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+/**
+ * Buffered writer for the map xml. Elements are written directly (no
+ * {@link XMLElement} needed) and the encoding of attribute values is the same
+ * as in {@link XMLElement#write(Writer)}, so that the output is identical.
+ *
+ * The (large) buffers are pooled, thus a writer must be closed (or
+ * {@link #finish()}ed) to give its buffer back.
+ */
+public class XMLWriter extends Writer {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final int MAX_POOLED_BUFFERS = 4;
+	private static final ArrayList<char[]> sBufferPool = new ArrayList<>();
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	private final Writer mOut;
+	private char[] mBuffer;
+	private int mPosition = 0;
+	private boolean mStartTagOpen = false;
+
+	public XMLWriter(Writer pOut) {
+		mOut = pOut;
+		mBuffer = acquireBuffer();
+	}
+
+	/**
+	 * For subclasses that record the output instead of writing it, see
+	 * {@link XMLSnapshot}.
+	 */
+	protected XMLWriter() {
+		mOut = null;
+		mBuffer = null;
+	}
+
+	/**
+	 * Writes UTF-8 to the given stream.
+	 */
+	public XMLWriter(OutputStream pOut) {
+		this(new OutputStreamWriter(pOut, StandardCharsets.UTF_8));
+	}
+
+	private static char[] acquireBuffer() {
+		synchronized (sBufferPool) {
+			if (!sBufferPool.isEmpty()) {
+				return sBufferPool.remove(sBufferPool.size() - 1);
+			}
+		}
+		return new char[BUFFER_SIZE];
+	}
+
+	private static void releaseBuffer(char[] pBuffer) {
+		synchronized (sBufferPool) {
+			if (sBufferPool.size() < MAX_POOLED_BUFFERS) {
+				sBufferPool.add(pBuffer);
+			}
+		}
+	}
+
+	private void ensureOpen() throws IOException {
+		if (mBuffer == null) {
+			throw new IOException("Stream closed");
+		}
+	}
+
+	private void flushBuffer() throws IOException {
+		ensureOpen();
+		if (mPosition > 0) {
+			mOut.write(mBuffer, 0, mPosition);
+			mPosition = 0;
+		}
+	}
+
+	public void write(int c) throws IOException {
+		ensureOpen();
+		if (mPosition == mBuffer.length) {
+			flushBuffer();
+		}
+		mBuffer[mPosition++] = (char) c;
+	}
+
+	public void write(char[] pChars, int pOffset, int pLength)
+			throws IOException {
+		ensureOpen();
+		if (pLength >= mBuffer.length) {
+			flushBuffer();
+			mOut.write(pChars, pOffset, pLength);
+			return;
+		}
+		if (pLength > mBuffer.length - mPosition) {
+			flushBuffer();
+		}
+		System.arraycopy(pChars, pOffset, mBuffer, mPosition, pLength);
+		mPosition += pLength;
+	}
+
+	public void write(String pString) throws IOException {
+		write(pString, 0, pString.length());
+	}
+
+	public void write(String pString, int pOffset, int pLength)
+			throws IOException {
+		ensureOpen();
+		while (pLength > 0) {
+			if (mPosition == mBuffer.length) {
+				flushBuffer();
+			}
+			int count = Math.min(pLength, mBuffer.length - mPosition);
+			pString.getChars(pOffset, pOffset + count, mBuffer, mPosition);
+			mPosition += count;
+			pOffset += count;
+			pLength -= count;
+		}
+	}
+
+	/**
+	 * Writes the string with the xml entities of {@link XMLElement}: the five
+	 * predefined ones and hex character references for everything outside of
+	 * the printable ascii range.
+	 */
+	public void writeEncoded(String pString) throws IOException {
+		ensureOpen();
+		int length = pString.length();
+		for (int i = 0; i < length; i++) {
+			// the longest output is "&#xffff;":
+			if (mBuffer.length - mPosition < 8) {
+				flushBuffer();
+			}
+			char ch = pString.charAt(i);
+			switch (ch) {
+			case '<':
+				append("&lt;");
+				break;
+			case '>':
+				append("&gt;");
+				break;
+			case '&':
+				append("&amp;");
+				break;
+			case '"':
+				append("&quot;");
+				break;
+			case '\'':
+				append("&apos;");
+				break;
+			default:
+				if (ch < 32 || ch > 126) {
+					appendCharacterReference(ch);
+				} else {
+					mBuffer[mPosition++] = ch;
+				}
+			}
+		}
+	}
+
+	private void append(String pEntity) {
+		int length = pEntity.length();
+		pEntity.getChars(0, length, mBuffer, mPosition);
+		mPosition += length;
+	}
+
+	private void appendCharacterReference(char ch) {
+		mBuffer[mPosition++] = '&';
+		mBuffer[mPosition++] = '#';
+		mBuffer[mPosition++] = 'x';
+		// as Integer.toString(ch, 16), without leading zeros:
+		int shift = 12;
+		while (shift > 0 && (ch >> shift) == 0) {
+			shift -= 4;
+		}
+		for (; shift >= 0; shift -= 4) {
+			mBuffer[mPosition++] = HEX_DIGITS[(ch >> shift) & 0xf];
+		}
+		mBuffer[mPosition++] = ';';
+	}
+
+	/**
+	 * Writes "&lt;name". The start tag stays open for
+	 * {@link #writeAttribute(String, String)} calls until the next element
+	 * starts or this one ends. Elements without content are written as
+	 * "&lt;name/&gt;" like in {@link XMLElement}.
+	 */
+	public void startElement(String pName) throws IOException {
+		closeStartTag();
+		write('<');
+		write(pName);
+		mStartTagOpen = true;
+	}
+
+	/**
+	 * Attributes are written in the given order. To be identical with
+	 * {@link XMLElement}, they have to be sorted by name.
+	 */
+	public void writeAttribute(String pName, String pValue)
+			throws IOException {
+		write(' ');
+		write(pName);
+		write('=');
+		write('"');
+		writeEncoded(pValue);
+		write('"');
+	}
+
+	/**
+	 * Closes the pending start tag (if any), so that the current element is
+	 * not written as empty element.
+	 */
+	public void closeStartTag() throws IOException {
+		if (mStartTagOpen) {
+			mStartTagOpen = false;
+			write('>');
+			write('\n');
+		}
+	}
+
+	public void endElement(String pName) throws IOException {
+		if (mStartTagOpen) {
+			mStartTagOpen = false;
+			write('/');
+			write('>');
+			write('\n');
+			return;
+		}
+		write('<');
+		write('/');
+		write(pName);
+		write('>');
+		write('\n');
+	}
+
+	/**
+	 * Writes a complete element with one attribute and the given, already
+	 * encoded content (see {@link XMLElement#setEncodedContent(String)}).
+	 */
+	public void writeElementWithEncodedContent(String pName,
+			String pAttributeName, String pAttributeValue,
+			String pEncodedContent) throws IOException {
+		startElement(pName);
+		writeAttribute(pAttributeName, pAttributeValue);
+		if (pEncodedContent.length() > 0) {
+			mStartTagOpen = false;
+			write('>');
+			write(pEncodedContent);
+		}
+		endElement(pName);
+	}
+
+	/**
+	 * As {@link #writeElementWithEncodedContent(String, String, String, String)},
+	 * but the content is xml text that is encoded here.
+	 */
+	public void writeElementWithXmlContent(String pName,
+			String pAttributeName, String pAttributeValue, String pXmlContent)
+			throws IOException {
+		writeElementWithEncodedContent(pName, pAttributeName,
+				pAttributeValue, encodeContent(pXmlContent));
+	}
+
+	/**
+	 * @return the xml text as content of an {@link XMLElement}: made valid and
+	 *         with entities for all non ascii characters.
+	 */
+	public static String encodeContent(String pXmlContent) {
+		String replace = HtmlTools.makeValidXml(pXmlContent);
+		return HtmlTools.unicodeToHTMLUnicodeEntity(replace, true);
+	}
+
+	/**
+	 * Writes an element built elsewhere (e.g. by a hook) as child of the
+	 * current element.
+	 */
+	public void writeElement(XMLElement pElement) throws IOException {
+		closeStartTag();
+		pElement.write(this);
+	}
+
+	/**
+	 * Writes the buffer to the underlying writer and gives the buffer back to
+	 * the pool. The underlying writer stays open.
+	 */
+	public void finish() throws IOException {
+		if (mBuffer == null) {
+			return;
+		}
+		try {
+			flushBuffer();
+		} finally {
+			releaseBuffer(mBuffer);
+			mBuffer = null;
+		}
+	}
+
+	public void flush() throws IOException {
+		flushBuffer();
+		mOut.flush();
+	}
+
+	public void close() throws IOException {
+		if (mBuffer == null) {
+			return;
+		}
+		try {
+			finish();
+		} finally {
+			mOut.close();
+		}
+	}
+}
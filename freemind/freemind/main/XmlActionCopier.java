@@ -0,0 +1,200 @@
+/*FreeMind - A Program for creating and viewing Mindmaps
+ *Copyright (C) 2000-2014 Christian Foltin, Joerg Mueller, Daniel Polansky, Dimitri Polivaev and others.
+ *
+ *See COPYING for Details
+ *
+ *This program is free software; you can redistribute it and/or
+ *modify it under the terms of the GNU General Public License
+ *as published by the Free Software Foundation; either version 2
+ *of the License, or (at your option) any later version.
+ *
+ *This program is distributed in the hope that it will be useful,
+ *but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *GNU General Public License for more details.
+ *
+ *You should have received a copy of the GNU General Public License
+ *along with this program; if not, write to the Free Software
+ *Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package freemind.main;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+
+import freemind.controller.actions.generated.instance.XmlAction;
+
+/**
+ * Copies the generated action classes field by field instead of marshalling
+ * and unmarshalling them. Strings and primitives are shared (they are
+ * immutable), lists and nested generated objects are copied. The fields of
+ * each class are looked up once.
+ *
+ * Classes with fields of other types are copied by the marshaller as
+ * before.
+ */
+public class XmlActionCopier {
+
+	private static final String GENERATED_PACKAGE = XmlAction.class
+			.getPackage().getName();
+
+	/** Rough sizes in bytes for the estimation of the memory usage. */
+	private static final int OBJECT_SIZE = 16;
+	private static final int REFERENCE_SIZE = 8;
+	private static final int STRING_SIZE = 40;
+
+	private static final Field[] NOT_COPYABLE = new Field[0];
+
+	private static final ConcurrentHashMap<Class<?>, Field[]> sFields = new ConcurrentHashMap<>();
+
+	private static class NotCopyableException extends Exception {
+		private static final long serialVersionUID = 1L;
+	}
+
+	private XmlActionCopier() {
+	}
+
+	/**
+	 * @return a deep copy of the action.
+	 */
+	public static XmlAction copy(XmlAction pAction) {
+		if (pAction == null) {
+			return null;
+		}
+		try {
+			return (XmlAction) copyObject(pAction);
+		} catch (NotCopyableException e) {
+			return Tools.unMarshall(Tools.marshall(pAction));
+		}
+	}
+
+	/**
+	 * @return the estimated memory usage of the action in bytes (including
+	 *         the strings it refers to).
+	 */
+	public static long getEstimatedSize(Object pObject) {
+		if (pObject == null) {
+			return 0;
+		}
+		if (pObject instanceof String) {
+			return STRING_SIZE + 2L * ((String) pObject).length();
+		}
+		if (pObject instanceof List) {
+			List<?> list = (List<?>) pObject;
+			long size = OBJECT_SIZE + REFERENCE_SIZE * (list.size() + 2);
+			for (Object element : list) {
+				size += getEstimatedSize(element);
+			}
+			return size;
+		}
+		Field[] fields = getFields(pObject.getClass());
+		long size = OBJECT_SIZE;
+		for (int i = 0; i < fields.length; i++) {
+			size += REFERENCE_SIZE;
+			if (!fields[i].getType().isPrimitive()) {
+				try {
+					size += getEstimatedSize(fields[i].get(pObject));
+				} catch (IllegalAccessException e) {
+					freemind.main.Resources.getInstance().logException(e);
+				}
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * @return the estimated growth of a list in bytes, when the element is
+	 *         added to it.
+	 */
+	public static long getEstimatedListEntrySize(Object pElement) {
+		return REFERENCE_SIZE + getEstimatedSize(pElement);
+	}
+
+	private static Object copyObject(Object pObject)
+			throws NotCopyableException {
+		Class<?> clazz = pObject.getClass();
+		Field[] fields = getFields(clazz);
+		if (fields == NOT_COPYABLE) {
+			throw new NotCopyableException();
+		}
+		try {
+			Object copy = clazz.getDeclaredConstructor().newInstance();
+			for (int i = 0; i < fields.length; i++) {
+				Field field = fields[i];
+				if (field.getType().isPrimitive()) {
+					field.set(copy, field.get(pObject));
+				} else {
+					field.set(copy, copyValue(field.get(pObject)));
+				}
+			}
+			return copy;
+		} catch (ReflectiveOperationException e) {
+			freemind.main.Resources.getInstance().logException(e);
+			throw new NotCopyableException();
+		}
+	}
+
+	private static Object copyValue(Object pValue)
+			throws NotCopyableException {
+		if (pValue == null || pValue instanceof String
+				|| pValue instanceof Number || pValue instanceof Boolean
+				|| pValue instanceof Character) {
+			return pValue;
+		}
+		if (pValue instanceof ArrayList || pValue instanceof Vector) {
+			List<?> list = (List<?>) pValue;
+			List<Object> copy = (pValue instanceof Vector) ? new Vector<>(
+					list.size()) : new ArrayList<>(list.size());
+			for (Object element : list) {
+				copy.add(copyValue(element));
+			}
+			return copy;
+		}
+		return copyObject(pValue);
+	}
+
+	/**
+	 * @return the instance fields of the class and its super classes or
+	 *         NOT_COPYABLE, if it isn't a generated class.
+	 */
+	private static Field[] getFields(Class<?> pClass) {
+		Field[] fields = sFields.get(pClass);
+		if (fields == null) {
+			fields = collectFields(pClass);
+			sFields.put(pClass, fields);
+		}
+		return fields;
+	}
+
+	private static Field[] collectFields(Class<?> pClass) {
+		if (pClass.getPackage() == null
+				|| !GENERATED_PACKAGE.equals(pClass.getPackage().getName())) {
+			return NOT_COPYABLE;
+		}
+		Vector<Field> fields = new Vector<>();
+		for (Class<?> clazz = pClass; clazz != null && clazz != Object.class; clazz = clazz
+				.getSuperclass()) {
+			for (Field field : clazz.getDeclaredFields()) {
+				int modifiers = field.getModifiers();
+				if (Modifier.isStatic(modifiers) || field.isSynthetic()) {
+					continue;
+				}
+				if (Modifier.isFinal(modifiers)) {
+					return NOT_COPYABLE;
+				}
+				try {
+					field.setAccessible(true);
+				} catch (RuntimeException e) {
+					return NOT_COPYABLE;
+				}
+				fields.add(field);
+			}
+		}
+		return fields.toArray(new Field[fields.size()]);
+	}
+}
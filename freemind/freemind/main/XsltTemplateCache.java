@@ -0,0 +1,375 @@
+/*FreeMind - A Program for creating and viewing Mindmaps
+ *Copyright (C) 2000-2014 Christian Foltin, Joerg Mueller, Daniel Polansky, Dimitri Polivaev and others.
+ *
+ *See COPYING for Details
+ *
+ *This program is free software; you can redistribute it and/or
+ *modify it under the terms of the GNU General Public License
+ *as published by the Free Software Foundation; either version 2
+ *of the License, or (at your option) any later version.
+ *
+ *This program is distributed in the hope that it will be useful,
+ *but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *GNU General Public License for more details.
+ *
+ *You should have received a copy of the GNU General Public License
+ *along with this program; if not, write to the Free Software
+ *Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+
+package freemind.main;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import javax.xml.transform.Result;
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+
+/**
+ * Compiles each XSLT stylesheet only once. The compiled {@link Templates} are
+ * kept per stylesheet URL and are compiled again, when the modification time
+ * of the stylesheet changes (e.g. user stylesheets in the file system).
+ * 
+ * Moreover, XML that is generated (like the contents of a map) can be
+ * streamed into a transformation, see
+ * {@link #transform(Transformer, XmlProducer, Result)}.
+ */
+public class XsltTemplateCache {
+
+	/** Generates XML, e.g. by saving a map. */
+	public interface XmlProducer {
+		/** Writes the XML. The writer may be closed by the producer. */
+		void write(Writer pWriter) throws IOException;
+	}
+
+	private static class CacheEntry {
+		long mLastModified;
+		Templates mTemplates;
+	}
+
+	private static final int CHUNK_SIZE = 16 * 1024;
+
+	/** Number of chunks the producer may be ahead of the transformation. */
+	private static final int PIPE_CHUNKS = 16;
+
+	private static final char[] END_OF_STREAM = new char[0];
+
+	private static Logger logger = null;
+
+	private static HashMap<String, CacheEntry> sTemplates = new HashMap<>();
+
+	private static TransformerFactory sTransformerFactory = null;
+
+	private static Logger getLogger() {
+		if (logger == null) {
+			logger = Resources.getInstance().getLogger(
+					XsltTemplateCache.class.getName());
+		}
+		return logger;
+	}
+
+	/**
+	 * @return the compiled stylesheet. It can be used concurrently, but the
+	 *         transformers created from it can't.
+	 */
+	public static synchronized Templates getTemplates(URL pStylesheet)
+			throws IOException, TransformerConfigurationException {
+		String key = pStylesheet.toExternalForm();
+		long lastModified = getLastModified(pStylesheet);
+		CacheEntry entry = sTemplates.get(key);
+		if (entry != null && entry.mLastModified == lastModified) {
+			return entry.mTemplates;
+		}
+		getLogger().info("Compiling stylesheet " + key);
+		if (sTransformerFactory == null) {
+			sTransformerFactory = TransformerFactory.newInstance();
+		}
+		InputStream in = pStylesheet.openStream();
+		try {
+			// the system id resolves relative includes and imports:
+			Templates templates = sTransformerFactory
+					.newTemplates(new StreamSource(in, key));
+			entry = new CacheEntry();
+			entry.mLastModified = lastModified;
+			entry.mTemplates = templates;
+			sTemplates.put(key, entry);
+			return templates;
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * @return a new transformer for the (cached) stylesheet.
+	 */
+	public static Transformer newTransformer(URL pStylesheet)
+			throws IOException, TransformerConfigurationException {
+		return getTemplates(pStylesheet).newTransformer();
+	}
+
+	/**
+	 * Removes all compiled stylesheets.
+	 */
+	public static synchronized void clear() {
+		sTemplates.clear();
+	}
+
+	private static long getLastModified(URL pStylesheet) {
+		try {
+			if ("file".equals(pStylesheet.getProtocol())) {
+				File file = Tools.urlToFile(pStylesheet);
+				return file.lastModified();
+			}
+			URLConnection connection = pStylesheet.openConnection();
+			long lastModified = connection.getLastModified();
+			// don't leave the stream of the connection open:
+			connection.getInputStream().close();
+			return lastModified;
+		} catch (Exception e) {
+			Resources.getInstance().logException(e, pStylesheet.toString());
+			return 0;
+		}
+	}
+
+	/**
+	 * Transforms the XML of the producer without holding it in memory as a
+	 * whole: the producer writes on the calling thread into a pipe that is
+	 * read by the transformation in a separate thread. Thus, the producer may
+	 * access data that belongs to the calling thread, like a map on the event
+	 * dispatch thread. The method returns when the result is complete.
+	 */
+	public static void transform(final Transformer pTransformer,
+			XmlProducer pProducer, final Result pResult) throws IOException,
+			TransformerException {
+		final PipeReader reader = new PipeReader();
+		final PipeWriter writer = new PipeWriter(reader);
+		final Exception[] transformerError = new Exception[1];
+		Thread transformerThread = new Thread(new Runnable() {
+			public void run() {
+				try {
+					pTransformer.transform(new StreamSource(reader), pResult);
+				} catch (Exception e) {
+					transformerError[0] = e;
+				} finally {
+					// lets the producer end, if the transformation has failed:
+					reader.close();
+				}
+			}
+		}, "XSLT");
+		transformerThread.setDaemon(true);
+		transformerThread.start();
+		Exception producerError = null;
+		try {
+			pProducer.write(writer);
+		} catch (IOException | RuntimeException e) {
+			if (!reader.mClosed) {
+				// the producer has failed first. The transformation must not
+				// take the input as complete.
+				producerError = e;
+				writer.fail(e);
+			}
+		} finally {
+			writer.close();
+			try {
+				transformerThread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		if (producerError instanceof IOException) {
+			throw (IOException) producerError;
+		}
+		if (producerError != null) {
+			throw (RuntimeException) producerError;
+		}
+		if (transformerError[0] instanceof TransformerException) {
+			throw (TransformerException) transformerError[0];
+		}
+		if (transformerError[0] != null) {
+			throw new TransformerException(transformerError[0]);
+		}
+	}
+
+	/**
+	 * Runs the transformation of the input in a separate thread. Its result
+	 * can be read from the returned reader while the transformation is
+	 * still running. If the transformation fails, the reader throws an
+	 * IOException instead of ending normally.
+	 * 
+	 * The input is closed after the transformation, the returned reader has
+	 * to be closed by the caller.
+	 */
+	public static Reader getTransformedReader(final Templates pTemplates,
+			final Reader pInput) {
+		final PipeReader reader = new PipeReader();
+		final PipeWriter writer = new PipeWriter(reader);
+		Thread transformerThread = new Thread(new Runnable() {
+			public void run() {
+				try {
+					pTemplates.newTransformer().transform(
+							new StreamSource(pInput), new StreamResult(writer));
+				} catch (Exception e) {
+					writer.fail(e);
+				} finally {
+					writer.close();
+					try {
+						pInput.close();
+					} catch (IOException e) {
+						Resources.getInstance().logException(e);
+					}
+				}
+			}
+		}, "XSLT");
+		transformerThread.setDaemon(true);
+		transformerThread.start();
+		return reader;
+	}
+
+	/**
+	 * The reading end of the pipe. Unlike {@link java.io.PipedReader}, the
+	 * characters are passed in chunks.
+	 */
+	private static class PipeReader extends Reader {
+		private final BlockingQueue<char[]> mChunks = new ArrayBlockingQueue<>(
+				PIPE_CHUNKS);
+		private char[] mChunk = null;
+		private int mPosition = 0;
+		private volatile boolean mClosed = false;
+		/** Set by the writer before the end of the stream. */
+		private volatile Exception mError = null;
+
+		public int read(char[] pBuffer, int pOffset, int pLength)
+				throws IOException {
+			if (mClosed) {
+				throw new IOException("Pipe closed");
+			}
+			if (pLength == 0) {
+				return 0;
+			}
+			while (mChunk == null || mPosition == mChunk.length) {
+				if (mChunk == END_OF_STREAM) {
+					if (mError != null) {
+						throw new IOException(mError);
+					}
+					return -1;
+				}
+				try {
+					mChunk = mChunks.take();
+				} catch (InterruptedException e) {
+					throw new IOException(e);
+				}
+				mPosition = 0;
+			}
+			int length = Math.min(pLength, mChunk.length - mPosition);
+			System.arraycopy(mChunk, mPosition, pBuffer, pOffset, length);
+			mPosition += length;
+			return length;
+		}
+
+		/** Blocks until the reader has room for the chunk. */
+		void put(char[] pChunk) throws IOException {
+			try {
+				while (!mChunks.offer(pChunk, 100, TimeUnit.MILLISECONDS)) {
+					if (mClosed) {
+						throw new IOException("Pipe closed");
+					}
+				}
+			} catch (InterruptedException e) {
+				throw new IOException(e);
+			}
+			if (mClosed) {
+				mChunks.clear();
+				throw new IOException("Pipe closed");
+			}
+		}
+
+		public void close() {
+			mClosed = true;
+			mChunks.clear();
+		}
+	}
+
+	private static class PipeWriter extends Writer {
+		private final PipeReader mReader;
+		private char[] mBuffer = new char[CHUNK_SIZE];
+		private int mCount = 0;
+		private boolean mClosed = false;
+
+		PipeWriter(PipeReader pReader) {
+			mReader = pReader;
+		}
+
+		public void write(char[] pBuffer, int pOffset, int pLength)
+				throws IOException {
+			if (mClosed) {
+				throw new IOException("Pipe closed");
+			}
+			while (pLength > 0) {
+				int length = Math.min(pLength, CHUNK_SIZE - mCount);
+				System.arraycopy(pBuffer, pOffset, mBuffer, mCount, length);
+				mCount += length;
+				pOffset += length;
+				pLength -= length;
+				if (mCount == CHUNK_SIZE) {
+					sendChunk();
+				}
+			}
+		}
+
+		private void sendChunk() throws IOException {
+			if (mCount > 0) {
+				char[] chunk = Arrays.copyOf(mBuffer, mCount);
+				mCount = 0;
+				mReader.put(chunk);
+			}
+		}
+
+		/**
+		 * Does nothing: the chunks are passed when they are full, as the
+		 * writers of the producers flush often.
+		 */
+		public void flush() {
+		}
+
+		/**
+		 * The reader throws an exception with the given cause at the end of
+		 * the stream.
+		 */
+		void fail(Exception pError) {
+			mReader.mError = pError;
+		}
+
+		/** Ends the stream. Errors are seen by the reader. */
+		public void close() {
+			if (mClosed) {
+				return;
+			}
+			mClosed = true;
+			try {
+				sendChunk();
+				mReader.put(END_OF_STREAM);
+			} catch (IOException e) {
+				// the reader is gone.
+			}
+		}
+	}
+}
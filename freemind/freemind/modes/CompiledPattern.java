@@ -0,0 +1,242 @@
+/*FreeMind - A Program for creating and viewing Mindmaps
+ *Copyright (C) 2000-2014 Christian Foltin, Joerg Mueller, Daniel Polansky, Dimitri Polivaev and others.
+ *
+ *See COPYING for Details
+ *
+ *This program is free software; you can redistribute it and/or
+ *modify it under the terms of the GNU General Public License
+ *as published by the Free Software Foundation; either version 2
+ *of the License, or (at your option) any later version.
+ *
+ *This program is distributed in the hope that it will be useful,
+ *but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *GNU General Public License for more details.
+ *
+ *You should have received a copy of the GNU General Public License
+ *along with this program; if not, write to the Free Software
+ *Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+
+package freemind.modes;
+
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.List;
+
+import freemind.controller.actions.generated.instance.Pattern;
+import freemind.controller.actions.generated.instance.PatternPropertyBase;
+import freemind.main.Tools;
+import freemind.modes.mindmapmode.actions.xml.ActionPair;
+import freemind.modes.mindmapmode.actions.xml.actors.XmlActorFactory;
+
+/**
+ * A {@link Pattern} whose values are parsed once, such that it can be applied
+ * to many nodes cheaply. Only the properties a node doesn't have already are
+ * changed, and the changes are collected into compound actions instead of
+ * being executed one by one.
+ * 
+ * Child patterns and pattern scripts are not part of the compiled pattern,
+ * see {@link #isNodeLocal()}.
+ */
+public class CompiledPattern {
+
+	private final Pattern mPattern;
+
+	private final boolean mHasText;
+	private final String mText;
+	private final boolean mHasNodeColor;
+	private final Color mNodeColor;
+	private final boolean mHasBackgroundColor;
+	private final Color mBackgroundColor;
+	private final boolean mHasNodeStyle;
+	private final String mNodeStyle;
+	private final boolean mHasIcon;
+	/** null means: remove all icons. */
+	private final String mIconName;
+	private final boolean mHasFontName;
+	/** null means: the default font. */
+	private final String mFontName;
+	private final boolean mHasFontSize;
+	/** null means: the default font. */
+	private final String mFontSize;
+	private final Boolean mItalic;
+	private final Boolean mBold;
+	private final Boolean mStrikethrough;
+	private final boolean mHasEdgeColor;
+	private final Color mEdgeColor;
+	private final boolean mHasEdgeStyle;
+	private final String mEdgeStyle;
+	private final boolean mHasEdgeWidth;
+	private final int mEdgeWidth;
+
+	public CompiledPattern(Pattern pPattern) {
+		mPattern = pPattern;
+		mHasText = pPattern.getPatternNodeText() != null;
+		mText = mHasText ? nonNull(pPattern.getPatternNodeText().getValue())
+				: null;
+		mHasNodeColor = pPattern.getPatternNodeColor() != null;
+		mNodeColor = mHasNodeColor ? Tools.xmlToColor(pPattern
+				.getPatternNodeColor().getValue()) : null;
+		mHasBackgroundColor = pPattern.getPatternNodeBackgroundColor() != null;
+		mBackgroundColor = mHasBackgroundColor ? Tools.xmlToColor(pPattern
+				.getPatternNodeBackgroundColor().getValue()) : null;
+		mHasNodeStyle = pPattern.getPatternNodeStyle() != null;
+		mNodeStyle = value(pPattern.getPatternNodeStyle());
+		if (mNodeStyle != null
+				&& !Arrays.asList(MindMapNode.NODE_STYLES).contains(mNodeStyle)) {
+			throw new IllegalArgumentException("Unknown style " + mNodeStyle);
+		}
+		mHasIcon = pPattern.getPatternIcon() != null;
+		mIconName = value(pPattern.getPatternIcon());
+		mHasFontName = pPattern.getPatternNodeFontName() != null;
+		mFontName = value(pPattern.getPatternNodeFontName());
+		mHasFontSize = pPattern.getPatternNodeFontSize() != null;
+		mFontSize = value(pPattern.getPatternNodeFontSize());
+		mItalic = booleanValue(pPattern.getPatternNodeFontItalic());
+		mBold = booleanValue(pPattern.getPatternNodeFontBold());
+		mStrikethrough = booleanValue(pPattern
+				.getPatternNodeFontStrikethrough());
+		mHasEdgeColor = pPattern.getPatternEdgeColor() != null;
+		mEdgeColor = mHasEdgeColor ? Tools.xmlToColor(pPattern
+				.getPatternEdgeColor().getValue()) : null;
+		mHasEdgeStyle = pPattern.getPatternEdgeStyle() != null;
+		mEdgeStyle = value(pPattern.getPatternEdgeStyle());
+		if (mEdgeStyle != null
+				&& !Arrays.asList(EdgeAdapter.EDGESTYLES).contains(mEdgeStyle)) {
+			throw new IllegalArgumentException("Style " + mEdgeStyle
+					+ " is not known");
+		}
+		mHasEdgeWidth = pPattern.getPatternEdgeWidth() != null;
+		String edgeWidth = value(pPattern.getPatternEdgeWidth());
+		mEdgeWidth = (edgeWidth != null) ? Tools
+				.edgeWidthStringToInt(edgeWidth) : EdgeAdapter.DEFAULT_WIDTH;
+	}
+
+	private static String nonNull(String pValue) {
+		return (pValue == null) ? "" : pValue;
+	}
+
+	private static String value(PatternPropertyBase pProperty) {
+		return (pProperty == null) ? null : pProperty.getValue();
+	}
+
+	private static Boolean booleanValue(PatternPropertyBase pProperty) {
+		if (pProperty == null) {
+			return null;
+		}
+		return Boolean.valueOf(StylePatternFactory.TRUE_VALUE.equals(pProperty
+				.getValue()));
+	}
+
+	public Pattern getPattern() {
+		return mPattern;
+	}
+
+	/**
+	 * @return false, if the pattern has a child pattern or a script. These
+	 *         are only carried out by
+	 *         {@link StylePatternFactory#applyPattern(MindMapNode, Pattern, java.util.List, java.util.Set, ExtendedMapFeedback)}
+	 *         .
+	 */
+	public boolean isNodeLocal() {
+		return (mPattern.getPatternChild() == null || mPattern
+				.getPatternChild().getValue() == null)
+				&& (mPattern.getPatternScript() == null || mPattern
+						.getPatternScript().getValue() == null);
+	}
+
+	/**
+	 * Adds the action pairs needed to format the node according to this
+	 * pattern, see {@link StylePatternFactory#toCompoundActionPair(List)}.
+	 * 
+	 * @return true, if the node has to be changed at all.
+	 */
+	public boolean addActionPairs(MindMapNode node,
+			ExtendedMapFeedback pFeedback, List<ActionPair> pPairs) {
+		XmlActorFactory actors = pFeedback.getActorFactory();
+		int size = pPairs.size();
+		if (mHasText && !mText.equals(node.toString())) {
+			pPairs.add(actors.getEditActor().getActionPair(node, mText));
+		}
+		if (mHasNodeColor && !Tools.safeEquals(mNodeColor, node.getColor())) {
+			pPairs.add(new ActionPair(actors.getNodeColorActor()
+					.createNodeColorFormatAction(node, mNodeColor), actors
+					.getNodeColorActor().createNodeColorFormatAction(node,
+							node.getColor())));
+		}
+		if (mHasBackgroundColor
+				&& !Tools.safeEquals(mBackgroundColor,
+						node.getBackgroundColor())) {
+			pPairs.add(new ActionPair(actors.getNodeBackgroundColorActor()
+					.createNodeBackgroundColorFormatAction(node,
+							mBackgroundColor), actors
+					.getNodeBackgroundColorActor()
+					.createNodeBackgroundColorFormatAction(node,
+							node.getBackgroundColor())));
+		}
+		if (mHasNodeStyle
+				&& !Tools.safeEquals(mNodeStyle,
+						node.hasStyle() ? node.getBareStyle() : null)) {
+			pPairs.add(actors.getNodeStyleActor().getActionPair(node, mNodeStyle));
+		}
+		if (mHasIcon) {
+			if (mIconName == null) {
+				if (!node.getIcons().isEmpty()) {
+					pPairs.add(actors.getRemoveAllIconsActor().apply(
+							pFeedback.getMap(), node));
+				}
+			} else if (Tools.iconFirstIndex(node, mIconName) < 0) {
+				pPairs.add(actors.getAddIconActor().getAddLastIconActionPair(node,
+						MindIcon.factory(mIconName)));
+			}
+		}
+		if (mHasFontName) {
+			String fontName = (mFontName != null) ? mFontName : pFeedback
+					.getDefaultFont().getFamily();
+			if (!Tools.safeEquals(fontName, node.getFontFamilyName())) {
+				pPairs.add(actors.getFontFamilyActor().getActionPair(node, fontName));
+			}
+		}
+		if (mHasFontSize) {
+			String fontSize = (mFontSize != null) ? mFontSize : ""
+					+ pFeedback.getDefaultFont().getSize();
+			if (!Tools.safeEquals(fontSize, node.getFontSize())) {
+				pPairs.add(actors.getFontSizeActor().getActionPair(node, fontSize));
+			}
+		}
+		if (mItalic != null && mItalic.booleanValue() != node.isItalic()) {
+			pPairs.add(actors.getItalicActor().getActionPair(node,
+					mItalic.booleanValue()));
+		}
+		if (mBold != null && mBold.booleanValue() != node.isBold()) {
+			pPairs.add(actors.getBoldActor().getActionPair(node, mBold.booleanValue()));
+		}
+		if (mStrikethrough != null
+				&& mStrikethrough.booleanValue() != node.isStrikethrough()) {
+			pPairs.add(actors.getStrikethroughActor().getActionPair(node,
+					mStrikethrough.booleanValue()));
+		}
+		if (mHasEdgeColor) {
+			Color oldColor = ((EdgeAdapter) node.getEdge()).getRealColor();
+			if (!Tools.safeEquals(mEdgeColor, oldColor)) {
+				pPairs.add(new ActionPair(actors.getEdgeColorActor()
+						.createEdgeColorFormatAction(node, mEdgeColor), actors
+						.getEdgeColorActor().createEdgeColorFormatAction(node,
+								oldColor)));
+			}
+		}
+		if (mHasEdgeStyle
+				&& !Tools.safeEquals(mEdgeStyle, actors.getEdgeStyleActor()
+						.getStyle(node))) {
+			pPairs.add(actors.getEdgeStyleActor().getActionPair(node, mEdgeStyle));
+		}
+		if (mHasEdgeWidth
+				&& mEdgeWidth != actors.getEdgeWidthActor().getWidth(node)) {
+			pPairs.add(actors.getEdgeWidthActor().getActionPair(node, mEdgeWidth));
+		}
+		return pPairs.size() > size;
+	}
+
+}
@@ -203,11 +203,20 @@ public abstract class ControllerAdapter extends MapFeedbackAdapter implements Mo
 	}
 
 	public void refreshMapFrom(MindMapNode node) {
-		for(MindMapNode child : node.getChildren()) {
-			refreshMapFrom(child);
+		MapAdapter map = (MapAdapter) getMap();
+		map.startTreeEventBatch();
+		try {
+			refreshSubtree(map, node);
+		} finally {
+			map.endTreeEventBatch();
 		}
-		((MapAdapter) getMap()).nodeChangedInternal(node);
+	}
 
+	private void refreshSubtree(MapAdapter map, MindMapNode node) {
+		for(MindMapNode child : node.getChildren()) {
+			refreshSubtree(map, child);
+		}
+		map.nodeChangedInternal(node);
 	}
 
 	/**
@@ -398,6 +407,7 @@ public abstract class ControllerAdapter extends MapFeedbackAdapter implements Mo
 			final MapAdapter model = newModel(newModeController);
 			((ControllerAdapter) newModeController).loadInternally(file, model);
 			newMap(model, newModeController);
+			((ControllerAdapter) newModeController).mapLoaded(model);
 			newModeController.setSaved(true);
 			restoreMapsLastState(newModeController, model);
 			return newModeController;
@@ -413,6 +423,12 @@ public abstract class ControllerAdapter extends MapFeedbackAdapter implements Mo
 	 */
 	abstract protected void loadInternally(URL url, MapAdapter model) throws URISyntaxException, XMLParseException, IOException;
 
+	/**
+	 * Called after a map was loaded by {@link #load(URL)} and is shown.
+	 */
+	protected void mapLoaded(MapAdapter pModel) {
+	}
+
 	/**
 	 * You may decide to overload this or take the default and implement the
 	 * functionality in your MapModel (implements MindMap)
@@ -123,6 +123,18 @@ public interface ExtendedMapFeedback extends MapFeedback, MindMapActions {
 	 */
 	void close(boolean pForce);
 
+	/**
+	 * Starts collecting the {@link #nodeChanged(MindMapNode)} events, until
+	 * the matching {@link #endNodeChangeBatch()}. Calls can be nested.
+	 */
+	void startNodeChangeBatch();
+
+	/**
+	 * Fires the collected events once per node, when the outermost batch
+	 * ends.
+	 */
+	void endNodeChangeBatch();
+
 
 	
 }
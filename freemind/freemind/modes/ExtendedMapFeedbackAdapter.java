@@ -133,6 +133,20 @@ public abstract class ExtendedMapFeedbackAdapter extends MapFeedbackAdapter
 	@Override
 	public void setWaitingCursor(boolean pWaiting) {
 	}
+
+	@Override
+	public void startNodeChangeBatch() {
+		if (getMap() instanceof MapAdapter) {
+			((MapAdapter) getMap()).startTreeEventBatch();
+		}
+	}
+
+	@Override
+	public void endNodeChangeBatch() {
+		if (getMap() instanceof MapAdapter) {
+			((MapAdapter) getMap()).endTreeEventBatch();
+		}
+	}
 	
 	@Override
 	public void nodeStyleChanged(MindMapNode node) {
@@ -153,7 +167,12 @@ public abstract class ExtendedMapFeedbackAdapter extends MapFeedbackAdapter
 
 	@Override
 	public boolean doTransaction(String pName, ActionPair pPair) {
-		return mActionRegistry.doTransaction(pName, pPair);
+		startNodeChangeBatch();
+		try {
+			return mActionRegistry.doTransaction(pName, pPair);
+		} finally {
+			endNodeChangeBatch();
+		}
 	}
 
 	@Override
@@ -248,6 +267,13 @@ public abstract class ExtendedMapFeedbackAdapter extends MapFeedbackAdapter
 		getActorFactory().getNodeUpActor().moveNodes(pSelected, pSelecteds, pDirection);
 	}
 
+	@Override
+	public void reorderChildren(MindMapNode pParent,
+			List<MindMapNode> pNewOrder) {
+		getActorFactory().getReorderChildrenActor().reorderChildren(pParent,
+				pNewOrder);
+	}
+
 	@Override
 	public void toggleFolded() {
 		getActorFactory().getToggleFoldedActor().toggleFolded(getViewAbstraction().getSelecteds().listIterator());		
@@ -21,16 +21,21 @@
 package freemind.modes;
 
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.Reader;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.Vector;
@@ -63,6 +68,12 @@ public abstract class MapAdapter extends DefaultTreeModel implements MindMap {
 			MAP_INITIAL_START + FreeMind.XML_VERSION + "\"",
 			MAP_INITIAL_START + "0.7.1\"" };
 
+	/**
+	 * If set to true, maps are parsed into an {@link XMLElementAdapter} tree
+	 * instead of being streamed by the {@link XMLStreamMapLoader}.
+	 */
+	public static final String RESOURCES_USE_LEGACY_XML_LOADER = "use_legacy_xml_loader";
+
 	private static final int INTERVAL_BETWEEN_FILE_MODIFICATION_TIME_CHECKS = 5000;
 	/**
 	 * denotes the amount of changes since the last save. The initial value is
@@ -77,6 +88,10 @@ public abstract class MapAdapter extends DefaultTreeModel implements MindMap {
 	private HashSet<MapSourceChangedObserver> mMapSourceChangedObserverSet = new HashSet<>();
 	private Timer mTimerForFileChangeObservation;
 	protected MapFeedback mMapFeedback;
+	private MapTextIndex mTextIndex = null;
+	private int mChildHookCount = 0;
+	private int mTreeEventBatchDepth = 0;
+	private LinkedHashSet<MindMapNode> mBatchedChangedNodes = new LinkedHashSet<>();
 
 	public MapAdapter(MapFeedback mapFeedback) {
 		super(null);
@@ -160,6 +175,10 @@ public abstract class MapAdapter extends DefaultTreeModel implements MindMap {
 
 	public void destroy() {
 		cancelFileChangeObservationTimer();
+		if (mTextIndex != null) {
+			removeTreeModelListener(mTextIndex);
+			mTextIndex = null;
+		}
 		// Do all the necessary destructions in your model,
 		// e.g. remove file locks.
 		// and remove all hooks:
@@ -194,6 +213,37 @@ public abstract class MapAdapter extends DefaultTreeModel implements MindMap {
 		super.removeNodeFromParent(pNode);
 	}
 
+	/* (non-Javadoc)
+	 * @see freemind.modes.MindMap#reorderChildren(freemind.modes.MindMapNode, java.util.List)
+	 */
+	@Override
+	public void reorderChildren(MindMapNode pParent,
+			List<MindMapNode> pNewOrder) {
+		pParent.reorderChildren(pNewOrder);
+		int[] childIndices = new int[pNewOrder.size()];
+		for (int i = 0; i < childIndices.length; i++) {
+			childIndices[i] = i;
+		}
+		fireTreeStructureChanged(this, getPathToRoot(pParent), childIndices,
+				pNewOrder.toArray());
+	}
+
+	/* (non-Javadoc)
+	 * @see freemind.modes.MindMap#getChildHookCount()
+	 */
+	@Override
+	public int getChildHookCount() {
+		return mChildHookCount;
+	}
+
+	/* (non-Javadoc)
+	 * @see freemind.modes.MindMap#changeChildHookCount(int)
+	 */
+	@Override
+	public void changeChildHookCount(int pDelta) {
+		mChildHookCount += pDelta;
+	}
+
 	//
 	// Attributes
 	//
@@ -355,10 +405,99 @@ public abstract class MapAdapter extends DefaultTreeModel implements MindMap {
 	 */
 	void nodeChangedInternal(TreeNode node) {
 		if (node != null) {
+			if (mTreeEventBatchDepth > 0) {
+				mBatchedChangedNodes.add((MindMapNode) node);
+				return;
+			}
 			fireTreeNodesChanged(this, getPathToRoot(node), null, null);
 		}
 	}
 
+	/**
+	 * Starts collecting the nodes changed events until the matching
+	 * {@link #endTreeEventBatch()}. Calls can be nested. Inserted, removed and
+	 * structure changed events are never delayed, as their indices are only
+	 * valid at the time of the change.
+	 */
+	public void startTreeEventBatch() {
+		mTreeEventBatchDepth++;
+	}
+
+	/**
+	 * When the outermost batch ends, the collected nodes are notified once.
+	 * The map listeners get one event per parent containing all its changed
+	 * children, the listeners of each node one event for the node.
+	 */
+	public void endTreeEventBatch() {
+		if (--mTreeEventBatchDepth > 0) {
+			return;
+		}
+		mTreeEventBatchDepth = 0;
+		if (mBatchedChangedNodes.isEmpty()) {
+			return;
+		}
+		MindMapNode[] nodes = mBatchedChangedNodes
+				.toArray(new MindMapNode[mBatchedChangedNodes.size()]);
+		mBatchedChangedNodes.clear();
+		MindMapNode root = getRootNode();
+		LinkedHashMap<MindMapNode, Vector<MindMapNode>> childrenByParent = new LinkedHashMap<>();
+		for (int i = 0; i < nodes.length; i++) {
+			MindMapNode node = nodes[i];
+			// nodes removed meanwhile don't get events anymore:
+			if (root == null || !node.isDescendantOfOrEqual(root)) {
+				continue;
+			}
+			MindMapNode parent = node.getParentNode();
+			if (parent == null) {
+				fireTreeNodesChanged(this, getPathToRoot(node), null, null);
+				continue;
+			}
+			Vector<MindMapNode> children = childrenByParent.get(parent);
+			if (children == null) {
+				children = new Vector<>();
+				childrenByParent.put(parent, children);
+			}
+			children.add(node);
+		}
+		for (Map.Entry<MindMapNode, Vector<MindMapNode>> entry : childrenByParent
+				.entrySet()) {
+			fireTreeNodesChanged(entry.getKey(), entry.getValue());
+		}
+	}
+
+	private void fireTreeNodesChanged(MindMapNode pParent,
+			Vector<MindMapNode> pChildren) {
+		// the indices of an event are sorted:
+		int count = pChildren.size();
+		long[] indexAndPosition = new long[count];
+		for (int i = 0; i < count; i++) {
+			indexAndPosition[i] = ((long) pParent.getIndex(pChildren.get(i)) << 32)
+					| i;
+		}
+		Arrays.sort(indexAndPosition);
+		int[] childIndices = new int[count];
+		Object[] children = new Object[count];
+		for (int i = 0; i < count; i++) {
+			childIndices[i] = (int) (indexAndPosition[i] >> 32);
+			children[i] = pChildren.get((int) indexAndPosition[i]);
+		}
+		TreeNode[] parentPath = getPathToRoot(pParent);
+		fireTreeNodesChanged(this, parentPath, childIndices, children,
+				listenerList.getListenerList(), null);
+		for (int i = 0; i < count; i++) {
+			MindMapNode child = (MindMapNode) children[i];
+			EventListenerList listeners = child.getListeners();
+			if (listeners.getListenerCount() == 0) {
+				continue;
+			}
+			Object[] path = new Object[parentPath.length + 1];
+			System.arraycopy(parentPath, 0, path, 0, parentPath.length);
+			path[parentPath.length] = child;
+			fireTreeNodesChanged(this, path, null, null,
+					listeners.getListenerList(), null);
+		}
+	}
+
 	/**
 	 * Notifies all listeners that have registered interest for notification on
 	 * this event type. The event instance is lazily created using the
@@ -519,6 +658,18 @@ public abstract class MapAdapter extends DefaultTreeModel implements MindMap {
 		return mMapFeedback;
 	}
 
+	/**
+	 * The index is created on the first call and listens to the tree model
+	 * events.
+	 */
+	public MapTextIndex getTextIndex() {
+		if (mTextIndex == null) {
+			mTextIndex = new MapTextIndex(this);
+			addTreeModelListener(mTextIndex);
+		}
+		return mTextIndex;
+	}
+
 	/**
      */
 	public SortedMapListModel getIcons() {
@@ -548,6 +699,14 @@ public abstract class MapAdapter extends DefaultTreeModel implements MindMap {
 	@Override
 	public MindMapNode createNodeTreeFromXml(Reader pReader, HashMap<String, NodeAdapter> pIDToTarget)
 			throws XMLParseException, IOException {
+		if (!Tools.safeEquals("true",
+				mMapFeedback.getProperty(RESOURCES_USE_LEGACY_XML_LOADER))) {
+			XMLStreamMapLoader loader = new XMLStreamMapLoader(mMapFeedback,
+					pIDToTarget);
+			MindMapNode node = loader.load(pReader);
+			loader.processUnfinishedLinks(getLinkRegistry());
+			return node;
+		}
 		XMLElementAdapter xmlAdapter = new XMLElementAdapter(mMapFeedback, new Vector<ArrowLinkAdapter>(), pIDToTarget);
 		xmlAdapter.parseFromReader(pReader);
 		xmlAdapter.processUnfinishedLinks(getLinkRegistry());
@@ -569,16 +728,20 @@ public abstract class MapAdapter extends DefaultTreeModel implements MindMap {
 		
 	}
 	
-	@Override
-	public MindMapNode loadTree(Tools.ReaderCreator pReaderCreator,
-			AskUserBeforeUpdateCallback pAskUserBeforeUpdateCallback) throws XMLParseException, IOException {
+	/**
+	 * Reads the start of the map.
+	 * 
+	 * @return true, if the map has the actual format (or one that needs no
+	 *         update), false if it has to be updated with
+	 *         {@link #FREEMIND_VERSION_UPDATER_XSLT}.
+	 */
+	public static boolean hasActualVersion(Tools.ReaderCreator pReaderCreator)
+			throws FileNotFoundException {
 		int versionInfoLength;
 		versionInfoLength = EXPECTED_START_STRINGS[0].length();
 		// reading the start of the file:
 		StringBuffer buffer = Tools.readFileStart(pReaderCreator.createReader(),
 				versionInfoLength);
-		// the resulting file is accessed by the reader:
-		Reader reader = null;
 		for (int i = 0; i < EXPECTED_START_STRINGS.length; i++) {
 			versionInfoLength = EXPECTED_START_STRINGS[i].length();
 			String mapStart = "";
@@ -586,12 +749,20 @@ public abstract class MapAdapter extends DefaultTreeModel implements MindMap {
 				mapStart = buffer.substring(0, versionInfoLength);
 			}
 			if (mapStart.startsWith(EXPECTED_START_STRINGS[i])) {
-				// actual version:
-				reader = Tools.getActualReader(pReaderCreator.createReader());
-				break;
+				return true;
 			}
 		}
-		if (reader == null) {
+		return false;
+	}
+
+	@Override
+	public MindMapNode loadTree(Tools.ReaderCreator pReaderCreator,
+			AskUserBeforeUpdateCallback pAskUserBeforeUpdateCallback) throws XMLParseException, IOException {
+		// the resulting file is accessed by the reader:
+		Reader reader = null;
+		if (hasActualVersion(pReaderCreator)) {
+			reader = Tools.getActualReader(pReaderCreator.createReader());
+		} else {
 			if (!Tools.isHeadless()) {
 				boolean showResult = pAskUserBeforeUpdateCallback.askUserForUpdate();
 				if (!showResult) {
@@ -108,6 +108,7 @@ public abstract class MapFeedbackAdapter implements MapFeedback, ViewFeedback {
 		if(getMap() != null) {
 			getMap().setSaved(false);
 		}
+		nodeRefresh(pNode);
 	}
 
 	/*
@@ -117,7 +118,10 @@ public abstract class MapFeedbackAdapter implements MapFeedback, ViewFeedback {
 	 */
 	@Override
 	public void nodeRefresh(MindMapNode pNode) {
-
+		// tell the listeners of the map, like its text index:
+		if (getMap() instanceof MapAdapter) {
+			((MapAdapter) getMap()).nodeChangedInternal(pNode);
+		}
 	}
 
 	/*
@@ -0,0 +1,387 @@
+/*FreeMind - A Program for creating and viewing Mindmaps
+ *Copyright (C) 2000-2014 Christian Foltin, Joerg Mueller, Daniel Polansky, Dimitri Polivaev and others.
+ *
+ *See COPYING for Details
+ *
+ *This program is free software; you can redistribute it and/or
+ *modify it under the terms of the GNU General Public License
+ *as published by the Free Software Foundation; either version 2
+ *of the License, or (at your option) any later version.
+ *
+ *This program is distributed in the hope that it will be useful,
+ *but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *GNU General Public License for more details.
+ *
+ *You should have received a copy of the GNU General Public License
+ *along with this program; if not, write to the Free Software
+ *Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package freemind.modes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Vector;
+
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+import javax.swing.tree.TreePath;
+
+/**
+ * In memory index of the texts and notes of the nodes of a map, used by find
+ * and the text filter conditions.
+ *
+ * For each node, the text and the note are kept as plain, lower case text
+ * (the "shadow", see {@link MindMapNode#getLowerCasePlainText()}), such that
+ * the html tags are removed only once per change and not for each search. An
+ * inverted index from the trigrams of the shadows to the nodes restricts a
+ * search to the nodes containing the rarest trigram of the search terms.
+ *
+ * The index is built on the first query and kept current by the tree model
+ * events of the map. Postings of changed and removed nodes are left in place
+ * (they are verified against the shadow anyway) until there are more of them
+ * than valid ones.
+ */
+public class MapTextIndex implements TreeModelListener {
+
+	private static final int GRAM_LENGTH = 3;
+
+	private static final int MIN_POSTINGS_FOR_REBUILD = 1024;
+
+	private static class Entry {
+		final MindMapNode mNode;
+		int mId;
+		/** The texts the shadows were computed from. */
+		String mText;
+		String mNote;
+		String mPlainText;
+		String mPlainNote;
+		int mPostingCount = 0;
+		int mQueryStamp = 0;
+
+		Entry(MindMapNode pNode, int pId) {
+			mNode = pNode;
+			mId = pId;
+		}
+	}
+
+	private static class Postings {
+		int[] mIds = new int[2];
+		int mSize = 0;
+
+		/** @return true, if the id was added. */
+		boolean add(int pId) {
+			if (mSize > 0 && mIds[mSize - 1] == pId) {
+				return false;
+			}
+			if (mSize == mIds.length) {
+				mIds = Arrays.copyOf(mIds, mSize * 2);
+			}
+			mIds[mSize++] = pId;
+			return true;
+		}
+	}
+
+	private final MindMap mMap;
+
+	/** Null as long as the index is not built. */
+	private HashMap<MindMapNode, Entry> mEntries = null;
+	private ArrayList<Entry> mEntriesById;
+	private HashMap<Long, Postings> mPostings;
+	private long mPostingCount = 0;
+	private long mStalePostingCount = 0;
+	private int mQueryStamp = 0;
+
+
+	public MapTextIndex(MindMap pMap) {
+		mMap = pMap;
+	}
+
+	/**
+	 * @return the nodes of the map, whose text contains all subterms or, if
+	 *         pSearchInNotes is set, whose note contains all subterms. The
+	 *         comparison ignores the case and html tags.
+	 */
+	public List<MindMapNode> getMatchingNodes(Collection<String> pSubterms,
+			boolean pSearchInNotes) {
+		ensureUpToDate();
+		Vector<String> subterms = new Vector<>(pSubterms.size());
+		Postings rarest = null;
+		for (String subterm : pSubterms) {
+			String lowerCase = subterm.toLowerCase();
+			subterms.add(lowerCase);
+			for (int i = 0; i + GRAM_LENGTH <= lowerCase.length(); i++) {
+				Postings postings = mPostings.get(getGram(lowerCase, i));
+				if (postings == null) {
+					return new Vector<>();
+				}
+				if (rarest == null || postings.mSize < rarest.mSize) {
+					rarest = postings;
+				}
+			}
+		}
+		Vector<MindMapNode> result = new Vector<>();
+		int stamp = ++mQueryStamp;
+		if (rarest != null) {
+			for (int i = 0; i < rarest.mSize; i++) {
+				check(mEntriesById.get(rarest.mIds[i]), subterms,
+						pSearchInNotes, stamp, result);
+			}
+		} else {
+			// only short subterms: all nodes are candidates.
+			for (int i = 0; i < mEntriesById.size(); i++) {
+				check(mEntriesById.get(i), subterms, pSearchInNotes, stamp,
+						result);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return the text of the node as it is searched, see
+	 *         {@link MindMapNode#getLowerCasePlainText()}.
+	 */
+	public String getPlainLowerCaseText(MindMapNode pNode) {
+		ensureUpToDate();
+		Entry entry = mEntries.get(pNode);
+		if (entry == null) {
+			return pNode.getLowerCasePlainText();
+		}
+		if (isStale(entry)) {
+			update(entry);
+		}
+		return entry.mPlainText;
+	}
+
+	/**
+	 * @return the number of indexed nodes.
+	 */
+	public int size() {
+		ensureUpToDate();
+		return mEntries.size();
+	}
+
+	private void check(Entry pEntry, Vector<String> pSubterms,
+			boolean pSearchInNotes, int pStamp, List<MindMapNode> pResult) {
+		if (pEntry == null || pEntry.mQueryStamp == pStamp) {
+			return;
+		}
+		pEntry.mQueryStamp = pStamp;
+		if (isStale(pEntry)) {
+			update(pEntry);
+		}
+		if ((containsAll(pEntry.mPlainText, pSubterms) || (pSearchInNotes && containsAll(
+				pEntry.mPlainNote, pSubterms)))) {
+			if (isInMap(pEntry.mNode)) {
+				pResult.add(pEntry.mNode);
+			} else {
+				remove(pEntry);
+			}
+		}
+	}
+
+	private static boolean containsAll(String pText, Vector<String> pSubterms) {
+		for (int i = 0; i < pSubterms.size(); i++) {
+			if (pText.indexOf(pSubterms.get(i)) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean isInMap(MindMapNode pNode) {
+		MindMapNode node = pNode;
+		while (node.getParentNode() != null) {
+			node = node.getParentNode();
+		}
+		return node == mMap.getRootNode();
+	}
+
+	private static boolean isStale(Entry pEntry) {
+		return pEntry.mText != pEntry.mNode.getText()
+				|| pEntry.mNote != pEntry.mNode.getNoteText();
+	}
+
+	private void ensureUpToDate() {
+		if (mEntries == null) {
+			mEntries = new HashMap<>();
+			mEntriesById = new ArrayList<>();
+			mPostings = new HashMap<>();
+			mPostingCount = 0;
+			mStalePostingCount = 0;
+			addSubtree(mMap.getRootNode());
+		}
+		if (mStalePostingCount > MIN_POSTINGS_FOR_REBUILD
+				&& mStalePostingCount > mPostingCount - mStalePostingCount) {
+			rebuildPostings();
+		}
+	}
+
+	/**
+	 * Adds the nodes of the subtree that are not indexed and updates the
+	 * changed ones.
+	 */
+	private void addSubtree(MindMapNode pNode) {
+		if (pNode == null) {
+			return;
+		}
+		Vector<MindMapNode> stack = new Vector<>();
+		stack.add(pNode);
+		while (!stack.isEmpty()) {
+			MindMapNode node = stack.remove(stack.size() - 1);
+			addOrUpdate(node);
+			for (Iterator<MindMapNode> i = node.childrenUnfolded(); i.hasNext();) {
+				stack.add(i.next());
+			}
+		}
+	}
+
+	private void removeSubtree(MindMapNode pNode) {
+		Vector<MindMapNode> stack = new Vector<>();
+		stack.add(pNode);
+		while (!stack.isEmpty()) {
+			MindMapNode node = stack.remove(stack.size() - 1);
+			Entry entry = mEntries.get(node);
+			if (entry != null) {
+				remove(entry);
+			}
+			for (Iterator<MindMapNode> i = node.childrenUnfolded(); i.hasNext();) {
+				stack.add(i.next());
+			}
+		}
+	}
+
+	private void addOrUpdate(MindMapNode pNode) {
+		Entry entry = mEntries.get(pNode);
+		if (entry == null) {
+			entry = new Entry(pNode, mEntriesById.size());
+			mEntries.put(pNode, entry);
+			mEntriesById.add(entry);
+			index(entry);
+		} else if (isStale(entry)) {
+			update(entry);
+		}
+	}
+
+	private void update(Entry pEntry) {
+		// the former postings remain, but don't count any more:
+		mStalePostingCount += pEntry.mPostingCount;
+		index(pEntry);
+	}
+
+	private void remove(Entry pEntry) {
+		mEntries.remove(pEntry.mNode);
+		mEntriesById.set(pEntry.mId, null);
+		mStalePostingCount += pEntry.mPostingCount;
+	}
+
+	private void index(Entry pEntry) {
+		pEntry.mText = pEntry.mNode.getText();
+		pEntry.mNote = pEntry.mNode.getNoteText();
+		pEntry.mPlainText = pEntry.mNode.getLowerCasePlainText();
+		pEntry.mPlainNote = pEntry.mNode.getPlainNoteText().toLowerCase();
+		pEntry.mPostingCount = 0;
+		addPostings(pEntry, pEntry.mPlainText);
+		addPostings(pEntry, pEntry.mPlainNote);
+	}
+
+	private void addPostings(Entry pEntry, String pText) {
+		for (int i = 0; i + GRAM_LENGTH <= pText.length(); i++) {
+			Long gram = getGram(pText, i);
+			Postings postings = mPostings.get(gram);
+			if (postings == null) {
+				postings = new Postings();
+				mPostings.put(gram, postings);
+			}
+			if (postings.add(pEntry.mId)) {
+				pEntry.mPostingCount++;
+				mPostingCount++;
+			}
+		}
+	}
+
+	private void rebuildPostings() {
+		ArrayList<Entry> entries = new ArrayList<>(mEntries.size());
+		for (Entry entry : mEntriesById) {
+			if (entry != null) {
+				entry.mId = entries.size();
+				entries.add(entry);
+			}
+		}
+		mEntriesById = entries;
+		mPostings = new HashMap<>();
+		mPostingCount = 0;
+		mStalePostingCount = 0;
+		for (Entry entry : entries) {
+			index(entry);
+		}
+	}
+
+	private static Long getGram(String pText, int pIndex) {
+		return Long.valueOf(((long) pText.charAt(pIndex) << 32)
+				| ((long) pText.charAt(pIndex + 1) << 16)
+				| pText.charAt(pIndex + 2));
+	}
+
+	/*
+	 * Tree model events. Nothing is done before the index is built.
+	 */
+
+	public void treeNodesChanged(TreeModelEvent pEvent) {
+		if (mEntries == null) {
+			return;
+		}
+		Object[] children = pEvent.getChildren();
+		if (children == null) {
+			addOrUpdate((MindMapNode) pEvent.getTreePath()
+					.getLastPathComponent());
+			return;
+		}
+		for (int i = 0; i < children.length; i++) {
+			addOrUpdate((MindMapNode) children[i]);
+		}
+	}
+
+	public void treeNodesInserted(TreeModelEvent pEvent) {
+		if (mEntries == null || pEvent.getChildren() == null) {
+			return;
+		}
+		Object[] children = pEvent.getChildren();
+		for (int i = 0; i < children.length; i++) {
+			addSubtree((MindMapNode) children[i]);
+		}
+	}
+
+	public void treeNodesRemoved(TreeModelEvent pEvent) {
+		if (mEntries == null || pEvent.getChildren() == null) {
+			return;
+		}
+		Object[] children = pEvent.getChildren();
+		for (int i = 0; i < children.length; i++) {
+			removeSubtree((MindMapNode) children[i]);
+		}
+	}
+
+	public void treeStructureChanged(TreeModelEvent pEvent) {
+		if (mEntries == null) {
+			return;
+		}
+		TreePath path = pEvent.getTreePath();
+		if (path == null) {
+			// new root: build again on the next query.
+			mEntries = null;
+			return;
+		}
+		if (pEvent.getChildren() != null) {
+			// only reordered, the texts are unchanged.
+			return;
+		}
+		// removed nodes are found and dropped by the queries.
+		addSubtree((MindMapNode) path.getLastPathComponent());
+	}
+}
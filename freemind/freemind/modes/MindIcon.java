@@ -203,11 +203,13 @@ public class MindIcon implements Comparable<MindIcon>, IconInformation {
 	}
 
 	public ImageIcon getUnscaledIcon(){
-		if (associatedIcon instanceof ScalableImageIcon) {
-			ScalableImageIcon scalableIcon = (ScalableImageIcon) associatedIcon;
+		// the icon is created lazily, e.g. without a tool bar when headless:
+		ImageIcon icon = getIcon();
+		if (icon instanceof ScalableImageIcon) {
+			ScalableImageIcon scalableIcon = (ScalableImageIcon) icon;
 			return scalableIcon.getUnscaledIcon();
 		}
-		return associatedIcon;
+		return icon;
 	}
 	
 	public static Vector<String> getAllIconNames() {
@@ -223,7 +225,7 @@ public class MindIcon implements Comparable<MindIcon>, IconInformation {
 		return mAllIconNames;
 	}
 
-	public static MindIcon factory(String iconName) {
+	public static synchronized MindIcon factory(String iconName) {
 		if (createdIcons.containsKey(iconName)) {
 			return (MindIcon) createdIcons.get(iconName);
 		}
@@ -234,7 +236,7 @@ public class MindIcon implements Comparable<MindIcon>, IconInformation {
 
 	/**
      */
-	public static MindIcon factory(String iconName, ImageIcon icon) {
+	public static synchronized MindIcon factory(String iconName, ImageIcon icon) {
 		if (createdIcons.containsKey(iconName)) {
 			return (MindIcon) createdIcons.get(iconName);
 		}
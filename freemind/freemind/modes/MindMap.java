@@ -193,6 +193,12 @@ public interface MindMap extends TreeModel {
 	 */
 	SortedListModel getIcons();
 
+	/**
+	 * @return the index of the node texts and notes used by find and the text
+	 *         filter conditions. May be null, if the map has no index.
+	 */
+	MapTextIndex getTextIndex();
+
 	NodeAdapter createNodeAdapter(MindMap pMap, String nodeClass);
 
 	EdgeAdapter createEdgeAdapter(NodeAdapter node);
@@ -217,4 +223,25 @@ public interface MindMap extends TreeModel {
 	
 	void removeNodeFromParent(MindMapNode node);
 
+	/**
+	 * Puts the children of the parent into the given order and informs the
+	 * listeners by a single structure change event, whose children are the
+	 * reordered ones.
+	 */
+	void reorderChildren(MindMapNode pParent, List<MindMapNode> pNewOrder);
+
+	/**
+	 * @return the number of activated hooks of the nodes of this map, that
+	 *         are informed about added and removed (grand)children. If there
+	 *         are none, inserting and removing nodes doesn't look for hooks at
+	 *         their ancestors.
+	 */
+	int getChildHookCount();
+
+	/**
+	 * Called by the nodes of this map, when such a hook is activated (+1) or
+	 * removed (-1).
+	 */
+	void changeChildHookCount(int pDelta);
+
 }
@@ -21,6 +21,7 @@
 package freemind.modes;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.ListIterator;
@@ -34,6 +35,13 @@ import freemind.main.Tools;
  * maps have a different registry.
  */
 public class MindMapLinkRegistry {
+	/**
+	 * Is informed, when a node gets a new id.
+	 */
+	public interface NodeIdListener {
+		void nodeIdRegistered(MindMapNode pTarget, String pId);
+	}
+
 	/**
 	 * All elements put into this sort of vectors are put into the
 	 * SourceToLinks, too. This structure is kept synchronous to the IDToLinks
@@ -100,6 +108,8 @@ public class MindMapLinkRegistry {
 	/** id */
 	protected HashSet<String> mLocallyLinkedIds;
 
+	private NodeIdListener mNodeIdListener = null;
+
 	protected static java.util.logging.Logger logger = null;
 
 	// //////////////////////////////////////////////////////////////////////////////////////
@@ -171,9 +181,20 @@ public class MindMapLinkRegistry {
 		 * This is to allocate the link target in the IDToLinks map!.
 		 */
 		getAssignedLinksVector(newId);
+		if (mNodeIdListener != null) {
+			mNodeIdListener.nodeIdRegistered(target, newId);
+		}
 		return newId;
 	}
 
+	/**
+	 * @param pListener
+	 *            null to remove the listener.
+	 */
+	public void setNodeIdListener(NodeIdListener pListener) {
+		mNodeIdListener = pListener;
+	}
+
 	/**
 	 * @param node
 	 * @return null, if not registered.
@@ -316,6 +337,11 @@ public class MindMapLinkRegistry {
 		return returnValue;
 	}
 
+	/** @return all registered links of the map (not modifiable). */
+	public Collection<MindMapLink> getAllLinks() {
+		return Collections.unmodifiableCollection(mIdToLink.values());
+	}
+
 	/** @return returns all links from or to this node. */
 	public Vector<MindMapLink> getAllLinks(MindMapNode node) {
 		Vector<MindMapLink> returnValue = new Vector<>();
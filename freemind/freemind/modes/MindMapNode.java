@@ -39,7 +39,6 @@ import javax.swing.tree.TreePath;
 import freemind.controller.filter.FilterInfo;
 import freemind.extensions.NodeHook;
 import freemind.extensions.PermanentNodeHook;
-import freemind.main.XMLElement;
 import freemind.modes.attributes.Attribute;
 import freemind.modes.mindmapmode.actions.MindMapActions;
 
@@ -99,6 +98,24 @@ public interface MindMapNode extends MutableTreeNode {
 	 */
 	void setNoteText(String noteText);
 
+	/**
+	 * @return the text without html, see
+	 *         {@link freemind.main.HtmlTools#htmlToPlain(String)}. The result
+	 *         is cached until the text changes.
+	 */
+	String getPlainText();
+
+	/**
+	 * @return {@link #getPlainText()} in lower case, cached as well.
+	 */
+	String getLowerCasePlainText();
+
+	/**
+	 * @return the note without html or the empty string if there is no note.
+	 *         The result is cached until the note changes.
+	 */
+	String getPlainNoteText();
+
 	/**
 	 * @return returns the unique id of the node. It is generated using the
 	 *         LinkRegistry.
@@ -130,6 +147,16 @@ public interface MindMapNode extends MutableTreeNode {
 	 */
 	List<MindMapNode> getChildren();
 
+	/**
+	 * Puts the children into the given order without removing them. No event
+	 * is fired, use {@link MindMap#reorderChildren(MindMapNode, List)}
+	 * instead.
+	 * 
+	 * @param pNewOrder
+	 *            must contain exactly the children of this node.
+	 */
+	void reorderChildren(List<MindMapNode> pNewOrder);
+
 	boolean hasChildren();
 
 	public FilterInfo getFilterInfo();
@@ -331,7 +358,7 @@ public interface MindMapNode extends MutableTreeNode {
 	 * @param saveChildren
 	 *            if true, the save recurses to all of the nodes children.
 	 */
-	public XMLElement save(Writer writer, MindMapLinkRegistry registry,
+	public void save(Writer writer, MindMapLinkRegistry registry,
 			boolean saveHidden, boolean saveChildren) throws IOException;
 
 	// fc, 10.2.2005:
@@ -27,6 +27,7 @@ import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.lang.ref.SoftReference;
 import java.net.URL;
 import java.util.Collection;
 import java.util.Collections;
@@ -41,6 +42,7 @@ import java.util.Map;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.swing.ImageIcon;
 import javax.swing.event.EventListenerList;
@@ -55,12 +57,14 @@ import freemind.controller.filter.FilterInfo;
 import freemind.extensions.DontSaveMarker;
 import freemind.extensions.NodeHook;
 import freemind.extensions.PermanentNodeHook;
+import freemind.extensions.PermanentNodeHookAdapter;
 import freemind.main.FreeMind;
 import freemind.main.FreeMindCommon;
 import freemind.main.HtmlTools;
 import freemind.main.Resources;
 import freemind.main.Tools;
 import freemind.main.XMLElement;
+import freemind.main.XMLWriter;
 import freemind.modes.attributes.Attribute;
 import freemind.preferences.FreemindPropertyListener;
 
@@ -81,9 +85,23 @@ public abstract class NodeAdapter implements MindMapNode {
 	public final static int UNKNOWN_POSITION = 0;
 
 	private HashSet<PermanentNodeHook> activatedHooks;
+	/**
+	 * The number of activated hooks, that want to know about added and removed
+	 * (grand)children, see {@link #isChildHook(PermanentNodeHook)}.
+	 */
+	private int mChildHookCount = 0;
 	private List<PermanentNodeHook> hooks;
 	protected Object userObject = "no text";
 	private String xmlText = "no text";
+	/*
+	 * The html and the xhtml form of text and note are converted into each
+	 * other only when the other form is requested. A pending flag marks the
+	 * form that still has to be computed from the other one.
+	 */
+	private boolean mTextPending = false;
+	private boolean mXmlTextPending = false;
+	private boolean mNoteTextPending = false;
+	private boolean mXmlNoteTextPending = false;
 	private String link = null; // Change this to vector in future for full
 								// graph support
 	private static final String TOOLTIP_PREVIEW_KEY = "preview";
@@ -138,9 +156,15 @@ public abstract class NodeAdapter implements MindMapNode {
 	private MindMap map = null;
 	private String noteText;
 	private String xmlNoteText;
+	/**
+	 * Plain text projections of text and note. Softly referenced, as they can
+	 * be computed again and aren't worth an OutOfMemoryError.
+	 */
+	private SoftReference<PlainTextCache> mPlainTextCache = null;
 	private static FreemindPropertyListener sSaveIdPropertyChangeListener;
 	private static boolean sSaveOnlyIntrinsicallyNeededIds = false;
 	private Vector<Attribute> mAttributeVector = null;
+	private static final ConcurrentHashMap<Class<?>, Boolean> sChildHookClasses = new ConcurrentHashMap<>();
 	
 	//
 	// Constructors
@@ -176,10 +200,22 @@ public abstract class NodeAdapter implements MindMapNode {
 	/**
      */
 	public void setMap(MindMap pMap) {
+		if (mChildHookCount != 0 && map != pMap) {
+			if (map != null) {
+				map.changeChildHookCount(-mChildHookCount);
+			}
+			if (pMap != null) {
+				pMap.changeChildHookCount(mChildHookCount);
+			}
+		}
 		this.map = pMap;
 	}
 
 	public String getText() {
+		if (mTextPending) {
+			userObject = HtmlTools.getInstance().toHtml(xmlText);
+			mTextPending = false;
+		}
 		String string = "";
 		if (userObject != null) {
 			string = userObject.toString();
@@ -188,22 +224,35 @@ public abstract class NodeAdapter implements MindMapNode {
 	}
 
 	public final void setText(String text) {
+		mPlainTextCache = null;
+		mTextPending = false;
 		if (text == null) {
 			userObject = null;
 			xmlText = null;
+			mXmlTextPending = false;
 			return;
 		}
 		userObject = HtmlTools.makeValidXml(text);
-		xmlText = HtmlTools.getInstance().toXhtml((String) userObject);
+		// converted on demand, see getXmlText:
+		xmlText = null;
+		mXmlTextPending = true;
 	}
 
 	public final String getXmlText() {
+		if (mXmlTextPending) {
+			xmlText = HtmlTools.getInstance().toXhtml((String) userObject);
+			mXmlTextPending = false;
+		}
 		return xmlText;
 	}
 
 	public final void setXmlText(String pXmlText) {
+		mPlainTextCache = null;
+		mXmlTextPending = false;
 		this.xmlText = HtmlTools.makeValidXml(pXmlText);
-		userObject = HtmlTools.getInstance().toHtml(xmlText);
+		// converted on demand, see getText:
+		userObject = null;
+		mTextPending = true;
 	}
 
 	/* ************************************************************
@@ -212,32 +261,84 @@ public abstract class NodeAdapter implements MindMapNode {
 	 */
 
 	public final String getXmlNoteText() {
+		if (mXmlNoteTextPending) {
+			xmlNoteText = HtmlTools.getInstance().toXhtml(noteText);
+			mXmlNoteTextPending = false;
+		}
 		return xmlNoteText;
 	}
 
 	public final String getNoteText() {
 		// logger.info("Note html: " + noteText);
+		if (mNoteTextPending) {
+			noteText = HtmlTools.getInstance().toHtml(xmlNoteText);
+			mNoteTextPending = false;
+		}
 		return noteText;
 	}
 
 	public final void setXmlNoteText(String pXmlNoteText) {
+		mPlainTextCache = null;
+		mXmlNoteTextPending = false;
+		noteText = null;
 		if (pXmlNoteText == null) {
 			xmlNoteText = null;
-			noteText = null;
+			mNoteTextPending = false;
 			return;
 		}
 		this.xmlNoteText = HtmlTools.makeValidXml(pXmlNoteText);
-		noteText = HtmlTools.getInstance().toHtml(xmlNoteText);
+		mNoteTextPending = true;
 	}
 
 	public final void setNoteText(String pNoteText) {
+		mPlainTextCache = null;
+		mNoteTextPending = false;
+		xmlNoteText = null;
 		if (pNoteText == null) {
-			xmlNoteText = null;
 			noteText = null;
+			mXmlNoteTextPending = false;
 			return;
 		}
 		this.noteText = HtmlTools.makeValidXml(pNoteText);
-		this.xmlNoteText = HtmlTools.getInstance().toXhtml(noteText);
+		mXmlNoteTextPending = true;
+	}
+
+	/**
+	 * @return the html text, if its xhtml form is still to be computed,
+	 *         otherwise null. See {@link #setConvertedXmlText(String, String)}.
+	 */
+	public final String getUnconvertedText() {
+		return mXmlTextPending ? (String) userObject : null;
+	}
+
+	/**
+	 * Stores the xhtml form of pText that was computed elsewhere, e.g. in the
+	 * background. It is ignored, if the text was changed meanwhile.
+	 */
+	public final void setConvertedXmlText(String pText, String pXmlText) {
+		if (mXmlTextPending && userObject == pText) {
+			xmlText = pXmlText;
+			mXmlTextPending = false;
+		}
+	}
+
+	/**
+	 * @return the html note, if its xhtml form is still to be computed,
+	 *         otherwise null.
+	 */
+	public final String getUnconvertedNoteText() {
+		return mXmlNoteTextPending ? noteText : null;
+	}
+
+	/**
+	 * As {@link #setConvertedXmlText(String, String)}, but for the note.
+	 */
+	public final void setConvertedXmlNoteText(String pNoteText,
+			String pXmlNoteText) {
+		if (mXmlNoteTextPending && noteText == pNoteText) {
+			xmlNoteText = pXmlNoteText;
+			mXmlNoteTextPending = false;
+		}
 	}
 
 	public String getPlainTextContent() {
@@ -245,6 +346,48 @@ public abstract class NodeAdapter implements MindMapNode {
 		return toString();
 	}
 
+	private static class PlainTextCache {
+		String mPlainText = null;
+		String mLowerCasePlainText = null;
+		String mPlainNoteText = null;
+	}
+
+	private PlainTextCache getPlainTextCache() {
+		PlainTextCache cache = (mPlainTextCache != null) ? mPlainTextCache
+				.get() : null;
+		if (cache == null) {
+			cache = new PlainTextCache();
+			mPlainTextCache = new SoftReference<>(cache);
+		}
+		return cache;
+	}
+
+	public String getPlainText() {
+		PlainTextCache cache = getPlainTextCache();
+		if (cache.mPlainText == null) {
+			cache.mPlainText = HtmlTools.htmlToPlain(getText());
+		}
+		return cache.mPlainText;
+	}
+
+	public String getLowerCasePlainText() {
+		PlainTextCache cache = getPlainTextCache();
+		if (cache.mLowerCasePlainText == null) {
+			cache.mLowerCasePlainText = getPlainText().toLowerCase();
+		}
+		return cache.mLowerCasePlainText;
+	}
+
+	public String getPlainNoteText() {
+		PlainTextCache cache = getPlainTextCache();
+		if (cache.mPlainNoteText == null) {
+			String note = getNoteText();
+			cache.mPlainNoteText = (note == null) ? "" : HtmlTools
+					.htmlToPlain(note);
+		}
+		return cache.mPlainNoteText;
+	}
+
 	public String getLink() {
 		return link;
 	}
@@ -637,13 +780,7 @@ public abstract class NodeAdapter implements MindMapNode {
 	}
 
 	public int getChildPosition(MindMapNode childNode) {
-		int position = 0;
-		for (ListIterator<MindMapNode> i = children.listIterator(); i.hasNext(); ++position) {
-			if (i.next() == childNode) {
-				return position;
-			}
-		}
-		return -1;
+		return children == null ? -1 : children.indexOf(childNode);
 	}
 
 	public ListIterator childrenUnfolded() {
@@ -738,7 +875,7 @@ public abstract class NodeAdapter implements MindMapNode {
 	// // the meaning, at least not to me.
 
 	public int getIndex(TreeNode node) {
-		return children.indexOf((MindMapNode) node); // uses equals()
+		return getChildPosition((MindMapNode) node);
 	}
 
 	public TreeNode getParent() {
@@ -804,17 +941,35 @@ public abstract class NodeAdapter implements MindMapNode {
 			preferredChild = childNode;
 		}
 		child.setParent(this);
-		recursiveCallAddChildren(this, childNode);
+		callAddChildrenHooks(childNode);
+	}
+
+	public void reorderChildren(List<MindMapNode> pNewOrder) {
+		if (pNewOrder.size() != getChildCount()
+				|| !new HashSet<MindMapNode>(pNewOrder)
+						.equals(new HashSet<MindMapNode>(children))) {
+			throw new IllegalArgumentException(
+					"The new order doesn't contain exactly the children of "
+							+ this);
+		}
+		ListIterator<MindMapNode> i = children.listIterator();
+		for (MindMapNode child : pNewOrder) {
+			i.next();
+			i.set(child);
+		}
 	}
 
 	public void remove(int index) {
 		MutableTreeNode node = (MutableTreeNode) children.get(index);
-		remove(node);
+		remove(node, index);
 	}
 
 	public void remove(MutableTreeNode node) {
+		remove(node, getChildPosition((MindMapNode) node));
+	}
+
+	private void remove(MutableTreeNode node, int index) {
 		if (node == this.preferredChild) { // mind preferred child :-) (PN)
-			int index = children.indexOf(node);
 			if (children.size() > index + 1) {
 				this.preferredChild = (MindMapNode) (children.get(index + 1));
 			} else {
@@ -823,41 +978,106 @@ public abstract class NodeAdapter implements MindMapNode {
 			}
 		}
 		node.setParent(null);
-		children.remove(node);
+		if (index >= 0) {
+			children.remove(index);
+		}
 		// call remove child hook after removal.
-		recursiveCallRemoveChildren(this, (MindMapNode) node, this);
+		callRemoveChildrenHooks((MindMapNode) node);
 	}
 
-	private void recursiveCallAddChildren(MindMapNode node,
-			MindMapNode addedChild) {
-		// Tell any node hooks that the node is added:
-		if (node instanceof MindMapNode) {
-			for (PermanentNodeHook hook : ((MindMapNode) node).getActivatedHooks()) {
+	/**
+	 * Tells the child hooks of this node and its ancestors that the node is
+	 * added. Only the nodes carrying such hooks are asked for their hooks, and
+	 * the walk ends when all child hooks of the map have been found.
+	 */
+	private void callAddChildrenHooks(MindMapNode addedChild) {
+		int remaining = getRemainingChildHooks();
+		for (MindMapNode node = this; node != null && remaining != 0; node = node
+				.isRoot() ? null : node.getParentNode()) {
+			if (!hasChildHooks(node)) {
+				continue;
+			}
+			remaining -= getChildHookCount(node);
+			for (PermanentNodeHook hook : node.getActivatedHooks()) {
 				if (addedChild.getParentNode() == node) {
 					hook.onAddChild(addedChild);
 				}
 				hook.onAddChildren(addedChild);
 			}
 		}
-		if (!node.isRoot() && node.getParentNode() != null)
-			recursiveCallAddChildren(node.getParentNode(), addedChild);
 	}
 
 	/**
-	 * @param oldDad
-	 *            the last dad node had.
+	 * Counterpart of {@link #callAddChildrenHooks(MindMapNode)}, this node is
+	 * the last dad of the removed child.
 	 */
-	private void recursiveCallRemoveChildren(MindMapNode node,
-			MindMapNode removedChild, MindMapNode oldDad) {
-		for (PermanentNodeHook hook : node.getActivatedHooks()) {
-			if (removedChild.getParentNode() == node) {
-				hook.onRemoveChild(removedChild);
+	private void callRemoveChildrenHooks(MindMapNode removedChild) {
+		int remaining = getRemainingChildHooks();
+		for (MindMapNode node = this; node != null && remaining != 0; node = node
+				.isRoot() ? null : node.getParentNode()) {
+			if (!hasChildHooks(node)) {
+				continue;
 			}
-			hook.onRemoveChildren(removedChild, oldDad);
+			remaining -= getChildHookCount(node);
+			for (PermanentNodeHook hook : node.getActivatedHooks()) {
+				if (removedChild.getParentNode() == node) {
+					hook.onRemoveChild(removedChild);
+				}
+				hook.onRemoveChildren(removedChild, this);
+			}
+		}
+	}
+
+	/**
+	 * @return the number of child hooks of the map, or -1 if unknown (then all
+	 *         ancestors are asked).
+	 */
+	private int getRemainingChildHooks() {
+		return map == null ? -1 : map.getChildHookCount();
+	}
+
+	private static boolean hasChildHooks(MindMapNode pNode) {
+		if (pNode instanceof NodeAdapter) {
+			return ((NodeAdapter) pNode).mChildHookCount > 0;
+		}
+		return !pNode.getActivatedHooks().isEmpty();
+	}
+
+	private static int getChildHookCount(MindMapNode pNode) {
+		if (pNode instanceof NodeAdapter) {
+			return ((NodeAdapter) pNode).mChildHookCount;
+		}
+		// not counted by the map:
+		return 0;
+	}
+
+	/**
+	 * @return true, if the hook overrides one of the child callbacks of
+	 *         {@link PermanentNodeHookAdapter} (or doesn't extend it at all).
+	 */
+	static boolean isChildHook(PermanentNodeHook pHook) {
+		Class<?> hookClass = pHook.getClass();
+		Boolean childHook = sChildHookClasses.get(hookClass);
+		if (childHook == null) {
+			childHook = Boolean.valueOf(overrides(hookClass, "onAddChild",
+					MindMapNode.class)
+					|| overrides(hookClass, "onAddChildren", MindMapNode.class)
+					|| overrides(hookClass, "onRemoveChild", MindMapNode.class)
+					|| overrides(hookClass, "onRemoveChildren",
+							MindMapNode.class, MindMapNode.class));
+			sChildHookClasses.put(hookClass, childHook);
+		}
+		return childHook.booleanValue();
+	}
+
+	private static boolean overrides(Class<?> pHookClass, String pMethodName,
+			Class<?>... pParameterTypes) {
+		try {
+			return pHookClass.getMethod(pMethodName, pParameterTypes)
+					.getDeclaringClass() != PermanentNodeHookAdapter.class;
+		} catch (NoSuchMethodException e) {
+			return true;
 		}
-		if (!node.isRoot() && node.getParentNode() != null)
-			recursiveCallRemoveChildren(node.getParentNode(), removedChild,
-					oldDad);
 	}
 
 	public void removeFromParent() {
@@ -929,13 +1149,23 @@ public abstract class NodeAdapter implements MindMapNode {
 		}
 		if (hook instanceof PermanentNodeHook) {
 			createActivatedHooks();
-			activatedHooks.add((PermanentNodeHook) hook);
+			if (activatedHooks.add((PermanentNodeHook) hook)
+					&& isChildHook((PermanentNodeHook) hook)) {
+				changeChildHookCount(1);
+			}
 		} else {
 			// end of its short life:
 			hook.shutdownMapHook();
 		}
 	}
 
+	private void changeChildHookCount(int pDelta) {
+		mChildHookCount += pDelta;
+		if (map != null) {
+			map.changeChildHookCount(pDelta);
+		}
+	}
+
 	private void createActivatedHooks() {
 		if (activatedHooks == null) {
 			activatedHooks = new HashSet<>();
@@ -1006,6 +1236,9 @@ public abstract class NodeAdapter implements MindMapNode {
 			if (activatedHooks.size() == 0) {
 				activatedHooks = null;
 			}
+			if (isChildHook(hook)) {
+				changeChildHookCount(-1);
+			}
 			hook.shutdownMapHook();
 		}
 		createHooks();
@@ -1107,89 +1340,55 @@ public abstract class NodeAdapter implements MindMapNode {
 		return controller.getNodeID(this);
 	}
 
-	public XMLElement save(Writer writer, MindMapLinkRegistry registry,
+	public void save(Writer writer, MindMapLinkRegistry registry,
+			boolean saveInvisible, boolean saveChildren) throws IOException {
+		if (writer instanceof XMLWriter) {
+			saveNode((XMLWriter) writer, registry, saveInvisible, saveChildren);
+			return;
+		}
+		XMLWriter xmlWriter = new XMLWriter(writer);
+		try {
+			saveNode(xmlWriter, registry, saveInvisible, saveChildren);
+		} finally {
+			xmlWriter.finish();
+		}
+	}
+
+	/**
+	 * Writes the node directly to the writer. The attributes are written in
+	 * alphabetical order as XMLElement did before.
+	 */
+	private void saveNode(XMLWriter writer, MindMapLinkRegistry registry,
 			boolean saveInvisible, boolean saveChildren) throws IOException {
 		// pre save event to save all contents of the node:
 		getMapFeedback().firePreSaveEvent(this);
-		XMLElement node = new XMLElement();
-
-		// if (!isNodeClassToBeSaved()) {
-		node.setName(XMLElementAdapter.XML_NODE);
-		// } else {
-		// node.setName(XMLElementAdapter.XML_NODE_CLASS_PREFIX
-		// + this.getClass().getName());
-		// }
+		writer.startElement(XMLElementAdapter.XML_NODE);
 
-		/** fc, 12.6.2005: XML must not contain any zero characters. */
-		String text = this.toString().replace('\0', ' ');
-		if (!HtmlTools.isHtmlNode(text)) {
-			node.setAttribute(XMLElementAdapter.XML_NODE_TEXT, text);
-		} else {
-			// save <content> tag:
-			XMLElement htmlElement = new XMLElement();
-			htmlElement.setName(XMLElementAdapter.XML_NODE_XHTML_CONTENT_TAG);
-			htmlElement.setAttribute(XMLElementAdapter.XML_NODE_XHTML_TYPE_TAG,
-					XMLElementAdapter.XML_NODE_XHTML_TYPE_NODE);
-			htmlElement
-					.setEncodedContent(convertToEncodedContent(getXmlText()));
-			node.addChild(htmlElement);
+		// new background color.
+		if (getBackgroundColor() != null) {
+			writer.writeAttribute("BACKGROUND_COLOR",
+					Tools.colorToXml(getBackgroundColor()));
 		}
-		if (getXmlNoteText() != null) {
-			XMLElement htmlElement = new XMLElement();
-			htmlElement.setName(XMLElementAdapter.XML_NODE_XHTML_CONTENT_TAG);
-			htmlElement.setAttribute(XMLElementAdapter.XML_NODE_XHTML_TYPE_TAG,
-					XMLElementAdapter.XML_NODE_XHTML_TYPE_NOTE);
-			htmlElement
-					.setEncodedContent(convertToEncodedContent(getXmlNoteText()));
-			node.addChild(htmlElement);
-
+		if (color != null) {
+			writer.writeAttribute("COLOR", Tools.colorToXml(getColor()));
+		}
+		// history information, fc, 11.4.2005
+		if (historyInformation != null) {
+			writer.writeAttribute(
+					XMLElementAdapter.XML_NODE_HISTORY_CREATED_AT,
+					Tools.dateToString(getHistoryInformation().getCreatedAt()));
 		}
 		// save additional info:
 		if (getAdditionalInfo() != null) {
-			node.setAttribute(XMLElementAdapter.XML_NODE_ENCRYPTED_CONTENT,
+			writer.writeAttribute(XMLElementAdapter.XML_NODE_ENCRYPTED_CONTENT,
 					getAdditionalInfo());
 		}
-		// ((MindMapEdgeModel)getEdge()).save(doc,node);
-
-		XMLElement edge = (getEdge()).save();
-		if (edge != null) {
-			node.addChild(edge);
-		}
-
-		if (getCloud() != null) {
-			XMLElement cloud = (getCloud()).save();
-			node.addChild(cloud);
-		}
-
-		Vector<MindMapLink> linkVector = registry.getAllLinksFromMe(this);
-		for (int i = 0; i < linkVector.size(); ++i) {
-			if (linkVector.get(i) instanceof ArrowLinkAdapter) {
-				XMLElement arrowLinkElement = ((ArrowLinkAdapter) linkVector
-						.get(i)).save();
-				node.addChild(arrowLinkElement);
-			}
-		}
-
-		// virtual link targets:
-		Vector<MindMapLink> targetVector = registry.getAllLinksIntoMe(this);
-		for (int i = 0; i < targetVector.size(); ++i) {
-			if (targetVector.get(i) instanceof ArrowLinkAdapter) {
-				XMLElement arrowLinkTargetElement = ((ArrowLinkAdapter) targetVector
-						.get(i)).createArrowLinkTarget(registry).save();
-				node.addChild(arrowLinkTargetElement);
-			}
-		}
-
 		if (isFolded()) {
-			node.setAttribute("FOLDED", "true");
+			writer.writeAttribute("FOLDED", "true");
 		}
-
-		// fc, 17.12.2003: Remove the left/right bug.
-		// VVV save if and only if parent is root.
-		if (!(isRoot()) && (getParentNode().isRoot())) {
-			node.setAttribute("POSITION", isLeft() ? "left" : "right");
+		if (hGap != HGAP) {
+			writer.writeAttribute("HGAP", Integer.toString(hGap));
 		}
-
 		// the id is used, if there is a local hyperlink pointing to me or a
 		// real link.
 		String label = registry.getLabel(this);
@@ -1197,83 +1396,112 @@ public abstract class NodeAdapter implements MindMapNode {
 				|| (registry.isTargetOfLocalHyperlinks(label) || (registry
 						.getAllLinksIntoMe(this).size() > 0))) {
 			if (label != null) {
-				node.setAttribute("ID", label);
+				writer.writeAttribute("ID", label);
 			}
 		}
-		if (color != null) {
-			node.setAttribute("COLOR", Tools.colorToXml(getColor()));
+		// link
+		if (getLink() != null) {
+			writer.writeAttribute("LINK", getLink());
 		}
-
-		// new background color.
-		if (getBackgroundColor() != null) {
-			node.setAttribute("BACKGROUND_COLOR",
-					Tools.colorToXml(getBackgroundColor()));
+		if (historyInformation != null) {
+			writer.writeAttribute(
+					XMLElementAdapter.XML_NODE_HISTORY_LAST_MODIFIED_AT, Tools
+							.dateToString(getHistoryInformation()
+									.getLastModifiedAt()));
+		}
+		// fc, 17.12.2003: Remove the left/right bug.
+		// VVV save if and only if parent is root.
+		if (!(isRoot()) && (getParentNode().isRoot())) {
+			writer.writeAttribute("POSITION", isLeft() ? "left" : "right");
 		}
-
 		if (style != null) {
-			node.setAttribute("STYLE", this.getStyle());
+			writer.writeAttribute("STYLE", this.getStyle());
 		}
 		// ^ Here cannot be just getStyle() without super. This is because
 		// getStyle's style depends on folded / unfolded. For example, when
 		// real style is fork and node is folded, getStyle returns
 		// MindMapNode.STYLE_BUBBLE, which is not what we want to save.
 
+		/** fc, 12.6.2005: XML must not contain any zero characters. */
+		String text = this.toString().replace('\0', ' ');
+		boolean isHtmlNode = HtmlTools.isHtmlNode(text);
+		if (!isHtmlNode) {
+			writer.writeAttribute(XMLElementAdapter.XML_NODE_TEXT, text);
+		}
 		// layout
 		if (vGap != VGAP) {
-			node.setAttribute("VGAP", Integer.toString(vGap));
-		}
-		if (hGap != HGAP) {
-			node.setAttribute("HGAP", Integer.toString(hGap));
+			writer.writeAttribute("VGAP", Integer.toString(vGap));
 		}
 		if (shiftY != 0) {
-			node.setAttribute("VSHIFT", Integer.toString(shiftY));
+			writer.writeAttribute("VSHIFT", Integer.toString(shiftY));
 		}
-		// link
-		if (getLink() != null) {
-			node.setAttribute("LINK", getLink());
+
+		if (isHtmlNode) {
+			// save <content> tag:
+			writer.writeElementWithXmlContent(
+					XMLElementAdapter.XML_NODE_XHTML_CONTENT_TAG,
+					XMLElementAdapter.XML_NODE_XHTML_TYPE_TAG,
+					XMLElementAdapter.XML_NODE_XHTML_TYPE_NODE, getXmlText());
+		}
+		if (getXmlNoteText() != null) {
+			writer.writeElementWithXmlContent(
+					XMLElementAdapter.XML_NODE_XHTML_CONTENT_TAG,
+					XMLElementAdapter.XML_NODE_XHTML_TYPE_TAG,
+					XMLElementAdapter.XML_NODE_XHTML_TYPE_NOTE, getXmlNoteText());
 		}
 
-		// history information, fc, 11.4.2005
-		if (historyInformation != null) {
-			node.setAttribute(XMLElementAdapter.XML_NODE_HISTORY_CREATED_AT,
-					Tools.dateToString(getHistoryInformation().getCreatedAt()));
-			node.setAttribute(
-					XMLElementAdapter.XML_NODE_HISTORY_LAST_MODIFIED_AT, Tools
-							.dateToString(getHistoryInformation()
-									.getLastModifiedAt()));
+		XMLElement edge = (getEdge()).save();
+		if (edge != null) {
+			writer.writeElement(edge);
 		}
-		// font
-		if (font != null) {
-			XMLElement fontElement = new XMLElement();
-			fontElement.setName("font");
 
-			if (font != null) {
-				fontElement.setAttribute("NAME", font.getFamily());
+		if (getCloud() != null) {
+			writer.writeElement(getCloud().save());
+		}
+
+		Vector<MindMapLink> linkVector = registry.getAllLinksFromMe(this);
+		for (int i = 0; i < linkVector.size(); ++i) {
+			if (linkVector.get(i) instanceof ArrowLinkAdapter) {
+				writer.writeElement(((ArrowLinkAdapter) linkVector.get(i))
+						.save());
 			}
-			if (font.getSize() != 0) {
-				fontElement.setAttribute("SIZE",
-						Integer.toString(font.getSize()));
+		}
+
+		// virtual link targets:
+		Vector<MindMapLink> targetVector = registry.getAllLinksIntoMe(this);
+		for (int i = 0; i < targetVector.size(); ++i) {
+			if (targetVector.get(i) instanceof ArrowLinkAdapter) {
+				writer.writeElement(((ArrowLinkAdapter) targetVector.get(i))
+						.createArrowLinkTarget(registry).save());
 			}
+		}
+
+		// font
+		if (font != null) {
+			writer.startElement("font");
 			if (isBold()) {
-				fontElement.setAttribute("BOLD", "true");
-			}
-			if (isStrikethrough()) {
-				fontElement.setAttribute("STRIKETHROUGH", "true");
+				writer.writeAttribute("BOLD", "true");
 			}
 			if (isItalic()) {
-				fontElement.setAttribute("ITALIC", "true");
+				writer.writeAttribute("ITALIC", "true");
+			}
+			writer.writeAttribute("NAME", font.getFamily());
+			if (font.getSize() != 0) {
+				writer.writeAttribute("SIZE", Integer.toString(font.getSize()));
+			}
+			if (isStrikethrough()) {
+				writer.writeAttribute("STRIKETHROUGH", "true");
 			}
 			if (isUnderlined()) {
-				fontElement.setAttribute("UNDERLINE", "true");
+				writer.writeAttribute("UNDERLINE", "true");
 			}
-			node.addChild(fontElement);
+			writer.endElement("font");
 		}
 		for (int i = 0; i < getIcons().size(); ++i) {
-			XMLElement iconElement = new XMLElement();
-			iconElement.setName("icon");
-			iconElement.setAttribute("BUILTIN",
+			writer.startElement("icon");
+			writer.writeAttribute("BUILTIN",
 					((MindIcon) getIcons().get(i)).getName());
-			node.addChild(iconElement);
+			writer.endElement("icon");
 		}
 
 		for (PermanentNodeHook permHook : getActivatedHooks()) {
@@ -1283,33 +1511,28 @@ public abstract class NodeAdapter implements MindMapNode {
 			XMLElement hookElement = new XMLElement();
 			hookElement.setName("hook");
 			permHook.save(hookElement);
-			node.addChild(hookElement);
+			writer.writeElement(hookElement);
 		}
 		if (mAttributeVector != null) {
 			for (int i = 0; i < mAttributeVector.size(); i++) {
-				XMLElement attributeElement = new XMLElement();
-				attributeElement.setName(XMLElementAdapter.XML_NODE_ATTRIBUTE);
 				Attribute attr = mAttributeVector.get(i);
-				attributeElement.setAttribute("NAME", attr.getName());
-				attributeElement.setAttribute("VALUE", attr.getValue());
-				node.addChild(attributeElement);
+				writer.startElement(XMLElementAdapter.XML_NODE_ATTRIBUTE);
+				writer.writeAttribute("NAME", attr.getName());
+				writer.writeAttribute("VALUE", attr.getValue());
+				writer.endElement(XMLElementAdapter.XML_NODE_ATTRIBUTE);
 			}
 		}
 
 		if (saveChildren && childrenUnfolded().hasNext()) {
-			node.writeWithoutClosingTag(writer);
+			writer.closeStartTag();
 			// recursive
 			saveChildren(writer, registry, this, saveInvisible);
-			node.writeClosingTag(writer);
-		} else {
-			node.write(writer);
 		}
-		return node;
+		writer.endElement(XMLElementAdapter.XML_NODE);
 	}
 
 	public static String convertToEncodedContent(String xmlText2) {
-		String replace = HtmlTools.makeValidXml(xmlText2);
-		return HtmlTools.unicodeToHTMLUnicodeEntity(replace, true);
+		return XMLWriter.encodeContent(xmlText2);
 	}
 
 	private void saveChildren(Writer writer, MindMapLinkRegistry registry,
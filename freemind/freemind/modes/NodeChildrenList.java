@@ -0,0 +1,142 @@
+/*FreeMind - A Program for creating and viewing Mindmaps
+ *Copyright (C) 2000-2014 Christian Foltin, Joerg Mueller, Daniel Polansky, Dimitri Polivaev and others.
+ *
+ *See COPYING for Details
+ *
+ *This program is free software; you can redistribute it and/or
+ *modify it under the terms of the GNU General Public License
+ *as published by the Free Software Foundation; either version 2
+ *of the License, or (at your option) any later version.
+ *
+ *This program is distributed in the hope that it will be useful,
+ *but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *GNU General Public License for more details.
+ *
+ *You should have received a copy of the GNU General Public License
+ *along with this program; if not, write to the Free Software
+ *Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package freemind.modes;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.RandomAccess;
+
+/**
+ * The list of children of a node. It is array backed, such that
+ * {@link #get(int)} is cheap, and it remembers the position of each child, such
+ * that {@link #indexOf(Object)} (used by
+ * {@link MindMapNode#getChildPosition(MindMapNode)} and the swing
+ * {@link javax.swing.tree.TreeNode#getIndex(javax.swing.tree.TreeNode)}) does
+ * not scan the siblings.
+ *
+ * The positions in front of the first changed index stay valid; the others are
+ * renumbered by the next lookups, but only up to the child looked for. Thus,
+ * appending children (as the map loading does) keeps all positions valid, and
+ * an insertion in front of a sibling followed by the lookup of the next
+ * sibling only renumbers the children in between.
+ *
+ * Children are compared by identity.
+ */
+public class NodeChildrenList extends AbstractList<MindMapNode> implements
+		RandomAccess {
+
+	private final ArrayList<MindMapNode> mChildren = new ArrayList<>();
+
+	private final IdentityHashMap<MindMapNode, Integer> mPositions = new IdentityHashMap<>();
+
+	/** The cached positions of the children in front of this index are valid. */
+	private int mValidPositions = 0;
+
+	public MindMapNode get(int pIndex) {
+		return mChildren.get(pIndex);
+	}
+
+	public int size() {
+		return mChildren.size();
+	}
+
+	public void add(int pIndex, MindMapNode pChild) {
+		mChildren.add(pIndex, pChild);
+		modCount++;
+		if (pIndex == mValidPositions && pIndex == mChildren.size() - 1) {
+			mPositions.put(pChild, pIndex);
+			mValidPositions++;
+		} else {
+			invalidateFrom(pIndex);
+		}
+	}
+
+	public MindMapNode set(int pIndex, MindMapNode pChild) {
+		MindMapNode old = mChildren.set(pIndex, pChild);
+		mPositions.remove(old);
+		invalidateFrom(pIndex);
+		return old;
+	}
+
+	public MindMapNode remove(int pIndex) {
+		MindMapNode old = mChildren.remove(pIndex);
+		modCount++;
+		mPositions.remove(old);
+		invalidateFrom(pIndex);
+		return old;
+	}
+
+	public boolean remove(Object pChild) {
+		int index = indexOf(pChild);
+		if (index < 0) {
+			return false;
+		}
+		remove(index);
+		return true;
+	}
+
+	public void clear() {
+		mChildren.clear();
+		modCount++;
+		mPositions.clear();
+		mValidPositions = 0;
+	}
+
+	public boolean contains(Object pChild) {
+		return indexOf(pChild) >= 0;
+	}
+
+	public int indexOf(Object pChild) {
+		int index = getCachedPosition(pChild);
+		if (index >= 0) {
+			return index;
+		}
+		// renumber only as far as necessary:
+		while (mValidPositions < mChildren.size()) {
+			MindMapNode child = mChildren.get(mValidPositions);
+			mPositions.put(child, mValidPositions);
+			if (child == pChild) {
+				return mValidPositions++;
+			}
+			mValidPositions++;
+		}
+		return -1;
+	}
+
+	public int lastIndexOf(Object pChild) {
+		return indexOf(pChild);
+	}
+
+	private int getCachedPosition(Object pChild) {
+		Integer position = mPositions.get(pChild);
+		if (position == null || position >= mChildren.size()
+				|| mChildren.get(position) != pChild) {
+			return -1;
+		}
+		return position;
+	}
+
+	private void invalidateFrom(int pIndex) {
+		mValidPositions = Math.min(mValidPositions, pIndex);
+	}
+
+}
@@ -31,9 +31,11 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Set;
+import java.util.Vector;
 
 import freemind.common.TextTranslator;
 import freemind.common.XmlBindingTools;
+import freemind.controller.actions.generated.instance.CompoundAction;
 import freemind.controller.actions.generated.instance.Pattern;
 import freemind.controller.actions.generated.instance.PatternChild;
 import freemind.controller.actions.generated.instance.PatternEdgeColor;
@@ -54,6 +56,7 @@ import freemind.main.Resources;
 import freemind.main.Tools;
 import freemind.modes.mindmapmode.MindMapController.MindMapControllerPlugin;
 import freemind.modes.mindmapmode.actions.ApplyPatternAction.ExternalPatternAction;
+import freemind.modes.mindmapmode.actions.xml.ActionPair;
 
 /**
  * This class constructs patterns from files or from nodes and saves them back.
@@ -487,100 +490,12 @@ public class StylePatternFactory {
 	
 	public static void applyPattern(MindMapNode node, Pattern pattern, 
 			List<Pattern> pPatternList, Set<MindMapControllerPlugin> pPlugins, ExtendedMapFeedback pMapFeedback) {
-		if (pattern.getPatternNodeText() != null) {
-			if (pattern.getPatternNodeText().getValue() != null) {
-				pMapFeedback.setNodeText(node, pattern.getPatternNodeText()
-						.getValue());
-			} else {
-				// clear text:
-				pMapFeedback.setNodeText(node, "");
-			}
-		}
-		if (pattern.getPatternNodeColor() != null) {
-			pMapFeedback.setNodeColor(node,
-					Tools.xmlToColor(pattern.getPatternNodeColor().getValue()));
-		}
-		if (pattern.getPatternNodeBackgroundColor() != null) {
-			pMapFeedback.setNodeBackgroundColor(node, Tools.xmlToColor(pattern
-					.getPatternNodeBackgroundColor().getValue()));
-		}
-		// Perhaps already fixed?:
-		// FIXME: fc, 3.1.2004: setting the style to "null" causes strange
-		// behaviour.
-		// see
-		// https://sourceforge.net/tracker/?func=detail&atid=107118&aid=1094623&group_id=7118
-		if (pattern.getPatternNodeStyle() != null) {
-			pMapFeedback.setNodeStyle(node, pattern.getPatternNodeStyle()
-					.getValue());
-		}
-		if (pattern.getPatternIcon() != null) {
-			String iconName = pattern.getPatternIcon().getValue();
-			if (iconName == null) {
-				while (pMapFeedback.removeLastIcon(node) > 0) {
-				}
-			} else {
-				// check if icon is already present:
-				List<MindIcon> icons = node.getIcons();
-				boolean found = false;
-				for (MindIcon icon : icons) {
-					if (icon.getName() != null
-							&& icon.getName().equals(iconName)) {
-						found = true;
-						break;
-					}
-				}
-				if (!found) {
-					pMapFeedback.addIcon(node, MindIcon.factory(iconName));
-				}
-			}
-		} // fc, 28.9.2003
-		if (pattern.getPatternNodeFontName() != null) {
-			String nodeFontFamily = pattern.getPatternNodeFontName().getValue();
-			if (nodeFontFamily == null) {
-				nodeFontFamily = pMapFeedback.getDefaultFont().getFamily();
-			}
-			pMapFeedback.setFontFamily(node, nodeFontFamily);
-		}
-		if (pattern.getPatternNodeFontSize() != null) {
-			String nodeFontSize = pattern.getPatternNodeFontSize().getValue();
-			if (nodeFontSize == null) {
-				nodeFontSize = "" + pMapFeedback.getDefaultFont().getSize();
-			}
-			pMapFeedback.setFontSize(node, String.valueOf(nodeFontSize));
-		}
-		if (pattern.getPatternNodeFontItalic() != null) {
-			pMapFeedback.setItalic(node, TRUE_VALUE.equals(pattern
-					.getPatternNodeFontItalic().getValue()));
-		}
-		if (pattern.getPatternNodeFontBold() != null) {
-			pMapFeedback.setBold(node,
-					TRUE_VALUE.equals(pattern.getPatternNodeFontBold().getValue()));
-		}
-		if (pattern.getPatternNodeFontStrikethrough() != null) {
-			pMapFeedback.setStrikethrough(node,
-					TRUE_VALUE.equals(pattern.getPatternNodeFontStrikethrough().getValue()));
-		}
-
-		if (pattern.getPatternEdgeColor() != null) {
-			pMapFeedback.setEdgeColor(node,
-					Tools.xmlToColor(pattern.getPatternEdgeColor().getValue()));
-		}
-		if (pattern.getPatternEdgeStyle() != null) {
-			pMapFeedback.setEdgeStyle(node, pattern.getPatternEdgeStyle()
-					.getValue());
-		}
-		PatternEdgeWidth patternEdgeWidth = pattern.getPatternEdgeWidth();
-		if (patternEdgeWidth != null) {
-			if (patternEdgeWidth.getValue() != null) {
-				pMapFeedback
-						.setEdgeWidth(node, Tools
-								.edgeWidthStringToInt(patternEdgeWidth
-										.getValue()));
-			} else {
-				pMapFeedback.setEdgeWidth(node, EdgeAdapter.DEFAULT_WIDTH);
-			}
+		Vector<ActionPair> pairs = new Vector<>();
+		new CompiledPattern(pattern).addActionPairs(node, pMapFeedback, pairs);
+		if (!pairs.isEmpty()) {
+			pMapFeedback.doTransaction(CompoundAction.class.getName(),
+					toCompoundActionPair(pairs));
 		}
-
 		if (pattern.getPatternChild() != null
 				&& pattern.getPatternChild().getValue() != null) {
 			// find children among all patterns:
@@ -602,4 +517,82 @@ public class StylePatternFactory {
 			}
 		}
 	}
+
+	/**
+	 * Formats a subtree with a style table indexed by depth: a node at depth
+	 * d gets the style pStyles[d], deeper nodes than the table get the last
+	 * style. All changes are carried out in a single transaction, and nodes
+	 * that are formatted already are left untouched.
+	 * 
+	 * @param pDepth
+	 *            the depth of pNode (the root has depth 0).
+	 * @return true, if some node was changed.
+	 */
+	public static boolean applyPatternsByDepth(MindMapNode pNode, int pDepth,
+			CompiledPattern[] pStyles, ExtendedMapFeedback pMapFeedback) {
+		return applyPatternsByDepth(pNode, pDepth, pStyles, true,
+				pMapFeedback);
+	}
+
+	/**
+	 * Like {@link #applyPatternsByDepth(MindMapNode, int, CompiledPattern[], ExtendedMapFeedback)}.
+	 * 
+	 * @param pRecursive
+	 *            if false, only pNode is formatted.
+	 */
+	public static boolean applyPatternsByDepth(MindMapNode pNode, int pDepth,
+			CompiledPattern[] pStyles, boolean pRecursive,
+			ExtendedMapFeedback pMapFeedback) {
+		if (pStyles.length == 0) {
+			return false;
+		}
+		Vector<ActionPair> pairs = new Vector<>();
+		if (pRecursive) {
+			addActionPairsByDepth(pNode, pDepth, pStyles, pMapFeedback, pairs);
+		} else {
+			getStyle(pStyles, pDepth).addActionPairs(pNode, pMapFeedback,
+					pairs);
+		}
+		if (pairs.isEmpty()) {
+			return false;
+		}
+		pMapFeedback.doTransaction(CompoundAction.class.getName(),
+				toCompoundActionPair(pairs));
+		return true;
+	}
+
+	private static void addActionPairsByDepth(MindMapNode pNode, int pDepth,
+			CompiledPattern[] pStyles, ExtendedMapFeedback pMapFeedback,
+			List<ActionPair> pPairs) {
+		getStyle(pStyles, pDepth).addActionPairs(pNode, pMapFeedback, pPairs);
+		for (ListIterator<MindMapNode> i = pNode.childrenUnfolded(); i.hasNext();) {
+			addActionPairsByDepth(i.next(), pDepth + 1, pStyles,
+					pMapFeedback, pPairs);
+		}
+	}
+
+	private static CompiledPattern getStyle(CompiledPattern[] pStyles,
+			int pDepth) {
+		return pStyles[Math.min(pDepth, pStyles.length - 1)];
+	}
+
+	/**
+	 * @return a single pair that carries out the given pairs in order and
+	 *         undoes them in reverse order.
+	 */
+	public static ActionPair toCompoundActionPair(List<ActionPair> pPairs) {
+		if (pPairs.size() == 1) {
+			return pPairs.get(0);
+		}
+		CompoundAction doAction = new CompoundAction();
+		CompoundAction undoAction = new CompoundAction();
+		for (ActionPair pair : pPairs) {
+			doAction.addChoice(pair.getDoAction());
+		}
+		for (ListIterator<ActionPair> i = pPairs.listIterator(pPairs.size()); i
+				.hasPrevious();) {
+			undoAction.addChoice(i.previous().getUndoAction());
+		}
+		return new ActionPair(doAction, undoAction);
+	}
 }
@@ -218,38 +218,12 @@ public class XMLElementAdapter extends XMLElement {
 			} else if (child.getName().equals("icon")) {
 				node.addIcon((MindIcon) child.getUserObject(), MindIcon.LAST);
 			} else if (child.getName().equals(XML_NODE_XHTML_CONTENT_TAG)) {
-				String xmlText = ((XMLElement) child).getContent();
-				Object typeAttribute = child
-						.getAttribute(XML_NODE_XHTML_TYPE_TAG);
-				if (typeAttribute == null
-						|| XML_NODE_XHTML_TYPE_NODE.equals(typeAttribute)) {
-					// output:
-					logger.finest("Setting node html content to:" + xmlText);
-					node.setXmlText(xmlText);
-				} else {
-					logger.finest("Setting note html content to:" + xmlText);
-					node.setXmlNoteText(xmlText);
-				}
+				setRichContent(node,
+						(String) child.getAttribute(XML_NODE_XHTML_TYPE_TAG),
+						((XMLElement) child).getContent());
 			} else if (child.getName().equals("hook")) {
 				XMLElement xml = (XMLElement) child/* .getUserObject() */;
-				String loadName = (String) xml.getAttribute("NAME");
-				PermanentNodeHook hook = null;
-				try {
-					// loadName=loadName.replace('/', File.separatorChar);
-					/*
-					 * The next code snippet is an exception. Normally, hooks
-					 * have to be created via the ModeController. DO NOT COPY.
-					 */
-					hook = (PermanentNodeHook) mMapFeedback.createNodeHook(loadName, node);
-					// this is a bad hack. Don't make use of this data unless
-					// you know exactly what you are doing.
-					hook.setNode(node);
-				} catch (Exception e) {
-					freemind.main.Resources.getInstance().logException(e);
-					hook = new PermanentNodeHookSubstituteUnknown(loadName);
-				}
-				hook.loadFrom(xml);
-				node.addHook(hook);
+				loadHook(mMapFeedback, node, xml);
 			}
 			return;
 		}
@@ -281,62 +255,17 @@ public class XMLElementAdapter extends XMLElement {
 		}
 
 		if (userObject instanceof EdgeAdapter) {
-			EdgeAdapter edge = (EdgeAdapter) userObject;
-			if (name.equals("STYLE")) {
-				edge.setStyle(sValue);
-			} else if (name.equals("COLOR")) {
-				edge.setColor(Tools.xmlToColor(sValue));
-			} else if (name.equals("WIDTH")) {
-				if (sValue.equals(EdgeAdapter.EDGE_WIDTH_THIN_STRING)) {
-					edge.setWidth(EdgeAdapter.WIDTH_THIN);
-				} else {
-					edge.setWidth(Integer.parseInt(sValue));
-				}
-			}
+			setEdgeAttribute((EdgeAdapter) userObject, name, sValue);
 			return;
 		}
 
 		if (userObject instanceof CloudAdapter) {
-			CloudAdapter cloud = (CloudAdapter) userObject;
-			if (name.equals("STYLE")) {
-				cloud.setStyle(sValue);
-			} else if (name.equals("COLOR")) {
-				cloud.setColor(Tools.xmlToColor(sValue));
-			} else if (name.equals("WIDTH")) {
-				cloud.setWidth(Integer.parseInt(sValue));
-			}
+			setCloudAttribute((CloudAdapter) userObject, name, sValue);
 			return;
 		}
 
 		if (userObject instanceof ArrowLinkAdapter) {
-			ArrowLinkAdapter arrowLink = (ArrowLinkAdapter) userObject;
-			if (name.equals("STYLE")) {
-				arrowLink.setStyle(sValue);
-			} else if (name.equals("ID")) {
-				arrowLink.setUniqueId(sValue);
-			} else if (name.equals("COLOR")) {
-				arrowLink.setColor(Tools.xmlToColor(sValue));
-			} else if (name.equals("DESTINATION")) {
-				arrowLink.setDestinationLabel(sValue);
-			} else if (name.equals("REFERENCETEXT")) {
-				arrowLink.setReferenceText((sValue));
-			} else if (name.equals("STARTINCLINATION")) {
-				arrowLink.setStartInclination(Tools.xmlToPoint(sValue));
-			} else if (name.equals("ENDINCLINATION")) {
-				arrowLink.setEndInclination(Tools.xmlToPoint(sValue));
-			} else if (name.equals("STARTARROW")) {
-				arrowLink.setStartArrow(sValue);
-			} else if (name.equals("ENDARROW")) {
-				arrowLink.setEndArrow(sValue);
-			} else if (name.equals("WIDTH")) {
-				arrowLink.setWidth(Integer.parseInt(sValue));
-			}
-			if (userObject instanceof ArrowLinkTarget) {
-				ArrowLinkTarget arrowLinkTarget = (ArrowLinkTarget) userObject;
-				if (name.equals("SOURCE")) {
-					arrowLinkTarget.setSourceLabel(sValue);
-				}
-			}
+			setArrowLinkAttribute((ArrowLinkAdapter) userObject, name, sValue);
 			return;
 		}
 
@@ -393,14 +322,27 @@ public class XMLElementAdapter extends XMLElement {
 
 	private NodeAdapter setNodeAttribute(String name, String sValue,
 			NodeAdapter node) {
-		if (name.equals(XML_NODE_TEXT)) {
-			logger.finest("Setting node text content to:" + sValue);
-			node.setUserObject(sValue);
-		} else if (name.equals(XML_NODE_ENCRYPTED_CONTENT)) {
+		if (name.equals(XML_NODE_ENCRYPTED_CONTENT)) {
 			// we change the node implementation to EncryptedMindMapNode.
 			node = getMap().createEncryptedNode(sValue);
 			setUserObject(node);
 			copyAttributesToNode(node);
+		} else {
+			setNodeAttribute(node, name, sValue, mIdToTarget);
+		}
+		return node;
+	}
+
+	/**
+	 * Applies a node attribute (except of
+	 * {@link #XML_NODE_ENCRYPTED_CONTENT} that changes the node instance).
+	 * IDs are annotated in pIdToTarget.
+	 */
+	static void setNodeAttribute(NodeAdapter node, String name,
+			String sValue, HashMap<String, NodeAdapter> pIdToTarget) {
+		if (name.equals(XML_NODE_TEXT)) {
+			logger.finest("Setting node text content to:" + sValue);
+			node.setUserObject(sValue);
 		} else if (name.equals(XML_NODE_HISTORY_CREATED_AT)) {
 			if (node.getHistoryInformation() == null) {
 				node.setHistoryInformation(new HistoryInformation());
@@ -434,7 +376,7 @@ public class XMLElementAdapter extends XMLElement {
 		} else if (name.equals("ID")) {
 			// do not set label but annotate in list:
 			// System.out.println("(sValue, node) = " + sValue + ", "+ node);
-			mIdToTarget.put(sValue, node);
+			pIdToTarget.put(sValue, node);
 		} else if (name.equals("VSHIFT")) {
 			node.setShiftY(Integer.parseInt(sValue));
 		} else if (name.equals("VGAP")) {
@@ -442,7 +384,107 @@ public class XMLElementAdapter extends XMLElement {
 		} else if (name.equals("HGAP")) {
 			node.setHGap(Integer.parseInt(sValue));
 		}
-		return node;
+	}
+
+	static void setEdgeAttribute(EdgeAdapter pEdge, String pName,
+			String pValue) {
+		if (pName.equals("STYLE")) {
+			pEdge.setStyle(pValue);
+		} else if (pName.equals("COLOR")) {
+			pEdge.setColor(Tools.xmlToColor(pValue));
+		} else if (pName.equals("WIDTH")) {
+			if (pValue.equals(EdgeAdapter.EDGE_WIDTH_THIN_STRING)) {
+				pEdge.setWidth(EdgeAdapter.WIDTH_THIN);
+			} else {
+				pEdge.setWidth(Integer.parseInt(pValue));
+			}
+		}
+	}
+
+	static void setCloudAttribute(CloudAdapter pCloud, String pName,
+			String pValue) {
+		if (pName.equals("STYLE")) {
+			pCloud.setStyle(pValue);
+		} else if (pName.equals("COLOR")) {
+			pCloud.setColor(Tools.xmlToColor(pValue));
+		} else if (pName.equals("WIDTH")) {
+			pCloud.setWidth(Integer.parseInt(pValue));
+		}
+	}
+
+	static void setArrowLinkAttribute(ArrowLinkAdapter pArrowLink,
+			String pName, String pValue) {
+		if (pName.equals("STYLE")) {
+			pArrowLink.setStyle(pValue);
+		} else if (pName.equals("ID")) {
+			pArrowLink.setUniqueId(pValue);
+		} else if (pName.equals("COLOR")) {
+			pArrowLink.setColor(Tools.xmlToColor(pValue));
+		} else if (pName.equals("DESTINATION")) {
+			pArrowLink.setDestinationLabel(pValue);
+		} else if (pName.equals("REFERENCETEXT")) {
+			pArrowLink.setReferenceText((pValue));
+		} else if (pName.equals("STARTINCLINATION")) {
+			pArrowLink.setStartInclination(Tools.xmlToPoint(pValue));
+		} else if (pName.equals("ENDINCLINATION")) {
+			pArrowLink.setEndInclination(Tools.xmlToPoint(pValue));
+		} else if (pName.equals("STARTARROW")) {
+			pArrowLink.setStartArrow(pValue);
+		} else if (pName.equals("ENDARROW")) {
+			pArrowLink.setEndArrow(pValue);
+		} else if (pName.equals("WIDTH")) {
+			pArrowLink.setWidth(Integer.parseInt(pValue));
+		}
+		if (pArrowLink instanceof ArrowLinkTarget) {
+			ArrowLinkTarget arrowLinkTarget = (ArrowLinkTarget) pArrowLink;
+			if (pName.equals("SOURCE")) {
+				arrowLinkTarget.setSourceLabel(pValue);
+			}
+		}
+	}
+
+	static void setRichContent(NodeAdapter node, String pType, String xmlText) {
+		if (pType == null || XML_NODE_XHTML_TYPE_NODE.equals(pType)) {
+			// output:
+			logger.finest("Setting node html content to:" + xmlText);
+			node.setXmlText(xmlText);
+		} else {
+			logger.finest("Setting note html content to:" + xmlText);
+			node.setXmlNoteText(xmlText);
+		}
+	}
+
+	static void loadHook(MapFeedback pMapFeedback, NodeAdapter node,
+			XMLElement xml) {
+		String loadName = (String) xml.getAttribute("NAME");
+		PermanentNodeHook hook = null;
+		try {
+			// loadName=loadName.replace('/', File.separatorChar);
+			/*
+			 * The next code snippet is an exception. Normally, hooks
+			 * have to be created via the ModeController. DO NOT COPY.
+			 */
+			hook = (PermanentNodeHook) pMapFeedback.createNodeHook(loadName, node);
+			// this is a bad hack. Don't make use of this data unless
+			// you know exactly what you are doing.
+			hook.setNode(node);
+		} catch (Exception e) {
+			freemind.main.Resources.getInstance().logException(e);
+			hook = new PermanentNodeHookSubstituteUnknown(loadName);
+		}
+		hook.loadFrom(xml);
+		node.addHook(hook);
+	}
+
+	static Font createFont(MapFeedback pMapFeedback, String fontName,
+			int fontStyle, int fontSize, boolean fontStyleStrikethrough) {
+		Font font = new Font(fontName, fontStyle, fontSize);
+		if(fontStyleStrikethrough){
+			Map attr = font.getAttributes();
+			attr.put(TextAttribute.STRIKETHROUGH, TextAttribute.STRIKETHROUGH_ON);
+			font = new Font(attr);
+		}
+		return pMapFeedback.getFontThroughMap(font);
 	}
 
 	/**
@@ -467,13 +509,8 @@ public class XMLElementAdapter extends XMLElement {
 			return;
 		}
 		if (getName().equals("font")) {
-			Font font = new Font(fontName, fontStyle, fontSize);
-			if(fontStyleStrikethrough){
-				Map attr = font.getAttributes();
-				attr.put(TextAttribute.STRIKETHROUGH, TextAttribute.STRIKETHROUGH_ON);
-				font = new Font(attr);
-			}
-			userObject = mMapFeedback.getFontThroughMap(font);
+			userObject = createFont(mMapFeedback, fontName, fontStyle,
+					fontSize, fontStyleStrikethrough);
 			return;
 		}
 		/* icons */
@@ -501,9 +538,15 @@ public class XMLElementAdapter extends XMLElement {
 	 * (IIIa: cut, IIIb: copy)
 	 */
 	public void processUnfinishedLinks(MindMapLinkRegistry registry) {
+		processUnfinishedLinks(registry, mIdToTarget, mArrowLinkAdapters);
+	}
+
+	static void processUnfinishedLinks(MindMapLinkRegistry registry,
+			HashMap<String, NodeAdapter> pIdToTarget,
+			Vector<ArrowLinkAdapter> pArrowLinkAdapters) {
 		// add labels to the nodes:
-		for (String key : mIdToTarget.keySet()) {
-			NodeAdapter target1 = (NodeAdapter) mIdToTarget.get(key);
+		for (String key : pIdToTarget.keySet()) {
+			NodeAdapter target1 = (NodeAdapter) pIdToTarget.get(key);
 			/*
 			 * key is the proposed name for the target, is changed by the
 			 * registry, if already present.
@@ -511,15 +554,15 @@ public class XMLElementAdapter extends XMLElement {
 			registry.registerLinkTarget(target1, key);
 		}
 		// complete arrow links with right labels:
-		for (int i = 0; i < mArrowLinkAdapters.size(); ++i) {
-			Object arrowObject = mArrowLinkAdapters.get(i);
+		for (int i = 0; i < pArrowLinkAdapters.size(); ++i) {
+			Object arrowObject = pArrowLinkAdapters.get(i);
 			if (arrowObject instanceof ArrowLinkTarget) {
 				ArrowLinkTarget linkTarget = (ArrowLinkTarget) arrowObject;
 				// do the same as for ArrowLinkAdapter and start to search for the source.
 				String oldId = linkTarget.getSourceLabel();
 				MindMapNode source = (MindMapNode) registry.getTargetForId(oldId);
 				// find oldId in target list:
-				if (mIdToTarget.containsKey(oldId)) {
+				if (pIdToTarget.containsKey(oldId)) {
 					// link source present in the paste as well and has probably
 					// been renamed (case I), do nothing, as the source does
 					// all.
@@ -540,7 +583,7 @@ public class XMLElementAdapter extends XMLElement {
 				// distinguish between a and b.
 				MindMapNode target = linkTarget.getTarget();
 				String targetCurrentId = registry.getLabel(target);
-				if (!mIdToTarget.containsKey(targetCurrentId)) {
+				if (!pIdToTarget.containsKey(targetCurrentId)) {
 					// the id of target has changed, we have case IIIb.
 					MindMapLink link = registry.getLinkForId(linkTarget
 							.getUniqueId());
@@ -574,10 +617,10 @@ public class XMLElementAdapter extends XMLElement {
 				NodeAdapter target = null;
 				String newId = null;
 				// find oldId in target list:
-				if (mIdToTarget.containsKey(oldId)) {
+				if (pIdToTarget.containsKey(oldId)) {
 					// link target present in the paste as well and has probably
 					// been renamed (case I)
-					target = (NodeAdapter) mIdToTarget.get(oldId);
+					target = (NodeAdapter) pIdToTarget.get(oldId);
 					newId = registry.getLabel(target);
 				} else if (registry.getTargetForId(oldId) != null) {
 					// link target remains in the map (case II)
@@ -0,0 +1,288 @@
+/*FreeMind - A Program for creating and viewing Mindmaps
+*Copyright (C) 2000-2014 Christian Foltin, Joerg Mueller, Daniel Polansky, Dimitri Polivaev and others.
+*
+*See COPYING for Details
+*
+*This program is free software; you can redistribute it and/or
+*modify it under the terms of the GNU General Public License
+*as published by the Free Software Foundation; either version 2
+*of the License, or (at your option) any later version.
+*
+*This program is distributed in the hope that it will be useful,
+*but WITHOUT ANY WARRANTY; without even the implied warranty of
+*MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+*GNU General Public License for more details.
+*
+*You should have received a copy of the GNU General Public License
+*along with this program; if not, write to the Free Software
+*Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+*/
+
+package freemind.modes;
+
+import java.awt.Font;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Vector;
+
+import freemind.main.XMLElement;
+import freemind.main.XMLParseException;
+import freemind.main.XMLPullParser;
+import freemind.modes.attributes.Attribute;
+
+/**
+ * Creates the node tree directly from the events of a {@link XMLPullParser}.
+ * The result is the same as with {@link XMLElementAdapter}, but without the
+ * intermediate element tree (only hooks get their {@link XMLElement}, as they
+ * load themselves from it).
+ */
+public class XMLStreamMapLoader {
+
+	private static final String XML_MAP = "map";
+	private static final String XML_EDGE = "edge";
+	private static final String XML_CLOUD = "cloud";
+	private static final String XML_FONT = "font";
+	private static final String XML_ICON = "icon";
+	private static final String XML_HOOK = "hook";
+	private static final String XML_ARROWLINK = "arrowlink";
+	private static final String XML_LINKTARGET = "linktarget";
+
+	private final MapFeedback mMapFeedback;
+	private final Vector<ArrowLinkAdapter> mArrowLinkAdapters = new Vector<>();
+	private final HashMap<String, NodeAdapter> mIdToTarget;
+
+	public XMLStreamMapLoader(MapFeedback pMapFeedback,
+			HashMap<String, NodeAdapter> pIdToTarget) {
+		mMapFeedback = pMapFeedback;
+		mIdToTarget = pIdToTarget;
+		if (XMLElementAdapter.logger == null) {
+			XMLElementAdapter.logger = freemind.main.Resources.getInstance()
+					.getLogger(XMLElementAdapter.class.getName());
+		}
+	}
+
+	/**
+	 * Reads one element (either a map or a node) from the reader.
+	 *
+	 * @return the (last) top level node or null, if none is present.
+	 */
+	public NodeAdapter load(Reader pReader) throws IOException,
+			XMLParseException {
+		XMLPullParser parser = new XMLPullParser(pReader);
+		if (parser.next() != XMLPullParser.START_ELEMENT) {
+			return null;
+		}
+		String name = parser.getLocalName();
+		if (XMLElementAdapter.XML_NODE.equals(name)) {
+			return readNode(parser);
+		}
+		if (!XML_MAP.equals(name)) {
+			skipElement(parser);
+			return null;
+		}
+		NodeAdapter mapChild = null;
+		int event;
+		while ((event = parser.next()) != XMLPullParser.END_ELEMENT) {
+			if (event != XMLPullParser.START_ELEMENT) {
+				continue;
+			}
+			if (XMLElementAdapter.XML_NODE.equals(parser.getLocalName())) {
+				mapChild = readNode(parser);
+			} else {
+				skipElement(parser);
+			}
+		}
+		return mapChild;
+	}
+
+	/**
+	 * Registers the link targets and the arrow links read in the registry.
+	 *
+	 * @see XMLElementAdapter#processUnfinishedLinks(MindMapLinkRegistry)
+	 */
+	public void processUnfinishedLinks(MindMapLinkRegistry pRegistry) {
+		XMLElementAdapter.processUnfinishedLinks(pRegistry, mIdToTarget,
+				mArrowLinkAdapters);
+	}
+
+	private MindMap getMap() {
+		return mMapFeedback.getMap();
+	}
+
+	/**
+	 * Precondition: the parser is at the start of a node element.
+	 * Postcondition: the parser is at its end.
+	 */
+	private NodeAdapter readNode(XMLPullParser pParser) throws IOException,
+			XMLParseException {
+		NodeAdapter node;
+		String encryptedContent = pParser
+				.getAttributeValue(XMLElementAdapter.XML_NODE_ENCRYPTED_CONTENT);
+		if (encryptedContent != null) {
+			node = getMap().createEncryptedNode(encryptedContent);
+		} else {
+			node = getMap().createNodeAdapter(getMap(), null);
+		}
+		for (int i = 0; i < pParser.getAttributeCount(); i++) {
+			String key = pParser.getAttributeName(i);
+			if (!XMLElementAdapter.XML_NODE_ENCRYPTED_CONTENT.equals(key)) {
+				XMLElementAdapter.setNodeAttribute(node, key,
+						pParser.getAttributeValue(i), mIdToTarget);
+			}
+		}
+		int event;
+		while ((event = pParser.next()) != XMLPullParser.END_ELEMENT) {
+			if (event != XMLPullParser.START_ELEMENT) {
+				continue;
+			}
+			String name = pParser.getLocalName();
+			if (XMLElementAdapter.XML_NODE.equals(name)) {
+				node.insert(readNode(pParser), -1);
+			} else if (XMLElement.XML_NODE_XHTML_CONTENT_TAG.equals(name)) {
+				String type = pParser
+						.getAttributeValue(XMLElementAdapter.XML_NODE_XHTML_TYPE_TAG);
+				String content = pParser.readRawContent();
+				pParser.next();
+				XMLElementAdapter.setRichContent(node, type, content);
+			} else if (XML_EDGE.equals(name)) {
+				EdgeAdapter edge = getMap().createEdgeAdapter(null);
+				for (int i = 0; i < pParser.getAttributeCount(); i++) {
+					XMLElementAdapter.setEdgeAttribute(edge,
+							pParser.getAttributeName(i),
+							pParser.getAttributeValue(i));
+				}
+				skipElement(pParser);
+				edge.setTarget(node);
+				node.setEdge(edge);
+			} else if (XML_CLOUD.equals(name)) {
+				CloudAdapter cloud = getMap().createCloudAdapter(null);
+				for (int i = 0; i < pParser.getAttributeCount(); i++) {
+					XMLElementAdapter.setCloudAttribute(cloud,
+							pParser.getAttributeName(i),
+							pParser.getAttributeValue(i));
+				}
+				skipElement(pParser);
+				cloud.setTarget(node);
+				node.setCloud(cloud);
+			} else if (XML_ARROWLINK.equals(name)) {
+				ArrowLinkAdapter arrowLink = getMap().createArrowLinkAdapter(
+						null, null);
+				readArrowLinkAttributes(pParser, arrowLink);
+				arrowLink.setSource(node);
+				mArrowLinkAdapters.add(arrowLink);
+			} else if (XML_LINKTARGET.equals(name)) {
+				ArrowLinkTarget arrowLinkTarget = getMap()
+						.createArrowLinkTarget(null, null);
+				readArrowLinkAttributes(pParser, arrowLinkTarget);
+				arrowLinkTarget.setTarget(node);
+				mArrowLinkAdapters.add(arrowLinkTarget);
+			} else if (XML_FONT.equals(name)) {
+				node.setFont(readFont(pParser));
+			} else if (XML_ICON.equals(name)) {
+				String iconName = pParser.getAttributeValue("BUILTIN");
+				skipElement(pParser);
+				node.addIcon(MindIcon.factory(iconName), MindIcon.LAST);
+			} else if (XMLElementAdapter.XML_NODE_ATTRIBUTE.equals(name)) {
+				Attribute attribute = new Attribute(
+						pParser.getAttributeValue("NAME"),
+						pParser.getAttributeValue("VALUE"));
+				skipElement(pParser);
+				node.addAttribute(attribute);
+			} else if (XML_HOOK.equals(name)) {
+				XMLElement xml = readXMLElement(pParser);
+				XMLElementAdapter.loadHook(mMapFeedback, node, xml);
+			} else {
+				skipElement(pParser);
+			}
+		}
+		return node;
+	}
+
+	private void readArrowLinkAttributes(XMLPullParser pParser,
+			ArrowLinkAdapter pArrowLink) throws IOException,
+			XMLParseException {
+		for (int i = 0; i < pParser.getAttributeCount(); i++) {
+			XMLElementAdapter.setArrowLinkAttribute(pArrowLink,
+					pParser.getAttributeName(i), pParser.getAttributeValue(i));
+		}
+		skipElement(pParser);
+	}
+
+	private Font readFont(XMLPullParser pParser) throws IOException,
+			XMLParseException {
+		String fontName = null;
+		int fontStyle = 0;
+		int fontSize = 0;
+		boolean fontStyleStrikethrough = false;
+		for (int i = 0; i < pParser.getAttributeCount(); i++) {
+			String key = pParser.getAttributeName(i);
+			String value = pParser.getAttributeValue(i);
+			if (key.equals("SIZE")) {
+				fontSize = Integer.parseInt(value);
+			} else if (key.equals("NAME")) {
+				fontName = value;
+			} else if (value.equals("true")) {
+				if (key.equals("BOLD")) {
+					fontStyle += Font.BOLD;
+				} else if (key.equals("ITALIC")) {
+					fontStyle += Font.ITALIC;
+				} else if (key.equals("STRIKETHROUGH")) {
+					fontStyleStrikethrough = true;
+				}
+			}
+		}
+		skipElement(pParser);
+		return XMLElementAdapter.createFont(mMapFeedback, fontName, fontStyle,
+				fontSize, fontStyleStrikethrough);
+	}
+
+	/**
+	 * Builds a (small) element tree, e.g. for hooks.
+	 */
+	private XMLElement readXMLElement(XMLPullParser pParser)
+			throws IOException, XMLParseException {
+		XMLElement element = new XMLElement();
+		String name = pParser.getLocalName();
+		element.setName(name);
+		for (int i = 0; i < pParser.getAttributeCount(); i++) {
+			element.setAttribute(pParser.getAttributeName(i),
+					pParser.getAttributeValue(i));
+		}
+		if (XMLElement.XML_NODE_XHTML_CONTENT_TAG.equals(name)) {
+			element.setContent(pParser.readRawContent());
+			pParser.next();
+			return element;
+		}
+		int event;
+		while ((event = pParser.next()) != XMLPullParser.END_ELEMENT) {
+			if (event == XMLPullParser.START_ELEMENT) {
+				element.addChild(readXMLElement(pParser));
+			} else if (event == XMLPullParser.CHARACTERS) {
+				element.setContent(pParser.getText());
+			}
+		}
+		return element;
+	}
+
+	/**
+	 * Skips the current element including all its children.
+	 */
+	private void skipElement(XMLPullParser pParser) throws IOException,
+			XMLParseException {
+		int depth = 1;
+		while (depth > 0) {
+			int event = pParser.next();
+			if (event == XMLPullParser.START_ELEMENT) {
+				if (XMLElement.XML_NODE_XHTML_CONTENT_TAG.equals(pParser
+						.getLocalName())) {
+					pParser.readRawContent();
+				}
+				depth++;
+			} else if (event == XMLPullParser.END_ELEMENT) {
+				depth--;
+			}
+		}
+	}
+
+}
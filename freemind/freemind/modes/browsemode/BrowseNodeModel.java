@@ -20,11 +20,11 @@
 
 package freemind.modes.browsemode;
 
-import java.util.LinkedList;
 
 import freemind.main.XMLElement;
 import freemind.modes.MindMap;
 import freemind.modes.NodeAdapter;
+import freemind.modes.NodeChildrenList;
 
 /**
  * This class represents a single Node of a Tree. It contains direct handles to
@@ -38,7 +38,7 @@ public class BrowseNodeModel extends NodeAdapter {
 
 	public BrowseNodeModel(Object userObject, MindMap map) {
 		super(userObject, map);
-		children = new LinkedList<>();
+		children = new NodeChildrenList();
 		setEdge(new BrowseEdgeModel(this, getMapFeedback()));
 	}
 
@@ -29,6 +29,7 @@ import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.ListIterator;
 
@@ -47,6 +48,7 @@ import freemind.main.Resources;
 import freemind.main.Tools;
 import freemind.modes.ControllerAdapter;
 import freemind.modes.FreemindAction;
+import freemind.modes.MapTextIndex;
 import freemind.modes.MindMapNode;
 
 @SuppressWarnings("serial")
@@ -73,8 +75,8 @@ public class FindAction extends FreemindAction {
 	}
 
 	public String getFindFromText() {
-		String plainNodeText = HtmlTools.htmlToPlain(findFromNode.toString())
-				.replaceAll("\n", " ");
+		String plainNodeText = findFromNode.getPlainText().replaceAll("\n",
+				" ");
 		return plainNodeText.length() <= 30 ? plainNodeText : plainNodeText
 				.substring(0, 30) + "...";
 	}
@@ -292,6 +294,19 @@ public class FindAction extends FreemindAction {
 			findNodesUnfoldedByLastFind = new ArrayList<>();
 		}
 
+		// Without case sensitivity, the text index of the map yields the
+		// matching nodes, such that the texts needn't be prepared here.
+		HashSet<MindMapNode> matchingNodes = null;
+		MapTextIndex index = caseSensitive ? null : controller.getMap()
+				.getTextIndex();
+		if (index != null) {
+			matchingNodes = new HashSet<>(index.getMatchingNodes(subterms,
+					searchInNotesToo));
+			if (matchingNodes.isEmpty()) {
+				nodes.clear();
+			}
+		}
+
 		// We implement width-first search.
 		while (!nodes.isEmpty()) {
 			MindMapNode node = (MindMapNode) nodes.removeFirst();
@@ -303,13 +318,22 @@ public class FindAction extends FreemindAction {
 			if (!node.isVisible())
 				continue;
 
+			if (matchingNodes != null) {
+				if (matchingNodes.contains(node)) {
+					return foundNode(node, nodes, subterms, caseSensitive);
+				}
+				continue;
+			}
+
 			// Bug fix for
 			// http://sourceforge.net/tracker/?func=detail&aid=3035387&group_id=7118&atid=107118
-			String nodeText = node.toString();
-			nodeText = prepareTextContent(caseSensitive, nodeText);
+			String nodeText = caseSensitive ? node.getPlainText() : node
+					.getLowerCasePlainText();
 			// End bug fix.
-			String noteText = node.getNoteText();
-			noteText = prepareTextContent(caseSensitive, noteText);
+			String noteText = node.getPlainNoteText();
+			if (!caseSensitive) {
+				noteText = noteText.toLowerCase();
+			}
 
 			boolean found = true;
 			boolean foundInNotes = false;
@@ -334,16 +358,10 @@ public class FindAction extends FreemindAction {
 				foundInNotes = true;
 			}
 			if (found) { // Found
-				displayNode(node, findNodesUnfoldedByLastFind);
-				centerNode(node);
 				if (foundInNotes) {
 					// TODO: Select text in notes window.
 				}
-				// Save the state for find next
-				this.subterms = subterms;
-				findCaseSensitive = caseSensitive;
-				findNodeQueue = nodes;
-				return true;
+				return foundNode(node, nodes, subterms, caseSensitive);
 			}
 		}
 
@@ -351,6 +369,17 @@ public class FindAction extends FreemindAction {
 		return false;
 	}
 
+	private boolean foundNode(MindMapNode node, LinkedList<MindMapNode> nodes,
+			Collection<String> subterms, boolean caseSensitive) {
+		displayNode(node, findNodesUnfoldedByLastFind);
+		centerNode(node);
+		// Save the state for find next
+		this.subterms = subterms;
+		findCaseSensitive = caseSensitive;
+		findNodeQueue = nodes;
+		return true;
+	}
+
 	public String prepareTextContent(boolean caseSensitive, String nodeText) {
 		if (nodeText == null) {
 			nodeText = "";
@@ -0,0 +1,626 @@
+/*FreeMind - A Program for creating and viewing Mindmaps
+ *Copyright (C) 2000-2014 Christian Foltin, Joerg Mueller, Daniel Polansky, Dimitri Polivaev and others.
+ *
+ *See COPYING for Details
+ *
+ *This program is free software; you can redistribute it and/or
+ *modify it under the terms of the GNU General Public License
+ *as published by the Free Software Foundation; either version 2
+ *of the License, or (at your option) any later version.
+ *
+ *This program is distributed in the hope that it will be useful,
+ *but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *GNU General Public License for more details.
+ *
+ *You should have received a copy of the GNU General Public License
+ *along with this program; if not, write to the Free Software
+ *Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package freemind.modes.filemode;
+
+import java.awt.EventQueue;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.FileVisitOption;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import freemind.main.Resources;
+import freemind.modes.MindMapNode;
+
+/**
+ * Reads the directories of a {@link FileMapModel} in the background.
+ * 
+ * The entries of a directory are listed on a listing thread and handed over
+ * to the model in batches, such that big or slow (network) directories
+ * neither block the user interface nor show up only at the very end. The
+ * sizes of the listed sub directories are summed up in parallel and shown in
+ * their tool tips. Every loaded directory is watched, created, deleted and
+ * changed entries are applied to the map as they are reported.
+ * 
+ * The model is only changed on the event dispatch thread.
+ */
+class DirectoryLoader {
+
+	/** Number of directory entries inserted into the map at once. */
+	static final int BATCH_SIZE = 256;
+
+	private static Logger logger = null;
+
+	private final FileMapModel mMap;
+	private final ExecutorService mListingExecutor;
+	private final ExecutorService mAggregateExecutor;
+	/** Directory node for the watch key, filled by the listing thread. */
+	private final Map<WatchKey, FileNodeModel> mWatchedDirectories = new ConcurrentHashMap<>();
+	/**
+	 * Directories that are being listed with the names reported deleted in
+	 * the meantime. Only accessed by the event dispatch thread.
+	 */
+	private final HashMap<FileNodeModel, HashSet<String>> mDeletedWhileListing = new HashMap<>();
+	private WatchService mWatchService;
+	private boolean mWatchServiceUnavailable = false;
+	private volatile boolean mClosed = false;
+
+	/**
+	 * Attributes of a directory entry as read by the listing or the watch
+	 * thread.
+	 */
+	static class FileEntry {
+		final File mFile;
+		final boolean mIsFile;
+		final long mSize;
+		final long mLastModified;
+
+		FileEntry(File pFile, boolean pIsFile, long pSize, long pLastModified) {
+			mFile = pFile;
+			mIsFile = pIsFile;
+			mSize = pSize;
+			mLastModified = pLastModified;
+		}
+
+		String getName() {
+			return mFile.getName();
+		}
+	}
+
+	DirectoryLoader(FileMapModel pMap) {
+		if (logger == null) {
+			logger = Resources.getInstance().getLogger(
+					this.getClass().getName());
+		}
+		mMap = pMap;
+		mListingExecutor = Executors.newSingleThreadExecutor(new DaemonThreadFactory(
+				"FileModeLister", Thread.NORM_PRIORITY));
+		mAggregateExecutor = Executors.newFixedThreadPool(Math.max(2, Runtime
+				.getRuntime().availableProcessors()), new DaemonThreadFactory(
+				"FileModeSizes", Thread.MIN_PRIORITY));
+	}
+
+	private static class DaemonThreadFactory implements ThreadFactory {
+		private final String mName;
+		private final int mPriority;
+		private final AtomicInteger mCount = new AtomicInteger();
+
+		DaemonThreadFactory(String pName, int pPriority) {
+			mName = pName;
+			mPriority = pPriority;
+		}
+
+		public Thread newThread(Runnable pRunnable) {
+			Thread thread = new Thread(pRunnable, mName + "-"
+					+ mCount.incrementAndGet());
+			thread.setDaemon(true);
+			thread.setPriority(mPriority);
+			return thread;
+		}
+	}
+
+	/**
+	 * Starts reading the entries of the directory. The children are inserted
+	 * into pDirectory as they are read. Must be called on the event dispatch
+	 * thread.
+	 */
+	void load(final FileNodeModel pDirectory) {
+		if (mClosed) {
+			return;
+		}
+		final Path path = pDirectory.getFile().toPath();
+		mDeletedWhileListing.put(pDirectory, new HashSet<String>());
+		mListingExecutor.execute(new Runnable() {
+			public void run() {
+				watch(pDirectory, path);
+				list(pDirectory, path);
+			}
+		});
+	}
+
+	/**
+	 * @return true, if a directory is still being listed. Must be called on
+	 *         the event dispatch thread.
+	 */
+	boolean isLoading() {
+		return !mDeletedWhileListing.isEmpty();
+	}
+
+	/**
+	 * Stops all threads. Entries that are still read are discarded.
+	 */
+	void close() {
+		mClosed = true;
+		mListingExecutor.shutdownNow();
+		mAggregateExecutor.shutdownNow();
+		synchronized (this) {
+			if (mWatchService != null) {
+				try {
+					mWatchService.close();
+				} catch (IOException e) {
+					logger.fine("Closing the watch service failed: " + e);
+				}
+			}
+		}
+		mWatchedDirectories.clear();
+	}
+
+	//
+	// Listing thread
+	//
+
+	private void list(final FileNodeModel pDirectory, Path pPath) {
+		List<FileEntry> batch = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(pPath)) {
+			for (Path path : stream) {
+				if (mClosed) {
+					return;
+				}
+				FileEntry entry = readEntry(path);
+				if (entry == null) {
+					continue;
+				}
+				batch.add(entry);
+				if (batch.size() >= BATCH_SIZE) {
+					postEntries(pDirectory, batch);
+					batch = new ArrayList<>();
+				}
+			}
+		} catch (IOException | DirectoryIteratorException | SecurityException e) {
+			logger.fine("Can't list " + pPath + ": " + e);
+		}
+		final List<FileEntry> lastBatch = batch;
+		EventQueue.invokeLater(new Runnable() {
+			public void run() {
+				if (isLoaded(pDirectory)) {
+					addListedEntries(pDirectory, lastBatch);
+					for (MindMapNode child : pDirectory.getChildren()) {
+						computeAggregates((FileNodeModel) child);
+					}
+				}
+				mDeletedWhileListing.remove(pDirectory);
+			}
+		});
+	}
+
+	private void postEntries(final FileNodeModel pDirectory,
+			final List<FileEntry> pEntries) {
+		EventQueue.invokeLater(new Runnable() {
+			public void run() {
+				if (isLoaded(pDirectory)) {
+					addListedEntries(pDirectory, pEntries);
+				}
+			}
+		});
+	}
+
+	/**
+	 * @return the attributes of the entry or null, if it is hidden.
+	 */
+	static FileEntry readEntry(Path pPath) {
+		try {
+			if (Files.isHidden(pPath)) {
+				return null;
+			}
+		} catch (IOException | SecurityException e) {
+			// show it.
+		}
+		BasicFileAttributes attributes;
+		try {
+			attributes = Files.readAttributes(pPath, BasicFileAttributes.class);
+		} catch (IOException | SecurityException e) {
+			try {
+				// dangling link:
+				attributes = Files.readAttributes(pPath,
+						BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+			} catch (IOException | SecurityException e2) {
+				return new FileEntry(pPath.toFile(), true, 0, 0);
+			}
+		}
+		return new FileEntry(pPath.toFile(), !attributes.isDirectory(),
+				attributes.size(), attributes.lastModifiedTime().toMillis());
+	}
+
+	//
+	// Watching
+	//
+
+	/**
+	 * Registers the directory at the watch service. This is done before the
+	 * directory is listed, such that no change gets lost in between.
+	 */
+	private void watch(FileNodeModel pDirectory, Path pPath) {
+		WatchService watchService = getWatchService();
+		if (watchService == null) {
+			return;
+		}
+		try {
+			WatchKey key = pPath.register(watchService,
+					StandardWatchEventKinds.ENTRY_CREATE,
+					StandardWatchEventKinds.ENTRY_DELETE,
+					StandardWatchEventKinds.ENTRY_MODIFY);
+			mWatchedDirectories.put(key, pDirectory);
+			pDirectory.setWatchKey(key);
+		} catch (IOException | UnsupportedOperationException
+				| SecurityException | ClosedWatchServiceException e) {
+			logger.fine("Can't watch " + pPath + ": " + e);
+		}
+	}
+
+	private synchronized WatchService getWatchService() {
+		if (mWatchService == null && !mWatchServiceUnavailable && !mClosed) {
+			try {
+				mWatchService = mMap.getRootFile().toPath().getFileSystem()
+						.newWatchService();
+				Thread watchThread = new DaemonThreadFactory("FileModeWatcher",
+						Thread.NORM_PRIORITY).newThread(new Runnable() {
+					public void run() {
+						processWatchEvents(mWatchService);
+					}
+				});
+				watchThread.start();
+			} catch (IOException | UnsupportedOperationException e) {
+				logger.info("File mode can't watch for changes: " + e);
+				mWatchServiceUnavailable = true;
+			}
+		}
+		return mWatchService;
+	}
+
+	private void processWatchEvents(WatchService pWatchService) {
+		while (!mClosed) {
+			WatchKey key;
+			try {
+				key = pWatchService.take();
+			} catch (InterruptedException | ClosedWatchServiceException e) {
+				return;
+			}
+			boolean overflow = false;
+			LinkedHashSet<Path> changedPaths = new LinkedHashSet<>();
+			Path directoryPath = (Path) key.watchable();
+			for (WatchEvent<?> event : key.pollEvents()) {
+				if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+					overflow = true;
+				} else {
+					changedPaths.add(directoryPath.resolve((Path) event
+							.context()));
+				}
+			}
+			final FileNodeModel directory = mWatchedDirectories.get(key);
+			if (!key.reset()) {
+				// the directory itself is gone, its parent reports that.
+				mWatchedDirectories.remove(key);
+				continue;
+			}
+			if (directory == null) {
+				continue;
+			}
+			if (overflow) {
+				// events are lost, compare with a fresh listing.
+				final List<FileEntry> entries = new ArrayList<>();
+				try (DirectoryStream<Path> stream = Files
+						.newDirectoryStream(directoryPath)) {
+					for (Path path : stream) {
+						FileEntry entry = readEntry(path);
+						if (entry != null) {
+							entries.add(entry);
+						}
+					}
+				} catch (IOException | DirectoryIteratorException
+						| SecurityException e) {
+					logger.fine("Can't list " + directoryPath + ": " + e);
+					continue;
+				}
+				EventQueue.invokeLater(new Runnable() {
+					public void run() {
+						if (isLoaded(directory)) {
+							synchronizeEntries(directory, entries);
+						}
+					}
+				});
+				continue;
+			}
+			// read the state now, the order of the events doesn't matter.
+			final List<FileEntry> changed = new ArrayList<>();
+			final List<String> deleted = new ArrayList<>();
+			for (Path path : changedPaths) {
+				FileEntry entry = null;
+				if (Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+					entry = readEntry(path);
+				}
+				if (entry != null) {
+					changed.add(entry);
+				} else {
+					deleted.add(path.getFileName().toString());
+				}
+			}
+			EventQueue.invokeLater(new Runnable() {
+				public void run() {
+					if (isLoaded(directory)) {
+						removeEntries(directory, deleted);
+						updateEntries(directory, changed);
+					}
+				}
+			});
+		}
+	}
+
+	//
+	// Event dispatch thread
+	//
+
+	/**
+	 * @return true, if the node is still part of the map.
+	 */
+	private boolean isLoaded(FileNodeModel pNode) {
+		return !mClosed && pNode.isDescendantOfOrEqual(mMap.getRootNode());
+	}
+
+	/**
+	 * Adds the entries of a listing, except the ones that were reported
+	 * deleted after the listing has read them.
+	 */
+	private void addListedEntries(FileNodeModel pDirectory,
+			List<FileEntry> pEntries) {
+		HashSet<String> deleted = mDeletedWhileListing.get(pDirectory);
+		if (deleted != null && !deleted.isEmpty()) {
+			List<FileEntry> entries = new ArrayList<>();
+			for (FileEntry entry : pEntries) {
+				if (!deleted.contains(entry.getName())) {
+					entries.add(entry);
+				}
+			}
+			pEntries = entries;
+		}
+		addEntries(pDirectory, pEntries);
+	}
+
+	private void addEntries(FileNodeModel pDirectory, List<FileEntry> pEntries) {
+		if (pEntries.isEmpty()) {
+			return;
+		}
+		boolean isRoot = pDirectory.isRoot();
+		int rightCount = 0;
+		if (isRoot) {
+			for (MindMapNode child : pDirectory.getChildren()) {
+				if (!child.isLeft()) {
+					rightCount++;
+				}
+			}
+		}
+		int[] indices = new int[pEntries.size()];
+		int count = 0;
+		for (FileEntry entry : pEntries) {
+			if (pDirectory.getChild(entry.getName()) != null) {
+				// already reported by the watch service.
+				continue;
+			}
+			FileNodeModel node = new FileNodeModel(entry.mFile, entry.mIsFile,
+					mMap);
+			// balance the children of the root like isNewChildLeft does:
+			boolean left = isRoot ? rightCount > pDirectory.getChildCount() / 2
+					: pDirectory.isLeft();
+			if (!left) {
+				rightCount++;
+			}
+			node.setLeft(left);
+			if (entry.mIsFile) {
+				node.setFileInfo(entry.mSize, entry.mLastModified);
+			}
+			indices[count++] = pDirectory.getChildCount();
+			pDirectory.insert(node, pDirectory.getChildCount());
+		}
+		if (count > 0) {
+			int[] insertedIndices = new int[count];
+			System.arraycopy(indices, 0, insertedIndices, 0, count);
+			mMap.nodesWereInserted(pDirectory, insertedIndices);
+		}
+	}
+
+	private void removeEntries(FileNodeModel pDirectory, List<String> pNames) {
+		HashSet<String> deletedWhileListing = mDeletedWhileListing
+				.get(pDirectory);
+		for (String name : pNames) {
+			if (deletedWhileListing != null) {
+				deletedWhileListing.add(name);
+			}
+			FileNodeModel child = pDirectory.getChild(name);
+			if (child != null) {
+				unload(child);
+				mMap.removeNodeFromParent(child);
+			}
+		}
+	}
+
+	private void updateEntries(FileNodeModel pDirectory, List<FileEntry> pEntries) {
+		List<FileEntry> added = new ArrayList<>();
+		List<FileNodeModel> addedDirectories = new ArrayList<>();
+		HashSet<String> deletedWhileListing = mDeletedWhileListing
+				.get(pDirectory);
+		for (FileEntry entry : pEntries) {
+			if (deletedWhileListing != null) {
+				// created again.
+				deletedWhileListing.remove(entry.getName());
+			}
+			FileNodeModel child = pDirectory.getChild(entry.getName());
+			if (child != null && child.isLeaf() != entry.mIsFile) {
+				// replaced by an entry of the other kind.
+				unload(child);
+				mMap.removeNodeFromParent(child);
+				child = null;
+			}
+			if (child == null) {
+				added.add(entry);
+			} else if (entry.mIsFile) {
+				child.setFileInfo(entry.mSize, entry.mLastModified);
+				mMap.nodeRefresh(child);
+			} else {
+				computeAggregates(child);
+			}
+		}
+		addEntries(pDirectory, added);
+		for (FileEntry entry : added) {
+			FileNodeModel child = pDirectory.getChild(entry.getName());
+			if (child != null && !entry.mIsFile) {
+				addedDirectories.add(child);
+			}
+		}
+		for (FileNodeModel directory : addedDirectories) {
+			computeAggregates(directory);
+		}
+	}
+
+	private void synchronizeEntries(FileNodeModel pDirectory,
+			List<FileEntry> pEntries) {
+		HashSet<String> names = new HashSet<>();
+		for (FileEntry entry : pEntries) {
+			names.add(entry.getName());
+		}
+		List<String> deleted = new ArrayList<>();
+		for (MindMapNode child : pDirectory.getChildren()) {
+			String name = ((FileNodeModel) child).getFile().getName();
+			if (!names.contains(name)) {
+				deleted.add(name);
+			}
+		}
+		removeEntries(pDirectory, deleted);
+		updateEntries(pDirectory, pEntries);
+	}
+
+	/**
+	 * Stops watching and summing up the removed sub tree.
+	 */
+	private void unload(FileNodeModel pNode) {
+		pNode.setAggregatesCancelled(true);
+		WatchKey key = pNode.getWatchKey();
+		if (key != null) {
+			key.cancel();
+			mWatchedDirectories.remove(key);
+		}
+		for (MindMapNode child : pNode.getChildren()) {
+			unload((FileNodeModel) child);
+		}
+	}
+
+	/**
+	 * Sums up size, number of files and last modification of the directory
+	 * on the aggregate threads and shows the result in its tool tip.
+	 */
+	private void computeAggregates(final FileNodeModel pDirectory) {
+		if (pDirectory.isLeaf() || pDirectory.isAggregatePending()) {
+			return;
+		}
+		pDirectory.setAggregatePending(true);
+		final Path path = pDirectory.getFile().toPath();
+		mAggregateExecutor.execute(new Runnable() {
+			public void run() {
+				final long[] result = sumUp(pDirectory, path);
+				EventQueue.invokeLater(new Runnable() {
+					public void run() {
+						pDirectory.setAggregatePending(false);
+						if (result != null && isLoaded(pDirectory)) {
+							pDirectory.setDirectoryInfo(result[0], result[1],
+									result[2]);
+							mMap.nodeRefresh(pDirectory);
+						}
+					}
+				});
+			}
+		});
+	}
+
+	/**
+	 * @return size, last modification and number of files below the path or
+	 *         null, if this was cancelled.
+	 */
+	private long[] sumUp(final FileNodeModel pDirectory, Path pPath) {
+		final long[] result = new long[3];
+		SimpleFileVisitor<Path> visitor = new SimpleFileVisitor<Path>() {
+			public FileVisitResult preVisitDirectory(Path pDir,
+					BasicFileAttributes pAttributes) {
+				if (isCancelled(pDirectory)) {
+					return FileVisitResult.TERMINATE;
+				}
+				result[1] = Math.max(result[1], pAttributes.lastModifiedTime()
+						.toMillis());
+				return FileVisitResult.CONTINUE;
+			}
+
+			public FileVisitResult visitFile(Path pFile,
+					BasicFileAttributes pAttributes) {
+				if (isCancelled(pDirectory)) {
+					return FileVisitResult.TERMINATE;
+				}
+				result[0] += pAttributes.size();
+				result[1] = Math.max(result[1], pAttributes.lastModifiedTime()
+						.toMillis());
+				result[2]++;
+				return FileVisitResult.CONTINUE;
+			}
+
+			public FileVisitResult visitFileFailed(Path pFile, IOException pExc) {
+				return FileVisitResult.CONTINUE;
+			}
+
+			public FileVisitResult postVisitDirectory(Path pDir,
+					IOException pExc) {
+				return FileVisitResult.CONTINUE;
+			}
+		};
+		try {
+			Files.walkFileTree(pPath, EnumSet.noneOf(FileVisitOption.class),
+					Integer.MAX_VALUE, visitor);
+		} catch (IOException | SecurityException e) {
+			logger.fine("Can't sum up " + pPath + ": " + e);
+		}
+		return isCancelled(pDirectory) ? null : result;
+	}
+
+	private boolean isCancelled(FileNodeModel pDirectory) {
+		return mClosed || pDirectory.isAggregatesCancelled()
+				|| Thread.currentThread().isInterrupted();
+	}
+
+}
@@ -30,6 +30,7 @@ import freemind.modes.ArrowLinkTarget;
 import freemind.modes.CloudAdapter;
 import freemind.modes.EdgeAdapter;
 import freemind.modes.MapAdapter;
+import freemind.modes.MapFeedback;
 import freemind.modes.MindMap;
 import freemind.modes.MindMapLinkRegistry;
 import freemind.modes.MindMapNode;
@@ -40,6 +41,8 @@ import freemind.modes.NodeAdapter;
 public class FileMapModel extends MapAdapter {
 
 	private MindMapLinkRegistry linkRegistry;
+	private final File mRootFile;
+	private final DirectoryLoader mDirectoryLoader;
 
 	//
 	// Constructors
@@ -51,7 +54,13 @@ public class FileMapModel extends MapAdapter {
 
 	public FileMapModel(File root, FreeMindMain frame,
 			ModeController modeController) {
-		super(modeController);
+		this(root, modeController);
+	}
+
+	public FileMapModel(File root, MapFeedback pMapFeedback) {
+		super(pMapFeedback);
+		mRootFile = root;
+		mDirectoryLoader = new DirectoryLoader(this);
 		setRoot(new FileNodeModel(root, this));
 		getRootNode().setFolded(false);
 		linkRegistry = new MindMapLinkRegistry();
@@ -64,6 +73,22 @@ public class FileMapModel extends MapAdapter {
 		return linkRegistry;
 	}
 
+	File getRootFile() {
+		return mRootFile;
+	}
+
+	DirectoryLoader getDirectoryLoader() {
+		return mDirectoryLoader;
+	}
+
+	/**
+	 * @return true, if directories are still being read. Must be called on
+	 *         the event dispatch thread.
+	 */
+	public boolean isLoading() {
+		return mDirectoryLoader.isLoading();
+	}
+
 	//
 	// Other methods
 	//
@@ -82,6 +107,7 @@ public class FileMapModel extends MapAdapter {
 		 */
 		// super.destroy();
 		cancelFileChangeObservationTimer();
+		mDirectoryLoader.close();
 	}
 
 	public boolean isSaved() {
@@ -23,32 +23,50 @@ package freemind.modes.filemode;
 import java.awt.Color;
 import java.io.File;
 import java.net.MalformedURLException;
+import java.nio.file.WatchKey;
 import java.util.Collections;
-import java.util.LinkedList;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.ListIterator;
 
+import javax.swing.tree.MutableTreeNode;
+
+import freemind.main.Resources;
 import freemind.main.Tools;
 import freemind.modes.MindMap;
 import freemind.modes.MindMapNode;
 import freemind.modes.NodeAdapter;
+import freemind.modes.NodeChildrenList;
 
 /**
  * This class represents a single Node of a Tree. It contains direct handles to
  * its parent and children and to its view.
  */
 public class FileNodeModel extends NodeAdapter {
+	private static final String TOOLTIP_FILE_INFO = "file_info";
 	private File file;
+	private final boolean mIsFile;
 	private Color color;
+	/** The loaded children by their file name. */
+	private HashMap<String, FileNodeModel> mChildrenByName = new HashMap<>();
+	private volatile WatchKey mWatchKey;
+	private volatile boolean mAggregatesCancelled = false;
+	private boolean mAggregatePending = false;
 
 	//
 	// Constructors
 	//
 
 	public FileNodeModel(File file, MindMap map) {
+		this(file, file.isFile(), map);
+	}
+
+	FileNodeModel(File file, boolean pIsFile, MindMap map) {
 		super(null, map);
 		setEdge(new FileEdgeModel(this, getMapFeedback()));
 		this.file = file;
-		setFolded(!file.isFile());
+		mIsFile = pIsFile;
+		setFolded(!pIsFile);
 	}
 
 	// Overwritten get Methods
@@ -109,7 +127,7 @@ public class FileNodeModel extends NodeAdapter {
 	}
 
 	public boolean hasChildren() {
-		return !file.isFile() || (children != null && !children.isEmpty());
+		return !mIsFile || (children != null && !children.isEmpty());
 	}
 
 	/**
@@ -126,34 +144,86 @@ public class FileNodeModel extends NodeAdapter {
 	}
 
 	public ListIterator<MindMapNode> childrenUnfolded() {
-		if (children != null) {
-			return children.listIterator();
-		}
-		// Create new nodes by reading children from file system
-		try {
-			String[] files = file.list();
-			if (files != null) {
-				children = new LinkedList<>();
-
-				String path = file.getPath();
-				for (int i = 0; i < files.length; i++) {
-					File childFile = new File(path, files[i]);
-					if (!childFile.isHidden()) {
-						final FileNodeModel fileNodeModel = new FileNodeModel(
-								childFile, getMap());
-						fileNodeModel.setLeft(isNewChildLeft());
-						insert(fileNodeModel, getChildCount());
-					}
-				}
+		if (children == null) {
+			// the children are read in the background and inserted as they
+			// come in.
+			children = new NodeChildrenList();
+			if (!mIsFile && getMap() instanceof FileMapModel) {
+				((FileMapModel) getMap()).getDirectoryLoader().load(this);
 			}
-		} catch (SecurityException se) {
 		}
-		// return children.listIterator();
-		return children != null ? children.listIterator() : Collections.<MindMapNode>emptyListIterator();
+		return children.listIterator();
+	}
+
+	public void insert(MutableTreeNode child, int index) {
+		super.insert(child, index);
+		FileNodeModel childNode = (FileNodeModel) child;
+		mChildrenByName.put(childNode.getFile().getName(), childNode);
+	}
+
+	public void remove(int index) {
+		forget((FileNodeModel) children.get(index));
+		super.remove(index);
+	}
+
+	public void remove(MutableTreeNode node) {
+		forget((FileNodeModel) node);
+		super.remove(node);
+	}
+
+	private void forget(FileNodeModel pChild) {
+		String name = pChild.getFile().getName();
+		if (mChildrenByName.get(name) == pChild) {
+			mChildrenByName.remove(name);
+		}
+	}
+
+	/**
+	 * @return the loaded child with that file name or null.
+	 */
+	FileNodeModel getChild(String pName) {
+		return mChildrenByName.get(pName);
+	}
+
+	void setFileInfo(long pSize, long pLastModified) {
+		setToolTip(TOOLTIP_FILE_INFO, Resources.getInstance().format(
+				"file_mode_file_info",
+				new Object[] { Long.valueOf(pSize), new Date(pLastModified) }));
+	}
+
+	void setDirectoryInfo(long pSize, long pLastModified, long pFileCount) {
+		setToolTip(TOOLTIP_FILE_INFO, Resources.getInstance().format(
+				"file_mode_directory_info",
+				new Object[] { Long.valueOf(pSize), new Date(pLastModified),
+						Long.valueOf(pFileCount) }));
+	}
+
+	WatchKey getWatchKey() {
+		return mWatchKey;
+	}
+
+	void setWatchKey(WatchKey pWatchKey) {
+		mWatchKey = pWatchKey;
+	}
+
+	boolean isAggregatesCancelled() {
+		return mAggregatesCancelled;
+	}
+
+	void setAggregatesCancelled(boolean pAggregatesCancelled) {
+		mAggregatesCancelled = pAggregatesCancelled;
+	}
+
+	boolean isAggregatePending() {
+		return mAggregatePending;
+	}
+
+	void setAggregatePending(boolean pAggregatePending) {
+		mAggregatePending = pAggregatePending;
 	}
 
 	public boolean isLeaf() {
-		return file.isFile();
+		return mIsFile;
 	}
 
 	public String getLink() {
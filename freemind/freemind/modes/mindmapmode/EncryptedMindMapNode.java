@@ -32,7 +32,6 @@ import javax.swing.tree.MutableTreeNode;
 import freemind.main.HtmlTools;
 import freemind.main.Tools;
 import freemind.main.Tools.SingleDesEncrypter;
-import freemind.main.XMLElement;
 import freemind.modes.MapAdapter;
 import freemind.modes.MindIcon;
 import freemind.modes.MindMap;
@@ -296,10 +295,11 @@ public class EncryptedMindMapNode extends MindMapNodeModel {
      *  
      */
 
-	public XMLElement save(Writer writer, MindMapLinkRegistry registry,
+	public void save(Writer writer, MindMapLinkRegistry registry,
 			boolean saveHidden, boolean saveChildren) throws IOException {
 		if (isStoringEncryptedContent()) {
-			return super.save(writer, registry, saveHidden, saveChildren);
+			super.save(writer, registry, saveHidden, saveChildren);
+			return;
 		}
 		if (isDecrypted) {
 			if (!isAccessible()) {
@@ -312,13 +312,11 @@ public class EncryptedMindMapNode extends MindMapNodeModel {
 		}
 		boolean oldIsVisible = isAccessible();
 		setAccessible(false);
-		XMLElement ret = null;
 		try {
-			ret = super.save(writer, registry, saveHidden, saveChildren);
+			super.save(writer, registry, saveHidden, saveChildren);
 		} finally {
 			setAccessible(oldIsVisible);
 		}
-		return ret;
 	}
 
 	/**
@@ -0,0 +1,569 @@
+/*FreeMind - A Program for creating and viewing Mindmaps
+ *Copyright (C) 2000-2014 Christian Foltin, Joerg Mueller, Daniel Polansky, Dimitri Polivaev and others.
+ *
+ *See COPYING for Details
+ *
+ *This program is free software; you can redistribute it and/or
+ *modify it under the terms of the GNU General Public License
+ *as published by the Free Software Foundation; either version 2
+ *of the License, or (at your option) any later version.
+ *
+ *This program is distributed in the hope that it will be useful,
+ *but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *GNU General Public License for more details.
+ *
+ *You should have received a copy of the GNU General Public License
+ *along with this program; if not, write to the Free Software
+ *Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package freemind.modes.mindmapmode;
+
+import java.awt.Font;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URL;
+import java.text.DateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringTokenizer;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import javax.swing.JPanel;
+import javax.xml.transform.Result;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.stream.StreamResult;
+
+import tests.freemind.FreeMindMainMock;
+import freemind.main.Resources;
+import freemind.main.Tools;
+import freemind.main.XsltTemplateCache;
+import freemind.modes.MapAdapter;
+import freemind.modes.MindIcon;
+import freemind.modes.MindMap;
+import freemind.modes.MindMapNode;
+import freemind.modes.NodeAdapter;
+import freemind.view.mindmapview.IndependantMapViewCreator;
+import freemind.view.mindmapview.MapView;
+import freemind.view.mindmapview.TiledMapRenderer;
+
+/**
+ * Exports maps without a user interface, e.g. for a nightly publication.
+ * The maps are loaded and exported in parallel, the compiled stylesheets and
+ * the fonts are shared between all maps. Creating and painting the image
+ * views is serialized, as their layouts are shared singletons.
+ * 
+ * Usage: java -cp lib/freemind.jar
+ * freemind.modes.mindmapmode.MapBatchExporter [-threads n] [-formats
+ * html,odt,...] [-out directory] &lt;map or directory&gt;...
+ */
+public class MapBatchExporter {
+
+	public static final String FORMAT_HTML = "html";
+	public static final String FORMAT_XHTML = "xhtml";
+	public static final String FORMAT_ODT = "odt";
+	public static final String FORMAT_OPML = "opml";
+	public static final String FORMAT_TEXT = "txt";
+	public static final String FORMAT_PNG = "png";
+	public static final String FORMAT_DEEP_ZOOM = TiledMapRenderer.DEEP_ZOOM_EXTENSION;
+	public static final String[] FORMATS = new String[] { FORMAT_HTML,
+			FORMAT_XHTML, FORMAT_ODT, FORMAT_OPML, FORMAT_TEXT, FORMAT_PNG,
+			FORMAT_DEEP_ZOOM };
+	public static final String DEFAULT_FORMATS = FORMAT_HTML;
+
+	/** The same files as accessories/plugins/ExportToOoWriter.xml. */
+	private static final String ODT_FILES = "accessories/mm2oowriter.xsl->content.xml,accessories/mm2oowriter.manifest.xsl->META-INF/manifest.xml,accessories/mm2oowriter.mimetype.xsl->mimetype,accessories/mm2oowriterStyles.xml->styles.xml";
+	/** The same files as the xhtml export in accessories/plugins/ExportWithXSLT.xml. */
+	private static final String XHTML_FILES_TO_COPY = "marktree.js,minus.png,plus.png,ilink.png,treestyles.css,map_location.png";
+	private static final String ACCESSORIES_PREFIX = "accessories/";
+
+	private static final Object sViewLock = new Object();
+	private static final Map<String, Font> sFonts = new ConcurrentHashMap<>();
+
+	private final int mThreads;
+	private final List<String> mFormats;
+	private final PrintStream mProgress;
+	private final AtomicInteger mExported = new AtomicInteger();
+	private final AtomicInteger mFailed = new AtomicInteger();
+
+	public MapBatchExporter(int pThreads, List<String> pFormats,
+			PrintStream pProgress) {
+		for (String format : pFormats) {
+			if (!isFormat(format)) {
+				throw new IllegalArgumentException("Unknown format " + format);
+			}
+		}
+		mThreads = Math.max(1, pThreads);
+		mFormats = pFormats;
+		mProgress = pProgress;
+	}
+
+	public static void main(String[] args) {
+		System.setProperty("java.awt.headless", "true");
+		int threads = Runtime.getRuntime().availableProcessors();
+		String formats = DEFAULT_FORMATS;
+		File outputDirectory = null;
+		Vector<File> arguments = new Vector<>();
+		try {
+			for (int i = 0; i < args.length; i++) {
+				if ("-threads".equals(args[i]) && i + 1 < args.length) {
+					threads = Integer.parseInt(args[++i]);
+				} else if ("-formats".equals(args[i]) && i + 1 < args.length) {
+					formats = args[++i];
+				} else if ("-out".equals(args[i]) && i + 1 < args.length) {
+					outputDirectory = new File(args[++i]);
+				} else {
+					arguments.add(new File(args[i]));
+				}
+			}
+		} catch (NumberFormatException e) {
+			arguments.clear();
+		}
+		Vector<String> formatList = new Vector<>();
+		StringTokenizer tokenizer = new StringTokenizer(formats, ",");
+		while (tokenizer.hasMoreTokens()) {
+			String format = tokenizer.nextToken().trim();
+			if (!isFormat(format)) {
+				arguments.clear();
+				break;
+			}
+			formatList.add(format);
+		}
+		LinkedHashMap<File, File> maps = new LinkedHashMap<>();
+		for (File argument : arguments) {
+			collectMaps(argument, outputDirectory, maps);
+		}
+		if (maps.isEmpty()) {
+			System.out
+					.println("Export maps without user interface.\nUsage:\n java -cp lib/freemind.jar freemind.modes.mindmapmode.MapBatchExporter [-threads n] [-formats "
+							+ String.join(",", FORMATS)
+							+ "] [-out <directory>] <map or directory>...");
+			System.exit(0);
+		}
+		new FreeMindMainMock();
+		MapBatchExporter exporter = new MapBatchExporter(threads, formatList,
+				System.out);
+		try {
+			exporter.export(maps);
+		} catch (Exception e) {
+			Resources.getInstance().logException(e);
+			System.err.println("Error.");
+			System.exit(1);
+		}
+		System.exit(exporter.getFailedCount() > 0 ? 1 : 0);
+	}
+
+	public static boolean isFormat(String pFormat) {
+		for (String format : FORMATS) {
+			if (format.equals(pFormat)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Adds the given map or all maps below the given directory together with
+	 * the base name of their exports. Without output directory, the exports
+	 * are placed beside the maps, otherwise the directory structure below
+	 * pFile is repeated in the output directory.
+	 */
+	public static void collectMaps(File pFile, File pOutputDirectory,
+			Map<File, File> pMaps) {
+		Vector<File> maps = new Vector<>();
+		MapVersionUpgrader.collectMaps(pFile, maps);
+		for (File map : maps) {
+			String baseName = Tools.removeExtension(map.getName());
+			File target;
+			if (pOutputDirectory == null) {
+				target = new File(map.getParentFile(), baseName);
+			} else if (pFile.isDirectory()) {
+				String relative = pFile.toPath()
+						.relativize(map.getParentFile().toPath()).toString();
+				target = new File(new File(pOutputDirectory, relative),
+						baseName);
+			} else {
+				target = new File(pOutputDirectory, baseName);
+			}
+			pMaps.put(map, target);
+		}
+	}
+
+	/**
+	 * Exports all given maps and blocks until they are done.
+	 * 
+	 * @param pMaps
+	 *            maps each map file to the base name of its exports, the
+	 *            extension of the format is appended.
+	 */
+	public void export(Map<File, File> pMaps) throws IOException,
+			InterruptedException {
+		// compile the stylesheets once and fail early if one is broken:
+		for (String format : mFormats) {
+			for (String stylesheet : getStylesheets(format)) {
+				URL url = getResource(stylesheet);
+				try {
+					XsltTemplateCache.getTemplates(url);
+				} catch (TransformerConfigurationException e) {
+					throw new IOException(e);
+				}
+			}
+		}
+		long start = System.currentTimeMillis();
+		final int total = pMaps.size();
+		final AtomicInteger done = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(mThreads);
+		for (final Map.Entry<File, File> entry : pMaps.entrySet()) {
+			executor.execute(new Runnable() {
+				public void run() {
+					long mapStart = System.currentTimeMillis();
+					StringBuilder timings = new StringBuilder();
+					String state;
+					try {
+						if (exportMap(entry.getKey(), entry.getValue(),
+								timings)) {
+							mExported.incrementAndGet();
+							state = "exported";
+						} else {
+							mFailed.incrementAndGet();
+							state = "failed";
+						}
+					} catch (Exception e) {
+						mFailed.incrementAndGet();
+						state = "failed (" + e + ")";
+					}
+					mProgress.println("[" + done.incrementAndGet() + "/"
+							+ total + "] " + entry.getKey() + ": " + state
+							+ " in " + (System.currentTimeMillis() - mapStart)
+							+ " ms" + timings);
+				}
+			});
+		}
+		executor.shutdown();
+		executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		mProgress.println(mExported.get() + " exported, " + mFailed.get()
+				+ " failed in " + (System.currentTimeMillis() - start)
+				+ " ms.");
+	}
+
+	/**
+	 * Exports a single map into all formats. A failing format doesn't stop
+	 * the others.
+	 * 
+	 * @param pTimings
+	 *            receives the duration of each step.
+	 * @return false, if a format failed.
+	 */
+	public boolean exportMap(File pMap, File pTargetBase,
+			StringBuilder pTimings) throws Exception {
+		long start = System.currentTimeMillis();
+		BatchMapFeedback feedback = new BatchMapFeedback();
+		MindMapMapModel map = new MindMapMapModel(feedback);
+		feedback.mMap = map;
+		Tools.FileReaderCreator readerCreator = new Tools.FileReaderCreator(
+				pMap);
+		Reader reader;
+		if (MapAdapter.hasActualVersion(readerCreator)) {
+			reader = Tools.getActualReader(readerCreator.createReader());
+		} else {
+			reader = Tools.getUpdateReader(readerCreator.createReader(),
+					MapAdapter.FREEMIND_VERSION_UPDATER_XSLT);
+		}
+		MindMapNode root;
+		// not loadTree, as it hides parse errors in an error node:
+		try {
+			root = map.createNodeTreeFromXml(reader,
+					new HashMap<String, NodeAdapter>());
+		} finally {
+			reader.close();
+		}
+		map.setRoot(root);
+		pTimings.append(", load ").append(System.currentTimeMillis() - start)
+				.append(" ms");
+		File directory = pTargetBase.getAbsoluteFile().getParentFile();
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Can't create " + directory);
+		}
+		boolean success = true;
+		for (String format : mFormats) {
+			start = System.currentTimeMillis();
+			File file = new File(pTargetBase.getPath() + "." + format);
+			try {
+				exportFormat(format, map, feedback, file);
+				pTimings.append(", ").append(format).append(" ")
+						.append(System.currentTimeMillis() - start)
+						.append(" ms");
+			} catch (Exception e) {
+				Resources.getInstance().logException(e, pMap.toString());
+				pTimings.append(", ").append(format).append(" failed (")
+						.append(e).append(")");
+				success = false;
+			}
+		}
+		return success;
+	}
+
+	private void exportFormat(String pFormat, MindMapMapModel pMap,
+			BatchMapFeedback pFeedback, File pFile) throws Exception {
+		switch (pFormat) {
+		case FORMAT_HTML:
+			MindMapController.saveHTML((MindMapNodeModel) pMap.getRootNode(),
+					pFile);
+			break;
+		case FORMAT_XHTML:
+			exportXhtml(pMap, pFile);
+			break;
+		case FORMAT_ODT:
+			exportOdt(pMap, pFile);
+			break;
+		case FORMAT_OPML:
+		case FORMAT_TEXT:
+			OutputStream out = new BufferedOutputStream(new FileOutputStream(
+					pFile));
+			try {
+				transform(getStylesheets(pFormat)[0], pMap,
+						new StreamResult(out), null);
+			} finally {
+				out.close();
+			}
+			break;
+		case FORMAT_PNG:
+		case FORMAT_DEEP_ZOOM:
+			exportImage(pMap, pFeedback, pFile);
+			break;
+		}
+	}
+
+	private static String[] getStylesheets(String pFormat) {
+		switch (pFormat) {
+		case FORMAT_XHTML:
+			return new String[] { ACCESSORIES_PREFIX + "toxhtml.xsl" };
+		case FORMAT_ODT:
+			Vector<String> stylesheets = new Vector<>();
+			for (String[] entry : getOdtEntries()) {
+				if (entry[0].endsWith(".xsl")) {
+					stylesheets.add(entry[0]);
+				}
+			}
+			return stylesheets.toArray(new String[stylesheets.size()]);
+		case FORMAT_OPML:
+			return new String[] { ACCESSORIES_PREFIX + "mm2opml.xsl" };
+		case FORMAT_TEXT:
+			return new String[] { ACCESSORIES_PREFIX + "mm2text.xsl" };
+		default:
+			return new String[0];
+		}
+	}
+
+	/**
+	 * @return pairs of the resource and the name of its zip entry.
+	 */
+	private static List<String[]> getOdtEntries() {
+		Vector<String[]> entries = new Vector<>();
+		StringTokenizer tokenizer = new StringTokenizer(ODT_FILES, ",");
+		while (tokenizer.hasMoreTokens()) {
+			entries.add(tokenizer.nextToken().split("->"));
+		}
+		return entries;
+	}
+
+	private static URL getResource(String pName) throws IOException {
+		URL url = Resources.getInstance().getResource(pName);
+		if (url == null) {
+			throw new IOException("Can't find " + pName + " as resource.");
+		}
+		return url;
+	}
+
+	private void transform(String pStylesheet, final MindMap pMap,
+			Result pResult, Map<String, String> pParameters)
+			throws Exception {
+		// the stylesheet is compiled only once:
+		Transformer transformer = XsltTemplateCache
+				.newTransformer(getResource(pStylesheet));
+		if (pParameters != null) {
+			for (Map.Entry<String, String> parameter : pParameters.entrySet()) {
+				transformer.setParameter(parameter.getKey(),
+						parameter.getValue());
+			}
+		}
+		XsltTemplateCache.transform(transformer,
+				new XsltTemplateCache.XmlProducer() {
+					public void write(Writer pWriter) throws IOException {
+						pMap.getFilteredXml(pWriter);
+					}
+				}, pResult);
+	}
+
+	private void exportXhtml(MindMapMapModel pMap, File pFile)
+			throws Exception {
+		File directory = new File(pFile.getAbsolutePath() + "_files");
+		HashMap<String, String> parameters = new HashMap<>();
+		parameters.put("destination_dir",
+				Tools.fileToRelativeUrlString(directory, pFile) + "/");
+		parameters.put("area_code", "");
+		parameters.put("folding_type", Resources.getInstance().getProperty(
+				"html_export_folding"));
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(
+				pFile));
+		try {
+			transform(getStylesheets(FORMAT_XHTML)[0], pMap,
+					new StreamResult(out), parameters);
+		} finally {
+			out.close();
+		}
+		File iconDirectory = new File(directory, "icons");
+		if (!iconDirectory.isDirectory() && !iconDirectory.mkdirs()) {
+			throw new IOException("Can't create " + iconDirectory);
+		}
+		StringTokenizer tokenizer = new StringTokenizer(XHTML_FILES_TO_COPY,
+				",");
+		while (tokenizer.hasMoreTokens()) {
+			String name = tokenizer.nextToken();
+			copyResource(ACCESSORIES_PREFIX + name, new File(directory, name));
+		}
+		// only the icons that are used, not all of them for each map:
+		Set<String> icons = new HashSet<>();
+		collectIcons(pMap.getRootNode(), icons);
+		for (String icon : icons) {
+			if (Resources.getInstance().getResource(
+					MindIcon.getIconsPath() + icon) != null) {
+				copyResource(MindIcon.getIconsPath() + icon, new File(
+						iconDirectory, icon));
+			}
+		}
+	}
+
+	private static void collectIcons(MindMapNode pNode, Set<String> pIcons) {
+		for (MindIcon icon : pNode.getIcons()) {
+			pIcons.add(icon.getIconBaseFileName());
+		}
+		for (ListIterator<MindMapNode> it = pNode.childrenUnfolded(); it
+				.hasNext();) {
+			collectIcons(it.next(), pIcons);
+		}
+	}
+
+	private static void copyResource(String pName, File pDestination)
+			throws IOException {
+		InputStream in = getResource(pName).openStream();
+		try {
+			Tools.copyStream(in, new FileOutputStream(pDestination), true);
+		} finally {
+			in.close();
+		}
+	}
+
+	private void exportOdt(MindMapMapModel pMap, File pFile) throws Exception {
+		HashMap<String, String> parameters = new HashMap<>();
+		parameters.put("date", DateFormat.getDateInstance(DateFormat.SHORT)
+				.format(new Date()));
+		ZipOutputStream zipout = new ZipOutputStream(new BufferedOutputStream(
+				new FileOutputStream(pFile)));
+		try {
+			Result result = new StreamResult(zipout);
+			for (String[] entry : getOdtEntries()) {
+				zipout.putNextEntry(new ZipEntry(entry[1]));
+				if (entry[0].endsWith(".xsl")) {
+					transform(entry[0], pMap, result, parameters);
+				} else {
+					InputStream in = getResource(entry[0]).openStream();
+					try {
+						Tools.copyStream(in, zipout, false);
+					} finally {
+						in.close();
+					}
+				}
+				zipout.closeEntry();
+			}
+		} finally {
+			zipout.close();
+		}
+	}
+
+	private void exportImage(MindMapMapModel pMap, BatchMapFeedback pFeedback,
+			File pFile) throws IOException {
+		synchronized (sViewLock) {
+			JPanel parent = new JPanel();
+			parent.setBounds(0, 0, 400, 600);
+			MapView mapView = pFeedback.createMapView(pMap, parent);
+			// layout components:
+			mapView.getRoot().getMainView().doLayout();
+			parent.setOpaque(true);
+			parent.setDoubleBuffered(false);
+			parent.doLayout();
+			parent.validate();
+			parent.setBounds(mapView.getBounds());
+			TiledMapRenderer renderer = new TiledMapRenderer(mapView);
+			if (FORMAT_DEEP_ZOOM.equals(Tools.getExtension(pFile.getName()))) {
+				renderer.writeDeepZoom(pFile);
+				return;
+			}
+			OutputStream out = new BufferedOutputStream(new FileOutputStream(
+					pFile));
+			try {
+				renderer.writePng(out);
+			} finally {
+				out.close();
+			}
+		}
+	}
+
+	public int getExportedCount() {
+		return mExported.get();
+	}
+
+	public int getFailedCount() {
+		return mFailed.get();
+	}
+
+	/**
+	 * Loads the map without a controller and creates its view for the image
+	 * formats. The fonts are shared between all maps of the batch.
+	 */
+	private static class BatchMapFeedback extends IndependantMapViewCreator {
+		private MindMapMapModel mMap;
+
+		@Override
+		public MindMap getMap() {
+			return mMap;
+		}
+
+		@Override
+		public Font getDefaultFont() {
+			Resources resources = Resources.getInstance();
+			return getFontThroughMap(new Font(
+					resources.getProperty("defaultfont"),
+					resources.getIntProperty("defaultfontstyle", 0),
+					resources.getIntProperty("defaultfontsize", 12)));
+		}
+
+		@Override
+		public Font getFontThroughMap(Font pFont) {
+			Font font = sFonts.putIfAbsent(pFont.toString(), pFont);
+			return font != null ? font : pFont;
+		}
+	}
+}
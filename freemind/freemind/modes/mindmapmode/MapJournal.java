@@ -0,0 +1,504 @@
+/*FreeMind - A Program for creating and viewing Mindmaps
+ *Copyright (C) 2000-2014 Christian Foltin, Joerg Mueller, Daniel Polansky, Dimitri Polivaev and others.
+ *
+ *See COPYING for Details
+ *
+ *This program is free software; you can redistribute it and/or
+ *modify it under the terms of the GNU General Public License
+ *as published by the Free Software Foundation; either version 2
+ *of the License, or (at your option) any later version.
+ *
+ *This program is distributed in the hope that it will be useful,
+ *but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *GNU General Public License for more details.
+ *
+ *You should have received a copy of the GNU General Public License
+ *along with this program; if not, write to the Free Software
+ *Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package freemind.modes.mindmapmode;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.CharArrayWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Vector;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import freemind.modes.MapAdapter;
+
+/**
+ * Append-only journal next to a map file (map.mm.journal). It contains the
+ * actions committed since the map file (the base) was written completely.
+ *
+ * Format: a header with the signatures (length and CRC32) of the base files
+ * the journal belongs to, each with the number of entries already contained
+ * in that base. Then the entries: type byte, length, deflated UTF-8 text.
+ * A journal that doesn't belong to the base on disk is ignored, a truncated
+ * last entry (crash while appending) is dropped.
+ *
+ * Folding the journal into the base is crash safe: first, the journal gets a
+ * header with both the old and the new base, then the new base is renamed
+ * into place and only then the folded entries are removed from the journal.
+ */
+public class MapJournal {
+
+	public static final String JOURNAL_EXTENSION = ".journal";
+
+	/** Entry containing a marshalled XmlAction. */
+	public static final byte ENTRY_ACTION = 'A';
+
+	/** Entry containing "path id": a node got an id outside of an action. */
+	public static final byte ENTRY_NODE_ID = 'I';
+
+	private static final int MAGIC = 0x464d4a31; // FMJ1
+
+	public static class Entry {
+		private final byte mType;
+		private final String mContent;
+
+		public Entry(byte pType, String pContent) {
+			mType = pType;
+			mContent = pContent;
+		}
+
+		public byte getType() {
+			return mType;
+		}
+
+		public String getContent() {
+			return mContent;
+		}
+	}
+
+	/**
+	 * The state of the journal at the time of a snapshot of the map.
+	 */
+	public static class FoldPoint {
+		private final long mDataLength;
+		private final int mEntryCount;
+
+		private FoldPoint(long pDataLength, int pEntryCount) {
+			mDataLength = pDataLength;
+			mEntryCount = pEntryCount;
+		}
+	}
+
+	private static class BaseSignature {
+		private final long mLength;
+		private final long mCrc;
+		private final int mFoldedEntries;
+
+		private BaseSignature(long pLength, long pCrc, int pFoldedEntries) {
+			mLength = pLength;
+			mCrc = pCrc;
+			mFoldedEntries = pFoldedEntries;
+		}
+
+		private boolean matches(BaseSignature pOther) {
+			return mLength == pOther.mLength && mCrc == pOther.mCrc;
+		}
+	}
+
+	private static java.util.logging.Logger logger = null;
+
+	private final File mBaseFile;
+	private final File mJournalFile;
+	private final Vector<Entry> mPending = new Vector<>();
+	private DataOutputStream mOut;
+	private FileOutputStream mFileOut;
+	private BaseSignature mBase;
+	private int mHeaderLength;
+	private long mDataLength;
+	private int mEntryCount;
+
+	public MapJournal(File pBaseFile) {
+		if (logger == null) {
+			logger = freemind.main.Resources.getInstance().getLogger(
+					this.getClass().getName());
+		}
+		mBaseFile = pBaseFile.getAbsoluteFile();
+		mJournalFile = getJournalFile(mBaseFile);
+	}
+
+	public static File getJournalFile(File pBaseFile) {
+		return new File(pBaseFile.getPath() + JOURNAL_EXTENSION);
+	}
+
+	public File getBaseFile() {
+		return mBaseFile;
+	}
+
+	/**
+	 * Opens the journal for appending.
+	 *
+	 * @return the entries that are not yet contained in the base file and
+	 *         have to be replayed.
+	 */
+	public synchronized Vector<Entry> open() throws IOException {
+		BaseSignature base = computeSignature(mBaseFile, 0);
+		Vector<Entry> result = new Vector<>();
+		if (mJournalFile.exists()) {
+			if (!readJournal(base, result)) {
+				logger.warning("Journal " + mJournalFile
+						+ " doesn't belong to " + mBaseFile + ". Ignored.");
+				result.clear();
+				rewrite(new BaseSignature[] { base }, mDataLength, mEntryCount);
+			}
+		} else {
+			rewrite(new BaseSignature[] { base }, 0, 0);
+		}
+		mBase = base;
+		return result;
+	}
+
+	/**
+	 * @return true, if the journal belongs to the base. result contains the
+	 *         entries not yet folded into the base.
+	 */
+	private boolean readJournal(BaseSignature pBase, Vector<Entry> pResult)
+			throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(mJournalFile)));
+		BaseSignature found = null;
+		try {
+			if (in.readInt() != MAGIC) {
+				return false;
+			}
+			int bases = in.readInt();
+			mHeaderLength = 8;
+			for (int i = 0; i < bases; i++) {
+				BaseSignature signature = new BaseSignature(in.readLong(),
+						in.readLong(), in.readInt());
+				mHeaderLength += 20;
+				if (signature.matches(pBase)) {
+					found = signature;
+				}
+			}
+			if (found == null) {
+				return false;
+			}
+			mDataLength = 0;
+			mEntryCount = 0;
+			while (true) {
+				byte type;
+				try {
+					type = in.readByte();
+				} catch (EOFException e) {
+					break;
+				}
+				String content;
+				int length;
+				try {
+					length = in.readInt();
+					byte[] data = new byte[length];
+					in.readFully(data);
+					content = inflate(data);
+				} catch (EOFException e) {
+					logger.warning("Incomplete last entry in journal "
+							+ mJournalFile + " dropped.");
+					break;
+				}
+				if (mEntryCount >= found.mFoldedEntries) {
+					pResult.add(new Entry(type, content));
+				}
+				mEntryCount++;
+				mDataLength += 5 + length;
+			}
+		} catch (EOFException e) {
+			// incomplete header.
+			return false;
+		} finally {
+			in.close();
+		}
+		// only the entries after the folded ones belong to this base:
+		rewriteFrom(new BaseSignature[] { pBase }, found.mFoldedEntries);
+		return true;
+	}
+
+	/**
+	 * Rewrites the journal, keeping the entries after the first pSkip ones.
+	 */
+	private void rewriteFrom(BaseSignature[] pBases, int pSkip)
+			throws IOException {
+		long offset = 0;
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(mJournalFile)));
+		try {
+			in.skipBytes(mHeaderLength);
+			for (int i = 0; i < pSkip && i < mEntryCount; i++) {
+				in.readByte();
+				int length = in.readInt();
+				in.skipBytes(length);
+				offset += 5 + length;
+			}
+		} finally {
+			in.close();
+		}
+		rewrite(pBases, offset, Math.min(pSkip, mEntryCount));
+	}
+
+	/**
+	 * Writes a new journal with the given header and the (complete) entries
+	 * from pDataOffset on. The written file replaces the journal atomically.
+	 */
+	private void rewrite(BaseSignature[] pBases, long pDataOffset,
+			int pSkippedEntries) throws IOException {
+		closeStream();
+		File tempFile = new File(mJournalFile.getPath() + ".tmp");
+		FileOutputStream fileOut = new FileOutputStream(tempFile);
+		int headerLength = 8 + 20 * pBases.length;
+		long dataLength = Math.max(0, mDataLength - pDataOffset);
+		try {
+			DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(fileOut));
+			out.writeInt(MAGIC);
+			out.writeInt(pBases.length);
+			for (int i = 0; i < pBases.length; i++) {
+				out.writeLong(pBases[i].mLength);
+				out.writeLong(pBases[i].mCrc);
+				out.writeInt(pBases[i].mFoldedEntries);
+			}
+			if (dataLength > 0) {
+				RandomAccessFile source = new RandomAccessFile(mJournalFile,
+						"r");
+				try {
+					source.seek(mHeaderLength + pDataOffset);
+					byte[] buffer = new byte[64 * 1024];
+					long remaining = dataLength;
+					while (remaining > 0) {
+						int read = source.read(buffer, 0,
+								(int) Math.min(buffer.length, remaining));
+						if (read < 0) {
+							throw new EOFException();
+						}
+						out.write(buffer, 0, read);
+						remaining -= read;
+					}
+				} finally {
+					source.close();
+				}
+			}
+			out.flush();
+			fileOut.getFD().sync();
+		} finally {
+			fileOut.close();
+		}
+		move(tempFile, mJournalFile);
+		mHeaderLength = headerLength;
+		mDataLength = dataLength;
+		mEntryCount = Math.max(0, mEntryCount - pSkippedEntries);
+		mFileOut = new FileOutputStream(mJournalFile, true);
+		mOut = new DataOutputStream(new BufferedOutputStream(mFileOut));
+	}
+
+	/**
+	 * Adds an entry, that is written with the next {@link #commit()}.
+	 */
+	public synchronized void add(byte pType, String pContent) {
+		mPending.add(new Entry(pType, pContent));
+	}
+
+	public synchronized boolean hasPendingEntries() {
+		return !mPending.isEmpty();
+	}
+
+	/**
+	 * Appends the pending entries and forces them to the disk.
+	 */
+	public synchronized void commit() throws IOException {
+		if (mOut == null) {
+			throw new IOException("Journal " + mJournalFile + " is not open.");
+		}
+		for (Entry entry : mPending) {
+			byte[] data = deflate(entry.getContent());
+			mOut.writeByte(entry.getType());
+			mOut.writeInt(data.length);
+			mOut.write(data);
+			mDataLength += 5 + data.length;
+			mEntryCount++;
+		}
+		mPending.clear();
+		mOut.flush();
+		mFileOut.getFD().sync();
+	}
+
+	/**
+	 * Forgets the pending entries (e.g. the map is closed without saving).
+	 */
+	public synchronized void discardPendingEntries() {
+		mPending.clear();
+	}
+
+	/**
+	 * @return the size of the committed entries in bytes.
+	 */
+	public synchronized long getLength() {
+		return mDataLength;
+	}
+
+	/**
+	 * Call this after the base was written completely. The journal is
+	 * emptied.
+	 */
+	public synchronized void reset() throws IOException {
+		mPending.clear();
+		mBase = computeSignature(mBaseFile, 0);
+		rewrite(new BaseSignature[] { mBase }, mDataLength, mEntryCount);
+	}
+
+	/**
+	 * Call this (on the event thread), when a snapshot of the map is taken
+	 * for {@link #fold(CharArrayWriter, FoldPoint, MapAdapter)}. Must be
+	 * called directly after {@link #commit()}.
+	 */
+	public synchronized FoldPoint getFoldPoint() {
+		return new FoldPoint(mDataLength, mEntryCount);
+	}
+
+	/**
+	 * Writes the snapshot as new base and removes the entries contained in
+	 * it from the journal. Can be called from any thread; the base file is
+	 * replaced while holding the lock of the map.
+	 */
+	public void fold(CharArrayWriter pSnapshot, FoldPoint pFoldPoint,
+			MapAdapter pMap) throws IOException {
+		File tempFile = new File(mBaseFile.getPath() + ".tmp");
+		FileOutputStream fileOut = new FileOutputStream(tempFile);
+		CheckedOutputStream checkedOut = new CheckedOutputStream(
+				new BufferedOutputStream(fileOut), new CRC32());
+		try {
+			Writer writer = new OutputStreamWriter(checkedOut,
+					StandardCharsets.UTF_8);
+			pSnapshot.writeTo(writer);
+			writer.flush();
+			fileOut.getFD().sync();
+		} finally {
+			fileOut.close();
+		}
+		BaseSignature newBase = new BaseSignature(tempFile.length(),
+				checkedOut.getChecksum().getValue(), pFoldPoint.mEntryCount);
+		synchronized (this) {
+			// first, the journal must know both bases:
+			rewrite(new BaseSignature[] { mBase, newBase }, 0, 0);
+		}
+		synchronized (pMap) {
+			move(tempFile, mBaseFile);
+			pMap.setFileTime();
+		}
+		synchronized (this) {
+			mBase = new BaseSignature(newBase.mLength, newBase.mCrc, 0);
+			long offset = pFoldPoint.mDataLength;
+			rewrite(new BaseSignature[] { mBase }, offset,
+					pFoldPoint.mEntryCount);
+		}
+	}
+
+	public synchronized void close() {
+		mPending.clear();
+		try {
+			closeStream();
+		} catch (IOException e) {
+			freemind.main.Resources.getInstance().logException(e);
+		}
+	}
+
+	private void closeStream() throws IOException {
+		if (mOut != null) {
+			mOut.close();
+			mOut = null;
+			mFileOut = null;
+		}
+	}
+
+	private static BaseSignature computeSignature(File pFile,
+			int pFoldedEntries) throws IOException {
+		CRC32 crc = new CRC32();
+		long length = 0;
+		InputStream in = new FileInputStream(pFile);
+		try {
+			byte[] buffer = new byte[64 * 1024];
+			int read;
+			while ((read = in.read(buffer)) > 0) {
+				crc.update(buffer, 0, read);
+				length += read;
+			}
+		} finally {
+			in.close();
+		}
+		return new BaseSignature(length, crc.getValue(), pFoldedEntries);
+	}
+
+	private static void move(File pSource, File pTarget) throws IOException {
+		try {
+			Files.move(pSource.toPath(), pTarget.toPath(),
+					StandardCopyOption.ATOMIC_MOVE,
+					StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(pSource.toPath(), pTarget.toPath(),
+					StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	private static byte[] deflate(String pContent) {
+		byte[] input = pContent.getBytes(StandardCharsets.UTF_8);
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try {
+			deflater.setInput(input);
+			deflater.finish();
+			java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream(
+					input.length / 2 + 16);
+			byte[] buffer = new byte[4096];
+			while (!deflater.finished()) {
+				int count = deflater.deflate(buffer);
+				out.write(buffer, 0, count);
+			}
+			return out.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	private static String inflate(byte[] pData) throws IOException {
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(pData);
+			java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream(
+					pData.length * 3);
+			byte[] buffer = new byte[4096];
+			while (!inflater.finished()) {
+				int count = inflater.inflate(buffer);
+				if (count == 0 && inflater.needsInput()) {
+					throw new EOFException("Incomplete journal entry.");
+				}
+				out.write(buffer, 0, count);
+			}
+			return new String(out.toByteArray(), StandardCharsets.UTF_8);
+		} catch (DataFormatException e) {
+			throw new IOException(e);
+		} finally {
+			inflater.end();
+		}
+	}
+}
@@ -0,0 +1,234 @@
+/*FreeMind - A Program for creating and viewing Mindmaps
+ *Copyright (C) 2000-2014 Christian Foltin, Joerg Mueller, Daniel Polansky, Dimitri Polivaev and others.
+ *
+ *See COPYING for Details
+ *
+ *This program is free software; you can redistribute it and/or
+ *modify it under the terms of the GNU General Public License
+ *as published by the Free Software Foundation; either version 2
+ *of the License, or (at your option) any later version.
+ *
+ *This program is distributed in the hope that it will be useful,
+ *but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *GNU General Public License for more details.
+ *
+ *You should have received a copy of the GNU General Public License
+ *along with this program; if not, write to the Free Software
+ *Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package freemind.modes.mindmapmode;
+
+import java.io.CharArrayWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.transform.TransformerConfigurationException;
+
+import tests.freemind.FreeMindMainMock;
+import freemind.main.FreeMindCommon;
+import freemind.main.Resources;
+import freemind.main.Tools;
+import freemind.main.XsltTemplateCache;
+import freemind.modes.ExtendedMapFeedbackImpl;
+import freemind.modes.MapAdapter;
+import freemind.modes.MindMapNode;
+import freemind.modes.NodeAdapter;
+
+/**
+ * Converts legacy maps to the actual file format without opening them in the
+ * user interface. The maps are processed in parallel, each one is streamed
+ * through the version updater and written back atomically.
+ * 
+ * Usage: java -cp lib/freemind.jar
+ * freemind.modes.mindmapmode.MapVersionUpgrader [-threads n] [-backup]
+ * &lt;map or directory&gt;...
+ */
+public class MapVersionUpgrader {
+
+	public static final String BACKUP_EXTENSION = ".bak";
+
+	private final int mThreads;
+	private final boolean mBackup;
+	private final PrintStream mProgress;
+	private final AtomicInteger mUpgraded = new AtomicInteger();
+	private final AtomicInteger mCurrent = new AtomicInteger();
+	private final AtomicInteger mFailed = new AtomicInteger();
+
+	public MapVersionUpgrader(int pThreads, boolean pBackup,
+			PrintStream pProgress) {
+		mThreads = Math.max(1, pThreads);
+		mBackup = pBackup;
+		mProgress = pProgress;
+	}
+
+	public static void main(String[] args) {
+		System.setProperty("java.awt.headless", "true");
+		int threads = Runtime.getRuntime().availableProcessors();
+		boolean backup = false;
+		Vector<File> maps = new Vector<>();
+		try {
+			for (int i = 0; i < args.length; i++) {
+				if ("-threads".equals(args[i]) && i + 1 < args.length) {
+					threads = Integer.parseInt(args[++i]);
+				} else if ("-backup".equals(args[i])) {
+					backup = true;
+				} else {
+					collectMaps(new File(args[i]), maps);
+				}
+			}
+		} catch (NumberFormatException e) {
+			maps.clear();
+		}
+		if (maps.isEmpty()) {
+			System.out
+					.println("Upgrade maps to the actual file format.\nUsage:\n java -cp lib/freemind.jar freemind.modes.mindmapmode.MapVersionUpgrader [-threads n] [-backup] <map or directory>...");
+			System.exit(0);
+		}
+		new FreeMindMainMock();
+		MapVersionUpgrader upgrader = new MapVersionUpgrader(threads, backup,
+				System.out);
+		try {
+			upgrader.upgrade(maps);
+		} catch (Exception e) {
+			Resources.getInstance().logException(e);
+			System.err.println("Error.");
+			System.exit(1);
+		}
+		System.exit(upgrader.getFailedCount() > 0 ? 1 : 0);
+	}
+
+	/**
+	 * Adds the given map or all maps below the given directory.
+	 */
+	public static void collectMaps(File pFile, List<File> pMaps) {
+		if (pFile.isDirectory()) {
+			File[] children = pFile.listFiles();
+			if (children == null) {
+				return;
+			}
+			for (File child : children) {
+				if (child.isDirectory()
+						|| child.getName().endsWith(
+								FreeMindCommon.FREEMIND_FILE_EXTENSION)) {
+					collectMaps(child, pMaps);
+				}
+			}
+		} else if (pFile.isFile()) {
+			pMaps.add(pFile);
+		}
+	}
+
+	/**
+	 * Upgrades all given maps and blocks until they are done. Maps that can't
+	 * be converted are left untouched and counted as failed.
+	 */
+	public void upgrade(List<File> pMaps) throws IOException,
+			InterruptedException {
+		// fail early if the updater itself is broken, otherwise every map
+		// would be replaced by an error map:
+		URL updaterUrl = Resources.getInstance().getResource(
+				MapAdapter.FREEMIND_VERSION_UPDATER_XSLT);
+		if (updaterUrl == null) {
+			throw new IllegalArgumentException(
+					MapAdapter.FREEMIND_VERSION_UPDATER_XSLT + " not found.");
+		}
+		try {
+			XsltTemplateCache.getTemplates(updaterUrl);
+		} catch (TransformerConfigurationException e) {
+			throw new IOException(e);
+		}
+		long start = System.currentTimeMillis();
+		final int total = pMaps.size();
+		final AtomicInteger done = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(mThreads);
+		for (final File map : pMaps) {
+			executor.execute(new Runnable() {
+				public void run() {
+					String state;
+					try {
+						if (upgradeMap(map)) {
+							mUpgraded.incrementAndGet();
+							state = "upgraded";
+						} else {
+							mCurrent.incrementAndGet();
+							state = "already current";
+						}
+					} catch (Exception e) {
+						mFailed.incrementAndGet();
+						state = "failed (" + e + ")";
+					}
+					mProgress.println("[" + done.incrementAndGet() + "/"
+							+ total + "] " + map + ": " + state);
+				}
+			});
+		}
+		executor.shutdown();
+		executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		mProgress.println(mUpgraded.get() + " upgraded, " + mCurrent.get()
+				+ " already current, " + mFailed.get() + " failed in "
+				+ (System.currentTimeMillis() - start) + " ms.");
+	}
+
+	/**
+	 * @return false, if the map has the actual format already and was not
+	 *         touched.
+	 */
+	public boolean upgradeMap(File pFile) throws Exception {
+		Tools.FileReaderCreator readerCreator = new Tools.FileReaderCreator(
+				pFile);
+		if (MapAdapter.hasActualVersion(readerCreator)) {
+			return false;
+		}
+		ExtendedMapFeedbackImpl mapFeedback = new ExtendedMapFeedbackImpl();
+		MindMapMapModel map = new MindMapMapModel(mapFeedback);
+		mapFeedback.setMap(map);
+		// not loadTree, as it hides parse errors in an error node:
+		Reader reader = Tools.getUpdateReader(readerCreator.createReader(),
+				MapAdapter.FREEMIND_VERSION_UPDATER_XSLT);
+		MindMapNode root;
+		try {
+			root = map.createNodeTreeFromXml(reader,
+					new HashMap<String, NodeAdapter>());
+		} finally {
+			reader.close();
+		}
+		map.setRoot(root);
+		CharArrayWriter content = new CharArrayWriter();
+		// getXml stamps the actual version:
+		map.getXml(content);
+		if (mBackup) {
+			File backup = new File(pFile.getPath() + BACKUP_EXTENSION);
+			Files.copy(pFile.toPath(), backup.toPath(),
+					StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.COPY_ATTRIBUTES);
+		}
+		Tools.writeFileAtomically(pFile, content);
+		return true;
+	}
+
+	public int getUpgradedCount() {
+		return mUpgraded.get();
+	}
+
+	public int getCurrentCount() {
+		return mCurrent.get();
+	}
+
+	public int getFailedCount() {
+		return mFailed.get();
+	}
+}
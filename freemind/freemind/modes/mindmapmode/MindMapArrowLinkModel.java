@@ -78,7 +78,7 @@ public class MindMapArrowLinkModel extends ArrowLinkAdapter {
 			changeInclination(deltaX, deltaY, targetView, changedInclination);
 			setEndInclination(changedInclination);
 		}
-
+		map.invalidateArrowLinks();
 	}
 
 	private void changeInclination(int deltaX, int deltaY,
@@ -50,6 +50,7 @@ import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Properties;
@@ -484,6 +485,11 @@ public class MindMapController extends ControllerAdapter implements
 	private List<HookRegistration> mRegistrations;
 	private List<Pattern> mPatternsList = new Vector<Pattern>();
 	private long mGetEventIfChangedAfterThisTimeInMillies = 0;
+	/** Depth of nested node change batches, see {@link #startNodeChangeBatch()}. */
+	private int mNodeChangeBatchDepth = 0;
+	private LinkedHashSet<MindMapNode> mBatchedNodeChanges = new LinkedHashSet<>();
+	/** The map whose tree model events are batched meanwhile. */
+	private MapAdapter mBatchMap = null;
 
 	public MindMapController(Mode mode) {
 		super(mode);
@@ -751,6 +757,11 @@ public class MindMapController extends ControllerAdapter implements
 		}
 	}
 	
+	protected void mapLoaded(MapAdapter pModel) {
+		((MindMapMapModel) pModel).openJournal();
+		((MindMapMapModel) pModel).convertHtmlInBackground();
+	}
+
 	MindMapNode loadTree(final File pFile) throws XMLParseException,
 			IOException {
 		return loadTree(new Tools.FileReaderCreator(pFile));
@@ -936,6 +947,10 @@ public class MindMapController extends ControllerAdapter implements
 	}
 
 	public void nodeChanged(MindMapNode n) {
+		if (mNodeChangeBatchDepth > 0) {
+			mBatchedNodeChanges.add(n);
+			return;
+		}
 		super.nodeChanged(n);
 		final MapModule mapModule = getController().getMapModule();
 		// only for the selected node (fc, 2.5.2004)
@@ -946,6 +961,39 @@ public class MindMapController extends ControllerAdapter implements
 		}
 	}
 
+	public void startNodeChangeBatch() {
+		if (mNodeChangeBatchDepth++ == 0 && getMap() != null) {
+			mBatchMap = (MapAdapter) getMap();
+			mBatchMap.startTreeEventBatch();
+		}
+	}
+
+	public void endNodeChangeBatch() {
+		if (--mNodeChangeBatchDepth > 0) {
+			return;
+		}
+		MindMapNode[] nodes = mBatchedNodeChanges
+				.toArray(new MindMapNode[mBatchedNodeChanges.size()]);
+		mBatchedNodeChanges.clear();
+		MapAdapter map = mBatchMap;
+		mBatchMap = null;
+		if (map == null) {
+			return;
+		}
+		try {
+			MindMapNode root = map.getRootNode();
+			for (int i = 0; i < nodes.length; i++) {
+				// nodes removed by the batch don't get events anymore:
+				if (nodes[i].isDescendantOfOrEqual(root)) {
+					nodeChanged(nodes[i]);
+				}
+			}
+		} finally {
+			// the tree model events of all changes at once:
+			map.endTreeEventBatch();
+		}
+	}
+
 	@Override
 	public void nodeStyleChanged(MindMapNode node) {
 		nodeChanged(node);
@@ -1804,6 +1852,11 @@ public class MindMapController extends ControllerAdapter implements
 		getActorFactory().getNodeUpActor().moveNodes(selected, selecteds, direction);
 	}
 
+	public void reorderChildren(MindMapNode pParent, List<MindMapNode> pNewOrder) {
+		getActorFactory().getReorderChildrenActor().reorderChildren(pParent,
+				pNewOrder);
+	}
+
 	public void joinNodes(MindMapNode selectedNode, List<MindMapNode> selectedNodes) {
 		joinNodes.joinNodes(selectedNode, selectedNodes);
 	}
@@ -2403,7 +2456,12 @@ public class MindMapController extends ControllerAdapter implements
 	}
 
 	public boolean doTransaction(String pName, ActionPair pPair) {
-		return actionFactory.doTransaction(pName, pPair);
+		startNodeChangeBatch();
+		try {
+			return actionFactory.doTransaction(pName, pPair);
+		} finally {
+			endNodeChangeBatch();
+		}
 	}
 
 	/* (non-Javadoc)
@@ -24,6 +24,7 @@ import java.awt.Color;
 import java.awt.EventQueue;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.CharArrayWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
@@ -45,28 +46,45 @@ import java.util.TimerTask;
 import java.util.Vector;
 
 import freemind.main.FreeMind;
+import freemind.main.FreeMindCommon;
 import freemind.main.HtmlTools;
 import freemind.main.Resources;
 import freemind.main.Tools;
+import freemind.main.XMLSnapshot;
+import freemind.main.XMLWriter;
 import freemind.modes.ArrowLinkAdapter;
 import freemind.modes.ArrowLinkTarget;
 import freemind.modes.CloudAdapter;
 import freemind.modes.EdgeAdapter;
+import freemind.modes.ExtendedMapFeedback;
 import freemind.modes.MapAdapter;
 import freemind.modes.MapFeedback;
 import freemind.modes.MindMap;
 import freemind.modes.MindMapLinkRegistry;
 import freemind.modes.MindMapNode;
 import freemind.modes.NodeAdapter;
+import freemind.modes.mindmapmode.actions.xml.JournalActionHandler;
 
 @SuppressWarnings("serial")
 public class MindMapMapModel extends MapAdapter {
 
 	public static final String RESTORE_MODE_MIND_MAP = "MindMap:";
 
+	/**
+	 * If true, saving a map only appends the changes to a journal next to the
+	 * map file, see {@link MapJournal}.
+	 */
+	public static final String RESOURCES_USE_SAVE_JOURNAL = "experimental_save_journal_on";
+
+	/** Size of the journal in bytes, after which it is folded into the map. */
+	public static final String RESOURCES_SAVE_JOURNAL_COMPACTION_SIZE = "save_journal_compaction_size";
+
 	LockManager lockManager;
 	private MindMapLinkRegistry linkRegistry;
 	private Timer timerForAutomaticSaving;
+	private MapJournal mJournal = null;
+	private JournalActionHandler mJournalHandler = null;
+	private boolean mJournalFoldRunning = false;
 
 	//
 	// Constructors
@@ -245,15 +263,211 @@ public class MindMapMapModel extends MapAdapter {
 	public boolean save(File file) throws IOException {
 		boolean result;
 		synchronized (this) {
-			result = saveInternal(file, false);
-			// TODO: Set only, when ok?
-			if (result) {
-				setFileTime();
+			if (mJournal != null && !readOnly
+					&& mJournal.getBaseFile().equals(file.getAbsoluteFile())) {
+				// only the changes are written:
+				result = commitJournal();
+			} else {
+				result = saveInternal(file, false);
+				// TODO: Set only, when ok?
+				if (result) {
+					setFileTime();
+					// the map file contains everything, a new journal starts:
+					openJournal(false);
+				}
 			}
 		}
 		return result;
 	}
 
+	private boolean isJournalEnabled() {
+		return getMapFeedback() instanceof ExtendedMapFeedback
+				&& Tools.safeEquals(
+						getMapFeedback().getProperty(RESOURCES_USE_SAVE_JOURNAL),
+						"true")
+				// the journal refers to the nodes by their ids:
+				&& !Tools.safeEquals(getMapFeedback().getProperty(
+						FreeMindCommon.SAVE_ONLY_INTRISICALLY_NEEDED_IDS),
+						"true");
+	}
+
+	/** The number of converted nodes that are stored in one go. */
+	private static final int HTML_CONVERSION_BATCH_SIZE = 500;
+
+	private static class HtmlConversion {
+		NodeAdapter mNode;
+		String mText;
+		String mXmlText;
+		String mNoteText;
+		String mXmlNoteText;
+	}
+
+	/**
+	 * Computes the xhtml form of the texts and notes that were given as html
+	 * (e.g. in the TEXT attribute of older maps) in a background thread. The
+	 * results are stored on the event thread, so a later save doesn't convert
+	 * them there. Call this on the event thread after the map was loaded.
+	 * 
+	 * @return the started thread, or null if there is nothing to convert.
+	 */
+	public Thread convertHtmlInBackground() {
+		final Vector<HtmlConversion> conversions = new Vector<>();
+		collectHtmlConversions(getRootNode(), conversions);
+		if (conversions.isEmpty()) {
+			return null;
+		}
+		Thread thread = new Thread(new Runnable() {
+			public void run() {
+				int start = 0;
+				while (start < conversions.size()) {
+					int end = Math.min(start + HTML_CONVERSION_BATCH_SIZE,
+							conversions.size());
+					final List<HtmlConversion> batch = conversions.subList(
+							start, end);
+					for (HtmlConversion conversion : batch) {
+						if (conversion.mText != null) {
+							conversion.mXmlText = HtmlTools.getInstance()
+									.toXhtml(conversion.mText);
+						}
+						if (conversion.mNoteText != null) {
+							conversion.mXmlNoteText = HtmlTools.getInstance()
+									.toXhtml(conversion.mNoteText);
+						}
+					}
+					EventQueue.invokeLater(new Runnable() {
+						public void run() {
+							for (HtmlConversion conversion : batch) {
+								if (conversion.mText != null) {
+									conversion.mNode.setConvertedXmlText(
+											conversion.mText,
+											conversion.mXmlText);
+								}
+								if (conversion.mNoteText != null) {
+									conversion.mNode.setConvertedXmlNoteText(
+											conversion.mNoteText,
+											conversion.mXmlNoteText);
+								}
+							}
+						}
+					});
+					start = end;
+				}
+			}
+		}, "Html conversion");
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MIN_PRIORITY);
+		thread.start();
+		return thread;
+	}
+
+	private void collectHtmlConversions(MindMapNode pNode,
+			Vector<HtmlConversion> pConversions) {
+		if (pNode instanceof NodeAdapter) {
+			NodeAdapter node = (NodeAdapter) pNode;
+			String text = node.getUnconvertedText();
+			if (text != null && !HtmlTools.isHtmlNode(text)) {
+				// only html is saved in its xhtml form.
+				text = null;
+			}
+			String noteText = node.getUnconvertedNoteText();
+			if (text != null || noteText != null) {
+				HtmlConversion conversion = new HtmlConversion();
+				conversion.mNode = node;
+				conversion.mText = text;
+				conversion.mNoteText = noteText;
+				pConversions.add(conversion);
+			}
+		}
+		for (ListIterator<MindMapNode> i = pNode.childrenUnfolded(); i
+				.hasNext();) {
+			collectHtmlConversions(i.next(), pConversions);
+		}
+	}
+
+	/**
+	 * Opens the save journal of the map file, if enabled: the entries left by
+	 * the last session are replayed and all further actions are recorded.
+	 * Call this after the map was loaded and is shown.
+	 */
+	public void openJournal() {
+		openJournal(true);
+	}
+
+	private void openJournal(boolean pReplay) {
+		closeJournal();
+		if (!isJournalEnabled() || getFile() == null || readOnly) {
+			return;
+		}
+		ExtendedMapFeedback mapFeedback = (ExtendedMapFeedback) getMapFeedback();
+		MapJournal journal = new MapJournal(getFile());
+		JournalActionHandler handler = new JournalActionHandler(mapFeedback,
+				journal);
+		try {
+			Vector<MapJournal.Entry> entries = journal.open();
+			if (!pReplay) {
+				journal.reset();
+			} else if (!entries.isEmpty()) {
+				logger.info("Replaying " + entries.size()
+						+ " journal entries of " + getFile());
+				handler.replay(entries);
+			}
+		} catch (Exception e) {
+			freemind.main.Resources.getInstance().logException(e,
+					"Can't open the journal of " + getFile());
+			journal.close();
+			return;
+		}
+		handler.register();
+		mJournal = journal;
+		mJournalHandler = handler;
+	}
+
+	private void closeJournal() {
+		if (mJournal != null) {
+			mJournalHandler.deregister();
+			mJournal.close();
+			mJournal = null;
+			mJournalHandler = null;
+		}
+	}
+
+	/**
+	 * Appends the changes to the journal. If it becomes too large, it is
+	 * folded into the map file in the background.
+	 */
+	private boolean commitJournal() throws IOException {
+		mJournal.commit();
+		long limit = Long.parseLong(getMapFeedback().getProperty(
+				RESOURCES_SAVE_JOURNAL_COMPACTION_SIZE));
+		if (mJournal.getLength() > limit && !mJournalFoldRunning) {
+			// the map is in the committed state just now:
+			final CharArrayWriter snapshot = new CharArrayWriter();
+			getXml(snapshot);
+			final MapJournal.FoldPoint foldPoint = mJournal.getFoldPoint();
+			final MapJournal journal = mJournal;
+			mJournalFoldRunning = true;
+			Thread thread = new Thread(new Runnable() {
+				public void run() {
+					long start = System.currentTimeMillis();
+					try {
+						journal.fold(snapshot, foldPoint, MindMapMapModel.this);
+						logger.info("Journal folded into " + journal.getBaseFile()
+								+ " in " + (System.currentTimeMillis() - start)
+								+ " ms.");
+					} catch (Exception e) {
+						freemind.main.Resources.getInstance().logException(e);
+					} finally {
+						synchronized (MindMapMapModel.this) {
+							mJournalFoldRunning = false;
+						}
+					}
+				}
+			}, "Journal compaction");
+			thread.start();
+		}
+		return true;
+	}
+
 	/**
 	 * This method is intended to provide both normal save routines and saving
 	 * of temporary (internal) files.
@@ -270,8 +484,7 @@ public class MindMapMapModel extends MapAdapter {
 				timerForAutomaticSaving.cancel();
 			}
 			// Generating output Stream
-			BufferedWriter fileout = new BufferedWriter(new OutputStreamWriter(
-					new FileOutputStream(file)));
+			XMLWriter fileout = new XMLWriter(new FileOutputStream(file));
 			getXml(fileout);
 			
 			if (!isInternal) {
@@ -300,6 +513,9 @@ public class MindMapMapModel extends MapAdapter {
 	 */
 	public void getXml(Writer fileout, boolean saveInvisible,
 			MindMapNode pRootNode) throws IOException {
+		if (!(fileout instanceof XMLWriter)) {
+			fileout = new XMLWriter(fileout);
+		}
 		fileout.write("<map ");
 		fileout.write("version=\"" + FreeMind.XML_VERSION + "\"");
 		fileout.write(">\n");
@@ -344,6 +560,7 @@ public class MindMapMapModel extends MapAdapter {
 
 	/** When a map is closed, this method is called. */
 	public void destroy() {
+		closeJournal();
 		super.destroy();
 		lockManager.releaseLock();
 		lockManager.releaseTimer();
@@ -562,56 +779,79 @@ public class MindMapMapModel extends MapAdapter {
 				/* map was recently saved. */
 				return;
 			}
+			/*
+			 * Only the snapshot of the map is taken on the event thread. It
+			 * is encoded and written by the timer thread while the user
+			 * continues.
+			 */
+			final XMLSnapshot snapshot = new XMLSnapshot();
+			final long[] snapshotTime = new long[] { -1 };
 			try {
-				cancel();
 				EventQueue.invokeAndWait(new Runnable() {
 					public void run() {
-						/* Now, it is dirty, we save it. */
-						File tempFile;
-						if (tempFileStack.size() >= numberOfFiles)
-							tempFile = (File) tempFileStack.remove(0); // pop
-						else {
-							try {
-								tempFile = File.createTempFile(
-										"FM_"
-												+ ((model.toString() == null) ? "unnamed"
-														: model.toString()),
-										freemind.main.FreeMindCommon.FREEMIND_FILE_EXTENSION,
-										pathToStore);
-								if (filesShouldBeDeletedAfterShutdown)
-									tempFile.deleteOnExit();
-							} catch (Exception e) {
-								System.err
-										.println("Error in automatic MindMapMapModel.save(): "
-												+ e.getMessage());
-								freemind.main.Resources.getInstance()
-										.logException(e);
-								return;
-							}
-						}
+						long start = System.currentTimeMillis();
 						try {
-							model.saveInternal(tempFile, true /* =internal call */);
-							model.getMapFeedback()
-									.out(Resources
-											.getInstance()
-											.format("automatically_save_message",
-													new Object[] { tempFile
-															.toString() }));
-						} catch (Exception e) {
-							System.err
-									.println("Error in automatic MindMapMapModel.save(): "
-											+ e.getMessage());
+							model.getXml(snapshot);
+							snapshotTime[0] = System.currentTimeMillis() - start;
+						} catch (IOException e) {
 							freemind.main.Resources.getInstance().logException(
 									e);
 						}
-						tempFileStack.add(tempFile); // add at the back.
 					}
 				});
 			} catch (InterruptedException e) {
 				freemind.main.Resources.getInstance().logException(e);
+				return;
 			} catch (InvocationTargetException e) {
 				freemind.main.Resources.getInstance().logException(e);
+				return;
+			}
+			if (snapshotTime[0] < 0) {
+				return;
+			}
+			/* Now, it is dirty, we save it. */
+			final File tempFile;
+			if (tempFileStack.size() >= numberOfFiles)
+				tempFile = (File) tempFileStack.remove(0); // pop
+			else {
+				try {
+					tempFile = File.createTempFile(
+							"FM_"
+									+ ((model.toString() == null) ? "unnamed"
+											: model.toString()),
+							freemind.main.FreeMindCommon.FREEMIND_FILE_EXTENSION,
+							pathToStore);
+					if (filesShouldBeDeletedAfterShutdown)
+						tempFile.deleteOnExit();
+				} catch (Exception e) {
+					System.err
+							.println("Error in automatic MindMapMapModel.save(): "
+									+ e.getMessage());
+					freemind.main.Resources.getInstance().logException(e);
+					return;
+				}
+			}
+			try {
+				long start = System.currentTimeMillis();
+				Tools.writeFileAtomically(tempFile, snapshot);
+				logger.info("Automatic save to " + tempFile + ": snapshot "
+						+ snapshotTime[0]
+						+ " ms on the event thread, encoding and writing "
+						+ (System.currentTimeMillis() - start) + " ms.");
+				EventQueue.invokeLater(new Runnable() {
+					public void run() {
+						model.getMapFeedback().out(
+								Resources.getInstance().format(
+										"automatically_save_message",
+										new Object[] { tempFile.toString() }));
+					}
+				});
+			} catch (Exception e) {
+				System.err.println("Error in automatic MindMapMapModel.save(): "
+						+ e.getMessage());
+				freemind.main.Resources.getInstance().logException(e);
 			}
+			tempFileStack.add(tempFile); // add at the back.
 		}
 	}
 
@@ -25,12 +25,11 @@ import java.io.IOException;
 import java.io.Writer;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.ListIterator;
 
-import freemind.main.HtmlTools;
 import freemind.modes.MindMap;
 import freemind.modes.NodeAdapter;
+import freemind.modes.NodeChildrenList;
 
 /**
  * This class represents a single Node of a Tree. It contains direct handles to
@@ -48,7 +47,7 @@ public class MindMapNodeModel extends NodeAdapter {
 
 	public MindMapNodeModel(Object userObject, MindMap pMap) {
 		super(userObject, pMap);
-		children = new LinkedList<>();
+		children = new NodeChildrenList();
 		setEdge(new MindMapEdgeModel(this, getMapFeedback()));
 	}
 
@@ -57,7 +56,7 @@ public class MindMapNodeModel extends NodeAdapter {
 	//
 
 	public String getPlainTextContent() {
-		return HtmlTools.htmlToPlain(toString());
+		return getPlainText();
 	}
 
 	public void saveTXT(Writer fileout, int depth) throws IOException {
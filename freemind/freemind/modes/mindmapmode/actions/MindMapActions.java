@@ -95,6 +95,15 @@ public interface MindMapActions {
 	 * */
 	void moveNodes(MindMapNode selected, List<MindMapNode> selecteds, int direction);
 
+	/**
+	 * Puts the children of the parent into the new order as one undoable
+	 * action, without cutting and pasting them.
+	 * 
+	 * @param pNewOrder
+	 *            must contain exactly the children of the parent.
+	 */
+	void reorderChildren(MindMapNode pParent, List<MindMapNode> pNewOrder);
+
 	/**
 	 */
 	void setFolded(MindMapNode node, boolean folded);
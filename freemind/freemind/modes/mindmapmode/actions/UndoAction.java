@@ -34,6 +34,7 @@ import javax.swing.Icon;
 import freemind.controller.actions.generated.instance.CompoundAction;
 import freemind.controller.actions.generated.instance.XmlAction;
 import freemind.main.Tools;
+import freemind.main.XmlActionCopier;
 import freemind.modes.mindmapmode.MindMapController;
 import freemind.modes.mindmapmode.actions.xml.AbstractXmlAction;
 import freemind.modes.mindmapmode.actions.xml.ActionPair;
@@ -47,6 +48,10 @@ public class UndoAction extends AbstractXmlAction {
 	private long timeOfLastAdd = 0;
 	private boolean actionFrameStarted = false;
 	private static final long TIME_TO_BEGIN_NEW_ACTION = 100;
+	/** Memory budget of the list in megabytes. */
+	public static final String RESOURCES_UNDO_MEMORY_LIMIT = "undo_memory_limit";
+	/** Estimated memory usage of actionPairList in bytes. */
+	private long mEstimatedSize = 0;
 	protected static Logger logger;
 
 	public UndoAction(MindMapController controller) {
@@ -85,6 +90,7 @@ public class UndoAction extends AbstractXmlAction {
 			ActionPair pair = (ActionPair) actionPairList.get(0);
 			informUndoPartner(pair);
 			actionPairList.remove(0);
+			mEstimatedSize -= getEstimatedSize(pair);
 			undoDoAction(pair);
 		}
 		if (actionPairList.size() == 0) {
@@ -133,6 +139,7 @@ public class UndoAction extends AbstractXmlAction {
 			CompoundAction remedia;
 			if (!(firstPair.getDoAction() instanceof CompoundAction)
 					|| !(firstPair.getUndoAction() instanceof CompoundAction)) {
+				mEstimatedSize -= getEstimatedSize(firstPair);
 				action = new CompoundAction();
 				action.addChoice(firstPair.getDoAction());
 				remedia = new CompoundAction();
@@ -140,14 +147,18 @@ public class UndoAction extends AbstractXmlAction {
 				actionPairList.remove(0);
 				actionPairList.add(0, new ActionPair(action, remedia));
 				firstPair = (ActionPair) actionPairList.get(0);
+				mEstimatedSize += getEstimatedSize(firstPair);
 			} else {
 				action = (CompoundAction) firstPair.getDoAction();
 				remedia = (CompoundAction) firstPair.getUndoAction();
 			}
 			action.addChoice(dcDo);
 			remedia.addAtChoice(0, dcUndo);
+			mEstimatedSize += XmlActionCopier.getEstimatedListEntrySize(dcDo)
+					+ XmlActionCopier.getEstimatedListEntrySize(dcUndo);
 		} else {
 			ActionPair storagePair = new ActionPair(dcDo, dcUndo);
+			mEstimatedSize += getEstimatedSize(storagePair);
 			actionPairList.add(0, storagePair);
 			// and cut vector, if bigger than given size:
 			int maxEntries = 100;
@@ -158,14 +169,47 @@ public class UndoAction extends AbstractXmlAction {
 				freemind.main.Resources.getInstance().logException(e);
 			}
 			while (actionPairList.size() > maxEntries) {
-				actionPairList.remove(actionPairList.size() - 1); // remove
-																	// last elt
+				removeLast();
 			}
 		}
+		// the newest entry is kept, even if it is bigger than the limit:
+		long memoryLimit = getMemoryLimit();
+		while (mEstimatedSize > memoryLimit && actionPairList.size() > 1) {
+			removeLast();
+		}
 		startActionFrame();
 		timeOfLastAdd = currentTime;
 	}
 
+	private void removeLast() {
+		ActionPair removed = actionPairList.remove(actionPairList.size() - 1);
+		mEstimatedSize -= getEstimatedSize(removed);
+	}
+
+	private long getEstimatedSize(ActionPair pPair) {
+		return XmlActionCopier.getEstimatedSize(pPair.getDoAction())
+				+ XmlActionCopier.getEstimatedSize(pPair.getUndoAction());
+	}
+
+	/**
+	 * @return the memory budget in bytes.
+	 */
+	private long getMemoryLimit() {
+		try {
+			return Long.parseLong(controller.getFrame().getProperty(
+					RESOURCES_UNDO_MEMORY_LIMIT)) * 1024 * 1024;
+		} catch (NumberFormatException e) {
+			return Long.MAX_VALUE;
+		}
+	}
+
+	/**
+	 * @return the estimated memory usage of the stored actions in bytes.
+	 */
+	public long getEstimatedSize() {
+		return mEstimatedSize;
+	}
+
 	private void startActionFrame() {
 		if (actionFrameStarted == false && EventQueue.isDispatchThread()) {
 			actionFrameStarted = true;
@@ -179,6 +223,7 @@ public class UndoAction extends AbstractXmlAction {
 
 	public void clear() {
 		actionPairList.clear();
+		mEstimatedSize = 0;
 	}
 
 	public void print() {
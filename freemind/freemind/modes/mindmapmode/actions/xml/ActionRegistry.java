@@ -22,9 +22,9 @@
 
 package freemind.modes.mindmapmode.actions.xml;
 
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 
 import freemind.controller.actions.generated.instance.XmlAction;
 import freemind.modes.mindmapmode.actions.xml.ActionFilter.FinalActionFilter;
@@ -39,14 +39,20 @@ import freemind.modes.mindmapmode.actions.xml.ActionFilter.FirstActionFilter;
 public class ActionRegistry {
 
 	/**
-	 * This Vector denotes all handler of the action to be called for each
-	 * action.
+	 * This array denotes all handler of the action to be called for each
+	 * action. It is never changed, but replaced on (de)registration, thus it
+	 * can be iterated without copying.
 	 */
-	private Vector<ActionHandler> registeredHandler;
-	/** This set denotes all filters for XmlActions. */
-	private Vector<ActionFilter> registeredFilters;
+	private volatile ActionHandler[] registeredHandler;
+	/** This array denotes all filters for XmlActions (copy on write, too). */
+	private volatile ActionFilter[] registeredFilters;
 	/** HashMap of Action class -> actor instance. */
 	private HashMap<Class<?>, ActorXml> registeredActors;
+	/**
+	 * Actual action class -> actor found for it in registeredActors. Cleared,
+	 * when the actors change.
+	 */
+	private final ConcurrentHashMap<Class<?>, ActorXml> mActorCache = new ConcurrentHashMap<>();
 	private UndoActionHandler undoActionHandler;
 	private static java.util.logging.Logger logger = null;
 
@@ -59,46 +65,41 @@ public class ActionRegistry {
 			logger = freemind.main.Resources.getInstance().getLogger(
 					this.getClass().getName());
 		}
-		registeredHandler = new Vector<ActionHandler>();
-		registeredFilters = new Vector<ActionFilter>();
+		registeredHandler = new ActionHandler[0];
+		registeredFilters = new ActionFilter[0];
 		registeredActors = new HashMap<Class<?>, ActorXml>();
 	}
 
 	/**
 	 * The handler is put in front. Thus it is called before others are called.
 	 */
-	public void registerHandler(ActionHandler newHandler) {
+	public synchronized void registerHandler(ActionHandler newHandler) {
 		// if it is present, put it in front:
-		if (!registeredHandler.contains(newHandler)) {
-			registeredHandler.remove(newHandler);
-		}
-		registeredHandler.add(0, newHandler);
+		ActionHandler[] handlers = remove(registeredHandler, newHandler);
+		registeredHandler = insert(handlers, 0, newHandler);
 	}
 
-	public void deregisterHandler(ActionHandler newHandler) {
-		registeredHandler.remove(newHandler);
+	public synchronized void deregisterHandler(ActionHandler newHandler) {
+		registeredHandler = remove(registeredHandler, newHandler);
 	}
 
-	public void registerFilter(ActionFilter newFilter) {
-		if (!registeredFilters.contains(newFilter)) {
+	public synchronized void registerFilter(ActionFilter newFilter) {
+		ActionFilter[] filters = registeredFilters;
+		if (indexOf(filters, newFilter) < 0) {
 			if (newFilter instanceof FinalActionFilter) {
 				/* Insert as the last one here. */
-				registeredFilters.insertElementAt(newFilter,
-						registeredFilters.size());
+				registeredFilters = insert(filters, filters.length, newFilter);
 			} else if (newFilter instanceof FirstActionFilter) {
 				/* Insert as the first one here. */
-				registeredFilters.insertElementAt(newFilter, 0);
+				registeredFilters = insert(filters, 0, newFilter);
 			} else {
 				/* Insert before FinalActionFilters */
 				int index = 0;
-				for (Iterator<ActionFilter> it = registeredFilters.iterator(); it.hasNext();) {
-					ActionFilter filter = it.next();
-					if (filter instanceof FinalActionFilter) {
-						break;
-					}
+				while (index < filters.length
+						&& !(filters[index] instanceof FinalActionFilter)) {
 					index++;
 				}
-				registeredFilters.insertElementAt(newFilter, index);
+				registeredFilters = insert(filters, index, newFilter);
 			}
 		}
 		// int count = 0;
@@ -109,21 +110,49 @@ public class ActionRegistry {
 		// }
 	}
 
-	public void deregisterFilter(ActionFilter newFilter) {
-		registeredFilters.remove(newFilter);
+	public synchronized void deregisterFilter(ActionFilter newFilter) {
+		registeredFilters = remove(registeredFilters, newFilter);
+	}
+
+	private static int indexOf(Object[] pArray, Object pElement) {
+		for (int i = 0; i < pArray.length; i++) {
+			if (pArray[i] == pElement) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static <T> T[] insert(T[] pArray, int pIndex, T pElement) {
+		T[] result = Arrays.copyOf(pArray, pArray.length + 1);
+		System.arraycopy(pArray, pIndex, result, pIndex + 1, pArray.length
+				- pIndex);
+		result[pIndex] = pElement;
+		return result;
+	}
+
+	private static <T> T[] remove(T[] pArray, T pElement) {
+		int index = indexOf(pArray, pElement);
+		if (index < 0) {
+			return pArray;
+		}
+		T[] result = Arrays.copyOf(pArray, pArray.length - 1);
+		System.arraycopy(pArray, index + 1, result, index, pArray.length
+				- index - 1);
+		return result;
 	}
 
 	private void startTransaction(String name) {
-		for (Iterator<ActionHandler> i = registeredHandler.iterator(); i.hasNext();) {
-			ActionHandler handler = i.next();
-			handler.startTransaction(name);
+		ActionHandler[] handlers = registeredHandler;
+		for (int i = 0; i < handlers.length; i++) {
+			handlers[i].startTransaction(name);
 		}
 	}
 
 	private void endTransaction(String name) {
-		for (Iterator<ActionHandler> i = registeredHandler.iterator(); i.hasNext();) {
-			ActionHandler handler = i.next();
-			handler.endTransaction(name);
+		ActionHandler[] handlers = registeredHandler;
+		for (int i = 0; i < handlers.length; i++) {
+			handlers[i].endTransaction(name);
 		}
 	}
 
@@ -158,14 +187,15 @@ public class ActionRegistry {
 
 		ActionPair filteredPair = pair;
 		// first filter:
-		for (Iterator<ActionFilter> i = registeredFilters.iterator(); i.hasNext();) {
-			ActionFilter filter = i.next();
-			filteredPair = filter.filterAction(filteredPair);
+		ActionFilter[] filters = registeredFilters;
+		for (int i = 0; i < filters.length; i++) {
+			filteredPair = filters[i].filterAction(filteredPair);
 		}
 
-		Object[] aArray = registeredHandler.toArray();
-		for (int i = 0; i < aArray.length; i++) {
-			ActionHandler handler = (ActionHandler) aArray[i];
+		// handlers registered meanwhile are called with the next action:
+		ActionHandler[] handlers = registeredHandler;
+		for (int i = 0; i < handlers.length; i++) {
+			ActionHandler handler = handlers[i];
 			try {
 				handler.executeAction(filteredPair.getDoAction());
 			} catch (Exception e) {
@@ -179,32 +209,42 @@ public class ActionRegistry {
 
 	/**
 	 */
-	public void registerActor(ActorXml actor, Class<?> action) {
+	public synchronized void registerActor(ActorXml actor, Class<?> action) {
 		registeredActors.put(action, actor);
+		mActorCache.clear();
 	}
 
 	/**
 	 */
-	public void deregisterActor(Class<?> action) {
+	public synchronized void deregisterActor(Class<?> action) {
 		registeredActors.remove(action);
+		mActorCache.clear();
 	}
 
+	/**
+	 * @return the actor registered for the class of the action or, if none,
+	 *         for its nearest super class.
+	 */
 	public ActorXml getActor(XmlAction action) {
-		for (Iterator<Class<?>> i = registeredActors.keySet().iterator(); i.hasNext();) {
-			Class<?> actorClass = i.next();
-			if (actorClass.isInstance(action)) {
-				return registeredActors.get(actorClass);
+		Class<?> actionClass = action.getClass();
+		ActorXml actor = mActorCache.get(actionClass);
+		if (actor == null) {
+			synchronized (this) {
+				for (Class<?> clazz = actionClass; clazz != null && actor == null; clazz = clazz
+						.getSuperclass()) {
+					actor = registeredActors.get(clazz);
+				}
+				if (actor == null) {
+					throw new IllegalArgumentException(
+							"No actor present for xmlaction" + actionClass);
+				}
+				mActorCache.put(actionClass, actor);
 			}
 		}
-		// Class actionClass = action.getClass();
-		// if(registeredActors.containsKey(actionClass)) {
-		// return (ActorXml) registeredActors.get(actionClass);
-		// }
-		throw new IllegalArgumentException("No actor present for xmlaction"
-				+ action.getClass());
+		return actor;
 	}
 
-	public ActorXml getActor(Class<?> actionClass) {
+	public synchronized ActorXml getActor(Class<?> actionClass) {
 		if (registeredActors.containsKey(actionClass)) {
 			return registeredActors.get(actionClass);
 		}
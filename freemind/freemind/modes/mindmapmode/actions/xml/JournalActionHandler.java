@@ -0,0 +1,135 @@
+/*FreeMind - A Program for creating and viewing Mindmaps
+ *Copyright (C) 2000-2014 Christian Foltin, Joerg Mueller, Daniel Polansky, Dimitri Polivaev and others.
+ *
+ *See COPYING for Details
+ *
+ *This program is free software; you can redistribute it and/or
+ *modify it under the terms of the GNU General Public License
+ *as published by the Free Software Foundation; either version 2
+ *of the License, or (at your option) any later version.
+ *
+ *This program is distributed in the hope that it will be useful,
+ *but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *GNU General Public License for more details.
+ *
+ *You should have received a copy of the GNU General Public License
+ *along with this program; if not, write to the Free Software
+ *Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package freemind.modes.mindmapmode.actions.xml;
+
+import java.util.List;
+
+import freemind.controller.actions.generated.instance.XmlAction;
+import freemind.main.Tools;
+import freemind.modes.ExtendedMapFeedback;
+import freemind.modes.MindMapLinkRegistry;
+import freemind.modes.MindMapNode;
+import freemind.modes.mindmapmode.MapJournal;
+
+/**
+ * Records all executed actions in the {@link MapJournal} of the map and
+ * replays them on load.
+ *
+ * Actions refer to nodes by their id. Nodes that get an id outside of an
+ * action (e.g. when it is first referenced) are recorded with their path
+ * from the root, so that they get the same id during the replay.
+ */
+public class JournalActionHandler implements ActionHandler,
+		MindMapLinkRegistry.NodeIdListener {
+
+	private final ExtendedMapFeedback mMapFeedback;
+	private final MapJournal mJournal;
+
+	public JournalActionHandler(ExtendedMapFeedback pMapFeedback,
+			MapJournal pJournal) {
+		mMapFeedback = pMapFeedback;
+		mJournal = pJournal;
+	}
+
+	/**
+	 * Starts recording.
+	 */
+	public void register() {
+		mMapFeedback.getActionRegistry().registerHandler(this);
+		mMapFeedback.getMap().getLinkRegistry().setNodeIdListener(this);
+	}
+
+	public void deregister() {
+		mMapFeedback.getActionRegistry().deregisterHandler(this);
+		mMapFeedback.getMap().getLinkRegistry().setNodeIdListener(null);
+	}
+
+	public void executeAction(XmlAction pAction) {
+		mJournal.add(MapJournal.ENTRY_ACTION, Tools.marshall(pAction));
+	}
+
+	public void startTransaction(String pName) {
+	}
+
+	public void endTransaction(String pName) {
+	}
+
+	public void nodeIdRegistered(MindMapNode pTarget, String pId) {
+		String path = getPath(pTarget);
+		if (path != null) {
+			mJournal.add(MapJournal.ENTRY_NODE_ID, path + " " + pId);
+		}
+		// else: the node is not (yet) part of the map, its id is contained
+		// in the action that inserts it.
+	}
+
+	/**
+	 * Executes the entries directly by their actors (no undo, not recorded).
+	 * Must be called before {@link #register()}.
+	 */
+	public void replay(List<MapJournal.Entry> pEntries) {
+		ActionRegistry registry = mMapFeedback.getActionRegistry();
+		for (MapJournal.Entry entry : pEntries) {
+			if (entry.getType() == MapJournal.ENTRY_NODE_ID) {
+				String content = entry.getContent();
+				int index = content.lastIndexOf(' ');
+				MindMapNode node = getNode(content.substring(0, index));
+				mMapFeedback.getMap().getLinkRegistry()
+						.registerLinkTarget(node, content.substring(index + 1));
+			} else {
+				XmlAction action = Tools.unMarshall(entry.getContent());
+				registry.getActor(action).act(action);
+			}
+		}
+	}
+
+	/**
+	 * @return the child indices from the root separated by commas ("" for the
+	 *         root) or null, if the node isn't part of the map.
+	 */
+	private String getPath(MindMapNode pNode) {
+		StringBuffer path = new StringBuffer();
+		MindMapNode node = pNode;
+		while (node.getParentNode() != null) {
+			MindMapNode parent = node.getParentNode();
+			if (path.length() > 0) {
+				path.insert(0, ',');
+			}
+			path.insert(0, parent.getIndex(node));
+			node = parent;
+		}
+		if (node != mMapFeedback.getMap().getRootNode()) {
+			return null;
+		}
+		return path.toString();
+	}
+
+	private MindMapNode getNode(String pPath) {
+		MindMapNode node = mMapFeedback.getMap().getRootNode();
+		if (pPath.length() == 0) {
+			return node;
+		}
+		for (String index : pPath.split(",")) {
+			node = (MindMapNode) node.getChildAt(Integer.parseInt(index));
+		}
+		return node;
+	}
+}
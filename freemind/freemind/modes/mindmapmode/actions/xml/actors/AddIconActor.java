@@ -73,7 +73,7 @@ public class AddIconActor extends XmlActorAdapter {
 	
 	/**
      */
-	private ActionPair getAddLastIconActionPair(MindMapNode node, MindIcon icon) {
+	public ActionPair getAddLastIconActionPair(MindMapNode node, MindIcon icon) {
 		int iconIndex = MindIcon.LAST;
 		return getAddIconActionPair(node, icon, iconIndex);
 	}
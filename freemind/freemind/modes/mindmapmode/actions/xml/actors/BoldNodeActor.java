@@ -62,7 +62,7 @@ public class BoldNodeActor extends NodeXmlActorAdapter {
 		return getActionPair(selected, !bold);
 	}
 
-	private ActionPair getActionPair(MindMapNode selected, boolean bold) {
+	public ActionPair getActionPair(MindMapNode selected, boolean bold) {
 		BoldNodeAction boldAction = toggleBold(selected, bold);
 		BoldNodeAction undoBoldAction = toggleBold(selected, selected.isBold());
 		return new ActionPair(boldAction, undoBoldAction);
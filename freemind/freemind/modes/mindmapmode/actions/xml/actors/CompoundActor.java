@@ -26,6 +26,7 @@ package freemind.modes.mindmapmode.actions.xml.actors;
 import freemind.controller.actions.generated.instance.CompoundAction;
 import freemind.controller.actions.generated.instance.XmlAction;
 import freemind.modes.ExtendedMapFeedback;
+import freemind.modes.mindmapmode.actions.xml.ActionRegistry;
 import freemind.modes.mindmapmode.actions.xml.ActorXml;
 
 /**
@@ -51,13 +52,20 @@ public class CompoundActor extends XmlActorAdapter {
 	public void act(XmlAction action) {
 		CompoundAction compound = (CompoundAction) action;
 		Object[] actions = compound.getListChoiceList().toArray();
-		for (int i = 0; i < actions.length; i++) {
-			Object obj = actions[i];
-			if (obj instanceof XmlAction) {
-				XmlAction xmlAction = (XmlAction) obj;
-				ActorXml actor = getExMapFeedback().getActionRegistry().getActor(xmlAction);
-				actor.act(xmlAction);
+		ActionRegistry registry = getExMapFeedback().getActionRegistry();
+		// a node changed by several actions is updated only once:
+		getExMapFeedback().startNodeChangeBatch();
+		try {
+			for (int i = 0; i < actions.length; i++) {
+				Object obj = actions[i];
+				if (obj instanceof XmlAction) {
+					XmlAction xmlAction = (XmlAction) obj;
+					ActorXml actor = registry.getActor(xmlAction);
+					actor.act(xmlAction);
+				}
 			}
+		} finally {
+			getExMapFeedback().endNodeChangeBatch();
 		}
 	}
 
@@ -67,6 +67,10 @@ public class EditActor extends XmlActorAdapter {
 		return EditNodeAction.class;
 	}
 	public void setNodeText(MindMapNode selected, String newText) {
+		execute(getActionPair(selected, newText));
+	}
+
+	public ActionPair getActionPair(MindMapNode selected, String newText) {
 		String oldText = selected.toString();
 
 		EditNodeAction EditAction = new EditNodeAction();
@@ -78,9 +82,7 @@ public class EditActor extends XmlActorAdapter {
 		undoEditAction.setNode(nodeID);
 		undoEditAction.setText(oldText);
 
-		execute(new ActionPair(EditAction, undoEditAction));
+		return new ActionPair(EditAction, undoEditAction);
 	}
 
-	
-
 }
@@ -61,7 +61,7 @@ public class ItalicNodeActor extends NodeXmlActorAdapter {
 		return getActionPair(selected, !italic);
 	}
 
-	private ActionPair getActionPair(MindMapNode selected, boolean italic) {
+	public ActionPair getActionPair(MindMapNode selected, boolean italic) {
 		ItalicNodeAction italicAction = toggleItalic(selected, italic);
 		ItalicNodeAction undoItalicAction = toggleItalic(selected,
 				selected.isItalic());
@@ -73,6 +73,10 @@ public class PasteActor extends XmlActorAdapter {
 
 	protected static java.util.logging.Logger logger = null;
 
+	private DataFlavor mPreparedFlavor = null;
+	private String mPreparedSource = null;
+	private MindMapNodeModel mPreparedNodes = null;
+
 	/**
 	 * @param pMapFeedback
 	 */
@@ -303,114 +307,40 @@ public class PasteActor extends XmlActorAdapter {
 	private static final Pattern HREF_PATTERN = Pattern
 			.compile("<html>\\s*<body>\\s*<a\\s+href=\"([^>]+)\">(.*)</a>\\s*</body>\\s*</html>");
 
-	private class DirectHtmlFlavorHandler implements DataFlavorHandler {
-
-		private NodeCreator mNodeCreator;
-
-		/**
-		 * @param pNodeCreator the nodeCreator to set
-		 */
-		public void setNodeCreator(NodeCreator pNodeCreator) {
-			mNodeCreator = pNodeCreator;
-		}
-
-		/**
-		 * 
-		 */
-		private DirectHtmlFlavorHandler() {
-			mNodeCreator = new NodeCreator() {
-
-					@Override
-					public MindMapNode createChild(MindMapNode pParent) {
-						MindMapNode node = getExMapFeedback().newNode("",
-								getExMapFeedback().getMap());
-						insertNodeInto(node, pParent);
-						node.setParent(pParent);
-						getExMapFeedback().nodeChanged(pParent);
-						return node;
-					}
+	private static final Pattern ANCHOR_PATTERN = Pattern.compile(".*<\\s*a.*");
 
-					@Override
-					public void setText(String pText, MindMapNode pNode) {
-						pNode.setText(pText);
-						getExMapFeedback().nodeChanged(pNode);
-					}
+	/**
+	 * Removed from pasted html, in this order.
+	 */
+	private static final Pattern[] HTML_CLEANUP_PATTERNS = {
+			Pattern.compile("(?i)(?s)<meta[^>]*>"),
+			Pattern.compile("(?i)(?s)<head>.*?</head>"),
+			Pattern.compile("(?i)(?s)</?html[^>]*>"),
+			Pattern.compile("(?i)(?s)</?body[^>]*>"),
+			Pattern.compile("(?i)(?s)<script.*?>.*?</script>"),
+			// Java HTML Editor does not like the tag.
+			Pattern.compile("(?i)(?s)</?tbody.*?>"),
+			// Java HTML Editor shows comments in not very nice manner.
+			Pattern.compile("(?i)(?s)<!--.*?-->"),
+			// Java HTML Editor does not like Microsoft Word's <o> tag.
+			Pattern.compile("(?i)(?s)</?o[^>]*>") };
+
+	private static final Pattern IMAGE_PATTERN = Pattern
+			.compile("(?i)(?s)<img[^>]*>");
 
-					@Override
-					public void setLink(String pLink, MindMapNode pNode) {
-						pNode.setLink(pLink);
-						getExMapFeedback().nodeChanged(pNode);
-					}};
-		}
+	private class DirectHtmlFlavorHandler implements DataFlavorHandler {
 
 		public void paste(Object transferData, MindMapNode target,
 				boolean asSibling, boolean isLeft, Transferable t)
 				throws UnsupportedFlavorException, IOException {
-			String textFromClipboard = (String) transferData;
-			// workaround for java decoding bug
-			// http://bugs.sun.com/bugdatabase/view_bug.do?bug_id=6740877
-			textFromClipboard = textFromClipboard.replace((char) 65533, ' ');
-//			if (textFromClipboard.charAt(0) == 65533) {
-//				throw new UnsupportedFlavorException(
-//						MindMapNodesSelection.htmlFlavor);
-//			}
-			// ^ This outputs transfer data to standard output. I don't know
-			// why.
-			// { Alternative pasting of HTML
 			setWaitingCursor(true);
-			logger.finer("directHtmlFlavor (original): " + textFromClipboard);
-			textFromClipboard = textFromClipboard
-					.replaceAll("(?i)(?s)<meta[^>]*>", "")
-					.replaceAll("(?i)(?s)<head>.*?</head>", "")
-					.replaceAll("(?i)(?s)</?html[^>]*>", "")
-					.replaceAll("(?i)(?s)</?body[^>]*>", "")
-					.replaceAll("(?i)(?s)<script.*?>.*?</script>", "")
-					// Java HTML Editor
-					// does not like
-					// the tag.
-					.replaceAll("(?i)(?s)</?tbody.*?>", ""). 
-					// Java HTML Editor
-					// shows comments in
-					// not very nice
-					// manner.
-					replaceAll("(?i)(?s)<!--.*?-->", ""). 
-					// Java HTML Editor
-					// does not like
-					// Microsoft Word's
-					// <o> tag.
-					replaceAll("(?i)(?s)</?o[^>]*>", "");
-			textFromClipboard = "<html><body>"+textFromClipboard + "</body></html>"; 
-			logger.finer("directHtmlFlavor: " + textFromClipboard);
-			if (Resources.getInstance().getBoolProperty(
-					FreeMind.RESOUCES_PASTE_HTML_STRUCTURE)) {
-				HtmlTools.getInstance().insertHtmlIntoNodes(textFromClipboard,
-						target, mNodeCreator);
-			} else {
-				if (Tools.safeEquals(
-						getExMapFeedback().getProperty(
-								"cut_out_pictures_when_pasting_html"), "true")) {
-					textFromClipboard = textFromClipboard.replaceAll(
-							"(?i)(?s)<img[^>]*>", "");
-				} // Cut out images.
-	
-				textFromClipboard = HtmlTools
-						.unescapeHTMLUnicodeEntity(textFromClipboard);
-	
-				MindMapNode node = getExMapFeedback().newNode(textFromClipboard,
-						getExMapFeedback().getMap());
-				// if only one <a>...</a> element found, set link
-				Matcher m = HREF_PATTERN.matcher(textFromClipboard);
-				if (m.matches()) {
-					final String body = m.group(2);
-					if (!body.matches(".*<\\s*a.*")) {
-						final String href = m.group(1);
-						node.setLink(href);
-					}
-				}
-	
-				insertNodeInto(node, target);
-				// addUndoAction(node);
+			String textFromClipboard = (String) transferData;
+			MindMapNodeModel holder = takePreparedNodes(getDataFlavor(),
+					textFromClipboard);
+			if (holder == null) {
+				holder = parseHtml(textFromClipboard);
 			}
+			insertPreparedNodes(holder, target, asSibling, isLeft);
 			setWaitingCursor(false);
 		}
 
@@ -419,12 +349,88 @@ public class PasteActor extends XmlActorAdapter {
 		}
 	}
 
+	/**
+	 * Creates the nodes for pasted html below a holder node, that doesn't
+	 * belong to the map. Thus, no events are sent and the nodes can be
+	 * counted before they are inserted.
+	 */
+	private MindMapNodeModel parseHtml(String pHtml) {
+		MindMapNodeModel holder = new MindMapNodeModel(getExMapFeedback()
+				.getMap());
+		holder.setText("ROOT");
+		// workaround for java decoding bug
+		// http://bugs.sun.com/bugdatabase/view_bug.do?bug_id=6740877
+		String textFromClipboard = pHtml.replace((char) 65533, ' ');
+		logger.finer("directHtmlFlavor (original): " + textFromClipboard);
+		for (int i = 0; i < HTML_CLEANUP_PATTERNS.length; i++) {
+			textFromClipboard = HTML_CLEANUP_PATTERNS[i].matcher(
+					textFromClipboard).replaceAll("");
+		}
+		textFromClipboard = "<html><body>" + textFromClipboard
+				+ "</body></html>";
+		logger.finer("directHtmlFlavor: " + textFromClipboard);
+		if (Resources.getInstance().getBoolProperty(
+				FreeMind.RESOUCES_PASTE_HTML_STRUCTURE)) {
+			HtmlTools.getInstance().insertHtmlIntoNodes(textFromClipboard,
+					holder, new NodeCreator() {
+
+						@Override
+						public MindMapNode createChild(MindMapNode pParent) {
+							MindMapNode node = getExMapFeedback().newNode("",
+									getExMapFeedback().getMap());
+							pParent.insert(node, pParent.getChildCount());
+							return node;
+						}
+
+						@Override
+						public void setText(String pText, MindMapNode pNode) {
+							pNode.setText(pText);
+						}
+
+						@Override
+						public void setLink(String pLink, MindMapNode pNode) {
+							pNode.setLink(pLink);
+						}
+					});
+		} else {
+			if (Tools.safeEquals(
+					getExMapFeedback().getProperty(
+							"cut_out_pictures_when_pasting_html"), "true")) {
+				textFromClipboard = IMAGE_PATTERN.matcher(textFromClipboard)
+						.replaceAll("");
+			} // Cut out images.
+
+			textFromClipboard = HtmlTools
+					.unescapeHTMLUnicodeEntity(textFromClipboard);
+
+			MindMapNode node = getExMapFeedback().newNode(textFromClipboard,
+					getExMapFeedback().getMap());
+			// if only one <a>...</a> element found, set link
+			Matcher m = HREF_PATTERN.matcher(textFromClipboard);
+			if (m.matches()) {
+				final String body = m.group(2);
+				if (!ANCHOR_PATTERN.matcher(body).matches()) {
+					final String href = m.group(1);
+					node.setLink(href);
+				}
+			}
+			holder.insert(node, holder.getChildCount());
+		}
+		return holder;
+	}
+
 	private class StringFlavorHandler implements DataFlavorHandler {
 
 		public void paste(Object TransferData, MindMapNode target,
 				boolean asSibling, boolean isLeft, Transferable t)
 				throws UnsupportedFlavorException, IOException {
-			pasteStringWithoutRedisplay(t, target, asSibling, isLeft);
+			String textFromClipboard = (String) TransferData;
+			MindMapNodeModel holder = takePreparedNodes(getDataFlavor(),
+					textFromClipboard);
+			if (holder == null) {
+				holder = parseText(textFromClipboard);
+			}
+			insertPreparedNodes(holder, target, asSibling, isLeft);
 		}
 
 		public DataFlavor getDataFlavor() {
@@ -570,7 +576,29 @@ public class PasteActor extends XmlActorAdapter {
 		}
 	}
 
-	static final Pattern nonLinkCharacter = Pattern.compile("[ \n()'\",;]");
+	private static final String NON_LINK_CHARACTERS = " \n()'\",;";
+
+	private static final String[] LINK_PREFIXES = { "http://", "ftp://",
+			"https://" };
+
+	private static final Pattern MAIL_PATTERN = Pattern
+			.compile("([^@ <>\\*']+@[^@ <>\\*']+)");
+
+	private static final Pattern HTTP_LINK_PATTERN = Pattern
+			.compile("^http://(www\\.)?[^ ]*$");
+
+	private static final Pattern HTTP_PREFIX_PATTERN = Pattern
+			.compile("^http://(www\\.)?");
+
+	private static final Pattern LINK_SUFFIX_PATTERN = Pattern
+			.compile("(/|\\.[^\\./\\?]*)$");
+
+	private static final Pattern LINK_QUERY_PATTERN = Pattern
+			.compile("((\\.[^\\./]*\\?)|\\?)[^/]*$");
+
+	private static final Pattern LINK_BLANK_PATTERN = Pattern.compile("_|%20");
+
+	private static final Pattern LEADING_TILDES_PATTERN = Pattern.compile("^~*");
 
 	/**
 	 * Paste String (as opposed to other flavors)
@@ -579,19 +607,12 @@ public class PasteActor extends XmlActorAdapter {
 	 * of leading spaces in lines. In case that trimmed line starts with
 	 * protocol (http:, https:, ftp:), create a link with the same content.
 	 * 
-	 * If there was only one line to be pasted, return the pasted node, null
-	 * otherwise.
-	 * 
-	 * @param isLeft
-	 *            TODO
+	 * The nodes are created below a holder node, that doesn't belong to the
+	 * map (see {@link #parseHtml(String)}).
 	 */
-	private MindMapNode pasteStringWithoutRedisplay(Transferable t,
-			MindMapNode parent, boolean asSibling, boolean isLeft)
-			throws UnsupportedFlavorException, IOException {
-
-		String textFromClipboard = (String) t
-				.getTransferData(DataFlavor.stringFlavor);
-		Pattern mailPattern = Pattern.compile("([^@ <>\\*']+@[^@ <>\\*']+)");
+	private MindMapNodeModel parseText(String textFromClipboard) {
+		MindMapNodeModel parent = new MindMapNodeModel(getExMapFeedback()
+				.getMap());
 
 		String[] textLines = textFromClipboard.split("\n");
 
@@ -599,30 +620,16 @@ public class PasteActor extends XmlActorAdapter {
 			setWaitingCursor(true);
 		}
 
-		if (asSibling) {
-			// When pasting as sibling, we use virtual node as parent. When the
-			// pasting to
-			// virtual node is completed, we insert the children of that virtual
-			// node to
-			// the parent of real parent.
-			parent = new MindMapNodeModel(getExMapFeedback().getMap());
-		}
-
 		ArrayList<MindMapNode> parentNodes = new ArrayList<>();
 		ArrayList<Integer> parentNodesDepths = new ArrayList<>();
 
 		parentNodes.add(parent);
 		parentNodesDepths.add(-1);
 
-		String[] linkPrefixes = { "http://", "ftp://", "https://" };
-
-		MindMapNode pastedNode = null;
-
 		for (int i = 0; i < textLines.length; ++i) {
 			String text = textLines[i];
-//			System.out.println("Text to paste: "+text);
-			text = text.replaceAll("\t", "        ");
-			if (text.matches(" *")) {
+			text = text.replace("\t", "        ");
+			if (isBlank(text)) {
 				continue;
 			}
 
@@ -638,32 +645,35 @@ public class PasteActor extends XmlActorAdapter {
 			// and other
 			// transforamtions.
 
-			if (visibleText.matches("^http://(www\\.)?[^ ]*$")) {
-				visibleText = visibleText.replaceAll("^http://(www\\.)?", "")
-						.replaceAll("(/|\\.[^\\./\\?]*)$", "")
-						.replaceAll("((\\.[^\\./]*\\?)|\\?)[^/]*$", " ? ...")
-						.replaceAll("_|%20", " ");
+			if (HTTP_LINK_PATTERN.matcher(visibleText).matches()) {
+				visibleText = HTTP_PREFIX_PATTERN.matcher(visibleText)
+						.replaceAll("");
+				visibleText = LINK_SUFFIX_PATTERN.matcher(visibleText)
+						.replaceAll("");
+				visibleText = LINK_QUERY_PATTERN.matcher(visibleText)
+						.replaceAll(" ? ...");
+				visibleText = LINK_BLANK_PATTERN.matcher(visibleText)
+						.replaceAll(" ");
 				String[] textParts = visibleText.split("/");
-				visibleText = "";
+				StringBuilder readableText = new StringBuilder();
 				for (int textPartIdx = 0; textPartIdx < textParts.length; textPartIdx++) {
 					if (textPartIdx > 0) {
-						visibleText += " > ";
+						readableText.append(" > ");
 					}
-					visibleText += textPartIdx == 0 ? textParts[textPartIdx]
-							: Tools.firstLetterCapitalized(textParts[textPartIdx]
-									.replaceAll("^~*", ""));
+					readableText.append(textPartIdx == 0 ? textParts[textPartIdx]
+							: Tools.firstLetterCapitalized(LEADING_TILDES_PATTERN
+									.matcher(textParts[textPartIdx])
+									.replaceAll("")));
 				}
+				visibleText = readableText.toString();
 			}
 
 			MindMapNode node = getExMapFeedback().newNode(visibleText,
 					parent.getMap());
-			if (textLines.length == 1) {
-				pastedNode = node;
-			}
 
 			// Heuristically determine, if there is a mail.
 
-			Matcher mailMatcher = mailPattern.matcher(visibleText);
+			Matcher mailMatcher = MAIL_PATTERN.matcher(visibleText);
 			if (mailMatcher.find()) {
 				node.setLink("mailto:" + mailMatcher.group());
 			}
@@ -672,14 +682,12 @@ public class PasteActor extends XmlActorAdapter {
 			// heuristic, it is probable that it can be improved to include
 			// some matches or exclude some matches.
 
-			for (int j = 0; j < linkPrefixes.length; j++) {
-				int linkStart = text.indexOf(linkPrefixes[j]);
+			for (int j = 0; j < LINK_PREFIXES.length; j++) {
+				int linkStart = text.indexOf(LINK_PREFIXES[j]);
 				if (linkStart != -1) {
 					int linkEnd = linkStart;
 					while (linkEnd < text.length()
-							&& !nonLinkCharacter.matcher(
-									text.substring(linkEnd, linkEnd + 1))
-									.matches()) {
+							&& NON_LINK_CHARACTERS.indexOf(text.charAt(linkEnd)) < 0) {
 						linkEnd++;
 					}
 					node.setLink(text.substring(linkStart, linkEnd));
@@ -692,30 +700,71 @@ public class PasteActor extends XmlActorAdapter {
 			for (int j = parentNodes.size() - 1; j >= 0; --j) {
 				if (depth > ((Integer) parentNodesDepths.get(j)).intValue()) {
 					for (int k = j + 1; k < parentNodes.size(); ++k) {
-						MindMapNode n = (MindMapNode) parentNodes.get(k);
-						if (n.getParentNode() == parent) {
-							// addUndoAction(n);
-						}
 						parentNodes.remove(k);
 						parentNodesDepths.remove(k);
 					}
 					MindMapNode target = (MindMapNode) parentNodes.get(j);
-					node.setLeft(isLeft);
-					insertNodeInto(node, target);
+					target.insert(node, target.getChildCount());
 					parentNodes.add(node);
 					parentNodesDepths.add(Integer.valueOf(depth));
 					break;
 				}
 			}
 		}
+		return parent;
+	}
+
+	private static boolean isBlank(String pText) {
+		for (int i = 0; i < pText.length(); i++) {
+			if (pText.charAt(i) != ' ') {
+				return false;
+			}
+		}
+		return true;
+	}
 
-		for (int k = 0; k < parentNodes.size(); ++k) {
-			MindMapNode n = (MindMapNode) parentNodes.get(k);
-			if (n.getParentNode() == parent) {
-				// addUndoAction(n);
+	/**
+	 * Remembers the nodes parsed to count them for the undo action, such that
+	 * the paste itself doesn't parse again.
+	 */
+	private void prepareNodes(DataFlavor pFlavor, String pSource,
+			MindMapNodeModel pHolder) {
+		mPreparedFlavor = pFlavor;
+		mPreparedSource = pSource;
+		mPreparedNodes = pHolder;
+	}
+
+	/**
+	 * @return the prepared nodes for this content (only once) or null.
+	 */
+	private MindMapNodeModel takePreparedNodes(DataFlavor pFlavor,
+			String pSource) {
+		MindMapNodeModel holder = mPreparedNodes;
+		boolean matches = holder != null && pFlavor.equals(mPreparedFlavor)
+				&& pSource != null && pSource.equals(mPreparedSource)
+				&& holder.getMap() == getExMapFeedback().getMap();
+		prepareNodes(null, null, null);
+		return matches ? holder : null;
+	}
+
+	/**
+	 * Moves the children of the holder into the map. Only the inserts of the
+	 * top level nodes are announced, their subtrees come along, and the
+	 * changes of the nodes are sent as one batch.
+	 */
+	private void insertPreparedNodes(MindMapNodeModel pHolder,
+			MindMapNode target, boolean asSibling, boolean isLeft) {
+		Vector<MindMapNode> nodes = new Vector<>(pHolder.getChildren());
+		getExMapFeedback().startNodeChangeBatch();
+		try {
+			for (MindMapNode node : nodes) {
+				pHolder.remove(node);
+				insertNodeInto((MindMapNodeModel) node, target, asSibling,
+						isLeft, true);
 			}
+		} finally {
+			getExMapFeedback().endNodeChangeBatch();
 		}
-		return pastedNode;
 	}
 
 	/**
@@ -768,13 +817,16 @@ public class PasteActor extends XmlActorAdapter {
 				String textFromClipboard;
 				textFromClipboard = (String) t
 						.getTransferData(MindMapNodesSelection.htmlFlavor);
-				trans.setTransferableAsHtml(HtmlTools
-						.makeValidXml(textFromClipboard));
+				String html = HtmlTools.makeValidXml(textFromClipboard);
+				trans.setTransferableAsHtml(html);
 				if (pUndoAction != null && !amountAlreadySet) {
-					// on html paste, the string text is taken and "improved".
-					// Thus, we count its lines.
+					// the nodes are created here (and kept for the paste) to
+					// count them.
 					try {
-						pUndoAction.setNodeAmount(determineAmountOfNewNodes(t));
+						MindMapNodeModel holder = parseHtml(html);
+						prepareNodes(MindMapNodesSelection.htmlFlavor, html,
+								holder);
+						pUndoAction.setNodeAmount(holder.getChildCount());
 						amountAlreadySet = true;
 					} catch (Exception e) {
 						freemind.main.Resources.getInstance().logException(e);
@@ -787,12 +839,13 @@ public class PasteActor extends XmlActorAdapter {
 				String textFromClipboard;
 				textFromClipboard = (String) t
 						.getTransferData(DataFlavor.stringFlavor);
-				trans.setTransferableAsPlainText(HtmlTools
-						.makeValidXml(textFromClipboard));
+				String plainText = HtmlTools.makeValidXml(textFromClipboard);
+				trans.setTransferableAsPlainText(plainText);
 				if (pUndoAction != null && !amountAlreadySet) {
 					// determine amount of new nodes using the algorithm:
-					final int childCount = determineAmountOfNewTextNodes(t);
-					pUndoAction.setNodeAmount(childCount);
+					MindMapNodeModel holder = parseText(plainText);
+					prepareNodes(DataFlavor.stringFlavor, plainText, holder);
+					pUndoAction.setNodeAmount(holder.getChildCount());
 					amountAlreadySet = true;
 				}
 			}
@@ -839,21 +892,12 @@ public class PasteActor extends XmlActorAdapter {
 		return null;
 	}
 
-	/*
-	 * TODO: This is a bit dirty here. Better would be to separate the algorithm
-	 * from the node creation and use the pure algo.
-	 */
 	protected int determineAmountOfNewTextNodes(Transferable t)
 			throws UnsupportedFlavorException, IOException {
-		// create a new node for testing purposes.
-		MindMapNodeModel parent = new MindMapNodeModel(
-				getExMapFeedback().getMap());
-		pasteStringWithoutRedisplay(t, parent, false, false);
-		final int childCount = parent.getChildCount();
-		return childCount;
+		return parseText((String) t.getTransferData(DataFlavor.stringFlavor))
+				.getChildCount();
 	}
 
-	
 	/**
 	 * Only for HTML nodes.
 	 * @param t
@@ -863,39 +907,9 @@ public class PasteActor extends XmlActorAdapter {
 	 */
 	public int determineAmountOfNewNodes(Transferable t)
 			throws UnsupportedFlavorException, IOException {
-		// create a new node for testing purposes.
-		MindMapNodeModel parent = new MindMapNodeModel(
-				getExMapFeedback().getMap());
-		parent.setText("ROOT");
-		DirectHtmlFlavorHandler handler = new DirectHtmlFlavorHandler();
-		// creator, that only creates dummy nodes.
-		handler.setNodeCreator(new NodeCreator() {
-
-			@Override
-			public MindMapNode createChild(MindMapNode pParent) {
-				try {
-					MindMapNodeModel newNode = new MindMapNodeModel("",
-							getExMapFeedback().getMap());
-					pParent.insert(newNode, pParent.getChildCount());
-					newNode.setParent(pParent);
-					return newNode;
-				} catch (Exception e) {
-					freemind.main.Resources.getInstance().logException(e);
-				}
-				return null;
-			}
-
-			@Override
-			public void setText(String pText, MindMapNode pNode) {
-				pNode.setText(pText);
-			}
-
-			@Override
-			public void setLink(String pLink, MindMapNode pNode) {
-			}});
-		handler.paste(t.getTransferData(handler.getDataFlavor()), parent, false, true, t);
-		final int childCount = parent.getChildCount();
-		return childCount;
+		return parseHtml(
+				(String) t.getTransferData(MindMapNodesSelection.htmlFlavor))
+				.getChildCount();
 	}
 
 	private Transferable getTransferable(TransferableContent trans) {
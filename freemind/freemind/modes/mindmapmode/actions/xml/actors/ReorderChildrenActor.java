@@ -0,0 +1,89 @@
+/*FreeMind - A Program for creating and viewing Mindmaps
+ *Copyright (C) 2000-2014 Christian Foltin, Joerg Mueller, Daniel Polansky, Dimitri Polivaev and others.
+ *
+ *See COPYING for Details
+ *
+ *This program is free software; you can redistribute it and/or
+ *modify it under the terms of the GNU General Public License
+ *as published by the Free Software Foundation; either version 2
+ *of the License, or (at your option) any later version.
+ *
+ *This program is distributed in the hope that it will be useful,
+ *but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *GNU General Public License for more details.
+ *
+ *You should have received a copy of the GNU General Public License
+ *along with this program; if not, write to the Free Software
+ *Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package freemind.modes.mindmapmode.actions.xml.actors;
+
+import java.util.List;
+import java.util.Vector;
+
+import freemind.controller.actions.generated.instance.NodeListMember;
+import freemind.controller.actions.generated.instance.ReorderChildrenAction;
+import freemind.controller.actions.generated.instance.XmlAction;
+import freemind.modes.ExtendedMapFeedback;
+import freemind.modes.MindMapNode;
+import freemind.modes.mindmapmode.actions.xml.ActionPair;
+
+/**
+ * Puts the children of a node into a new order without cutting and pasting
+ * them. Do and undo only consist of the ids of the children.
+ */
+public class ReorderChildrenActor extends XmlActorAdapter {
+
+	public ReorderChildrenActor(ExtendedMapFeedback pMapFeedback) {
+		super(pMapFeedback);
+	}
+
+	/**
+	 * @param pNewOrder
+	 *            must contain exactly the children of pParent.
+	 */
+	public void reorderChildren(MindMapNode pParent,
+			List<MindMapNode> pNewOrder) {
+		if (pNewOrder.equals(pParent.getChildren())) {
+			return;
+		}
+		ReorderChildrenAction doAction = createReorderChildrenAction(pParent,
+				pNewOrder);
+		ReorderChildrenAction undoAction = createReorderChildrenAction(
+				pParent, pParent.getChildren());
+		execute(new ActionPair(doAction, undoAction));
+	}
+
+	public void act(XmlAction action) {
+		if (action instanceof ReorderChildrenAction) {
+			ReorderChildrenAction reorderAction = (ReorderChildrenAction) action;
+			MindMapNode parent = getNodeFromID(reorderAction.getNode());
+			Vector<MindMapNode> newOrder = new Vector<>();
+			for (int i = 0; i < reorderAction.sizeNodeListMemberList(); i++) {
+				newOrder.add(getNodeFromID(reorderAction.getNodeListMember(i)
+						.getNode()));
+			}
+			getExMapFeedback().getMap().reorderChildren(parent, newOrder);
+			getExMapFeedback().nodeChanged(parent);
+		}
+	}
+
+	public Class<ReorderChildrenAction> getDoActionClass() {
+		return ReorderChildrenAction.class;
+	}
+
+	private ReorderChildrenAction createReorderChildrenAction(
+			MindMapNode pParent, List<MindMapNode> pOrder) {
+		ReorderChildrenAction reorderAction = new ReorderChildrenAction();
+		reorderAction.setNode(getNodeID(pParent));
+		for (MindMapNode child : pOrder) {
+			NodeListMember member = new NodeListMember();
+			member.setNode(getNodeID(child));
+			reorderAction.addNodeListMember(member);
+		}
+		return reorderAction;
+	}
+
+}
@@ -61,7 +61,7 @@ public class StrikethroughNodeActor extends NodeXmlActorAdapter {
 		return getActionPair(selected, !Strikethrough);
 	}
 
-	private ActionPair getActionPair(MindMapNode selected, boolean Strikethrough) {
+	public ActionPair getActionPair(MindMapNode selected, boolean Strikethrough) {
 		StrikethroughNodeAction StrikethroughAction = toggleStrikethrough(selected, Strikethrough);
 		StrikethroughNodeAction undoStrikethroughAction = toggleStrikethrough(selected, selected.isStrikethrough());
 		return new ActionPair(StrikethroughAction, undoStrikethroughAction);
@@ -60,6 +60,7 @@ public class XmlActorFactory {
 	private NodeColorActor mNodeColorActor;
 	private AddHookActor mAddHookActor;
 	private NodeUpActor mNodeUpActor;
+	private ReorderChildrenActor mReorderChildrenActor;
 	private RevertActor mRevertActor;
 	private ToggleFoldedActor mToggleFoldedActor;
 	private SetLinkActor mSetLinkActor;
@@ -103,6 +104,7 @@ public class XmlActorFactory {
 		mNodeColorActor = new NodeColorActor(mMapFeedback);
 		mAddHookActor = new AddHookActor(mMapFeedback);
 		mNodeUpActor = new NodeUpActor(mMapFeedback);
+		mReorderChildrenActor = new ReorderChildrenActor(mMapFeedback);
 		mRevertActor = new RevertActor(mMapFeedback);
 		mToggleFoldedActor = new ToggleFoldedActor(mMapFeedback);
 		mSetLinkActor = new SetLinkActor(mMapFeedback);
@@ -235,6 +237,10 @@ public class XmlActorFactory {
 	public NodeUpActor getNodeUpActor() {
 		return mNodeUpActor;
 	}
+
+	public ReorderChildrenActor getReorderChildrenActor() {
+		return mReorderChildrenActor;
+	}
 	
 	public RevertActor getRevertActor() {
 		return mRevertActor;
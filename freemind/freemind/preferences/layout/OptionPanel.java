@@ -1267,6 +1267,8 @@ public class OptionPanel implements TextTranslator {
 		controls.add(new SeparatorProperty("undo"));
 		controls.add(new NumberProperty("undo_levels.tooltip", "undo_levels",
 				2, 1000, 1));
+		controls.add(new NumberProperty("undo_memory_limit.tooltip",
+				"undo_memory_limit", 1, 4096, 1));
 
 		/***********************************************************************
 		 * Browser/external apps
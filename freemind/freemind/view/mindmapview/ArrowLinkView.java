@@ -46,6 +46,8 @@ public class ArrowLinkView {
 	protected NodeView source, target;
 	protected int iterativeLevel;
 	protected CubicCurve2D arrowLinkCurve;
+	/** Start, end and the two control points, see {@link #updateCurve()}. */
+	private Point p1, p2, p3, p4;
 	static final Stroke DEF_STROKE = new BasicStroke(1);
 
 	/* Note, that source and target are nodeviews and not nodemodels!. */
@@ -63,24 +65,38 @@ public class ArrowLinkView {
 	}
 
 	/**
-	 * \param iterativeLevel describes the n-th nested arrowLink that is to be
-	 * painted.
+	 * @return the area touched by {@link #paint(Graphics)} (including the
+	 *         arrows and the control points) or null, if nothing is painted.
 	 */
-	public void paint(Graphics graphics) {
+	public Rectangle getPaintBounds() {
+		if (arrowLinkCurve == null) {
+			return null;
+		}
+		Rectangle bounds = arrowLinkCurve.getBounds();
+		int margin = getRealWidth() + getMap().getZoomed(10) + 2;
+		bounds.grow(margin, margin);
+		return bounds;
+	}
+
+	public NodeView getSource() {
+		return source;
+	}
+
+	public NodeView getTarget() {
+		return target;
+	}
+
+	/**
+	 * Computes the curve from the current positions of the nodes. Call this
+	 * before painting, whenever the nodes have moved.
+	 */
+	public void updateCurve() {
+		arrowLinkCurve = null;
+		p1 = p2 = p3 = p4 = null;
 		if (!isSourceVisible() && !isTargetVisible())
 			return;
-		Point p1 = null, p2 = null, p3 = null, p4 = null;
 		boolean targetIsLeft = false;
 		boolean sourceIsLeft = false;
-		Graphics2D g = (Graphics2D) graphics.create();
-		g.setColor(getColor());
-		/* set stroke. */
-		g.setStroke(getStroke());
-		// if one of the nodes is not present then draw a dashed line:
-		if (!isSourceVisible() || !isTargetVisible())
-			g.setStroke(new BasicStroke(getWidth(), BasicStroke.CAP_ROUND,
-					BasicStroke.JOIN_ROUND, 0, new float[] { 0, 3, 0, 3 }, 0));
-
 		// determine, whether destination exists:
 		if (isSourceVisible()) {
 			p1 = source.getLinkPoint(arrowLinkModel.getStartInclination());
@@ -135,19 +151,37 @@ public class ArrowLinkView {
 
 		if (p1 != null && p2 != null) {
 			arrowLinkCurve.setCurve(p1, p3, p4, p2);
+		}
+	}
+
+	/**
+	 * Paints the curve computed by the last {@link #updateCurve()}.
+	 */
+	public void paint(Graphics graphics) {
+		if (arrowLinkCurve == null)
+			return;
+		Graphics2D g = (Graphics2D) graphics.create();
+		g.setColor(getColor());
+		/* set stroke. */
+		g.setStroke(getStroke());
+		// if one of the nodes is not present then draw a dashed line:
+		if (p1 == null || p2 == null)
+			g.setStroke(new BasicStroke(getWidth(), BasicStroke.CAP_ROUND,
+					BasicStroke.JOIN_ROUND, 0, new float[] { 0, 3, 0, 3 }, 0));
+		if (p1 != null && p2 != null) {
 			g.draw(arrowLinkCurve);
 			// arrow source:
 		}
-		if (isSourceVisible() && !arrowLinkModel.getStartArrow().equals("None")) {
+		if (p1 != null && !arrowLinkModel.getStartArrow().equals("None")) {
 			paintArrow(p1, p3, g);
 		}
 		// arrow target:
-		if (isTargetVisible() && !arrowLinkModel.getEndArrow().equals("None")) {
+		if (p2 != null && !arrowLinkModel.getEndArrow().equals("None")) {
 			paintArrow(p2, p4, g);
 		}
 		// Control Points
-		if (arrowLinkModel.getShowControlPointsFlag() || !isSourceVisible()
-				|| !isTargetVisible()) {
+		if (arrowLinkModel.getShowControlPointsFlag() || p1 == null
+				|| p2 == null) {
 			g.setStroke(new BasicStroke(getWidth(), BasicStroke.CAP_ROUND,
 					BasicStroke.JOIN_ROUND, 0, new float[] { 0, 3, 0, 3 }, 0));
 			if (p1 != null) {
@@ -157,6 +191,7 @@ public class ArrowLinkView {
 				g.drawLine(p2.x, p2.y, p4.x, p4.y);
 			}
 		}
+		g.dispose();
 	}
 
 	/**
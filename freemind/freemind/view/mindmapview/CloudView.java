@@ -26,10 +26,10 @@ import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.Polygon;
+import java.awt.Rectangle;
 import java.awt.Shape;
 import java.awt.Stroke;
 import java.awt.geom.QuadCurve2D;
-import java.util.LinkedList;
 import java.util.Vector;
 
 import freemind.modes.MindMapCloud;
@@ -43,6 +43,8 @@ public class CloudView {
 	static final Stroke DEF_STROKE = new BasicStroke(1);
 	protected MindMapCloud cloudModel;
 	protected NodeView source;
+	/** Clip of the current painting, enlarged by the stroke width. */
+	private Rectangle mClip;
 
 	/**
 	 * getIterativeLevel() describes the n-th nested cloud that is to be
@@ -68,6 +70,11 @@ public class CloudView {
 		/* now bold */
 		gstroke.setColor(getExteriorColor());
 		gstroke.setStroke(getStroke());
+		// arcs outside of the clip are skipped:
+		mClip = g.getClipBounds();
+		if (mClip != null) {
+			mClip.grow(getRealWidth() + 1, getRealWidth() + 1);
+		}
 		/*
 		 * calculate the distances between two points on the convex hull
 		 * depending on the getIterativeLevel().
@@ -76,13 +83,10 @@ public class CloudView {
 		if (getIterativeLevel() > 4)
 			distanceBetweenPoints = 100 * getZoom(); /* flat */
 		double distanceToConvexHull = getDistanceToConvexHull();
-		/** get coordinates */
-		LinkedList<Point> coordinates = new LinkedList<>();
-		ConvexHull hull = new ConvexHull();
-		source.getCoordinates(coordinates);
+		/** get the convex hull of the coordinates */
 		// source.getCoordinates(coordinates, (getIterativeLevel()==0)?(int)(5*
 		// getZoom()):0 /* = additionalDistanceForConvexHull */);
-		Vector<Point> res = hull.calculateHull(coordinates);
+		Vector<Point> res = new Vector<>(getMap().getCloudHull(source));
 		Polygon p = new Polygon();
 		for (int i = 0; i < res.size(); ++i) {
 			Point pt = (Point) res.get(i);
@@ -161,6 +165,9 @@ public class CloudView {
 		// System.out.println("Line from " + x0+ ", " +y0+ ", " +x2+ ", " +y2+
 		// ", " +x1+ ", " +y1+".");
 		Shape shape = new QuadCurve2D.Double(x0, y0, x2, y2, x1, y1);
+		if (mClip != null && !mClip.intersects(shape.getBounds2D())) {
+			return;
+		}
 		g.fill(shape);
 		gstroke.draw(shape);
 	}
@@ -206,6 +213,15 @@ public class CloudView {
 		return (int) (1.1 * heightCalculator.getDistanceToConvexHull());
 	}
 
+	/**
+	 * Same as {@link #getAdditionalHeigth(MindMapCloud, NodeView)} for the
+	 * nodes without view.
+	 */
+	static int getAdditionalHeigth(MindMapCloud cloudModel, MapView map) {
+		return (int) (1.1 * (40 / (cloudModel.getIterativeLevel() + 1) * (double) map
+				.getZoom()));
+	}
+
 	protected MapView getMap() {
 		return source.getMap();
 	}
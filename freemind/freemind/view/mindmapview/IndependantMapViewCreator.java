@@ -93,6 +93,15 @@ public class IndependantMapViewCreator extends MapFeedbackAdapter {
 		Tools.FileReaderCreator readerCreator = new Tools.FileReaderCreator(new File(inputFileName));
 		MindMapNode node = mMap.loadTree(readerCreator, MapAdapter.sDontAskInstance);
 		mMap.setRoot(node);
+		return createMapView(mMap, parent);
+	}
+
+	/**
+	 * Creates the view of a map that is already loaded. The map must have
+	 * been created with this creator as its feedback.
+	 */
+	public MapView createMapView(MindMapMapModel pMap, JPanel parent) {
+		mMap = pMap;
 		MapView mapView = new MapView(mMap, this); 
 		parent.add(mapView, BorderLayout.CENTER);
 		mapView.setBounds(parent.getBounds());
@@ -85,8 +85,8 @@ public abstract class MainView extends JLabel {
 	public Dimension getPreferredSize() {
 		final String text = getText();
 		boolean isEmpty = text.length() == 0
-				|| (HtmlTools.isHtmlNode(text) && text.indexOf("<img") < 0 && HtmlTools
-						.htmlToPlain(text).length() == 0);
+				|| (HtmlTools.isHtmlNode(text) && text.indexOf("<img") < 0 && getNodeView()
+						.getModel().getPlainText().length() == 0);
 		if (isEmpty) {
 			setText("!");
 		}
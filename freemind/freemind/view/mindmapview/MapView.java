@@ -26,6 +26,7 @@ import java.awt.Component;
 import java.awt.Container;
 import java.awt.Cursor;
 import java.awt.Dimension;
+import java.awt.EventQueue;
 import java.awt.FocusTraversalPolicy;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
@@ -36,7 +37,11 @@ import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.Stroke;
 import java.awt.dnd.Autoscroll;
+import java.awt.dnd.DnDConstants;
 import java.awt.dnd.DragGestureListener;
+import java.awt.dnd.DragGestureRecognizer;
+import java.awt.dnd.DragSource;
+import java.awt.dnd.DropTarget;
 import java.awt.dnd.DropTargetListener;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
@@ -274,11 +279,43 @@ public class MapView extends JPanel implements ViewAbstraction, Printable, Autos
 	private static Stroke standardSelectionStroke;
 	private static FreemindPropertyListener propertyChangeListener;
 
-	/** Used to identify a right click onto a link curve. */
-	private Vector<ArrowLinkView> mArrowLinkViews = new Vector<>();
+	/** Arrow link -> its view. The views are kept across repaints. */
+	private HashMap<MindMapArrowLink, ArrowLinkView> mArrowLinkViews = new HashMap<>();
+	/**
+	 * Paint bounds of the arrow link views. Used to paint only the links
+	 * inside the clip and to identify a right click onto a link curve. Set to
+	 * null after each layout and rebuilt on demand.
+	 */
+	private SpatialIndex<ArrowLinkView> mArrowLinkIndex = null;
+
+	/**
+	 * If true, the layout works on lightweight records of all unfolded nodes
+	 * (see {@link NodeGeometry}) and node views exist only near the viewport.
+	 * The views scrolled out of this area are reused for the nodes coming in.
+	 */
+	public static final String RESOURCES_VIRTUALIZE_NODE_VIEWS = "experimental_virtualize_node_views";
+	private static final int MAX_POOL_SIZE = 256;
+	/** Null, if the map has node views for all unfolded nodes. */
+	private NodeViewVirtualizer mVirtualizer = null;
+	/**
+	 * The area (viewport plus margin) for which the node views were
+	 * created. Null, if it has to be computed again.
+	 */
+	private Rectangle mMaterializedArea = null;
+	private boolean mMaterializationScheduled = false;
+	/** Drag and drop helpers of node views, that are no longer needed. */
+	private Vector<DragGestureRecognizer> mDragGestureRecognizerPool = new Vector<>();
+	private Vector<DropTarget> mDropTargetPool = new Vector<>();
 
 	private Point rootContentLocation;
 
+	/**
+	 * Convex hulls of the clouds. They are only kept while printing, as the
+	 * layout doesn't change then and big clouds are painted into many pages
+	 * or tiles.
+	 */
+	private HashMap<NodeView, Vector<Point>> mPrintedCloudHulls = new HashMap<>();
+
 	private NodeView nodeToBeVisible = null;
 
 	private int extraWidth;
@@ -320,6 +357,11 @@ public class MapView extends JPanel implements ViewAbstraction, Printable, Autos
 
 		this.setLayout(new MindMapLayout());
 
+		if ("true".equals(pFeedback
+				.getProperty(RESOURCES_VIRTUALIZE_NODE_VIEWS))) {
+			mVirtualizer = new NodeViewVirtualizer(this);
+			model.addTreeModelListener(mVirtualizer);
+		}
 		initRoot();
 
 		setBackground(standardMapBackgroundColor);
@@ -555,7 +597,11 @@ public class MapView extends JPanel implements ViewAbstraction, Printable, Autos
 		rootContentLocation = new Point();
 		rootView = NodeViewFactory.getInstance().newNodeView(
 				getModel().getRootNode(), 0, this, this);
-		rootView.insert();
+		if (mVirtualizer != null) {
+			mVirtualizer.init(rootView);
+		} else {
+			rootView.insert();
+		}
 		revalidate();
 	}
 
@@ -982,6 +1028,7 @@ public class MapView extends JPanel implements ViewAbstraction, Printable, Autos
 			toggleSelected(newlySelectedNodeView);
 		}
 		// select(newSelected,extend);
+		createChildViews(newlySelectedNodeView);
 		for (NodeView target : newlySelectedNodeView.getChildrenViews()) {
 			selectBranch(target, true);
 		}
@@ -1115,6 +1162,175 @@ public class MapView extends JPanel implements ViewAbstraction, Printable, Autos
 		return getViewFeedback().getNodeDropListener();
 	}
 
+	/**
+	 * @return a (reused) recognizer for dragging the component or null, if
+	 *         nodes can't be dragged.
+	 */
+	DragGestureRecognizer obtainDragGestureRecognizer(Component pComponent) {
+		if (!mDragGestureRecognizerPool.isEmpty()) {
+			DragGestureRecognizer recognizer = mDragGestureRecognizerPool
+					.remove(mDragGestureRecognizerPool.size() - 1);
+			recognizer.setComponent(pComponent);
+			return recognizer;
+		}
+		DragGestureListener listener = getNodeDragListener();
+		if (listener == null) {
+			return null;
+		}
+		return DragSource.getDefaultDragSource()
+				.createDefaultDragGestureRecognizer(
+						pComponent,
+						DnDConstants.ACTION_COPY | DnDConstants.ACTION_MOVE
+								| DnDConstants.ACTION_LINK, listener);
+	}
+
+	void releaseDragGestureRecognizer(DragGestureRecognizer pRecognizer) {
+		pRecognizer.setComponent(null);
+		if (mDragGestureRecognizerPool.size() < MAX_POOL_SIZE) {
+			mDragGestureRecognizerPool.add(pRecognizer);
+		}
+	}
+
+	/**
+	 * @return a (reused) drop target for the component or null, if nothing
+	 *         can be dropped onto nodes.
+	 */
+	DropTarget obtainDropTarget(Component pComponent) {
+		if (!mDropTargetPool.isEmpty()) {
+			DropTarget dropTarget = mDropTargetPool.remove(mDropTargetPool
+					.size() - 1);
+			dropTarget.setComponent(pComponent);
+			return dropTarget;
+		}
+		DropTargetListener listener = getNodeDropListener();
+		if (listener == null) {
+			return null;
+		}
+		DropTarget dropTarget = new DropTarget(pComponent, listener);
+		dropTarget.setActive(true);
+		return dropTarget;
+	}
+
+	void releaseDropTarget(DropTarget pDropTarget) {
+		pDropTarget.setComponent(null);
+		if (mDropTargetPool.size() < MAX_POOL_SIZE) {
+			mDropTargetPool.add(pDropTarget);
+		}
+	}
+
+	public boolean isVirtualizingNodeViews() {
+		return mVirtualizer != null;
+	}
+
+	/**
+	 * Called by a node view that is removed from the map.
+	 */
+	void releaseNodeView(NodeView pView) {
+		mVirtualizer.releaseNodeView(pView);
+	}
+
+	/**
+	 * Creates the missing views of the children, if the map virtualizes its
+	 * node views.
+	 */
+	void createChildViews(NodeView pView) {
+		if (mVirtualizer != null) {
+			mVirtualizer.createChildViews(pView);
+		}
+	}
+
+	/**
+	 * @return the number of node views in the map.
+	 */
+	public int getMaterializedNodeViewCount() {
+		return countNodeViews(getRoot());
+	}
+
+	private int countNodeViews(NodeView pView) {
+		int count = 1;
+		for (NodeView child : pView.getChildrenViews()) {
+			count += countNodeViews(child);
+		}
+		return count;
+	}
+
+	/**
+	 * @return the bounds of the node's content in map coordinates, whether it
+	 *         has a view or not. Null, if it is folded away.
+	 */
+	public Rectangle getNodeContentBounds(MindMapNode pNode) {
+		if (mVirtualizer != null) {
+			final NodeGeometry geometry = mVirtualizer.getGeometry(pNode);
+			return geometry == null ? null : geometry.getContentBoundsInMap();
+		}
+		final NodeView view = getNodeView(pNode);
+		if (view == null) {
+			return null;
+		}
+		final JComponent content = view.getContent();
+		final Point location = new Point();
+		Tools.convertPointToAncestor(content, location, this);
+		return new Rectangle(location, content.getSize());
+	}
+
+	/**
+	 * Lays out the node records, see {@link MindMapLayout}.
+	 * 
+	 * @return the size of the root's record.
+	 */
+	Dimension layoutNodeGeometries(int pRootX, int pRootY) {
+		return mVirtualizer.layout(pRootX, pRootY);
+	}
+
+	/**
+	 * Creates the node views inside the viewport plus one screen in each
+	 * direction and releases the others. The views of the selected nodes
+	 * are kept. While printing, all nodes get a view.
+	 */
+	public void updateMaterializedNodeViews() {
+		if (mVirtualizer == null) {
+			return;
+		}
+		Rectangle area;
+		if (isPrinting) {
+			area = new Rectangle(0, 0, getWidth(), getHeight());
+		} else {
+			area = getVisibleRect();
+			area.grow(area.width, area.height);
+		}
+		final LinkedList<NodeView> pinned = getSelecteds();
+		if (nodeToBeVisible != null) {
+			pinned.add(nodeToBeVisible);
+		}
+		if (shiftSelectionOrigin != null) {
+			pinned.add(shiftSelectionOrigin);
+		}
+		mVirtualizer.updateNodeViews(area, pinned);
+		mMaterializedArea = area;
+	}
+
+	/**
+	 * Schedules {@link #updateMaterializedNodeViews()}, if the viewport has
+	 * left the materialized area. Components must not be added while
+	 * painting, thus it runs afterwards.
+	 */
+	private void checkMaterializedArea() {
+		if (mVirtualizer == null || mMaterializationScheduled) {
+			return;
+		}
+		if (mMaterializedArea != null
+				&& mMaterializedArea.contains(getVisibleRect())) {
+			return;
+		}
+		mMaterializationScheduled = true;
+		EventQueue.invokeLater(new Runnable() {
+			public void run() {
+				mMaterializationScheduled = false;
+				updateMaterializedNodeViews();
+			}
+		});
+	}
+
 	@Override
 	public NodeView getSelected() {
 		if (selected.size() > 0)
@@ -1215,6 +1431,9 @@ public class MapView extends JPanel implements ViewAbstraction, Printable, Autos
 
 	public void setZoom(float zoom) {
 		this.zoom = zoom;
+		if (mVirtualizer != null) {
+			mVirtualizer.invalidateAll();
+		}
 		getRoot().updateAll();
 		revalidate();
 		nodeToBeVisible = getSelected();
@@ -1322,13 +1541,11 @@ public class MapView extends JPanel implements ViewAbstraction, Printable, Autos
 	}
 
 	public void paintChildren(Graphics graphics) {
-		HashMap<String, NodeView> labels = new HashMap<>();
-		mArrowLinkViews = new Vector<>();
-		collectLabels(rootView, labels);
+		checkMaterializedArea();
 		super.paintChildren(graphics);
 		Graphics2D graphics2d = (Graphics2D) graphics;
 		Object renderingHint = setEdgesRenderingHint(graphics2d);
-		paintLinks(rootView, graphics2d, labels, null);
+		paintLinks(graphics2d);
 		Tools.restoreAntialiasing(graphics2d, renderingHint);
 		paintSelecteds(graphics2d);
 	}
@@ -1365,67 +1582,74 @@ public class MapView extends JPanel implements ViewAbstraction, Printable, Autos
 				content.getHeight() + 2 * arcWidth, 15, 15);
 	}
 
-	/** collect all existing labels in the current map. */
-	protected void collectLabels(NodeView source, HashMap<String, NodeView> labels) {
-		// check for existing registry:
-		if (getModel().getLinkRegistry() == null)
-			return;
-		// apply own label:
-		String label = getModel().getLinkRegistry().getLabel(source.getModel());
-		if (label != null)
-			labels.put(label, source);
-		for (NodeView target : source.getChildrenViews()) {
-			collectLabels(target, labels);
+	/**
+	 * Paints the arrow links intersecting the clip.
+	 */
+	protected void paintLinks(Graphics2D graphics) {
+		Vector<ArrowLinkView> arrowLinks = new Vector<>();
+		getArrowLinkIndex().query(graphics.getClipBounds(), arrowLinks);
+		for (ArrowLinkView arrowLink : arrowLinks) {
+			arrowLink.paint(graphics);
 		}
 	}
 
-	protected void paintLinks(NodeView source, Graphics2D graphics,
-			HashMap<String, NodeView> labels, HashSet<MindMapLink> LinkAlreadyVisited) {
-		// check for existing registry:
-		if (getModel().getLinkRegistry() == null)
-			return;
-		if (LinkAlreadyVisited == null)
-			LinkAlreadyVisited = new HashSet<>();
-		// references first
-		// logger.fine("Searching for links of " +
-		// source.getModel().toString());
-		// paint own labels:
-		Vector<MindMapLink> vec = getModel().getLinkRegistry()
-				.getAllLinks(source.getModel());
-		for (int i = 0; i < vec.size(); ++i) {
-			MindMapLink ref = (MindMapLink) vec.get(i);
-			if (LinkAlreadyVisited.add(ref)) {
-				// determine type of link
-				if (ref instanceof MindMapArrowLink) {
-					ArrowLinkView arrowLink = new ArrowLinkView(
-							(MindMapArrowLink) ref,
-							getNodeView(ref.getSource()),
-							getNodeView(ref.getTarget()));
-					arrowLink.paint(graphics);
-					mArrowLinkViews.add(arrowLink);
-					// resize map?
-					// adjust container size
-					// Rectangle rec = arrowLink.getBounds();
-					// the following does not work correctly. fc, 23.10.2003:
-					// if (rec.x < 0) {
-					// getMindMapLayout().resizeMap(rec.x);
-					// } else if (rec.x+rec.width > getSize().width) {
-					// getMindMapLayout().resizeMap(rec.x+rec.width);
-					// }
+	/**
+	 * Forces the arrow links to be computed again with the next repaint.
+	 * Call this, if the curve of an arrow link changed without a layout of
+	 * the map (e.g. while it is dragged).
+	 */
+	public void invalidateArrowLinks() {
+		mArrowLinkIndex = null;
+	}
 
+	/**
+	 * The nodes may have moved.
+	 */
+	public void doLayout() {
+		super.doLayout();
+		invalidateArrowLinks();
+	}
+
+	private SpatialIndex<ArrowLinkView> getArrowLinkIndex() {
+		if (mArrowLinkIndex != null) {
+			return mArrowLinkIndex;
+		}
+		SpatialIndex<ArrowLinkView> index = new SpatialIndex<>();
+		HashMap<MindMapArrowLink, ArrowLinkView> views = new HashMap<>();
+		// check for existing registry:
+		if (getModel().getLinkRegistry() != null) {
+			for (MindMapLink ref : getModel().getLinkRegistry().getAllLinks()) {
+				if (!(ref instanceof MindMapArrowLink)) {
+					continue;
+				}
+				MindMapArrowLink link = (MindMapArrowLink) ref;
+				NodeView source = getExistingNodeView(ref.getSource());
+				NodeView target = getExistingNodeView(ref.getTarget());
+				if (source == null && target == null) {
+					continue;
+				}
+				ArrowLinkView arrowLink = mArrowLinkViews.get(link);
+				if (arrowLink == null || arrowLink.getSource() != source
+						|| arrowLink.getTarget() != target) {
+					arrowLink = new ArrowLinkView(link, source, target);
+				}
+				views.put(link, arrowLink);
+				arrowLink.updateCurve();
+				Rectangle bounds = arrowLink.getPaintBounds();
+				if (bounds != null) {
+					index.add(bounds, arrowLink);
 				}
 			}
 		}
-		for (NodeView target : source.getChildrenViews()) {
-			paintLinks(target, graphics, labels, LinkAlreadyVisited);
-		}
+		mArrowLinkViews = views;
+		mArrowLinkIndex = index;
+		return index;
 	}
 
 	public MindMapArrowLink detectCollision(Point p) {
-		if (mArrowLinkViews == null)
-			return null;
-		for (int i = 0; i < mArrowLinkViews.size(); ++i) {
-			ArrowLinkView arrowView = (ArrowLinkView) mArrowLinkViews.get(i);
+		Vector<ArrowLinkView> arrowLinks = new Vector<>();
+		getArrowLinkIndex().query(p, arrowLinks);
+		for (ArrowLinkView arrowView : arrowLinks) {
 			if (arrowView.detectCollision(p))
 				return arrowView.getModel();
 		}
@@ -1439,6 +1663,11 @@ public class MapView extends JPanel implements ViewAbstraction, Printable, Autos
 	public void preparePrinting() {
 		if (!isPrinting) {
 			isPrinting = true;
+			if (mVirtualizer != null) {
+				// all nodes are printed:
+				updateMaterializedNodeViews();
+				validate();
+			}
 			/* repaint for printing: */
 			if (NEED_PREF_SIZE_BUG_FIX) {
 				getRoot().updateAll();
@@ -1473,6 +1702,8 @@ public class MapView extends JPanel implements ViewAbstraction, Printable, Autos
 	public void endPrinting() {
 		if (isPrinting) {
 			isPrinting = false;
+			mPrintedCloudHulls.clear();
+			mMaterializedArea = null;
 			if (printOnWhiteBackground) {
 				setBackground(background);
 			}
@@ -1572,6 +1803,24 @@ public class MapView extends JPanel implements ViewAbstraction, Printable, Autos
 	// }
 	// }
 
+	/**
+	 * @return the convex hull of the node and its visible descendants in the
+	 *         coordinates of pSource. Must not be changed.
+	 */
+	Vector<Point> getCloudHull(NodeView pSource) {
+		Vector<Point> hull = isPrinting ? mPrintedCloudHulls.get(pSource)
+				: null;
+		if (hull == null) {
+			LinkedList<Point> coordinates = new LinkedList<>();
+			pSource.getCoordinates(coordinates);
+			hull = new ConvexHull().calculateHull(coordinates);
+			if (isPrinting) {
+				mPrintedCloudHulls.put(pSource, hull);
+			}
+		}
+		return hull;
+	}
+
 	/**
 	 * For nodes, they can ask, whether or not the width must be bigger to
 	 * prevent the "..." at the output. (Bug of java).
@@ -1590,8 +1839,7 @@ public class MapView extends JPanel implements ViewAbstraction, Printable, Autos
 		innerBounds.x += getRoot().getX();
 		innerBounds.y += getRoot().getY();
 		final Rectangle maxBounds = new Rectangle(0, 0, getWidth(), getHeight());
-		for (int i = 0; i < mArrowLinkViews.size(); ++i) {
-			ArrowLinkView arrowView = (ArrowLinkView) mArrowLinkViews.get(i);
+		for (ArrowLinkView arrowView : getArrowLinkIndex().getAll()) {
 			final CubicCurve2D arrowLinkCurve = arrowView.arrowLinkCurve;
 			if (arrowLinkCurve == null) {
 				continue;
@@ -1652,6 +1900,18 @@ public class MapView extends JPanel implements ViewAbstraction, Printable, Autos
 	}
 
 	public NodeView getNodeView(MindMapNode node) {
+		final NodeView view = getExistingNodeView(node);
+		if (view == null && node != null && mVirtualizer != null) {
+			// the nodes outside of the viewport get their view on demand:
+			return mVirtualizer.createNodeView(node);
+		}
+		return view;
+	}
+
+	/**
+	 * @return the view of the node or null, if it has none (yet).
+	 */
+	private NodeView getExistingNodeView(MindMapNode node) {
 		if (node == null) {
 			return null;
 		}
@@ -53,6 +53,13 @@ public class MindMapLayout implements LayoutManager {
 		final MapView mapView = (MapView) c;
 		final int calcXBorderSize = calcXBorderSize(mapView);
 		final int calcYBorderSize = calcYBorderSize(mapView);
+		if (mapView.isVirtualizingNodeViews()) {
+			// the node views near the viewport take their bounds from the
+			// records:
+			mapView.layoutNodeGeometries(calcXBorderSize, calcYBorderSize);
+			mapView.updateMaterializedNodeViews();
+			getRoot(mapView).invalidate();
+		}
 		getRoot(mapView).validate();
 		getRoot(mapView).setLocation(calcXBorderSize, calcYBorderSize);
 		mapView.setSize(calcXBorderSize * 2 + getRoot(mapView).getWidth(),
@@ -85,7 +92,13 @@ public class MindMapLayout implements LayoutManager {
 
 	public Dimension preferredLayoutSize(Container c) {
 		final MapView mapView = (MapView) c;
-		final Dimension preferredSize = mapView.getRoot().getPreferredSize();
+		final Dimension preferredSize;
+		if (mapView.isVirtualizingNodeViews()) {
+			preferredSize = mapView.layoutNodeGeometries(
+					calcXBorderSize(mapView), calcYBorderSize(mapView));
+		} else {
+			preferredSize = mapView.getRoot().getPreferredSize();
+		}
 		return new Dimension(
 				2 * calcXBorderSize(mapView) + preferredSize.width, 2
 						* calcYBorderSize(mapView) + preferredSize.height);
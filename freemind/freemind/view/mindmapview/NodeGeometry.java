@@ -0,0 +1,513 @@
+/*FreeMind - A Program for creating and viewing Mindmaps
+ *Copyright (C) 2000-2014 Christian Foltin, Joerg Mueller, Daniel Polansky, Dimitri Polivaev and others.
+ *
+ *See COPYING for Details
+ *
+ *This program is free software; you can redistribute it and/or
+ *modify it under the terms of the GNU General Public License
+ *as published by the Free Software Foundation; either version 2
+ *of the License, or (at your option) any later version.
+ *
+ *This program is distributed in the hope that it will be useful,
+ *but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *GNU General Public License for more details.
+ *
+ *You should have received a copy of the GNU General Public License
+ *along with this program; if not, write to the Free Software
+ *Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package freemind.view.mindmapview;
+
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.LinkedList;
+
+import javax.swing.JComponent;
+
+import freemind.modes.MindMapCloud;
+import freemind.modes.MindMapNode;
+
+/**
+ * Position and size of a node and its subtree in a map virtualizing its node
+ * views. There is a record for each unfolded node, but a node view only for
+ * the nodes near the viewport. The records are laid out with the arithmetic
+ * of {@link RightNodeViewLayout}, {@link LeftNodeViewLayout} and
+ * {@link VerticalRootNodeViewLayout}, the node views copy their bounds from
+ * them.
+ */
+class NodeGeometry {
+	final MindMapNode mModel;
+	final NodeGeometry mParent;
+	/** The records of the children in the order of the model. */
+	final ArrayList<NodeGeometry> mChildren = new ArrayList<>(0);
+	/** The view of the node or null. */
+	NodeView mView;
+	/** Bounds relative to the parent record, like the ones of a node view. */
+	int mX, mY, mWidth, mHeight;
+	/** Bounds of the content relative to this record. */
+	final Rectangle mContent = new Rectangle();
+	boolean mContentVisible;
+	int mAdditionalCloudHeight;
+	/**
+	 * Preferred size of the content, while the node has no view. Null, if it
+	 * has to be measured again.
+	 */
+	Dimension mContentSize;
+	/**
+	 * False, if this record or one of its descendants changed since the last
+	 * layout. Then the ancestors are invalid, too.
+	 */
+	boolean mValid;
+
+	NodeGeometry(MindMapNode pModel, NodeGeometry pParent) {
+		mModel = pModel;
+		mParent = pParent;
+	}
+
+	/**
+	 * Marks this record and its ancestors for the next layout.
+	 */
+	void invalidate() {
+		for (NodeGeometry geometry = this; geometry != null
+				&& geometry.mValid; geometry = geometry.mParent) {
+			geometry.mValid = false;
+		}
+	}
+
+	/**
+	 * Lays out the invalid records and the ones having a view below this one.
+	 * The children come first, as the layout of a node depends on them.
+	 */
+	void layout(NodeViewVirtualizer pVirtualizer) {
+		if (mValid && mView == null) {
+			return;
+		}
+		for (NodeGeometry child : mChildren) {
+			child.layout(pVirtualizer);
+		}
+		final MapView map = pVirtualizer.getMap();
+		mContentVisible = mModel.isVisible();
+		final MindMapCloud cloud = mModel.getCloud();
+		mAdditionalCloudHeight = mContentVisible && cloud != null ? CloudView
+				.getAdditionalHeigth(cloud, map) : 0;
+		final int vGap = map.getZoomed(getVisibleModel().getVGap());
+		final int spaceAround = map.getZoomed(NodeView.SPACE_AROUND);
+		final Dimension contentSize = mContentVisible ? getContentSize(pVirtualizer)
+				: null;
+		if (mModel.isRoot()) {
+			layoutRoot(map, contentSize, vGap, spaceAround);
+		} else if (mModel.isLeft()) {
+			layoutLeft(map, contentSize, vGap, spaceAround);
+		} else {
+			layoutRight(map, contentSize, vGap, spaceAround);
+		}
+		mValid = true;
+	}
+
+	/**
+	 * @return the node itself or, if its content is hidden, the next ancestor
+	 *         showing its content. Its gap is used, see
+	 *         {@link NodeViewLayoutAdapter}.
+	 */
+	private MindMapNode getVisibleModel() {
+		for (NodeGeometry geometry = this; geometry != null; geometry = geometry.mParent) {
+			if (geometry.mModel.isVisible()) {
+				return geometry.mModel;
+			}
+		}
+		return mModel;
+	}
+
+	private Dimension getContentSize(NodeViewVirtualizer pVirtualizer) {
+		if (mView != null) {
+			return mView.getContent().getPreferredSize();
+		}
+		if (mContentSize == null) {
+			mContentSize = pVirtualizer.measureContent(mModel);
+		}
+		return mContentSize;
+	}
+
+	private void layoutRight(MapView pMap, Dimension pContentSize, int pVGap,
+			int pSpaceAround) {
+		final int contentHeight = getChildContentHeight(false, pVGap);
+		int childVerticalShift = getChildVerticalShift(pMap, false,
+				pSpaceAround);
+		final int childHorizontalShift = getChildHorizontalShift(pMap);
+		if (pContentSize != null) {
+			final int x = Math.max(pSpaceAround, -pContentSize.width
+					- childHorizontalShift);
+			childVerticalShift += (pContentSize.height - contentHeight) / 2;
+			final int y = Math.max(pSpaceAround, -childVerticalShift);
+			mContent.setBounds(x, y, pContentSize.width, pContentSize.height);
+		} else {
+			final int x = Math.max(pSpaceAround, -childHorizontalShift);
+			final int y = Math.max(pSpaceAround, -childVerticalShift);
+			mContent.setBounds(x, y, 0, contentHeight);
+		}
+		placeRightChildren(pMap, childVerticalShift, pVGap, pSpaceAround);
+	}
+
+	private void layoutLeft(MapView pMap, Dimension pContentSize, int pVGap,
+			int pSpaceAround) {
+		final int contentHeight = getChildContentHeight(true, pVGap);
+		int childVerticalShift = getChildVerticalShift(pMap, true,
+				pSpaceAround);
+		final int childHorizontalShift = getChildHorizontalShift(pMap);
+		final int x = Math.max(pSpaceAround, -childHorizontalShift);
+		if (pContentSize != null) {
+			childVerticalShift += (pContentSize.height - contentHeight) / 2;
+			final int y = Math.max(pSpaceAround, -childVerticalShift);
+			mContent.setBounds(x, y, pContentSize.width, pContentSize.height);
+		} else {
+			final int y = Math.max(pSpaceAround, -childVerticalShift);
+			mContent.setBounds(x, y, 0, contentHeight);
+		}
+		placeLeftChildren(pMap, childVerticalShift, pVGap, pSpaceAround);
+	}
+
+	private void layoutRoot(MapView pMap, Dimension pContentSize, int pVGap,
+			int pSpaceAround) {
+		final int rightContentHeight = getChildContentHeight(false, pVGap);
+		int rightChildVerticalShift = getChildVerticalShift(pMap, false,
+				pSpaceAround);
+		final int leftContentHeight = getChildContentHeight(true, pVGap);
+		int leftChildVerticalShift = getChildVerticalShift(pMap, true,
+				pSpaceAround);
+		final int childHorizontalShift = getChildHorizontalShift(pMap);
+		final int contentHeight = Math.max(rightContentHeight,
+				leftContentHeight);
+		final int x = Math.max(pSpaceAround, -childHorizontalShift);
+		if (pContentSize != null) {
+			rightChildVerticalShift += (pContentSize.height - rightContentHeight) / 2;
+			leftChildVerticalShift += (pContentSize.height - leftContentHeight) / 2;
+			final int childVerticalShift = Math.min(rightChildVerticalShift,
+					leftChildVerticalShift);
+			final int y = Math.max(pSpaceAround, -childVerticalShift);
+			mContent.setBounds(x, y, pContentSize.width, pContentSize.height);
+		} else {
+			final int childVerticalShift = Math.min(rightChildVerticalShift,
+					leftChildVerticalShift);
+			final int y = Math.max(pSpaceAround, -childVerticalShift);
+			mContent.setBounds(x, y, 0, contentHeight);
+		}
+		placeLeftChildren(pMap, leftChildVerticalShift, pVGap, pSpaceAround);
+		final int width1 = mWidth;
+		final int height1 = mHeight;
+		placeRightChildren(pMap, rightChildVerticalShift, pVGap, pSpaceAround);
+		mWidth = Math.max(width1, mWidth);
+		mHeight = Math.max(height1, mHeight);
+	}
+
+	private int getChildContentHeight(boolean pLeft, int pVGap) {
+		if (mChildren.isEmpty()) {
+			return 0;
+		}
+		int height = 0;
+		int count = 0;
+		for (NodeGeometry child : mChildren) {
+			if (child.mModel.isLeft() == pLeft) {
+				height += child.mContent.height + child.mAdditionalCloudHeight;
+				count++;
+			}
+		}
+		return height + pVGap * (count - 1);
+	}
+
+	/**
+	 * @return a shift, which is less than or equal zero
+	 */
+	private int getChildVerticalShift(MapView pMap, boolean pLeft,
+			int pSpaceAround) {
+		int shift = 0;
+		boolean found = false;
+		for (NodeGeometry child : mChildren) {
+			if (child.mModel.isLeft() == pLeft) {
+				final int childShift = pMap.getZoomed(child.mModel
+						.calcShiftY());
+				if (childShift < 0) {
+					shift += childShift;
+				}
+				shift -= child.mContent.y - pSpaceAround;
+				found = true;
+			}
+		}
+		if (found) {
+			shift -= pSpaceAround;
+		}
+		return shift;
+	}
+
+	private int getChildHorizontalShift(MapView pMap) {
+		int shift = 0;
+		for (NodeGeometry child : mChildren) {
+			int shiftCandidate;
+			if (child.mModel.isLeft()) {
+				shiftCandidate = -child.mContent.x - child.mContent.width;
+				if (child.mContentVisible) {
+					shiftCandidate -= pMap.getZoomed(child.mModel.getHGap())
+							+ child.mAdditionalCloudHeight / 2;
+				}
+			} else {
+				shiftCandidate = -child.mContent.x;
+				if (child.mContentVisible) {
+					shiftCandidate += pMap.getZoomed(child.mModel.getHGap());
+				}
+			}
+			shift = Math.min(shift, shiftCandidate);
+		}
+		return shift;
+	}
+
+	private void placeRightChildren(MapView pMap, int pChildVerticalShift,
+			int pVGap, int pSpaceAround) {
+		final int baseX = mContent.x + mContent.width;
+		int y = mContent.y + pChildVerticalShift;
+		int right = baseX + pSpaceAround;
+		NodeGeometry last = null;
+		for (NodeGeometry child : mChildren) {
+			if (child.mModel.isLeft()) {
+				continue;
+			}
+			last = child;
+			final int additionalCloudHeigth = child.mAdditionalCloudHeight / 2;
+			y += additionalCloudHeigth;
+			final int shiftY = pMap.getZoomed(child.mModel.calcShiftY());
+			final int childHGap = child.mContentVisible ? pMap
+					.getZoomed(child.mModel.getHGap()) : 0;
+			final int x = baseX + childHGap - child.mContent.x;
+			if (shiftY < 0) {
+				child.setLocation(x, y);
+				y -= shiftY;
+			} else {
+				y += shiftY;
+				child.setLocation(x, y);
+			}
+			y += child.mHeight - 2 * pSpaceAround + pVGap
+					+ additionalCloudHeigth;
+			right = Math.max(right, x + child.mWidth + additionalCloudHeigth);
+		}
+		setSize(right, pSpaceAround, last);
+	}
+
+	private void placeLeftChildren(MapView pMap, int pChildVerticalShift,
+			int pVGap, int pSpaceAround) {
+		final int baseX = mContent.x;
+		int y = mContent.y + pChildVerticalShift;
+		int right = baseX + mContent.width + pSpaceAround;
+		NodeGeometry last = null;
+		for (NodeGeometry child : mChildren) {
+			if (!child.mModel.isLeft()) {
+				continue;
+			}
+			last = child;
+			final int additionalCloudHeigth = child.mAdditionalCloudHeight / 2;
+			y += additionalCloudHeigth;
+			final int shiftY = pMap.getZoomed(child.mModel.calcShiftY());
+			final int childHGap = child.mContentVisible ? pMap
+					.getZoomed(child.mModel.getHGap()) : 0;
+			final int x = baseX - childHGap - child.mContent.x
+					- child.mContent.width;
+			if (shiftY < 0) {
+				child.setLocation(x, y);
+				y -= shiftY;
+			} else {
+				y += shiftY;
+				child.setLocation(x, y);
+			}
+			y += child.mHeight - 2 * pSpaceAround + pVGap
+					+ additionalCloudHeigth;
+			right = Math.max(right, x + child.mWidth);
+		}
+		setSize(right, pSpaceAround, last);
+	}
+
+	private void setSize(int pRight, int pSpaceAround, NodeGeometry pLast) {
+		final int bottom = mContent.y + mContent.height + pSpaceAround;
+		mWidth = pRight;
+		if (pLast != null) {
+			mHeight = Math.max(bottom, pLast.mY + pLast.mHeight
+					+ pLast.mAdditionalCloudHeight / 2);
+		} else {
+			mHeight = bottom;
+		}
+	}
+
+	private void setLocation(int pX, int pY) {
+		mX = pX;
+		mY = pY;
+	}
+
+	/**
+	 * Gives the view the bounds of its content and of its child views, see
+	 * {@link NodeViewLayoutAdapter#layoutContainer(java.awt.Container)}.
+	 */
+	void applyTo(NodeView pView) {
+		final JComponent content = pView.getContent();
+		content.setVisible(mContentVisible);
+		content.setBounds(mContent);
+		pView.setSize(mWidth, mHeight);
+		final int componentCount = pView.getComponentCount();
+		for (int i = 0; i < componentCount; i++) {
+			final Component component = pView.getComponent(i);
+			if (!(component instanceof NodeView)) {
+				continue;
+			}
+			final NodeGeometry child = ((NodeView) component).getGeometry();
+			if (child != null) {
+				component.setBounds(child.mX, child.mY, child.mWidth,
+						child.mHeight);
+				// the records below may have changed without a resize:
+				component.invalidate();
+			}
+		}
+	}
+
+	/**
+	 * @return the bounds of the content in map coordinates.
+	 */
+	Rectangle getContentBoundsInMap() {
+		final Rectangle bounds = new Rectangle(mContent);
+		for (NodeGeometry geometry = this; geometry != null; geometry = geometry.mParent) {
+			bounds.translate(geometry.mX, geometry.mY);
+		}
+		return bounds;
+	}
+
+	//
+	// Navigation, see NodeView: the views are created for the found records
+	//
+
+	/**
+	 * @param pStartAfter
+	 *            a child record or null to start at the first child.
+	 * @return the first child or descendant showing its content.
+	 */
+	NodeGeometry getFirst(NodeGeometry pStartAfter, boolean pLeftOnly,
+			boolean pRightOnly) {
+		final int start = pStartAfter == null ? 0 : mChildren
+				.indexOf(pStartAfter) + 1;
+		if (start < 0) {
+			return null;
+		}
+		for (int i = start; i < mChildren.size(); i++) {
+			final NodeGeometry found = mChildren.get(i).findVisible(true,
+					pLeftOnly, pRightOnly);
+			if (found != null) {
+				return found;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @param pStartBefore
+	 *            a child record or null to start at the last child.
+	 * @return the last child or descendant showing its content.
+	 */
+	NodeGeometry getLast(NodeGeometry pStartBefore, boolean pLeftOnly,
+			boolean pRightOnly) {
+		final int start = pStartBefore == null ? mChildren.size() - 1
+				: mChildren.indexOf(pStartBefore) - 1;
+		for (int i = start; i >= 0; i--) {
+			final NodeGeometry found = mChildren.get(i).findVisible(false,
+					pLeftOnly, pRightOnly);
+			if (found != null) {
+				return found;
+			}
+		}
+		return null;
+	}
+
+	private NodeGeometry findVisible(boolean pForward, boolean pLeftOnly,
+			boolean pRightOnly) {
+		if (pLeftOnly && !mModel.isLeft() || pRightOnly && mModel.isLeft()) {
+			return null;
+		}
+		if (mModel.isVisible()) {
+			return this;
+		}
+		return pForward ? getFirst(null, pLeftOnly, pRightOnly) : getLast(
+				null, pLeftOnly, pRightOnly);
+	}
+
+	/**
+	 * @return the next (or previous) sibling showing its content, or its first
+	 *         (or last) such descendant. On the root, only the siblings on the
+	 *         same side count. Null, if there is none.
+	 */
+	NodeGeometry getSiblingSingle(boolean pForward) {
+		final ArrayList<NodeGeometry> siblings = mParent.mChildren;
+		final boolean sameSideOnly = mParent.mModel.isRoot();
+		final int step = pForward ? 1 : -1;
+		for (int i = siblings.indexOf(this) + step; i >= 0
+				&& i < siblings.size(); i += step) {
+			final NodeGeometry sibling = siblings.get(i);
+			if (sameSideOnly && sibling.mModel.isLeft() != mModel.isLeft()) {
+				continue;
+			}
+			final NodeGeometry found = sibling.findVisible(pForward, false,
+					false);
+			if (found != null) {
+				return found;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the child at the index or before it on the given side, which
+	 *         takes the place of a removed child. Null, if there is none.
+	 */
+	NodeGeometry getNeighbour(int pIndex, boolean pLeft) {
+		for (int i = pIndex; i < mChildren.size(); i++) {
+			if (mChildren.get(i).mModel.isLeft() == pLeft) {
+				return mChildren.get(i);
+			}
+		}
+		for (int i = Math.min(pIndex, mChildren.size()) - 1; i >= 0; i--) {
+			if (mChildren.get(i).mModel.isLeft() == pLeft) {
+				return mChildren.get(i);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Counterpart of {@link NodeView#getCoordinates(LinkedList)} for the
+	 * records without view. The folding mark is not taken into account.
+	 */
+	void getCoordinates(LinkedList<Point> inList,
+			int additionalDistanceForConvexHull, int transX, int transY) {
+		if (mView != null) {
+			mView.getCoordinates(inList, additionalDistanceForConvexHull, true,
+					transX, transY);
+			return;
+		}
+		if (mContentVisible) {
+			if (mModel.getCloud() != null) {
+				additionalDistanceForConvexHull += mAdditionalCloudHeight / 5;
+			}
+			final int x = transX + mContent.x;
+			final int y = transY + mContent.y;
+			inList.addLast(new Point(-additionalDistanceForConvexHull + x,
+					-additionalDistanceForConvexHull + y));
+			inList.addLast(new Point(-additionalDistanceForConvexHull + x,
+					additionalDistanceForConvexHull + y + mContent.height));
+			inList.addLast(new Point(additionalDistanceForConvexHull + x
+					+ mContent.width, additionalDistanceForConvexHull + y
+					+ mContent.height));
+			inList.addLast(new Point(additionalDistanceForConvexHull + x
+					+ mContent.width, -additionalDistanceForConvexHull + y));
+		}
+		for (NodeGeometry child : mChildren) {
+			child.getCoordinates(inList, additionalDistanceForConvexHull,
+					transX + child.mX, transY + child.mY);
+		}
+	}
+}
@@ -23,19 +23,19 @@ package freemind.view.mindmapview;
 import java.awt.Color;
 import java.awt.Component;
 import java.awt.Container;
+import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.Rectangle;
-import java.awt.dnd.DnDConstants;
-import java.awt.dnd.DragGestureListener;
-import java.awt.dnd.DragSource;
+import java.awt.dnd.DragGestureRecognizer;
 import java.awt.dnd.DropTarget;
-import java.awt.dnd.DropTargetListener;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.net.MalformedURLException;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -123,6 +123,14 @@ public class NodeView extends JComponent implements TreeModelListener {
 
 	private NodeFoldingComponent mFoldingListener;
 
+	private DragGestureRecognizer mDragGestureRecognizer;
+	private DropTarget mDropTarget;
+	/**
+	 * The record this view takes its bounds from, if the map virtualizes
+	 * its node views, see {@link NodeViewVirtualizer}.
+	 */
+	private NodeGeometry mGeometry;
+
 	protected NodeView(MindMapNode model, int position, MapView map,
 			Container parent) {
 		if (logger == null) {
@@ -151,13 +159,67 @@ public class NodeView extends JComponent implements TreeModelListener {
 		this.model = model;
 		this.mapView = map;
 		final TreeNode parentNode = model.getParent();
-		final int index = parentNode == null ? 0 : parentNode.getIndex(model);
+		int index = parentNode == null ? 0 : parentNode.getIndex(model);
+		if (map.isVirtualizingNodeViews()) {
+			// not all siblings have a view:
+			index = position;
+		}
 
 		parent.add(this, index);
 
 		addFoldingListener();
 	}
 
+	/**
+	 * Creates a view measuring the nodes without view, see
+	 * {@link #measureContent(MindMapNode)}. It is not part of the map.
+	 */
+	NodeView(MapView map, MainView mainView) {
+		this.mapView = map;
+		this.mainView = mainView;
+		add(mainView);
+	}
+
+	/**
+	 * @return the preferred size of the node's content. Components the node
+	 *         hooks add to the content are taken into account as soon as the
+	 *         node gets its own view.
+	 */
+	Dimension measureContent(MindMapNode pModel) {
+		setModel(pModel);
+		updateFont();
+		updateIcons();
+		updateText();
+		final Dimension size = getContent().getPreferredSize();
+		setModel(null);
+		return size;
+	}
+
+	/**
+	 * Counterpart of {@link #removeFromMap()} for a view taken from the pool,
+	 * see {@link NodeViewFactory#reuseNodeView(NodeView, MindMapNode, int, Container)}.
+	 */
+	void bind(MindMapNode pModel, int pPosition, Container pParent) {
+		setModel(pModel);
+		preferredChild = null;
+		isLong = false;
+		setFocusCycleRoot(true);
+		pParent.add(this, pPosition);
+		mainView.setDraggedOver(DRAGGED_OVER_NO);
+		ToolTipManager.sharedInstance().registerComponent(mainView);
+		addDragAndDrop();
+		addMotionListenerView();
+		addFoldingListener();
+	}
+
+	NodeGeometry getGeometry() {
+		return mGeometry;
+	}
+
+	void setGeometry(NodeGeometry pGeometry) {
+		mGeometry = pGeometry;
+	}
+
 	protected void addFoldingListener() {
 		if(mFoldingListener == null && getModel().hasVisibleChilds() && !getModel().isRoot()) {
 			mFoldingListener = new NodeFoldingComponent(this);
@@ -195,6 +257,7 @@ public class NodeView extends JComponent implements TreeModelListener {
 			}
 			c.remove(i);
 			ToolTipManager.sharedInstance().unregisterComponent(mainView);
+			releaseDragAndDrop();
 			mainView.removeMouseListener(this.mapView.getNodeMouseMotionListener());
 			mainView.removeMouseMotionListener(this.mapView
 					.getNodeMouseMotionListener());
@@ -203,43 +266,59 @@ public class NodeView extends JComponent implements TreeModelListener {
 			add(newMainView);
 		}
 		this.mainView = newMainView;
-		ToolTipManager.sharedInstance().registerComponent(mainView);
 		mainView.addMouseListener(this.mapView.getNodeMouseMotionListener());
 		mainView.addMouseMotionListener(this.mapView.getNodeMouseMotionListener());
-		addDragListener(mapView.getNodeDragListener());
-		addDropListener(mapView.getNodeDropListener());
-		if (!model.isRoot() && "true".equals(mapView.getViewFeedback().getProperty(FreeMindMain.ENABLE_NODE_MOVEMENT))) {
+		ToolTipManager.sharedInstance().registerComponent(mainView);
+		addDragAndDrop();
+		addMotionListenerView();
+	}
+
+	private void addMotionListenerView() {
+		if (motionListenerView == null && !model.isRoot() && "true".equals(mapView.getViewFeedback().getProperty(FreeMindMain.ENABLE_NODE_MOVEMENT))) {
 			motionListenerView = new NodeMotionListenerView(this);
-			add(motionListenerView);
+			// the content stays the last component:
+			add(motionListenerView, getComponentCount() - 1);
 		}
-
 	}
 
-	protected void removeFromMap() {
-		setFocusCycleRoot(false);
-		getParent().remove(this);
+	private void removeMotionListenerView() {
 		if (motionListenerView != null) {
 			remove(motionListenerView);
 			motionListenerView = null;
 		}
+	}
+
+	protected void removeFromMap() {
+		setFocusCycleRoot(false);
+		final NodeView parentView = getParentView();
+		if (parentView != null && parentView.preferredChild == this) {
+			parentView.preferredChild = null;
+		}
+		getParent().remove(this);
+		removeMotionListenerView();
 		removeFoldingListener();
 		ToolTipManager.sharedInstance().unregisterComponent(mainView);
+		releaseDragAndDrop();
+		if (mapView.isVirtualizingNodeViews()) {
+			mapView.releaseNodeView(this);
+		}
 	}
 
-	void addDragListener(DragGestureListener dgl) {
-		if (dgl == null)
-			return;
-		DragSource dragSource = DragSource.getDefaultDragSource();
-		dragSource.createDefaultDragGestureRecognizer(getMainView(),
-				DnDConstants.ACTION_COPY | DnDConstants.ACTION_MOVE
-						| DnDConstants.ACTION_LINK, dgl);
+	private void addDragAndDrop() {
+		mDragGestureRecognizer = mapView
+				.obtainDragGestureRecognizer(getMainView());
+		mDropTarget = mapView.obtainDropTarget(getMainView());
 	}
 
-	void addDropListener(DropTargetListener dtl) {
-		if (dtl == null)
-			return;
-		DropTarget dropTarget = new DropTarget(getMainView(), dtl);
-		dropTarget.setActive(true);
+	private void releaseDragAndDrop() {
+		if (mDragGestureRecognizer != null) {
+			mapView.releaseDragGestureRecognizer(mDragGestureRecognizer);
+			mDragGestureRecognizer = null;
+		}
+		if (mDropTarget != null) {
+			mapView.releaseDropTarget(mDropTarget);
+			mDropTarget = null;
+		}
 	}
 
 	public boolean isRoot() {
@@ -277,7 +356,7 @@ public class NodeView extends JComponent implements TreeModelListener {
 		getCoordinates(inList, 0, false, 0, 0);
 	}
 
-	private void getCoordinates(LinkedList<Point> inList,
+	void getCoordinates(LinkedList<Point> inList,
 			int additionalDistanceForConvexHull, boolean byChildren,
 			int transX, int transY) {
 		if (!isVisible())
@@ -307,6 +386,14 @@ public class NodeView extends JComponent implements TreeModelListener {
 					+ width, -additionalDistanceForConvexHull + y));
 		}
 
+		if (mGeometry != null) {
+			// the children without view belong to the cloud, too:
+			for (NodeGeometry child : mGeometry.mChildren) {
+				child.getCoordinates(inList, additionalDistanceForConvexHull,
+						transX + child.mX, transY + child.mY);
+			}
+			return;
+		}
 		LinkedList<NodeView> childrenViews = getChildrenViews();
 		ListIterator<NodeView> children_it = childrenViews.listIterator();
 		while (children_it.hasNext()) {
@@ -431,6 +518,7 @@ public class NodeView extends JComponent implements TreeModelListener {
 	}
 
 	protected LinkedList<NodeView> getSiblingViews() {
+		getMap().createChildViews(getParentView());
 		return getParentView().getChildrenViews();
 	}
 
@@ -617,6 +705,10 @@ public class NodeView extends JComponent implements TreeModelListener {
 	 *            TODO
 	 */
 	NodeView getFirst(Component startAfter, boolean leftOnly, boolean rightOnly) {
+		if (mGeometry != null) {
+			return getNavigationView(mGeometry.getFirst(
+					getNavigationGeometry(startAfter), leftOnly, rightOnly));
+		}
 		final Component[] components = getComponents();
 		for (int i = 0; i < components.length; i++) {
 			if (startAfter != null) {
@@ -651,6 +743,10 @@ public class NodeView extends JComponent implements TreeModelListener {
 
 	private NodeView getLast(Component startBefore, boolean leftOnly,
 			boolean rightOnly) {
+		if (mGeometry != null) {
+			return getNavigationView(mGeometry.getLast(
+					getNavigationGeometry(startBefore), leftOnly, rightOnly));
+		}
 		final Component[] components = getComponents();
 		for (int i = components.length - 1; i >= 0; i--) {
 			if (startBefore != null) {
@@ -677,30 +773,6 @@ public class NodeView extends JComponent implements TreeModelListener {
 		return null;
 	}
 
-	LinkedList<NodeView> getLeft(boolean onlyVisible) {
-		LinkedList<NodeView> all = getChildrenViews();
-		LinkedList<NodeView> left = new LinkedList<>();
-		for (NodeView node : all) {
-			if (node == null)
-				continue;
-			if (node.isLeft())
-				left.add(node);
-		}
-		return left;
-	}
-
-	LinkedList<NodeView> getRight(boolean onlyVisible) {
-		LinkedList<NodeView> all = getChildrenViews();
-		LinkedList<NodeView> right = new LinkedList<>();
-		for (NodeView node : all) {
-			if (node == null)
-				continue;
-			if (!node.isLeft())
-				right.add(node);
-		}
-		return right;
-	}
-
 	protected NodeView getPreviousVisibleSibling() {
 		NodeView sibling;
 		NodeView previousSibling = this;
@@ -732,20 +804,68 @@ public class NodeView extends JComponent implements TreeModelListener {
 		return sibling;
 	}
 
+	/**
+	 * @return the index of this view among the components of its parent. The
+	 *         child views come first and in the order of the model, so this is
+	 *         the child position unless the view is not there yet.
+	 */
+	private int getViewIndex() {
+		final NodeView parentView = getParentView();
+		final int position = getModel().getParentNode().getChildPosition(
+				getModel());
+		if (position >= 0 && position < parentView.getComponentCount()
+				&& parentView.getComponent(position) == this) {
+			return position;
+		}
+		return parentView.getComponentZOrder(this);
+	}
+
+	/**
+	 * @return the sibling view at the component index or null, if it is no
+	 *         node view or, on the root, on the other side. The keyboard
+	 *         navigation steps through these only.
+	 */
+	private NodeView getNavigationSibling(NodeView pParentView, int pIndex) {
+		final Component component = pParentView.getComponent(pIndex);
+		if (!(component instanceof NodeView)) {
+			return null;
+		}
+		final NodeView view = (NodeView) component;
+		if (pParentView.getModel().isRoot() && view.isLeft() != isLeft()) {
+			return null;
+		}
+		return view;
+	}
+
+	/**
+	 * @return the record of the view or null.
+	 */
+	private NodeGeometry getNavigationGeometry(Component pView) {
+		return pView instanceof NodeView ? ((NodeView) pView).getGeometry()
+				: null;
+	}
+
+	/**
+	 * @return the view of the record, which is created, if necessary.
+	 */
+	private NodeView getNavigationView(NodeGeometry pGeometry) {
+		return pGeometry == null ? null : getMap().getNodeView(
+				pGeometry.mModel);
+	}
+
 	protected NodeView getNextSiblingSingle() {
-		LinkedList<NodeView> v = null;
-		if (getParentView().getModel().isRoot()) {
-			if (this.isLeft()) {
-				v = (getParentView()).getLeft(true);
-			} else {
-				v = (getParentView()).getRight(true);
+		if (mGeometry != null) {
+			final NodeView nextView = getNavigationView(mGeometry
+					.getSiblingSingle(true));
+			return nextView == null ? this : nextView;
+		}
+		final NodeView parentView = getParentView();
+		final int count = parentView.getComponentCount();
+		for (int i = getViewIndex() + 1; i < count; i++) {
+			final NodeView nextView = getNavigationSibling(parentView, i);
+			if (nextView == null) {
+				continue;
 			}
-		} else {
-			v = getParentView().getChildrenViews();
-		}
-		final int index = v.indexOf(this);
-		for (int i = index + 1; i < v.size(); i++) {
-			final NodeView nextView = (NodeView) v.get(i);
 			if (nextView.isContentVisible()) {
 				return nextView;
 			} else {
@@ -759,19 +879,17 @@ public class NodeView extends JComponent implements TreeModelListener {
 	}
 
 	protected NodeView getPreviousSiblingSingle() {
-		LinkedList<NodeView> v = null;
-		if (getParentView().getModel().isRoot()) {
-			if (this.isLeft()) {
-				v = (getParentView()).getLeft(true);
-			} else {
-				v = (getParentView()).getRight(true);
+		if (mGeometry != null) {
+			final NodeView previousView = getNavigationView(mGeometry
+					.getSiblingSingle(false));
+			return previousView == null ? this : previousView;
+		}
+		final NodeView parentView = getParentView();
+		for (int i = getViewIndex() - 1; i >= 0; i--) {
+			final NodeView nextView = getNavigationSibling(parentView, i);
+			if (nextView == null) {
+				continue;
 			}
-		} else {
-			v = getParentView().getChildrenViews();
-		}
-		final int index = v.indexOf(this);
-		for (int i = index - 1; i >= 0; i--) {
-			final NodeView nextView = (NodeView) v.get(i);
 			if (nextView.isContentVisible()) {
 				return nextView;
 			} else {
@@ -1226,6 +1344,7 @@ public class NodeView extends JComponent implements TreeModelListener {
 			}
 		}
 		if (!getModel().isLeaf()) {
+			getMap().createChildViews(this);
 			int yGap = Integer.MAX_VALUE;
 			final NodeView baseComponent;
 			if (isContentVisible()) {
@@ -1303,6 +1422,11 @@ public class NodeView extends JComponent implements TreeModelListener {
 		if (getModel().isFolded()) {
 			return;
 		}
+		if (mGeometry != null) {
+			// the new nodes get their views near the viewport, only:
+			revalidate();
+			return;
+		}
 		final int[] childIndices = e.getChildIndices();
 
 		for (int i = 0; i < childIndices.length; i++) {
@@ -1333,25 +1457,15 @@ public class NodeView extends JComponent implements TreeModelListener {
 		boolean preferredChildIsLeft = preferredChild != null
 				&& preferredChild.isLeft();
 
-		for (int i = childIndices.length - 1; i >= 0; i--) {
-			final int index = childIndices[i];
-			final NodeView node = (NodeView) getComponent(index);
-			if (node == this.preferredChild) { // mind preferred child :-) (PN)
-				this.preferredChild = null;
-				for (int j = index + 1; j < getComponentCount(); j++) {
-					final Component c = getComponent(j);
-					if (!(c instanceof NodeView)) {
-						break;
-					}
-					NodeView candidate = (NodeView) c;
-					if (candidate.isVisible()
-							&& node.isLeft() == candidate.isLeft()) {
-						this.preferredChild = candidate;
-						break;
-					}
-				}
-				if (this.preferredChild == null) {
-					for (int j = index - 1; j >= 0; j--) {
+		if (mGeometry != null) {
+			removeChildViews(e);
+		} else {
+			for (int i = childIndices.length - 1; i >= 0; i--) {
+				final int index = childIndices[i];
+				final NodeView node = (NodeView) getComponent(index);
+				if (node == this.preferredChild) { // mind preferred child :-) (PN)
+					this.preferredChild = null;
+					for (int j = index + 1; j < getComponentCount(); j++) {
 						final Component c = getComponent(j);
 						if (!(c instanceof NodeView)) {
 							break;
@@ -1363,9 +1477,23 @@ public class NodeView extends JComponent implements TreeModelListener {
 							break;
 						}
 					}
+					if (this.preferredChild == null) {
+						for (int j = index - 1; j >= 0; j--) {
+							final Component c = getComponent(j);
+							if (!(c instanceof NodeView)) {
+								break;
+							}
+							NodeView candidate = (NodeView) c;
+							if (candidate.isVisible()
+									&& node.isLeft() == candidate.isLeft()) {
+								this.preferredChild = candidate;
+								break;
+							}
+						}
+					}
 				}
+				node.remove();
 			}
-			node.remove();
 		}
 		NodeView preferred = getPreferredVisibleChild(preferredChildIsLeft);
 		if (preferred != null) { // after delete focus on a brother (PN)
@@ -1385,6 +1513,20 @@ public class NodeView extends JComponent implements TreeModelListener {
 	 */
 	public void treeStructureChanged(TreeModelEvent e) {
 		getMap().resetShiftSelectionOrigin();
+		if (mGeometry != null) {
+			updateChildViews();
+			if (mapView.getSelected() == null) {
+				mapView.selectAsTheOnlyOneSelected(this);
+			}
+			mapView.revalidateSelecteds();
+			revalidate();
+			return;
+		}
+		// the children were only reordered, see MindMap#reorderChildren:
+		if (e.getChildren() != null && reorderChildrenViews()) {
+			revalidate();
+			return;
+		}
 		for (ListIterator<NodeView> i = getChildrenViews().listIterator(); i.hasNext();) {
 			i.next().remove();
 		}
@@ -1396,6 +1538,81 @@ public class NodeView extends JComponent implements TreeModelListener {
 		revalidate();
 	}
 
+	/**
+	 * Removes the views of the removed children, if the map virtualizes its
+	 * node views. The records were removed before.
+	 */
+	private void removeChildViews(TreeModelEvent e) {
+		final Object[] children = e.getChildren();
+		final int[] childIndices = e.getChildIndices();
+		final HashMap<Object, NodeView> views = new HashMap<>();
+		for (NodeView view : getChildrenViews()) {
+			views.put(view.getModel(), view);
+		}
+		for (int i = children.length - 1; i >= 0; i--) {
+			final NodeView node = views.get(children[i]);
+			if (node == null) {
+				continue;
+			}
+			if (node == this.preferredChild) { // mind preferred child :-) (PN)
+				this.preferredChild = getNavigationView(mGeometry
+						.getNeighbour(childIndices[i], node.isLeft()));
+			}
+			node.remove();
+		}
+	}
+
+	/**
+	 * Removes the child views without record and brings the others into the
+	 * order of the records, if the map virtualizes its node views.
+	 */
+	private void updateChildViews() {
+		final HashSet<NodeGeometry> children = new HashSet<>(
+				mGeometry.mChildren);
+		for (NodeView view : getChildrenViews()) {
+			if (!children.contains(view.getGeometry())) {
+				view.remove();
+			}
+		}
+		// the children views are the first components:
+		int index = 0;
+		for (NodeGeometry child : mGeometry.mChildren) {
+			if (child.mView != null && child.mView.getParent() == this) {
+				setComponentZOrder(child.mView, index++);
+			}
+		}
+	}
+
+	/**
+	 * Moves the existing views of the children into the order of the model
+	 * instead of creating them again.
+	 * 
+	 * @return false, if a child has no view.
+	 */
+	private boolean reorderChildrenViews() {
+		if (getModel().isFolded()) {
+			return true;
+		}
+		HashMap<MindMapNode, NodeView> views = new HashMap<>();
+		for (NodeView view : getChildrenViews()) {
+			views.put(view.getModel(), view);
+		}
+		if (views.size() != getModel().getChildCount()) {
+			return false;
+		}
+		// the children views are the first components:
+		int index = 0;
+		for (ListIterator<MindMapNode> i = getModel().childrenUnfolded(); i
+				.hasNext();) {
+			NodeView view = views.get(i.next());
+			if (view == null) {
+				return false;
+			}
+			setComponentZOrder(view, index++);
+		}
+		return true;
+	}
+
 	public int getZoomedFoldingSymbolHalfWidth() {
 		int preferredFoldingSymbolHalfWidth = (int) ((getFoldingSymbolWidth() * mapView
 				.getZoom()) / 2);
@@ -1431,7 +1648,12 @@ public class NodeView extends JComponent implements TreeModelListener {
 	}
 
 	public void setBounds(int x, int y, int width, int height) {
+		final boolean resized = width != getWidth() || height != getHeight();
 		super.setBounds(x, y, width, height);
+		if (!resized) {
+			// the extras are placed relative to this view
+			return;
+		}
 		if (motionListenerView != null) {
 			motionListenerView.invalidate();
 		}
@@ -1452,6 +1674,14 @@ public class NodeView extends JComponent implements TreeModelListener {
 
 	private void paintCloudsAndEdges(Graphics2D g) {
 		Object renderingHint = getMap().setEdgesRenderingHint(g);
+		// only the edges and clouds inside the clip are painted:
+		Rectangle clip = g.getClipBounds();
+		Rectangle content = null;
+		if (clip != null && isContentVisible()) {
+			content = getContent().getBounds();
+			int margin = getMap().getZoomed(20);
+			content.grow(margin, margin);
+		}
 		for (int i = 0; i < getComponentCount(); i++) {
 			final Component component = getComponent(i);
 			if (!(component instanceof NodeView)) {
@@ -1461,6 +1691,14 @@ public class NodeView extends JComponent implements TreeModelListener {
 			if (nodeView.isContentVisible()) {
 				Point p = new Point();
 				Tools.convertPointToAncestor(nodeView, p, this);
+				if (content != null) {
+					Rectangle edgeBounds = new Rectangle(p.x, p.y,
+							nodeView.getWidth(), nodeView.getHeight());
+					edgeBounds.add(content);
+					if (!edgeBounds.intersects(clip)) {
+						continue;
+					}
+				}
 				g.translate(p.x, p.y);
 				nodeView.paintCloud(g);
 				g.translate(-p.x, -p.y);
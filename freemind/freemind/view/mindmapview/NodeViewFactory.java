@@ -160,14 +160,32 @@ class NodeViewFactory {
 	NodeView newNodeView(MindMapNode model, int position, MapView map,
 			Container parent) {
 		NodeView newView = new NodeView(model, position, map, parent);
+		return initNodeView(newView, model, map);
+	}
+
+	/**
+	 * Binds a node view, which was removed from the map before, to another
+	 * node.
+	 */
+	NodeView reuseNodeView(NodeView view, MindMapNode model, int position,
+			Container parent) {
+		view.bind(model, position, parent);
+		return initNodeView(view, model, view.getMap());
+	}
 
+	private NodeView initNodeView(NodeView newView, MindMapNode model,
+			MapView map) {
 		if (model.isRoot()) {
 			final MainView mainView = new RootMainView();
 			newView.setMainView(mainView);
 			newView.setLayout(VerticalRootNodeViewLayout.getInstance());
 
 		} else {
-			newView.setMainView(newMainView(model));
+			// a reused view keeps its main view, if the style fits:
+			if (newView.getMainView() == null
+					|| !newView.getStyle().equals(model.getStyle())) {
+				newView.setMainView(newMainView(model));
+			}
 			if (newView.isLeft()) {
 				newView.setLayout(LeftNodeViewLayout.getInstance());
 			} else {
@@ -181,6 +199,14 @@ class NodeViewFactory {
 		return newView;
 	}
 
+	/**
+	 * @return a view outside of the map measuring the nodes of the style,
+	 *         see {@link NodeView#measureContent(MindMapNode)}.
+	 */
+	NodeView newMeasuringView(MindMapNode model, MapView map) {
+		return new NodeView(map, newMainView(model));
+	}
+
 	MainView newMainView(MindMapNode model) {
 		if (model.isRoot()) {
 			return new RootMainView();
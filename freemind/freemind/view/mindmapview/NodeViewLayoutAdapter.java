@@ -87,8 +87,16 @@ abstract public class NodeViewLayoutAdapter implements NodeViewLayout {
 	}
 
 	public void layoutContainer(Container c) {
-		setUp(c);
-		layout();
+		final NodeView localView = (NodeView) c;
+		final NodeGeometry geometry = localView.getGeometry();
+		if (geometry != null) {
+			// the map has laid out the records of its nodes already:
+			geometry.applyTo(localView);
+			this.view = localView;
+		} else {
+			setUp(c);
+			layout();
+		}
 		Point location2 = view.getLocation();
 		Tools.convertPointToAncestor(view, location2, view.getMap());
 //		logger.info("Layouting node '" + view.getModel() + "' to " + location2);
@@ -0,0 +1,465 @@
+/*FreeMind - A Program for creating and viewing Mindmaps
+ *Copyright (C) 2000-2014 Christian Foltin, Joerg Mueller, Daniel Polansky, Dimitri Polivaev and others.
+ *
+ *See COPYING for Details
+ *
+ *This program is free software; you can redistribute it and/or
+ *modify it under the terms of the GNU General Public License
+ *as published by the Free Software Foundation; either version 2
+ *of the License, or (at your option) any later version.
+ *
+ *This program is distributed in the hope that it will be useful,
+ *but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *GNU General Public License for more details.
+ *
+ *You should have received a copy of the GNU General Public License
+ *along with this program; if not, write to the Free Software
+ *Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package freemind.view.mindmapview;
+
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.ListIterator;
+import java.util.Vector;
+
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+
+import freemind.modes.MindMapArrowLink;
+import freemind.modes.MindMapLink;
+import freemind.modes.MindMapLinkRegistry;
+import freemind.modes.MindMapNode;
+
+/**
+ * Keeps a {@link NodeGeometry} for each unfolded node of a map and node views
+ * only for the nodes near the viewport, see
+ * {@link MapView#RESOURCES_VIRTUALIZE_NODE_VIEWS}. The views of the nodes
+ * leaving that area go to a pool and are bound to the nodes coming in.
+ *
+ * As listener of the map, it is notified before the node views and updates
+ * the records first.
+ */
+class NodeViewVirtualizer implements TreeModelListener {
+	private static final int MAX_POOL_SIZE = 256;
+	private final MapView mMap;
+	private NodeGeometry mRoot;
+	private final HashMap<MindMapNode, NodeGeometry> mGeometries = new HashMap<>();
+	/** Node views that are no longer part of the map. */
+	private final Vector<NodeView> mPool = new Vector<>();
+	/** Views outside of the map measuring the nodes without view, by style. */
+	private final HashMap<String, NodeView> mMeasuringViews = new HashMap<>();
+
+	NodeViewVirtualizer(MapView pMap) {
+		mMap = pMap;
+	}
+
+	MapView getMap() {
+		return mMap;
+	}
+
+	/**
+	 * Creates the records of all unfolded nodes. Only the root gets a view.
+	 */
+	void init(NodeView pRootView) {
+		mGeometries.clear();
+		mRoot = createGeometry(pRootView.getModel(), null);
+		bind(mRoot, pRootView);
+	}
+
+	private NodeGeometry createGeometry(MindMapNode pNode, NodeGeometry pParent) {
+		final NodeGeometry geometry = new NodeGeometry(pNode, pParent);
+		mGeometries.put(pNode, geometry);
+		for (ListIterator<MindMapNode> i = pNode.childrenFolded(); i.hasNext();) {
+			geometry.mChildren.add(createGeometry(i.next(), geometry));
+		}
+		return geometry;
+	}
+
+	private void forgetGeometry(NodeGeometry pGeometry) {
+		if (mGeometries.get(pGeometry.mModel) == pGeometry) {
+			mGeometries.remove(pGeometry.mModel);
+		}
+		for (NodeGeometry child : pGeometry.mChildren) {
+			forgetGeometry(child);
+		}
+	}
+
+	NodeGeometry getGeometry(MindMapNode pNode) {
+		return mGeometries.get(pNode);
+	}
+
+	int getGeometryCount() {
+		return mGeometries.size();
+	}
+
+	/**
+	 * Lays out the changed records.
+	 * 
+	 * @return the size of the root's record.
+	 */
+	Dimension layout(int pRootX, int pRootY) {
+		mRoot.mX = pRootX;
+		mRoot.mY = pRootY;
+		mRoot.layout(this);
+		return new Dimension(mRoot.mWidth, mRoot.mHeight);
+	}
+
+	/**
+	 * All nodes are measured and laid out again, e.g. after zooming.
+	 */
+	void invalidateAll() {
+		for (NodeGeometry geometry : mGeometries.values()) {
+			geometry.mValid = false;
+			geometry.mContentSize = null;
+		}
+	}
+
+	Dimension measureContent(MindMapNode pNode) {
+		NodeView view = mMeasuringViews.get(pNode.getStyle());
+		if (view == null) {
+			view = NodeViewFactory.getInstance().newMeasuringView(pNode, mMap);
+			mMeasuringViews.put(pNode.getStyle(), view);
+		}
+		return view.measureContent(pNode);
+	}
+
+	//
+	// Node views
+	//
+
+	/**
+	 * Creates the views of the nodes whose subtree or edge intersects the
+	 * area and of the pinned views' ancestors. The other views are released
+	 * to the pool.
+	 *
+	 * @param pArea
+	 *            in map coordinates
+	 */
+	void updateNodeViews(Rectangle pArea, Collection<NodeView> pPinned) {
+		final HashSet<NodeGeometry> shown = new HashSet<>();
+		collect(mRoot, mRoot.mX, mRoot.mY, null, pArea, shown);
+		for (NodeView view : pPinned) {
+			addWithAncestors(view.getGeometry(), shown);
+		}
+		addLinkEnds(pArea, shown);
+		releaseNodeViews(mRoot.mView, shown);
+		createNodeViews(mRoot, shown);
+	}
+
+	/**
+	 * @param pEdgeSource
+	 *            the content of the node the edges start at, in map
+	 *            coordinates.
+	 */
+	private void collect(NodeGeometry pGeometry, int pX, int pY,
+			Rectangle pEdgeSource, Rectangle pArea,
+			HashSet<NodeGeometry> pResult) {
+		pResult.add(pGeometry);
+		Rectangle edgeSource = pEdgeSource;
+		if (pGeometry.mContentVisible) {
+			// as in NodeView#paintCloudsAndEdges:
+			edgeSource = new Rectangle(pGeometry.mContent);
+			edgeSource.translate(pX, pY);
+			final int margin = mMap.getZoomed(20);
+			edgeSource.grow(margin, margin);
+		}
+		for (NodeGeometry child : pGeometry.mChildren) {
+			final Rectangle bounds = new Rectangle(pX + child.mX, pY
+					+ child.mY, child.mWidth, child.mHeight);
+			if (!bounds.intersects(pArea)) {
+				// the edge to the child may cross the area, anyway:
+				if (edgeSource == null || !child.mContentVisible) {
+					continue;
+				}
+				bounds.add(edgeSource);
+				if (!bounds.intersects(pArea)) {
+					continue;
+				}
+			}
+			collect(child, pX + child.mX, pY + child.mY, edgeSource, pArea,
+					pResult);
+		}
+	}
+
+	private void addWithAncestors(NodeGeometry pGeometry,
+			HashSet<NodeGeometry> pResult) {
+		for (NodeGeometry geometry = pGeometry; geometry != null
+				&& pResult.add(geometry); geometry = geometry.mParent) {
+		}
+	}
+
+	/**
+	 * Both ends of the arrow links crossing the area get a view, as an arrow
+	 * link is painted between node views only.
+	 */
+	private void addLinkEnds(Rectangle pArea, HashSet<NodeGeometry> pResult) {
+		final MindMapLinkRegistry registry = mMap.getModel().getLinkRegistry();
+		if (registry == null) {
+			return;
+		}
+		for (MindMapLink link : registry.getAllLinks()) {
+			if (!(link instanceof MindMapArrowLink)) {
+				continue;
+			}
+			final NodeGeometry source = mGeometries.get(link.getSource());
+			final NodeGeometry target = mGeometries.get(link.getTarget());
+			if (source == null || target == null) {
+				continue;
+			}
+			final Rectangle bounds = source.getContentBoundsInMap();
+			bounds.add(target.getContentBoundsInMap());
+			if (bounds.intersects(pArea)) {
+				addWithAncestors(source, pResult);
+				addWithAncestors(target, pResult);
+			}
+		}
+	}
+
+	private void releaseNodeViews(NodeView pView, HashSet<NodeGeometry> pShown) {
+		for (int i = pView.getComponentCount() - 1; i >= 0; i--) {
+			final Component component = pView.getComponent(i);
+			if (!(component instanceof NodeView)) {
+				continue;
+			}
+			final NodeView child = (NodeView) component;
+			final NodeGeometry geometry = child.getGeometry();
+			if (geometry != null && pShown.contains(geometry)
+					&& mGeometries.get(geometry.mModel) == geometry) {
+				releaseNodeViews(child, pShown);
+			} else {
+				child.remove();
+			}
+		}
+	}
+
+	private void createNodeViews(NodeGeometry pGeometry,
+			HashSet<NodeGeometry> pShown) {
+		// the child views are the first components, in the order of the model:
+		int index = 0;
+		for (NodeGeometry child : pGeometry.mChildren) {
+			if (!pShown.contains(child)) {
+				continue;
+			}
+			if (child.mView == null) {
+				createNodeView(child, pGeometry.mView, index);
+			}
+			index++;
+			createNodeViews(child, pShown);
+		}
+	}
+
+	/**
+	 * @return the view of the node, which is created with the ones of its
+	 *         ancestors, if necessary. Null, if the node is folded away.
+	 */
+	NodeView createNodeView(MindMapNode pNode) {
+		final NodeGeometry geometry = mGeometries.get(pNode);
+		if (geometry == null) {
+			return null;
+		}
+		if (geometry.mView == null) {
+			final NodeGeometry parent = geometry.mParent;
+			final NodeView parentView = createNodeView(parent.mModel);
+			int index = 0;
+			for (NodeGeometry sibling : parent.mChildren) {
+				if (sibling == geometry) {
+					break;
+				}
+				if (sibling.mView != null) {
+					index++;
+				}
+			}
+			createNodeView(geometry, parentView, index);
+		}
+		return geometry.mView;
+	}
+
+	/**
+	 * Creates the missing views of the children of the view.
+	 */
+	void createChildViews(NodeView pView) {
+		final NodeGeometry geometry = pView.getGeometry();
+		if (geometry == null) {
+			return;
+		}
+		int index = 0;
+		for (NodeGeometry child : geometry.mChildren) {
+			if (child.mView == null) {
+				createNodeView(child, pView, index);
+			}
+			index++;
+		}
+	}
+
+	private void createNodeView(NodeGeometry pGeometry, NodeView pParentView,
+			int pIndex) {
+		final NodeViewFactory factory = NodeViewFactory.getInstance();
+		final NodeView view;
+		if (mPool.isEmpty()) {
+			view = factory.newNodeView(pGeometry.mModel, pIndex, mMap,
+					pParentView);
+		} else {
+			view = factory.reuseNodeView(mPool.remove(mPool.size() - 1),
+					pGeometry.mModel, pIndex, pParentView);
+		}
+		bind(pGeometry, view);
+		// usable before the next layout:
+		view.setBounds(pGeometry.mX, pGeometry.mY, pGeometry.mWidth,
+				pGeometry.mHeight);
+		pGeometry.applyTo(view);
+		mMap.invalidateArrowLinks();
+	}
+
+	private void bind(NodeGeometry pGeometry, NodeView pView) {
+		pGeometry.mView = pView;
+		pView.setGeometry(pGeometry);
+	}
+
+	/**
+	 * Called by a node view that is removed from the map.
+	 */
+	void releaseNodeView(NodeView pView) {
+		final NodeGeometry geometry = pView.getGeometry();
+		if (geometry != null && geometry.mView == pView) {
+			geometry.mView = null;
+		}
+		pView.setGeometry(null);
+		// views having a content pane are left to the garbage collector:
+		if (mPool.size() < MAX_POOL_SIZE
+				&& pView.getContent() == pView.getMainView()) {
+			mPool.add(pView);
+		}
+		mMap.invalidateArrowLinks();
+	}
+
+	//
+	// Changes of the map
+	//
+
+	public void treeNodesChanged(TreeModelEvent e) {
+		final Object[] children = e.getChildren();
+		if (children == null) {
+			nodeChanged((MindMapNode) e.getTreePath().getLastPathComponent());
+		} else {
+			for (int i = 0; i < children.length; i++) {
+				nodeChanged((MindMapNode) children[i]);
+			}
+		}
+		mMap.revalidate();
+	}
+
+	private void nodeChanged(MindMapNode pNode) {
+		final NodeGeometry geometry = mGeometries.get(pNode);
+		if (geometry != null) {
+			geometry.mContentSize = null;
+			geometry.invalidate();
+		}
+	}
+
+	public void treeNodesInserted(TreeModelEvent e) {
+		final NodeGeometry parent = mGeometries.get(e.getTreePath()
+				.getLastPathComponent());
+		if (parent == null || parent.mModel.isFolded()) {
+			return;
+		}
+		final int[] childIndices = e.getChildIndices();
+		final Object[] children = e.getChildren();
+		for (int i = 0; i < childIndices.length; i++) {
+			if (childIndices[i] > parent.mChildren.size()) {
+				break;
+			}
+			parent.mChildren.add(childIndices[i],
+					createGeometry((MindMapNode) children[i], parent));
+		}
+		checkChildren(parent);
+		parent.invalidate();
+		mMap.revalidate();
+	}
+
+	public void treeNodesRemoved(TreeModelEvent e) {
+		final NodeGeometry parent = mGeometries.get(e.getTreePath()
+				.getLastPathComponent());
+		if (parent == null) {
+			return;
+		}
+		final int[] childIndices = e.getChildIndices();
+		final Object[] children = e.getChildren();
+		for (int i = childIndices.length - 1; i >= 0; i--) {
+			final int index = childIndices[i];
+			if (index < parent.mChildren.size()
+					&& parent.mChildren.get(index).mModel == children[i]) {
+				forgetGeometry(parent.mChildren.remove(index));
+			}
+		}
+		checkChildren(parent);
+		parent.invalidate();
+		mMap.revalidate();
+	}
+
+	public void treeStructureChanged(TreeModelEvent e) {
+		final NodeGeometry geometry = mGeometries.get(e.getTreePath()
+				.getLastPathComponent());
+		if (geometry == null) {
+			return;
+		}
+		// only reordered, see MindMap#reorderChildren:
+		updateChildren(geometry, e.getChildren() != null);
+		geometry.invalidate();
+		mMap.revalidate();
+	}
+
+	/**
+	 * Builds the records of the children again, if they don't match the
+	 * model.
+	 */
+	private void checkChildren(NodeGeometry pGeometry) {
+		int index = 0;
+		for (ListIterator<MindMapNode> i = pGeometry.mModel.childrenFolded(); i
+				.hasNext(); index++) {
+			if (index >= pGeometry.mChildren.size()
+					|| pGeometry.mChildren.get(index).mModel != i.next()) {
+				updateChildren(pGeometry, false);
+				return;
+			}
+		}
+		if (index != pGeometry.mChildren.size()) {
+			updateChildren(pGeometry, false);
+		}
+	}
+
+	/**
+	 * @param pReuse
+	 *            if true, the records of the children that are still there
+	 *            are kept with their subtrees.
+	 */
+	private void updateChildren(NodeGeometry pGeometry, boolean pReuse) {
+		final HashMap<MindMapNode, NodeGeometry> oldChildren = new HashMap<>();
+		for (NodeGeometry child : pGeometry.mChildren) {
+			if (pReuse) {
+				oldChildren.put(child.mModel, child);
+			} else {
+				forgetGeometry(child);
+			}
+		}
+		pGeometry.mChildren.clear();
+		for (ListIterator<MindMapNode> i = pGeometry.mModel.childrenFolded(); i
+				.hasNext();) {
+			final MindMapNode node = i.next();
+			NodeGeometry child = oldChildren.remove(node);
+			if (child == null) {
+				child = createGeometry(node, pGeometry);
+			}
+			pGeometry.mChildren.add(child);
+		}
+		for (NodeGeometry child : oldChildren.values()) {
+			forgetGeometry(child);
+		}
+	}
+}
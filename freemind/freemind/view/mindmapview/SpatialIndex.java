@@ -0,0 +1,147 @@
+/*FreeMind - A Program for creating and viewing Mindmaps
+ *Copyright (C) 2000-2014 Christian Foltin, Joerg Mueller, Daniel Polansky, Dimitri Polivaev and others.
+ *
+ *See COPYING for Details
+ *
+ *This program is free software; you can redistribute it and/or
+ *modify it under the terms of the GNU General Public License
+ *as published by the Free Software Foundation; either version 2
+ *of the License, or (at your option) any later version.
+ *
+ *This program is distributed in the hope that it will be useful,
+ *but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *GNU General Public License for more details.
+ *
+ *You should have received a copy of the GNU General Public License
+ *along with this program; if not, write to the Free Software
+ *Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package freemind.view.mindmapview;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Vector;
+
+/**
+ * Uniform grid over the map: finds the objects whose bounds intersect a
+ * rectangle (e.g. the clip of a repaint) without looking at all of them.
+ * Objects spanning many cells are kept in a separate list that is always
+ * checked.
+ */
+class SpatialIndex<T> {
+
+	private static final int CELL_SIZE = 256;
+
+	private static final int MAX_CELLS_PER_ENTRY = 64;
+
+	private static class Entry<T> {
+		final Rectangle mBounds;
+		final T mObject;
+		int mQueryStamp = 0;
+
+		Entry(Rectangle pBounds, T pObject) {
+			mBounds = pBounds;
+			mObject = pObject;
+		}
+	}
+
+	private final HashMap<Long, Vector<Entry<T>>> mCells = new HashMap<>();
+	private final Vector<Entry<T>> mLargeEntries = new Vector<>();
+	private final Vector<Entry<T>> mEntries = new Vector<>();
+	private int mQueryStamp = 0;
+
+	public void add(Rectangle pBounds, T pObject) {
+		Entry<T> entry = new Entry<>(new Rectangle(pBounds), pObject);
+		mEntries.add(entry);
+		int x1 = cell(pBounds.x);
+		int x2 = cell(pBounds.x + pBounds.width);
+		int y1 = cell(pBounds.y);
+		int y2 = cell(pBounds.y + pBounds.height);
+		if ((long) (x2 - x1 + 1) * (y2 - y1 + 1) > MAX_CELLS_PER_ENTRY) {
+			mLargeEntries.add(entry);
+			return;
+		}
+		for (int x = x1; x <= x2; x++) {
+			for (int y = y1; y <= y2; y++) {
+				Long key = key(x, y);
+				Vector<Entry<T>> cell = mCells.get(key);
+				if (cell == null) {
+					cell = new Vector<>();
+					mCells.put(key, cell);
+				}
+				cell.add(entry);
+			}
+		}
+	}
+
+	/**
+	 * Adds the objects intersecting the area to the result, each once.
+	 *
+	 * @param pArea
+	 *            null means everything.
+	 */
+	public void query(Rectangle pArea, List<T> pResult) {
+		if (pArea == null) {
+			for (Entry<T> entry : mEntries) {
+				pResult.add(entry.mObject);
+			}
+			return;
+		}
+		int stamp = ++mQueryStamp;
+		collect(mLargeEntries, pArea, stamp, pResult);
+		int x1 = cell(pArea.x);
+		int x2 = cell(pArea.x + pArea.width);
+		int y1 = cell(pArea.y);
+		int y2 = cell(pArea.y + pArea.height);
+		if ((long) (x2 - x1 + 1) * (y2 - y1 + 1) > mCells.size()) {
+			// cheaper to look at all of them:
+			collect(mEntries, pArea, stamp, pResult);
+			return;
+		}
+		for (int x = x1; x <= x2; x++) {
+			for (int y = y1; y <= y2; y++) {
+				Vector<Entry<T>> cell = mCells.get(key(x, y));
+				if (cell != null) {
+					collect(cell, pArea, stamp, pResult);
+				}
+			}
+		}
+	}
+
+	public void query(Point pPoint, List<T> pResult) {
+		query(new Rectangle(pPoint.x, pPoint.y, 1, 1), pResult);
+	}
+
+	public List<T> getAll() {
+		Vector<T> result = new Vector<>(mEntries.size());
+		query((Rectangle) null, result);
+		return result;
+	}
+
+	public int size() {
+		return mEntries.size();
+	}
+
+	private void collect(Vector<Entry<T>> pEntries, Rectangle pArea,
+			int pStamp, List<T> pResult) {
+		for (Entry<T> entry : pEntries) {
+			if (entry.mQueryStamp != pStamp
+					&& entry.mBounds.intersects(pArea)) {
+				entry.mQueryStamp = pStamp;
+				pResult.add(entry.mObject);
+			}
+		}
+	}
+
+	private static int cell(int pCoordinate) {
+		return Math.floorDiv(pCoordinate, CELL_SIZE);
+	}
+
+	private static Long key(int pX, int pY) {
+		return Long.valueOf(((long) pX << 32) | (pY & 0xffffffffL));
+	}
+}
@@ -0,0 +1,327 @@
+/*FreeMind - A Program for creating and viewing Mindmaps
+ *Copyright (C) 2000-2014 Christian Foltin, Joerg Mueller, Daniel Polansky, Dimitri Polivaev and others.
+ *
+ *See COPYING for Details
+ *
+ *This program is free software; you can redistribute it and/or
+ *modify it under the terms of the GNU General Public License
+ *as published by the Free Software Foundation; either version 2
+ *of the License, or (at your option) any later version.
+ *
+ *This program is distributed in the hope that it will be useful,
+ *but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *GNU General Public License for more details.
+ *
+ *You should have received a copy of the GNU General Public License
+ *along with this program; if not, write to the Free Software
+ *Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package freemind.view.mindmapview;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.imageio.ImageIO;
+
+import freemind.main.PngStreamWriter;
+
+/**
+ * Renders a map in tiles of a fixed size, so that also maps that are much
+ * bigger than the heap can be exported as image. Painting has to happen on
+ * the event dispatch thread (or headless), the encoding of the image data
+ * runs in parallel on other threads.
+ */
+public class TiledMapRenderer {
+
+	public static final int DEFAULT_TILE_SIZE = 256;
+	public static final String DEEP_ZOOM_EXTENSION = "dzi";
+	public static final int DEFAULT_BAND_PIXELS = 4 * 1024 * 1024;
+
+	private static java.util.logging.Logger logger = null;
+
+	private final MapView mView;
+	private final int mTileSize;
+	private int mBandPixels = DEFAULT_BAND_PIXELS;
+	private Rectangle mBounds;
+	private Color mBackground;
+
+	public TiledMapRenderer(MapView pView, int pTileSize) {
+		if (logger == null) {
+			logger = freemind.main.Resources.getInstance().getLogger(
+					this.getClass().getName());
+		}
+		mView = pView;
+		mTileSize = pTileSize;
+	}
+
+	public TiledMapRenderer(MapView pView) {
+		this(pView, DEFAULT_TILE_SIZE);
+	}
+
+	/**
+	 * Limits the size of the bands of the PNG export. They are at least one
+	 * tile high.
+	 */
+	public void setBandPixels(int pBandPixels) {
+		mBandPixels = pBandPixels;
+	}
+
+	/**
+	 * Writes the map as PNG. It is painted in bands of the full image width,
+	 * only two of them are in memory: one is painted while the other one is
+	 * encoded. A band is painted at once, as big clouds and edges are
+	 * expensive to paint again for every tile they touch.
+	 */
+	public void writePng(OutputStream pOut) throws IOException {
+		boolean prepared = preparePrinting();
+		ExecutorService encoder = Executors.newSingleThreadExecutor();
+		try {
+			final int width = mBounds.width;
+			final int height = mBounds.height;
+			final PngStreamWriter writer = new PngStreamWriter(pOut, width,
+					height);
+			int bandHeight = Math.min(height,
+					Math.max(mTileSize, mBandPixels / width));
+			BufferedImage[] bands = new BufferedImage[2];
+			Vector<Future<Void>> pending = new Vector<>();
+			pending.add(null);
+			pending.add(null);
+			int band = 0;
+			for (int y = 0; y < height; y += bandHeight, band ^= 1) {
+				waitFor(pending.get(band));
+				if (bands[band] == null) {
+					bands[band] = new BufferedImage(width, bandHeight,
+							BufferedImage.TYPE_INT_RGB);
+				}
+				paintTile(bands[band], 0, y, 1d);
+				final int[] pixels = ((DataBufferInt) bands[band].getRaster()
+						.getDataBuffer()).getData();
+				final int rows = Math.min(bandHeight, height - y);
+				pending.set(band, encoder.submit(new Callable<Void>() {
+					public Void call() throws IOException {
+						writer.writeRows(pixels, 0, width, rows);
+						return null;
+					}
+				}));
+			}
+			for (Future<Void> future : pending) {
+				waitFor(future);
+			}
+			writer.finish();
+		} finally {
+			encoder.shutdownNow();
+			if (prepared) {
+				mView.endPrinting();
+			}
+		}
+	}
+
+	/**
+	 * Writes the map as Deep Zoom tile pyramid: the descriptor and a
+	 * directory &lt;name&gt;_files with one sub directory of PNG tiles per
+	 * level. Level n is the map scaled by 2^(n - max level).
+	 */
+	public void writeDeepZoom(File pDescriptor) throws IOException {
+		boolean prepared = preparePrinting();
+		int threads = Runtime.getRuntime().availableProcessors();
+		ExecutorService encoder = Executors.newFixedThreadPool(threads);
+		// the tiles waiting for their encoding are limited:
+		int maxPending = 2 * threads;
+		try {
+			String name = pDescriptor.getName().replaceFirst("\\.[^.]*?$", "");
+			File tileDirectory = new File(pDescriptor.getAbsoluteFile()
+					.getParentFile(), name + "_files");
+			int maxLevel = getMaxLevel(mBounds.width, mBounds.height);
+			Vector<Future<Void>> pending = new Vector<>();
+			BufferedImage singleTile = null;
+			for (int level = maxLevel; level >= 0; level--) {
+				int width = getLevelSize(mBounds.width, maxLevel - level);
+				int height = getLevelSize(mBounds.height, maxLevel - level);
+				File levelDirectory = new File(tileDirectory, "" + level);
+				if (!levelDirectory.isDirectory() && !levelDirectory.mkdirs()) {
+					throw new IOException("Can't create " + levelDirectory);
+				}
+				if (singleTile != null) {
+					// painting the whole map again for each small level is
+					// expensive, thus they are scaled from the first one that
+					// fits into a single tile:
+					singleTile = scaleDown(singleTile, width, height);
+				} else if (width <= mTileSize && height <= mTileSize) {
+					singleTile = new BufferedImage(width, height,
+							BufferedImage.TYPE_INT_RGB);
+					paintTile(singleTile, 0, 0, getLevelScale(maxLevel - level));
+				}
+				if (singleTile != null) {
+					submitTile(encoder, pending, maxPending, singleTile,
+							new File(levelDirectory, "0_0.png"));
+					continue;
+				}
+				double scale = getLevelScale(maxLevel - level);
+				for (int y = 0, row = 0; y < height; y += mTileSize, row++) {
+					for (int x = 0, column = 0; x < width; x += mTileSize, column++) {
+						BufferedImage tile = new BufferedImage(Math.min(
+								mTileSize, width - x), Math.min(mTileSize,
+								height - y), BufferedImage.TYPE_INT_RGB);
+						paintTile(tile, x, y, scale);
+						submitTile(encoder, pending, maxPending, tile,
+								new File(levelDirectory, column + "_" + row
+										+ ".png"));
+					}
+				}
+			}
+			for (Future<Void> future : pending) {
+				waitFor(future);
+			}
+			writeDescriptor(pDescriptor);
+		} finally {
+			encoder.shutdownNow();
+			if (prepared) {
+				mView.endPrinting();
+			}
+		}
+	}
+
+	private void submitTile(ExecutorService pEncoder,
+			Vector<Future<Void>> pPending, int pMaxPending,
+			final BufferedImage pTile, final File pFile) throws IOException {
+		while (pPending.size() >= pMaxPending) {
+			waitFor(pPending.remove(0));
+		}
+		pPending.add(pEncoder.submit(new Callable<Void>() {
+			public Void call() throws IOException {
+				if (!ImageIO.write(pTile, "png", pFile)) {
+					throw new IOException("No PNG writer for " + pFile);
+				}
+				return null;
+			}
+		}));
+	}
+
+	private void writeDescriptor(File pDescriptor) throws IOException {
+		Writer writer = new OutputStreamWriter(new FileOutputStream(
+				pDescriptor), StandardCharsets.UTF_8);
+		try {
+			writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+					+ "<Image xmlns=\"http://schemas.microsoft.com/deepzoom/2008\" Format=\"png\" Overlap=\"0\" TileSize=\""
+					+ mTileSize + "\">\n" + "  <Size Width=\"" + mBounds.width
+					+ "\" Height=\"" + mBounds.height + "\"/>\n" + "</Image>\n");
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * @return the level of the original size. Level 0 is a single pixel.
+	 */
+	public static int getMaxLevel(int pWidth, int pHeight) {
+		int max = Math.max(pWidth, pHeight);
+		int level = 0;
+		while ((1L << level) < max) {
+			level++;
+		}
+		return level;
+	}
+
+	public static int getLevelSize(int pSize, int pLevelsBelowMax) {
+		return (int) Math.max(1, Math.ceil(pSize * getLevelScale(pLevelsBelowMax)));
+	}
+
+	private static double getLevelScale(int pLevelsBelowMax) {
+		return 1d / (1L << pLevelsBelowMax);
+	}
+
+	private static BufferedImage scaleDown(BufferedImage pImage, int pWidth,
+			int pHeight) {
+		BufferedImage result = new BufferedImage(pWidth, pHeight,
+				BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = result.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+				RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+		g.drawImage(pImage, 0, 0, pWidth, pHeight, null);
+		g.dispose();
+		return result;
+	}
+
+	/**
+	 * @return the bounds of the map in the view, computed on
+	 *         {@link #writePng(OutputStream)} or {@link #writeDeepZoom(File)}.
+	 */
+	public Rectangle getBounds() {
+		return mBounds;
+	}
+
+	/**
+	 * @return true, if the view wasn't prepared for printing before and has
+	 *         to be reset afterwards.
+	 */
+	private boolean preparePrinting() {
+		boolean prepare = !mView.isCurrentlyPrinting();
+		if (prepare) {
+			mView.preparePrinting();
+		}
+		mBounds = mView.getInnerBounds();
+		mBackground = mView.getBackground();
+		if (mBounds.isEmpty()) {
+			if (prepare) {
+				mView.endPrinting();
+			}
+			throw new IllegalStateException("Nothing to render.");
+		}
+		logger.info("Rendering " + mBounds.width + "x" + mBounds.height
+				+ " pixels in tiles of " + mTileSize + ".");
+		return prepare;
+	}
+
+	/**
+	 * Paints the part of the map beginning at pX, pY (in pixels of the scaled
+	 * image) into the tile.
+	 */
+	public void paintTile(BufferedImage pTile, int pX, int pY, double pScale) {
+		Graphics2D g = pTile.createGraphics();
+		g.setColor(mBackground);
+		g.fillRect(0, 0, pTile.getWidth(), pTile.getHeight());
+		// without a clip, the whole map would be painted into every tile:
+		g.clipRect(0, 0, pTile.getWidth(), pTile.getHeight());
+		g.translate(-pX, -pY);
+		g.scale(pScale, pScale);
+		g.translate(-mBounds.x, -mBounds.y);
+		g.clipRect(mBounds.x, mBounds.y, mBounds.width, mBounds.height);
+		mView.print(g);
+		g.dispose();
+	}
+
+	private static void waitFor(Future<Void> pFuture) throws IOException {
+		if (pFuture == null) {
+			return;
+		}
+		try {
+			pFuture.get();
+		} catch (InterruptedException e) {
+			throw new IOException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		}
+	}
+}
@@ -1,77 +1,136 @@
 package plugins.search;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.logging.Logger;
 
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StoredField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
 import org.apache.lucene.queryparser.classic.ParseException;
-import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.PrefixQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.TopScoreDocCollector;
 import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.store.RAMDirectory;
 import org.apache.lucene.util.Version;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
 
 /**
- * This terminal application creates an Apache Lucene index in a folder and adds
- * files into this index based on the input of the user.
+ * Lucene index of the nodes of mind map files. There is one document per
+ * node (text, note, attributes, path to the node, file and node id) and one
+ * document per file that records its modification time and length.
+ *
+ * The index is kept on disk and updated incrementally: only the files that
+ * are new or changed since the last search are read again, the documents of
+ * deleted files are removed.
  */
 public class FileSearchModel {
 
 	public static final String FREEMIND_FILENAME_SUFFIX = ".mm";
 
+	private static final String TYPE_FILE = "file";
+	private static final String TYPE_NODE = "node";
+	private static final String NODE_PATH_SEPARATOR = " / ";
+
 	private enum FileAttribute {
-		filename, path, contents
+		type, filename, path, modified, length, id, text, note, attributes, nodepath
 	}
 
+	private static final String[] SEARCHED_FIELDS = new String[] {
+			FileAttribute.text.name(), FileAttribute.note.name(),
+			FileAttribute.attributes.name() };
+
 	private static StandardAnalyzer analyzer = new StandardAnalyzer(
 			Version.LUCENE_46);
 
 	private ArrayList<File> queue = new ArrayList<File>();
 
+	private final Directory index;
+
 	/**
-	 * 
+	 * Modification time and length of the indexed files, read from the index
+	 * once.
+	 */
+	private HashMap<String, long[]> indexedFiles = null;
+
+	/**
+	 *
 	 * @param querystring
 	 * @param hitsPerPage
 	 * @param searcher
 	 * @param q
 	 * @param index
 	 * @return
-	 * @throws ParseException
 	 * @throws IOException
 	 */
 	public TopDocs doSearch(Query q, int hitsPerPage, IndexSearcher searcher)
-			throws ParseException, IOException {
+			throws IOException {
 		TopScoreDocCollector collector = TopScoreDocCollector.create(
-				hitsPerPage, true);
+				Math.max(1, hitsPerPage), true);
 		searcher.search(q, collector);
 		TopDocs topDocs = collector.topDocs();
 		return topDocs;
 	}
 
-	protected Query getQuery(String querystring) throws ParseException {
-		// the "title" arg specifies the default field to use
-		// when no field is explicitly specified in the query.
-		Query q = new QueryParser(Version.LUCENE_46,
-				FileAttribute.contents.name(), analyzer).parse(querystring);
-		return q;
+	/**
+	 * @return a query for the nodes of the given files or directories, whose
+	 *         text, note or attributes match the query string.
+	 */
+	protected Query getQuery(String querystring, File... roots)
+			throws ParseException {
+		Query q = new MultiFieldQueryParser(Version.LUCENE_46,
+				SEARCHED_FIELDS, analyzer).parse(querystring);
+		BooleanQuery files = new BooleanQuery();
+		for (File root : roots) {
+			if (root == null) {
+				continue;
+			}
+			String path = root.getAbsolutePath();
+			if (root.isDirectory()) {
+				files.add(new PrefixQuery(new Term(FileAttribute.path.name(),
+						path + File.separator)), BooleanClause.Occur.SHOULD);
+			} else {
+				files.add(new TermQuery(new Term(FileAttribute.path.name(),
+						path)), BooleanClause.Occur.SHOULD);
+			}
+		}
+		BooleanQuery query = new BooleanQuery();
+		query.add(q, BooleanClause.Occur.MUST);
+		query.add(files, BooleanClause.Occur.MUST);
+		query.add(new TermQuery(new Term(FileAttribute.type.name(),
+				TYPE_NODE)), BooleanClause.Occur.MUST);
+		return query;
 	}
 
-	protected IndexSearcher getSearcher(Directory index) throws IOException {
+	protected IndexSearcher getSearcher() throws IOException {
 		DirectoryReader reader = DirectoryReader.open(index);
 		IndexSearcher searcher = new IndexSearcher(reader);
 		return searcher;
@@ -79,145 +138,273 @@ public class FileSearchModel {
 
 	/**
 	 * Constructor
-	 * 
+	 *
+	 * @param indexDirectory
+	 *            where the index is kept. If null, the index is kept in
+	 *            memory.
 	 */
-	FileSearchModel(Logger logger) {
+	FileSearchModel(Logger logger, File indexDirectory) throws IOException {
 		this._logger = logger;
+		if (indexDirectory == null) {
+			index = new RAMDirectory();
+		} else {
+			indexDirectory.mkdirs();
+			index = FSDirectory.open(indexDirectory);
+		}
 	}
 
 	private Logger _logger = null;
 
 	/**
-	 * Indexes a file or directory
-	 * 
-	 * @param fileName
-	 *            the name of a text file or a folder we wish to add to the
-	 *            index
-	 * @return
+	 * Brings the index up to date for the given files or directories.
+	 *
+	 * @return the number of files (re)indexed.
 	 * @throws java.io.IOException
 	 *             when exception
 	 */
-	public Directory indexFileOrDirectory(String... fileName)
-			throws IOException {
-		Directory index = new RAMDirectory();
-		IndexWriterConfig config = new IndexWriterConfig(Version.LUCENE_46,
-				analyzer);
-		IndexWriter writer = new IndexWriter(index, config);
-
+	public synchronized int updateIndex(File... fileName) throws IOException {
+		HashSet<String> existing = new HashSet<String>();
 		for (int i = 0; i < fileName.length; i++) {
-			indexFileOrDirectoryCore(fileName[i], writer);
+			if (fileName[i] == null) {
+				continue;
+			}
+			if (!fileName[i].exists()) {
+				throw new FileNotFoundException("Can't open " + fileName[i]);
+			}
+			addFiles(fileName[i].getAbsoluteFile());
+		}
+		Map<String, long[]> indexed = getIndexedFiles();
+		ArrayList<File> changed = new ArrayList<File>();
+		for (File f : queue) {
+			String path = f.getPath();
+			existing.add(path);
+			long[] state = indexed.get(path);
+			if (state == null || state[0] != f.lastModified()
+					|| state[1] != f.length()) {
+				changed.add(f);
+			}
+		}
+		queue.clear();
+		ArrayList<String> deleted = new ArrayList<String>();
+		for (String path : indexed.keySet()) {
+			if (!existing.contains(path) && isBelow(path, fileName)) {
+				deleted.add(path);
+			}
+		}
+		if (changed.isEmpty() && deleted.isEmpty()) {
+			return 0;
 		}
-		// ===================================================
-		// after adding, we always have to call the
-		// closeIndex, otherwise the index is not created
-		// ===================================================
-		writer.close();
-
-		return index;
-	}
-
-	public Directory indexFileOrDirectory(File... fileName) throws IOException {
-		Directory index = new RAMDirectory();
 		IndexWriterConfig config = new IndexWriterConfig(Version.LUCENE_46,
 				analyzer);
+		config.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
 		IndexWriter writer = new IndexWriter(index, config);
+		try {
+			for (String path : deleted) {
+				writer.deleteDocuments(new Term(FileAttribute.path.name(),
+						path));
+				indexed.remove(path);
+				_logger.info("Removed: " + path);
+			}
+			for (File f : changed) {
+				writer.deleteDocuments(new Term(FileAttribute.path.name(), f
+						.getPath()));
+				indexed.remove(f.getPath());
+				if (indexFile(f, writer)) {
+					indexed.put(f.getPath(), new long[] { f.lastModified(),
+							f.length() });
+				}
+			}
+		} finally {
+			// ===================================================
+			// after adding, we always have to close the writer,
+			// otherwise the index is not written
+			// ===================================================
+			writer.close();
+		}
+		_logger.info(changed.size() + " files indexed, " + deleted.size()
+				+ " removed.");
+		return changed.size();
+	}
 
-		for (int i = 0; i < fileName.length; i++) {
-			indexFileOrDirectoryCore(fileName[i], writer);
+	private boolean isBelow(String path, File[] roots) {
+		for (File root : roots) {
+			if (root == null) {
+				continue;
+			}
+			String rootPath = root.getAbsolutePath();
+			if (path.equals(rootPath)
+					|| path.startsWith(rootPath + File.separator)) {
+				return true;
+			}
 		}
-		// ===================================================
-		// after adding, we always have to call the
-		// closeIndex, otherwise the index is not created
-		// ===================================================
-		writer.close();
+		return false;
+	}
 
-		return index;
+	private Map<String, long[]> getIndexedFiles() throws IOException {
+		if (indexedFiles != null) {
+			return indexedFiles;
+		}
+		indexedFiles = new HashMap<String, long[]>();
+		if (!DirectoryReader.indexExists(index)) {
+			return indexedFiles;
+		}
+		DirectoryReader reader = DirectoryReader.open(index);
+		try {
+			IndexSearcher searcher = new IndexSearcher(reader);
+			TermQuery query = new TermQuery(new Term(
+					FileAttribute.type.name(), TYPE_FILE));
+			TopDocs docs = doSearch(query, Math.max(1, reader.numDocs()),
+					searcher);
+			for (ScoreDoc scoreDoc : docs.scoreDocs) {
+				Document d = searcher.doc(scoreDoc.doc);
+				indexedFiles.put(
+						getPath(d),
+						new long[] {
+								d.getField(FileAttribute.modified.name())
+										.numericValue().longValue(),
+								d.getField(FileAttribute.length.name())
+										.numericValue().longValue() });
+			}
+		} finally {
+			reader.close();
+		}
+		return indexedFiles;
 	}
 
 	/**
-	 * Indexes a file or directory
-	 * 
-	 * @param fileName
-	 *            the name of a text file or a folder we wish to add to the
-	 *            index
-	 * @return
-	 * @throws java.io.IOException
-	 *             when exception
+	 * Adds one document per node of the map and one for the file.
+	 *
+	 * @return true, if the file could be read.
 	 */
-	public Directory indexFileOrDirectory(String fileName) throws IOException {
-		return indexFileOrDirectory(new String[] { fileName });
-	}
-
-	public Directory indexFileOrDirectory(File fileName) throws IOException {
-		return indexFileOrDirectory(new File[] { fileName });
+	private boolean indexFile(File f, IndexWriter writer) {
+		try {
+			NodeCollector collector = new NodeCollector(f, writer);
+			InputStream in = new BufferedInputStream(new FileInputStream(f));
+			try {
+				SAXParser parser = SAXParserFactory.newInstance()
+						.newSAXParser();
+				parser.parse(in, collector);
+			} finally {
+				in.close();
+			}
+			Document doc = new Document();
+			doc.add(new StringField(FileAttribute.type.name(), TYPE_FILE,
+					Field.Store.YES));
+			doc.add(new StringField(FileAttribute.path.name(), f.getPath(),
+					Field.Store.YES));
+			doc.add(new StoredField(FileAttribute.modified.name(), f
+					.lastModified()));
+			doc.add(new StoredField(FileAttribute.length.name(), f.length()));
+			writer.addDocument(doc);
+			_logger.fine("Added: " + f + " with " + collector.count
+					+ " nodes.");
+			return true;
+		} catch (Exception e) {
+			_logger.warning("Could not add: " + f + ": " + e);
+			return false;
+		}
 	}
 
 	/**
-	 * 
-	 * @param fileName
-	 * @param writer
-	 * @return
-	 * @throws IOException
+	 * Streams through the map file and writes a document per node.
 	 */
-	private int indexFileOrDirectoryCore(String fileName, IndexWriter writer)
-			throws IOException {
-		// ===================================================
-		// gets the list of files in a folder (if user has submitted
-		// the name of a folder) or gets a single file name (is user
-		// has submitted only the file name)
-		// ===================================================
-		File file = new File(fileName);
-		if(!file.exists()) {
-			throw new FileNotFoundException("Can't open " + fileName);
+	private class NodeCollector extends DefaultHandler {
+		private class NodeData {
+			String id;
+			StringBuilder text = new StringBuilder();
+			StringBuilder note = new StringBuilder();
+			StringBuilder attributes = new StringBuilder();
+			String nodePath;
 		}
-		addFiles(file);
 
-		return indexFiles(writer);
-	}
+		private final File file;
+		private final IndexWriter writer;
+		private final ArrayList<NodeData> stack = new ArrayList<NodeData>();
+		/** Where the characters of a richcontent element go, or null. */
+		private StringBuilder richContent = null;
+		private int count = 0;
 
-	private int indexFileOrDirectoryCore(File fileName, IndexWriter writer)
-			throws IOException {
-		// ===================================================
-		// gets the list of files in a folder (if user has submitted
-		// the name of a folder) or gets a single file name (is user
-		// has submitted only the file name)
-		// ===================================================
-		addFiles(fileName);
-
-		return indexFiles(writer);
-	}
+		NodeCollector(File file, IndexWriter writer) {
+			this.file = file;
+			this.writer = writer;
+		}
 
-	public int indexFiles(IndexWriter writer) throws IOException {
-		int originalNumDocs = writer.numDocs();
-		for (File f : queue) {
-			FileReader fr = null;
-			try {
-				Document doc = new Document();
+		public void startElement(String uri, String localName, String qName,
+				Attributes attributes) {
+			if ("node".equals(qName)) {
+				NodeData node = new NodeData();
+				node.id = attributes.getValue("ID");
+				String text = attributes.getValue("TEXT");
+				if (text != null) {
+					node.text.append(text);
+				}
+				if (!stack.isEmpty()) {
+					NodeData parent = stack.get(stack.size() - 1);
+					node.nodePath = (parent.nodePath == null ? ""
+							: parent.nodePath + NODE_PATH_SEPARATOR)
+							+ parent.text.toString().trim();
+				}
+				stack.add(node);
+			} else if (stack.isEmpty()) {
+				return;
+			} else if ("richcontent".equals(qName)) {
+				NodeData node = stack.get(stack.size() - 1);
+				String type = attributes.getValue("TYPE");
+				if ("NODE".equals(type)) {
+					richContent = node.text;
+				} else {
+					richContent = node.note;
+				}
+			} else if ("attribute".equals(qName)) {
+				NodeData node = stack.get(stack.size() - 1);
+				node.attributes.append(attributes.getValue("NAME"))
+						.append(' ').append(attributes.getValue("VALUE"))
+						.append('\n');
+			} else if (richContent != null) {
+				// html element: separates words.
+				richContent.append(' ');
+			}
+		}
 
-				// ===================================================
-				// add contents of file
-				// ===================================================
-				fr = new FileReader(f);
-				doc.add(new TextField(FileAttribute.contents.name(), fr));
-				doc.add(new StringField(FileAttribute.path.name(), f.getPath(),
-						Field.Store.YES));
-				doc.add(new StringField(FileAttribute.filename.name(), f
-						.getName(), Field.Store.YES));
-
-				writer.addDocument(doc);
-				_logger.info("Added: " + f);
-			} catch (Exception e) {
-				_logger.warning("Could not add: " + f);
-			} finally {
-				fr.close();
+		public void characters(char[] ch, int start, int length) {
+			if (richContent != null) {
+				richContent.append(ch, start, length);
 			}
 		}
 
-		int newNumDocs = writer.numDocs();
-		int added = newNumDocs - originalNumDocs;
-		_logger.info(added + " documents added.");
-		queue.clear();
-		return added;
+		public void endElement(String uri, String localName, String qName) {
+			if ("richcontent".equals(qName)) {
+				richContent = null;
+			} else if ("node".equals(qName) && !stack.isEmpty()) {
+				NodeData node = stack.remove(stack.size() - 1);
+				Document doc = new Document();
+				doc.add(new StringField(FileAttribute.type.name(), TYPE_NODE,
+						Field.Store.NO));
+				doc.add(new StringField(FileAttribute.path.name(), file
+						.getPath(), Field.Store.YES));
+				doc.add(new StoredField(FileAttribute.filename.name(), file
+						.getName()));
+				if (node.id != null) {
+					doc.add(new StoredField(FileAttribute.id.name(), node.id));
+				}
+				doc.add(new TextField(FileAttribute.text.name(), node.text
+						.toString().trim(), Field.Store.YES));
+				doc.add(new TextField(FileAttribute.note.name(), node.note
+						.toString(), Field.Store.NO));
+				doc.add(new TextField(FileAttribute.attributes.name(),
+						node.attributes.toString(), Field.Store.NO));
+				if (node.nodePath != null) {
+					doc.add(new StoredField(FileAttribute.nodepath.name(),
+							node.nodePath));
+				}
+				try {
+					writer.addDocument(doc);
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+				count++;
+			}
+		}
 	}
 
 	public String getPath(Document d) {
@@ -228,6 +415,18 @@ public class FileSearchModel {
 		return d.get(FileAttribute.filename.name());
 	}
 
+	public String getNodeId(Document d) {
+		return d.get(FileAttribute.id.name());
+	}
+
+	public String getNodeText(Document d) {
+		return d.get(FileAttribute.text.name());
+	}
+
+	public String getNodePath(Document d) {
+		return d.get(FileAttribute.nodepath.name());
+	}
+
 	public String[] getFilepathsFromSearchResults(IndexSearcher searcher,
 			TopDocs results) throws IOException {
 		ScoreDoc[] scoreDocs = results.scoreDocs;
@@ -241,7 +440,7 @@ public class FileSearchModel {
 	}
 
 	/**
-	 * 
+	 *
 	 * @param file
 	 */
 	private void addFiles(File file) {
@@ -250,7 +449,11 @@ public class FileSearchModel {
 			_logger.warning(file + " does not exist.");
 		}
 		if (file.isDirectory()) {
-			for (File f : file.listFiles()) {
+			File[] files = file.listFiles();
+			if (files == null) {
+				return;
+			}
+			for (File f : files) {
 				addFiles(f);
 			}
 		} else {
@@ -266,4 +469,4 @@ public class FileSearchModel {
 		}
 	}
 
-}
\ No newline at end of file
+}
@@ -27,6 +27,17 @@ public interface ISearchController {
 	
 	public File[] getFilesOfOpenTabs();
 
-	public void openMap(String path);
+	/**
+	 * Opens the map and selects the node.
+	 * 
+	 * @param nodeId
+	 *            may be null.
+	 */
+	public void openMap(String path, String nodeId);
+
+	/**
+	 * @return the directory of the persistent search index.
+	 */
+	public File getIndexDirectory();
 
 }
@@ -5,59 +5,81 @@ import java.io.IOException;
 import java.util.logging.Logger;
 
 import org.apache.lucene.document.Document;
-import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.TopDocs;
-import org.apache.lucene.store.Directory;
 
 public class Search {
+	/** Upper bound of the results shown. */
+	private static final int MAX_HITS = 1000;
+	/** The index model stays open between searches. */
+	private static FileSearchModel sIndexer = null;
+	private static File sIndexDirectory = null;
 	private FileSearchModel indexer;
 	private Logger _logger;
 	private IndexSearcher searcher;
 	private ScoreDoc[] hits;
 
-	public Search(Logger logger) {
+	/**
+	 * @param indexDirectory
+	 *            where the persistent index is kept.
+	 */
+	public Search(Logger logger, File indexDirectory) throws IOException {
 		this._logger = logger;
+		synchronized (Search.class) {
+			if (sIndexer == null || !indexDirectory.equals(sIndexDirectory)) {
+				sIndexer = new FileSearchModel(logger, indexDirectory);
+				sIndexDirectory = indexDirectory;
+			}
+			indexer = sIndexer;
+		}
 	}
 
 	public SearchResult[] runSearch(String searchString, File[] mapsFiles)
 			throws IOException, ParseException {
-		indexer = new FileSearchModel(_logger);
 		_logger.fine("runSearch :" + searchString + " in " + mapsFiles);
-		Directory index = indexer.indexFileOrDirectory(mapsFiles);
+		indexer.updateIndex(mapsFiles);
 
-		searcher = indexer.getSearcher(index);
+		searcher = indexer.getSearcher();
 		_logger.fine("Run search");
-		Query query = indexer.getQuery(searchString);
-		DirectoryReader reader = DirectoryReader.open(index);
-		TopDocs results = indexer.doSearch(query, reader.numDocs(), searcher);
-
-		hits = results.scoreDocs;
-		_logger.fine("Returned: " + hits.length + " results");
-		SearchResult[] listData = new SearchResult[hits.length];
-		for (int i = 0; i < hits.length; i++) {
-			Document d;
-			try {
-				int docId = hits[i].doc;
-				d = searcher.doc(docId);
-				listData[i] = new SearchResult(i + 1, hits[i].doc,
-						indexer.getFilename(d), indexer.getPath(d),
-						hits[i].score, hits[i].shardIndex);
-				_logger.fine(i + " " + listData[i]);
-			} catch (IOException e) {
-				_logger.warning("Failed:" + e.getMessage());
-				e.printStackTrace();
+		Query query = indexer.getQuery(searchString, mapsFiles);
+		TopDocs results;
+		try {
+			results = indexer.doSearch(query, MAX_HITS, searcher);
+
+			hits = results.scoreDocs;
+			_logger.fine("Returned: " + hits.length + " results");
+			SearchResult[] listData = new SearchResult[hits.length];
+			for (int i = 0; i < hits.length; i++) {
+				Document d;
+				try {
+					int docId = hits[i].doc;
+					d = searcher.doc(docId);
+					listData[i] = new SearchResult(i + 1, hits[i].doc,
+							indexer.getFilename(d), indexer.getPath(d),
+							indexer.getNodeId(d), indexer.getNodeText(d),
+							indexer.getNodePath(d), hits[i].score,
+							hits[i].shardIndex);
+					_logger.fine(i + " " + listData[i]);
+				} catch (IOException e) {
+					_logger.warning("Failed:" + e.getMessage());
+					e.printStackTrace();
+				}
 			}
+			return listData;
+		} finally {
+			searcher.getIndexReader().close();
 		}
-		return listData;
 	}
 
 	public class SearchResult {
 		private String fileName;
 		private String path;
+		private String nodeId;
+		private String nodeText;
+		private String nodePath;
 		private int docId;
 
 		private float score;
@@ -65,22 +87,29 @@ public class Search {
 		private int rank;
 
 		public SearchResult(int rank, int docId, String fileName, String path,
-				float score, int shardIndex) {
+				String nodeId, String nodeText, String nodePath, float score,
+				int shardIndex) {
 			this.rank = rank;
 			this.fileName = fileName;
 			this.path = path;
+			this.nodeId = nodeId;
+			this.nodeText = nodeText;
+			this.nodePath = nodePath;
 			this.docId = docId;
 			this.score = score;
 			this.shardIndex = shardIndex;
 		}
 
 		public String showDetails() {
-			return getPath() + "\n" + getScore();
+			return getPath() + "\n"
+					+ (getNodePath() == null ? "" : getNodePath() + "\n")
+					+ getNodeText() + "\n" + getScore();
 		}
 
 		@Override
 		public String toString() {
-			return getRank() + " (" + getScore() + ") " + getFileName();
+			return getRank() + " (" + getScore() + ") " + getNodeText()
+					+ " [" + getFileName() + "]";
 		}
 
 		public int getRank() {
@@ -107,5 +136,24 @@ public class Search {
 			return this.path;
 		}
 
+		/**
+		 * @return the id of the found node or null, if it has none.
+		 */
+		public String getNodeId() {
+			return this.nodeId;
+		}
+
+		public String getNodeText() {
+			return this.nodeText;
+		}
+
+		/**
+		 * @return the texts of the ancestors of the node or null for the
+		 *         root.
+		 */
+		public String getNodePath() {
+			return this.nodePath;
+		}
+
 	}
 }
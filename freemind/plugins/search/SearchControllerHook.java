@@ -21,11 +21,13 @@
 package plugins.search;
 
 import java.io.File;
+import java.net.MalformedURLException;
 import java.util.List;
 import java.util.logging.Logger;
 
 import javax.swing.JFrame;
 
+import freemind.main.Tools;
 import freemind.modes.mindmapmode.hooks.MindMapHookAdapter;
 import freemind.view.MapModule;
 
@@ -44,6 +46,8 @@ import freemind.view.MapModule;
 public class SearchControllerHook extends MindMapHookAdapter implements
 		ISearchController {
 
+	private static final String INDEX_DIRECTORY = "search_index";
+
 	/**
 	 */
 	public SearchControllerHook() {
@@ -77,9 +81,22 @@ public class SearchControllerHook extends MindMapHookAdapter implements
 				.getFrame().getJFrame();
 	}
 
-	public void openMap(String mapModule) {
-		logger.fine("open map :" + mapModule);
-		getController().loadURL(mapModule);
+	public void openMap(String mapModule, String nodeId) {
+		logger.fine("open map :" + mapModule + " at " + nodeId);
+		try {
+			String url = Tools.fileToUrl(new File(mapModule)).toString();
+			if (nodeId != null) {
+				url += "#" + nodeId;
+			}
+			getController().loadURL(url);
+		} catch (MalformedURLException e) {
+			freemind.main.Resources.getInstance().logException(e);
+		}
+	}
+
+	public File getIndexDirectory() {
+		return new File(getController().getFrame().getFreemindDirectory(),
+				INDEX_DIRECTORY);
 	}
 
 	public File[] getFilesOfOpenTabs() {
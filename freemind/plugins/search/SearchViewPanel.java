@@ -86,10 +86,16 @@ public class SearchViewPanel extends JDialog implements ListSelectionListener {
 			}
 
 			@Override
-			public void openMap(String path) {
+			public void openMap(String path, String nodeId) {
 				// TODO Auto-generated method stub
 
 			}
+
+			@Override
+			public File getIndexDirectory() {
+				return new File(System.getProperty("java.io.tmpdir"),
+						"freemind_search_index");
+			}
 		}
 
 		File[] files = new File[] { new File("data/freemind.mm") };
@@ -358,7 +364,8 @@ public class SearchViewPanel extends JDialog implements ListSelectionListener {
 			setMainPanelText("Searching [" + Arrays.asList(mapsFiles)
 					+ "] for [" + searchString + "]");
 
-			Search search = new Search(_logger);
+			Search search = new Search(_logger,
+					this.searchControllerHook.getIndexDirectory());
 
 			Object[] listData = search.runSearch(searchString, mapsFiles);
 			resultsList.setListData(listData);
@@ -390,14 +397,15 @@ public class SearchViewPanel extends JDialog implements ListSelectionListener {
 		updateScorePanel();
 		SearchResult selectedItem = getSelectedItem();
 		if (null != selectedItem) {
-			this.searchControllerHook.openMap(selectedItem.getPath());
+			this.searchControllerHook.openMap(selectedItem.getPath(),
+					selectedItem.getNodeId());
 		}
 	}
 
 	public void updateScorePanel() {
 		SearchResult selectedItem = getSelectedItem();
 		if (null != selectedItem) {
-			setMainPanelText(selectedItem.getPath());
+			setMainPanelText(selectedItem.showDetails());
 		}
 	}
 
@@ -0,0 +1,179 @@
+/*FreeMind - A Program for creating and viewing Mindmaps
+ *Copyright (C) 2000-2014 Christian Foltin, Joerg Mueller, Daniel Polansky, Dimitri Polivaev and others.
+ *
+ *See COPYING for Details
+ *
+ *This program is free software; you can redistribute it and/or
+ *modify it under the terms of the GNU General Public License
+ *as published by the Free Software Foundation; either version 2
+ *of the License, or (at your option) any later version.
+ *
+ *This program is distributed in the hope that it will be useful,
+ *but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *GNU General Public License for more details.
+ *
+ *You should have received a copy of the GNU General Public License
+ *along with this program; if not, write to the Free Software
+ *Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package tests.freemind;
+
+import java.util.Vector;
+
+import freemind.controller.actions.generated.instance.CompoundAction;
+import freemind.controller.actions.generated.instance.EditNodeAction;
+import freemind.controller.actions.generated.instance.NodeAction;
+import freemind.controller.actions.generated.instance.TextNodeAction;
+import freemind.controller.actions.generated.instance.XmlAction;
+import freemind.modes.ExtendedMapFeedbackAdapter;
+import freemind.modes.MindMap;
+import freemind.modes.mindmapmode.actions.xml.ActionFilter;
+import freemind.modes.mindmapmode.actions.xml.ActionHandler;
+import freemind.modes.mindmapmode.actions.xml.ActionPair;
+import freemind.modes.mindmapmode.actions.xml.ActionRegistry;
+import freemind.modes.mindmapmode.actions.xml.ActorXml;
+
+/**
+ * Dispatching of actions to actors, handlers and filters.
+ */
+public class ActionRegistryTests extends FreeMindTestBase {
+
+	private Vector<String> mCalls = new Vector<>();
+
+	private class RecordingActor implements ActorXml {
+		private final String mName;
+		private final Class<?> mActionClass;
+
+		RecordingActor(String pName, Class<?> pActionClass) {
+			mName = pName;
+			mActionClass = pActionClass;
+		}
+
+		public void act(XmlAction pAction) {
+			mCalls.add(mName);
+		}
+
+		public Class<?> getDoActionClass() {
+			return mActionClass;
+		}
+	}
+
+	private class RecordingHandler implements ActionHandler {
+		private final String mName;
+
+		RecordingHandler(String pName) {
+			mName = pName;
+		}
+
+		public void executeAction(XmlAction pAction) {
+			mCalls.add(mName);
+		}
+
+		public void startTransaction(String pName) {
+		}
+
+		public void endTransaction(String pName) {
+		}
+	}
+
+	private class RecordingFilter implements ActionFilter {
+		private final String mName;
+
+		RecordingFilter(String pName) {
+			mName = pName;
+		}
+
+		public ActionPair filterAction(ActionPair pPair) {
+			mCalls.add(mName);
+			return pPair;
+		}
+	}
+
+	private class FirstFilter extends RecordingFilter implements
+			ActionFilter.FirstActionFilter {
+		FirstFilter() {
+			super("first");
+		}
+	}
+
+	private class FinalFilter extends RecordingFilter implements
+			ActionFilter.FinalActionFilter {
+		FinalFilter() {
+			super("final");
+		}
+	}
+
+	private class BatchCountingMapFeedback extends ExtendedMapFeedbackAdapter {
+		public MindMap getMap() {
+			return null;
+		}
+
+		public void startNodeChangeBatch() {
+			mCalls.add("start batch");
+		}
+
+		public void endNodeChangeBatch() {
+			mCalls.add("end batch");
+		}
+	}
+
+	public void testActorOfNearestSuperClass() throws Exception {
+		ActionRegistry registry = new ActionRegistry();
+		RecordingActor nodeActor = new RecordingActor("node", NodeAction.class);
+		registry.registerActor(nodeActor, NodeAction.class);
+		assertSame(nodeActor, registry.getActor(new EditNodeAction()));
+		RecordingActor textActor = new RecordingActor("text",
+				TextNodeAction.class);
+		registry.registerActor(textActor, TextNodeAction.class);
+		// the cache is cleared:
+		assertSame(textActor, registry.getActor(new EditNodeAction()));
+		assertSame(nodeActor, registry.getActor(new NodeAction()));
+		registry.deregisterActor(TextNodeAction.class);
+		assertSame(nodeActor, registry.getActor(new EditNodeAction()));
+		try {
+			registry.getActor(new CompoundAction());
+			fail("Must throw.");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	public void testHandlerAndFilterOrder() throws Exception {
+		ActionRegistry registry = new ActionRegistry();
+		RecordingHandler first = new RecordingHandler("handler 1");
+		RecordingHandler second = new RecordingHandler("handler 2");
+		registry.registerHandler(first);
+		registry.registerHandler(second);
+		registry.registerFilter(new FinalFilter());
+		registry.registerFilter(new RecordingFilter("middle"));
+		registry.registerFilter(new FirstFilter());
+		EditNodeAction action = new EditNodeAction();
+		assertTrue(registry.doTransaction("test", new ActionPair(action,
+				action)));
+		assertEquals("[first, middle, final, handler 2, handler 1]",
+				mCalls.toString());
+		// registering again puts it in front, but doesn't duplicate it:
+		mCalls.clear();
+		registry.registerHandler(first);
+		registry.doTransaction("test", new ActionPair(action, action));
+		assertEquals("[first, middle, final, handler 1, handler 2]",
+				mCalls.toString());
+		mCalls.clear();
+		registry.deregisterHandler(first);
+		registry.doTransaction("test", new ActionPair(action, action));
+		assertEquals("[first, middle, final, handler 2]", mCalls.toString());
+	}
+
+	public void testCompoundIsBatched() throws Exception {
+		BatchCountingMapFeedback mapFeedback = new BatchCountingMapFeedback();
+		ActionRegistry registry = mapFeedback.getActionRegistry();
+		registry.registerActor(new RecordingActor("edit",
+				EditNodeAction.class), EditNodeAction.class);
+		CompoundAction compound = new CompoundAction();
+		compound.addChoice(new EditNodeAction());
+		compound.addChoice(new EditNodeAction());
+		registry.getActor(compound).act(compound);
+		assertEquals("[start batch, edit, edit, end batch]", mCalls.toString());
+	}
+}
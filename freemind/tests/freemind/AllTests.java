@@ -51,6 +51,14 @@ public class AllTests {
 		suite.addTest(new TestSuite(LayoutTests.class));
 		suite.addTest(new TestSuite(LastOpenedTests.class));
 		suite.addTest(new TestSuite(StandaloneMapTests.class));
+		suite.addTest(new TestSuite(MapLoaderTests.class));
+		suite.addTest(new TestSuite(XMLWriterTests.class));
+		suite.addTest(new TestSuite(MapJournalTests.class));
+		suite.addTest(new TestSuite(ActionRegistryTests.class));
+		suite.addTest(new TestSuite(MapTextIndexTests.class));
+		suite.addTest(new TestSuite(NodeChildrenListTests.class));
+		suite.addTest(new TestSuite(FileModeTests.class));
+		suite.addTest(new TestSuite(HierarchicalIconsTests.class));
 		suite.addTest(new TestSuite(CollaborationTests.class));
 		suite.addTest(new TestSuite(CalendarMarkingTests.class));
 		// $JUnit-END$
@@ -25,17 +25,30 @@ import java.awt.Graphics;
 import java.awt.Rectangle;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.PrintStream;
 import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.zip.ZipFile;
 
+import javax.imageio.ImageIO;
 import javax.swing.JDialog;
 import javax.swing.JPanel;
 import javax.swing.WindowConstants;
 
+import freemind.main.Tools;
 import freemind.main.XMLParseException;
+import freemind.modes.mindmapmode.MapBatchExporter;
 import freemind.view.mindmapview.IndependantMapViewCreator;
 import freemind.view.mindmapview.MapView;
+import freemind.view.mindmapview.TiledMapRenderer;
 
 /**
  * @author foltin
@@ -52,6 +65,127 @@ public class ExportTests extends FreeMindTestBase {
 		System.out.println("Done.");
 	}
 
+	public void testTiledPng() throws Exception {
+		MapView mapView = createMapView();
+		TiledMapRenderer renderer = new TiledMapRenderer(mapView, 16);
+		// several bands:
+		renderer.setBandPixels(0);
+		ByteArrayOutputStream tiled = new ByteArrayOutputStream();
+		renderer.writePng(tiled);
+		Rectangle bounds = renderer.getBounds();
+		BufferedImage tiledImage = ImageIO.read(new ByteArrayInputStream(
+				tiled.toByteArray()));
+		assertEquals(bounds.width, tiledImage.getWidth());
+		assertEquals(bounds.height, tiledImage.getHeight());
+		// the same map in a single tile:
+		ByteArrayOutputStream single = new ByteArrayOutputStream();
+		new TiledMapRenderer(mapView, Math.max(bounds.width, bounds.height))
+				.writePng(single);
+		BufferedImage singleImage = ImageIO.read(new ByteArrayInputStream(
+				single.toByteArray()));
+		// antialiased curves are rasterized slightly different when clipped:
+		for (int y = 0; y < bounds.height; y++) {
+			for (int x = 0; x < bounds.width; x++) {
+				int expected = singleImage.getRGB(x, y);
+				int actual = tiledImage.getRGB(x, y);
+				for (int shift = 0; shift < 24; shift += 8) {
+					int difference = ((expected >> shift) & 0xff)
+							- ((actual >> shift) & 0xff);
+					assertTrue("Pixel " + x + "," + y,
+							Math.abs(difference) <= 32);
+				}
+			}
+		}
+	}
+
+	public void testDeepZoom() throws Exception {
+		MapView mapView = createMapView();
+		File directory = Files.createTempDirectory("dzi").toFile();
+		File descriptor = new File(directory, "map.dzi");
+		TiledMapRenderer renderer = new TiledMapRenderer(mapView, 128);
+		renderer.writeDeepZoom(descriptor);
+		Rectangle bounds = renderer.getBounds();
+		String content = Tools.getFile(descriptor);
+		assertTrue(content, content.indexOf("<Size Width=\"" + bounds.width
+				+ "\" Height=\"" + bounds.height + "\"/>") >= 0);
+		int maxLevel = TiledMapRenderer.getMaxLevel(bounds.width,
+				bounds.height);
+		File files = new File(directory, "map_files");
+		BufferedImage last = ImageIO.read(new File(files, maxLevel
+				+ "/0_0.png"));
+		assertEquals(128, last.getWidth());
+		BufferedImage lastColumn = ImageIO.read(new File(files, maxLevel + "/"
+				+ (bounds.width - 1) / 128 + "_0.png"));
+		assertEquals((bounds.width - 1) % 128 + 1, lastColumn.getWidth());
+		BufferedImage first = ImageIO.read(new File(files, "0/0_0.png"));
+		assertEquals(1, first.getWidth());
+		assertEquals(1, first.getHeight());
+		delete(directory);
+	}
+
+	public void testBatchExport() throws Exception {
+		File directory = Files.createTempDirectory("batch").toFile();
+		File maps = new File(directory, "maps");
+		File sub = new File(maps, "sub");
+		sub.mkdirs();
+		Files.copy(new File(TESTMAP_MM).toPath(), new File(maps, "map1.mm")
+				.toPath());
+		Files.copy(new File(TESTMAP_MM).toPath(), new File(sub, "map2.mm")
+				.toPath());
+		Files.write(new File(maps, "broken.mm").toPath(),
+				"<map version=\"1.0.1\"><node TEXT=\"broken\"></map>"
+						.getBytes("UTF-8"));
+		File out = new File(directory, "out");
+		LinkedHashMap<File, File> exports = new LinkedHashMap<>();
+		MapBatchExporter.collectMaps(maps, out, exports);
+		assertEquals(3, exports.size());
+		assertEquals(new File(out, "sub/map2"),
+				exports.get(new File(sub, "map2.mm")));
+		ByteArrayOutputStream progress = new ByteArrayOutputStream();
+		MapBatchExporter exporter = new MapBatchExporter(2,
+				Arrays.asList(MapBatchExporter.FORMATS), new PrintStream(
+						progress));
+		exporter.export(exports);
+		assertEquals(progress.toString(), 2, exporter.getExportedCount());
+		assertEquals(progress.toString(), 1, exporter.getFailedCount());
+		for (String format : MapBatchExporter.FORMATS) {
+			File map1 = new File(out, "map1." + format);
+			File map2 = new File(out, "sub/map2." + format);
+			assertTrue(map1.toString(), map1.length() > 0);
+			assertEquals(map1.toString(), map1.length(), map2.length());
+		}
+		assertTrue(new File(out, "map1.xhtml_files/marktree.js").exists());
+		assertNotNull(ImageIO.read(new File(out, "map1.png")));
+		ZipFile odt = new ZipFile(new File(out, "map1.odt"));
+		assertNotNull(odt.getEntry("content.xml"));
+		odt.close();
+		assertFalse(new File(out, "broken.html").exists());
+		delete(directory);
+	}
+
+	private void delete(File pFile) {
+		File[] children = pFile.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		pFile.delete();
+	}
+
+	private MapView createMapView() throws Exception {
+		JPanel parent = new JPanel();
+		parent.setBounds(new Rectangle(0, 0, 400, 600));
+		IndependantMapViewCreator creator = new IndependantMapViewCreator();
+		MapView mapView = creator.createMapViewForFile(TESTMAP_MM, parent,
+				mFreeMindMain);
+		mapView.getRoot().getMainView().doLayout();
+		parent.doLayout();
+		parent.validate();
+		parent.setBounds(mapView.getBounds());
+		return mapView;
+	}
+
 	@SuppressWarnings("serial")
 	public static void main(String[] args) throws FileNotFoundException,
 			XMLParseException, IOException, URISyntaxException {
@@ -0,0 +1,166 @@
+/*FreeMind - A Program for creating and viewing Mindmaps
+ *Copyright (C) 2000-2014 Christian Foltin, Joerg Mueller, Daniel Polansky, Dimitri Polivaev and others.
+ *
+ *See COPYING for Details
+ *
+ *This program is free software; you can redistribute it and/or
+ *modify it under the terms of the GNU General Public License
+ *as published by the Free Software Foundation; either version 2
+ *of the License, or (at your option) any later version.
+ *
+ *This program is distributed in the hope that it will be useful,
+ *but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *GNU General Public License for more details.
+ *
+ *You should have received a copy of the GNU General Public License
+ *along with this program; if not, write to the Free Software
+ *Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package tests.freemind;
+
+import java.awt.EventQueue;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import freemind.modes.ExtendedMapFeedbackImpl;
+import freemind.modes.MindMapNode;
+import freemind.modes.filemode.FileMapModel;
+
+/**
+ * File mode reads the directories in the background and follows changes on
+ * disk.
+ */
+public class FileModeTests extends FreeMindTestBase {
+
+	private static final long TIMEOUT = 10000;
+	private File mDirectory;
+	private FileMapModel mMap;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		mDirectory = Files.createTempDirectory("filemode").toFile();
+		Files.write(new File(mDirectory, "a.txt").toPath(), new byte[10]);
+		File sub = new File(mDirectory, "sub");
+		sub.mkdir();
+		Files.write(new File(sub, "x.bin").toPath(), new byte[1000]);
+		Files.write(new File(sub, "y.bin").toPath(), new byte[234]);
+		new File(mDirectory, ".hidden").createNewFile();
+	}
+
+	protected void tearDown() throws Exception {
+		if (mMap != null) {
+			mMap.destroy();
+		}
+		delete(mDirectory);
+		super.tearDown();
+	}
+
+	private void delete(File pFile) {
+		File[] files = pFile.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				delete(file);
+			}
+		}
+		pFile.delete();
+	}
+
+	public void testDirectoryIsLoadedAndWatched() throws Exception {
+		EventQueue.invokeAndWait(new Runnable() {
+			public void run() {
+				mMap = new FileMapModel(mDirectory,
+						new ExtendedMapFeedbackImpl());
+				// starts the loading:
+				mMap.getRootNode().childrenUnfolded();
+			}
+		});
+		waitFor("a.txt", "sub");
+		MindMapNode file = getChild("a.txt");
+		MindMapNode sub = getChild("sub");
+		assertTrue(file.isLeaf());
+		assertFalse(sub.isLeaf());
+		assertNotNull(file.getToolTip().get("file_info"));
+		// the sizes of the sub directory are summed up in the background:
+		waitUntil(new Condition() {
+			public boolean holds() {
+				return getChild("sub").getToolTip().get("file_info") != null;
+			}
+		});
+
+		Files.write(new File(mDirectory, "b.txt").toPath(), new byte[1]);
+		waitFor("a.txt", "b.txt", "sub");
+		assertTrue(new File(mDirectory, "a.txt").delete());
+		waitFor("b.txt", "sub");
+	}
+
+	public void testUnreadableDirectoryStaysEmpty() throws Exception {
+		EventQueue.invokeAndWait(new Runnable() {
+			public void run() {
+				mMap = new FileMapModel(new File(mDirectory, "missing"),
+						new ExtendedMapFeedbackImpl());
+				mMap.getRootNode().childrenUnfolded();
+			}
+		});
+		waitUntil(new Condition() {
+			public boolean holds() {
+				return !mMap.isLoading();
+			}
+		});
+		assertEquals(0, getChildNames().size());
+	}
+
+	private interface Condition {
+		boolean holds();
+	}
+
+	private void waitFor(final String... pNames) throws Exception {
+		waitUntil(new Condition() {
+			public boolean holds() {
+				ArrayList<String> names = getChildNames();
+				Collections.sort(names);
+				return names.equals(Arrays.asList(pNames));
+			}
+		});
+	}
+
+	private void waitUntil(final Condition pCondition) throws Exception {
+		long end = System.currentTimeMillis() + TIMEOUT;
+		final boolean[] holds = new boolean[1];
+		while (System.currentTimeMillis() < end) {
+			EventQueue.invokeAndWait(new Runnable() {
+				public void run() {
+					holds[0] = pCondition.holds();
+				}
+			});
+			if (holds[0]) {
+				return;
+			}
+			Thread.sleep(20);
+		}
+		fail("Condition not met, children are " + getChildNames());
+	}
+
+	/** Must be called on the event dispatch thread. */
+	private ArrayList<String> getChildNames() {
+		ArrayList<String> names = new ArrayList<>();
+		for (MindMapNode child : mMap.getRootNode().getChildren()) {
+			names.add(child.getText());
+		}
+		return names;
+	}
+
+	private MindMapNode getChild(String pName) {
+		for (MindMapNode child : mMap.getRootNode().getChildren()) {
+			if (child.getText().equals(pName)) {
+				return child;
+			}
+		}
+		return null;
+	}
+
+}
@@ -0,0 +1,204 @@
+/*FreeMind - A Program for creating and viewing Mindmaps
+ *Copyright (C) 2000-2013 Joerg Mueller, Daniel Polansky, Christian Foltin, Dimitri Polivaev and others.
+ *
+ *See COPYING for Details
+ *
+ *This program is free software; you can redistribute it and/or
+ *modify it under the terms of the GNU General Public License
+ *as published by the Free Software Foundation; either version 2
+ *of the License, or (at your option) any later version.
+ *
+ *This program is distributed in the hope that it will be useful,
+ *but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *GNU General Public License for more details.
+ *
+ *You should have received a copy of the GNU General Public License
+ *along with this program; if not, write to the Free Software
+ *Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package tests.freemind;
+
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.Vector;
+
+import javax.swing.ImageIcon;
+
+import accessories.plugins.HierarchicalIcons;
+import freemind.controller.Controller;
+import freemind.modes.MindIcon;
+import freemind.modes.MindMapNode;
+import freemind.modes.mindmapmode.MindMapController;
+import freemind.modes.mindmapmode.MindMapMapModel;
+import freemind.modes.mindmapmode.MindMapMode;
+import freemind.modes.mindmapmode.MindMapNodeModel;
+import freemind.view.mindmapview.MultipleImage;
+
+/**
+ * Checks the incrementally maintained icons of the hierarchical icons hook
+ * against a full recount of the map.
+ */
+public class HierarchicalIconsTests extends FreeMindTestBase {
+
+	private static final String HOOK_NAME = "accessories/plugins/HierarchicalIcons.properties";
+
+	private static final String[] ICONS = new String[] { "idea", "help",
+			"yes", "button_ok" };
+
+	private MindMapController mController;
+
+	private MindMapMapModel mModel;
+
+	private MindMapNode mRoot;
+
+	private HierarchicalIcons mHook;
+
+	private Random mRandom;
+
+	private int mNodeNumber;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		Controller controller = new Controller(mFreeMindMain);
+		controller.initialization();
+		MindMapMode mode = new MindMapMode() {
+			public freemind.modes.ModeController createModeController() {
+				return new MindMapController(this) {
+					protected void init() {
+					}
+
+					public boolean isUndoAction() {
+						return false;
+					}
+				};
+			};
+		};
+		mode.init(controller);
+		mController = (MindMapController) mode.createModeController();
+		mModel = new MindMapMapModel(mController);
+		mController.setModel(mModel);
+		mRandom = new Random(4711);
+		mRoot = createNode();
+		mModel.setRoot(mRoot);
+		// there is no mode for the title of the changed map:
+		mModel.setSaved(false);
+		for (int i = 0; i < 4; i++) {
+			mRoot.insert(createSubtree(3), i);
+		}
+	}
+
+	public void testIncrementalCountsMatchRecount() throws Exception {
+		mHook = new HierarchicalIcons();
+		mHook.setController(mController);
+		mHook.setMap(mModel);
+		mHook.setName(HOOK_NAME);
+		mRoot.invokeHook(mHook);
+		assertShownIcons();
+		for (int step = 0; step < 300; step++) {
+			Vector<MindMapNode> nodes = new Vector<>();
+			collect(mRoot, nodes);
+			MindMapNode node = nodes.get(mRandom.nextInt(nodes.size()));
+			switch (mRandom.nextInt(5)) {
+			case 0:
+				node.addIcon(createIcon(), MindIcon.LAST);
+				mController.nodeChanged(node);
+				break;
+			case 1:
+				if (node.getIcons().isEmpty()) {
+					continue;
+				}
+				node.removeIcon(mRandom.nextInt(node.getIcons().size()));
+				mController.nodeChanged(node);
+				break;
+			case 2:
+				mModel.insertNodeInto(createSubtree(mRandom.nextInt(3)),
+						node, mRandom.nextInt(node.getChildCount() + 1));
+				break;
+			case 3:
+				if (node.isRoot() || node.getParentNode().isRoot()) {
+					continue;
+				}
+				MindMapNode target = nodes.get(mRandom.nextInt(nodes.size()));
+				if (target.isDescendantOf(node) || target == node) {
+					continue;
+				}
+				mModel.removeNodeFromParent(node);
+				mModel.insertNodeInto(node, target,
+						mRandom.nextInt(target.getChildCount() + 1));
+				break;
+			default:
+				if (node.isRoot() || node.getParentNode().isRoot()) {
+					continue;
+				}
+				mModel.removeNodeFromParent(node);
+			}
+			assertShownIcons();
+		}
+	}
+
+	private MindMapNode createNode() {
+		MindMapNodeModel node = new MindMapNodeModel("Node "
+				+ (mNodeNumber++), mModel);
+		int count = mRandom.nextInt(3);
+		for (int i = 0; i < count; i++) {
+			node.addIcon(createIcon(), MindIcon.LAST);
+		}
+		return node;
+	}
+
+	private MindIcon createIcon() {
+		return MindIcon.factory(ICONS[mRandom.nextInt(ICONS.length)]);
+	}
+
+	private MindMapNode createSubtree(int pDepth) {
+		MindMapNode node = createNode();
+		if (pDepth > 0) {
+			int count = 1 + mRandom.nextInt(3);
+			for (int i = 0; i < count; i++) {
+				node.insert(createSubtree(pDepth - 1), i);
+			}
+		}
+		return node;
+	}
+
+	private void collect(MindMapNode pNode, Vector<MindMapNode> pNodes) {
+		pNodes.add(pNode);
+		for (MindMapNode child : pNode.getChildren()) {
+			collect(child, pNodes);
+		}
+	}
+
+	private void assertShownIcons() {
+		assertShownIcons(mRoot);
+	}
+
+	/**
+	 * @return the icon names of the subtree of the node.
+	 */
+	private Set<String> assertShownIcons(MindMapNode pNode) {
+		TreeSet<String> descendantIcons = new TreeSet<>();
+		for (MindMapNode child : pNode.getChildren()) {
+			descendantIcons.addAll(assertShownIcons(child));
+		}
+		TreeSet<String> ownIcons = new TreeSet<>();
+		for (MindIcon icon : pNode.getIcons()) {
+			ownIcons.add(icon.getName());
+		}
+		TreeSet<String> expected = new TreeSet<>(descendantIcons);
+		expected.removeAll(ownIcons);
+		assertEquals("Shown icons of " + pNode, expected,
+				mHook.getShownIcons(pNode));
+		ImageIcon stateIcon = pNode.getStateIcons().get(HOOK_NAME);
+		if (expected.isEmpty()) {
+			assertNull("State icon of " + pNode, stateIcon);
+		} else {
+			assertEquals("State icon of " + pNode, expected.size(),
+					((MultipleImage) stateIcon).getImageCount());
+		}
+		descendantIcons.addAll(ownIcons);
+		return descendantIcons;
+	}
+}
@@ -25,6 +25,10 @@ import java.awt.datatransfer.Transferable;
 import java.awt.datatransfer.UnsupportedFlavorException;
 import java.io.IOException;
 import java.io.StringReader;
+import java.util.Vector;
+
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
 
 import tests.freemind.findreplace.TestMindMapNode;
 
@@ -36,9 +40,12 @@ import freemind.main.Tools;
 import freemind.main.Tools.IntHolder;
 import freemind.main.XMLElement;
 import freemind.modes.ExtendedMapFeedbackImpl;
+import freemind.modes.MapAdapter;
 import freemind.modes.MindMapNode;
 import freemind.modes.mindmapmode.MindMapMapModel;
 import freemind.modes.mindmapmode.MindMapNodeModel;
+import freemind.modes.mindmapmode.actions.xml.ActionFilter;
+import freemind.modes.mindmapmode.actions.xml.ActionPair;
 import freemind.modes.mindmapmode.actions.xml.actors.PasteActor;
 
 /**
@@ -607,5 +614,59 @@ public class HtmlConversionTests extends FreeMindTestBase {
 		// this is one less, as the determine... strips the html header and uses its own.
 		assertEquals(9, actor.determineAmountOfNewNodes(new HtmlTransfer(testHtml3)));
 	}
-	
+
+	public void testPasteHtmlInsertsParsedNodes() throws Exception {
+		ExtendedMapFeedbackImpl mapFeedback = new ExtendedMapFeedbackImpl();
+		final MindMapMapModel mMap = new MindMapMapModel(mapFeedback);
+		mapFeedback.setMap(mMap);
+		MindMapNode root = mMap.loadTree(new Tools.StringReaderCreator(
+				"<map><node TEXT='ROOT'><node TEXT='old'/></node></map>"),
+				MapAdapter.sDontAskInstance);
+		mMap.setRoot(root);
+		final Vector<ActionPair> pairs = new Vector<>();
+		mapFeedback.getActionRegistry().registerFilter(new ActionFilter() {
+			public ActionPair filterAction(ActionPair pPair) {
+				pairs.add(pPair);
+				return pPair;
+			}
+		});
+		final IntHolder inserts = new IntHolder(0);
+		mMap.addTreeModelListener(new TreeModelListener() {
+			public void treeNodesChanged(TreeModelEvent pEvent) {
+			}
+
+			public void treeNodesInserted(TreeModelEvent pEvent) {
+				inserts.increase();
+			}
+
+			public void treeNodesRemoved(TreeModelEvent pEvent) {
+			}
+
+			public void treeStructureChanged(TreeModelEvent pEvent) {
+			}
+		});
+		PasteActor actor = new PasteActor(mapFeedback);
+		int amount = actor.determineAmountOfNewNodes(new HtmlTransfer(
+				testHtml3));
+		assertTrue(mapFeedback.paste(new HtmlTransfer(testHtml3), root,
+				false, false));
+		assertEquals(1 + amount, root.getChildCount());
+		// one event per pasted top level node, the subtrees come along:
+		assertEquals(amount, inserts.getValue());
+		assertEquals("old", root.getChildAt(0).toString());
+		int withChildren = 0;
+		for (int i = 1; i < root.getChildCount(); i++) {
+			if (((MindMapNode) root.getChildAt(i)).hasChildren()) {
+				withChildren++;
+			}
+		}
+		assertTrue("outline levels are subtrees", withChildren > 0);
+		// the undo action knows the amount:
+		mapFeedback.doTransaction("undo", pairs.get(0).reverse());
+		assertEquals(1, root.getChildCount());
+		// pasting again parses again:
+		mapFeedback.doTransaction("redo", pairs.get(0));
+		assertEquals(1 + amount, root.getChildCount());
+	}
+
 }
@@ -21,9 +21,15 @@
 package tests.freemind;
 
 import java.awt.BorderLayout;
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Dimension;
+import java.awt.EventQueue;
 import java.awt.LayoutManager;
 import java.awt.Point;
 import java.awt.Rectangle;
+import java.awt.event.KeyEvent;
+import java.util.Arrays;
 import java.util.Vector;
 
 import javax.swing.JPanel;
@@ -35,9 +41,13 @@ import freemind.modes.mindmapmode.MindMapController;
 import freemind.modes.mindmapmode.MindMapMapModel;
 import freemind.modes.mindmapmode.MindMapMode;
 import freemind.modes.mindmapmode.MindMapNodeModel;
+import freemind.view.mindmapview.IndependantMapViewCreator;
 import freemind.view.mindmapview.MapView;
 import freemind.view.mindmapview.MapView.ScrollPane;
+import freemind.view.mindmapview.NodeFoldingComponent;
+import freemind.view.mindmapview.NodeMotionListenerView;
 import freemind.view.mindmapview.NodeView;
+import freemind.view.mindmapview.NodeViewLayout;
 
 /**
  * @author foltin
@@ -52,6 +62,7 @@ public class LayoutTests extends FreeMindTestBase {
 	private MapView mMapView;
 	private MindMapMapModel mModel;
 	private ScrollPane mScrollPane;
+	private MindMapController mController;
 
 	protected void setUp() throws Exception {
 		super.setUp();
@@ -72,6 +83,7 @@ public class LayoutTests extends FreeMindTestBase {
 		};
 		mode.init(controller);
 		MindMapController mc = (MindMapController) mode.createModeController();
+		mController = mc;
 		mModel = new MindMapMapModel(mc);
 		mc.setModel(mModel);
 		mRoot = new MindMapNodeModel("ROOT", mModel);
@@ -186,6 +198,291 @@ public class LayoutTests extends FreeMindTestBase {
 		assertEquals(yCoordinate3, getYCoordinate(child3)-yCoordinateRoot2);
 	}
 	
+	public void testReorderChildrenKeepsViews() throws Exception {
+		NodeView root = mMapView.getRoot();
+		NodeView view1 = mMapView.getNodeView(mChild1);
+		NodeView view2 = mMapView.getNodeView(mChild2);
+		assertEquals(Arrays.asList(view1, view2), root.getChildrenViews());
+		mModel.reorderChildren(mRoot,
+				Arrays.<MindMapNode> asList(mChild2, mChild1));
+		assertEquals(Arrays.asList(mChild2, mChild1), mRoot.getChildren());
+		// the views are moved, not created again:
+		assertEquals(Arrays.asList(view2, view1), root.getChildrenViews());
+		assertSame(view1, mMapView.getNodeView(mChild1));
+		try {
+			mModel.reorderChildren(mRoot,
+					Arrays.<MindMapNode> asList(mChild1, mChild1));
+			fail("Must throw.");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	public void testVirtualizedNodeViews() throws Exception {
+		mFreeMindMain.getProperties().setProperty(
+				MapView.RESOURCES_VIRTUALIZE_NODE_VIEWS, "true");
+		// without controller, as removing a node changes the selection:
+		IndependantMapViewCreator creator = new IndependantMapViewCreator() {
+			public String getProperty(String pResourceId) {
+				return mFreeMindMain.getProperty(pResourceId);
+			}
+		};
+		MindMapMapModel map = new MindMapMapModel(creator);
+		MindMapNodeModel rootNode = new MindMapNodeModel("ROOT", map);
+		map.setRoot(rootNode);
+		for (int i = 0; i < 300; i++) {
+			MindMapNodeModel child = new MindMapNodeModel("CHILD" + i, map);
+			child.insert(new MindMapNodeModel("GRANDCHILD", map), 0);
+			child.setFolded(i % 2 == 0);
+			rootNode.insert(child, rootNode.getChildCount());
+		}
+		JPanel viewport = new JPanel(null);
+		viewport.setSize(400, 300);
+		MapView mapView = creator.createMapView(map, viewport);
+		mapView.validate();
+		NodeView root = mapView.getRoot();
+		assertTrue(root.getHeight() > 4 * viewport.getHeight());
+		// only the nodes near the viewport have a view:
+		int views = mapView.getMaterializedNodeViewCount();
+		assertTrue(views > 1);
+		assertTrue(views < 100);
+		// but they are laid out as if all had one:
+		mFreeMindMain.getProperties().setProperty(
+				MapView.RESOURCES_VIRTUALIZE_NODE_VIEWS, "false");
+		JPanel fullViewport = new JPanel(null);
+		fullViewport.setSize(400, 300);
+		MapView fullMapView = creator.createMapView(map, fullViewport);
+		fullMapView.validate();
+		assertEquals(451, fullMapView.getMaterializedNodeViewCount());
+		assertSameLayout(fullMapView, mapView, rootNode);
+		assertViewsAtRecords(mapView, root);
+
+		// scroll to the bottom, where the edges to the root don't cross the
+		// viewport:
+		Vector<NodeView> oldViews = new Vector<>(root.getChildrenViews());
+		MindMapNode top = oldViews.firstElement().getModel();
+		mapView.setLocation(0, viewport.getHeight() - mapView.getHeight());
+		mapView.updateMaterializedNodeViews();
+		assertTrue(mapView.getMaterializedNodeViewCount() < 100);
+		boolean reused = false;
+		for (NodeView view : root.getChildrenViews()) {
+			assertNotSame(top, view.getModel());
+			// the released views are bound to the nodes coming in:
+			reused |= oldViews.contains(view);
+			assertSame(view, mapView.getNodeView(view.getModel()));
+		}
+		assertTrue(reused);
+		assertViewsAtRecords(mapView, root);
+
+		// changes of nodes without view:
+		MindMapNode first = (MindMapNode) rootNode.getChildAt(0);
+		map.insertNodeInto(new MindMapNodeModel("NEW", map), rootNode, 0);
+		map.removeNodeFromParent(first);
+		((MindMapNode) rootNode.getChildAt(1)).setFolded(false);
+		map.nodeStructureChanged((MindMapNode) rootNode.getChildAt(1));
+		mapView.validate();
+		fullMapView.validate();
+		assertSameLayout(fullMapView, mapView, rootNode);
+		assertNull(mapView.getNodeContentBounds(first));
+		// removed views are released:
+		views = mapView.getMaterializedNodeViewCount();
+		NodeView removed = root.getChildrenViews().getLast();
+		assertFalse(removed.isSelected());
+		MindMapNode removedNode = removed.getModel();
+		views -= 1 + removed.getChildrenViews().size();
+		map.removeNodeFromParent(removedNode);
+		assertNull(removed.getParent());
+		assertNull(mapView.getNodeContentBounds(removedNode));
+		assertEquals(views, mapView.getMaterializedNodeViewCount());
+		// views are created on demand:
+		MindMapNode farAway = (MindMapNode) rootNode.getChildAt(50);
+		NodeView farAwayView = mapView.getNodeView(farAway);
+		assertSame(root, farAwayView.getParentView());
+		assertEquals(views + 1, mapView.getMaterializedNodeViewCount());
+		assertViewsAtRecords(mapView, root);
+	}
+
+	/**
+	 * Compares the content bounds of all nodes below pNode.
+	 */
+	private void assertSameLayout(MapView pExpected, MapView pActual,
+			MindMapNode pNode) {
+		assertEquals(pNode.toString(), pExpected.getNodeContentBounds(pNode),
+				pActual.getNodeContentBounds(pNode));
+		for (MindMapNode child : pNode.getChildren()) {
+			if (!pNode.isFolded()) {
+				assertSameLayout(pExpected, pActual, child);
+			}
+		}
+	}
+
+	private void assertViewsAtRecords(MapView pMapView, NodeView pView) {
+		Point location = new Point();
+		Tools.convertPointToAncestor(pView.getContent(), location, pMapView);
+		assertEquals(pMapView.getNodeContentBounds(pView.getModel()),
+				new Rectangle(location, pView.getContent().getSize()));
+		for (NodeView child : pView.getChildrenViews()) {
+			assertViewsAtRecords(pMapView, child);
+		}
+	}
+
+	public void testSiblingNavigation() throws Exception {
+		final IndependantMapViewCreator creator = new IndependantMapViewCreator();
+		MindMapMapModel map = new MindMapMapModel(creator);
+		MindMapNodeModel root = new MindMapNodeModel("ROOT", map);
+		map.setRoot(root);
+		final MindMapNodeModel[] rootChildren = new MindMapNodeModel[4];
+		for (int i = 0; i < rootChildren.length; i++) {
+			rootChildren[i] = new MindMapNodeModel("ROOT CHILD" + i, map);
+			rootChildren[i].setLeft(i % 2 == 1);
+			root.insert(rootChildren[i], root.getChildCount());
+		}
+		final MindMapNodeModel parent = rootChildren[1];
+		for (int i = 0; i < 3; i++) {
+			parent.insert(new MindMapNodeModel("GRANDCHILD" + i, map), i);
+		}
+		JPanel panel = new JPanel(null);
+		panel.setBounds(new Rectangle(0, 0, 400, 600));
+		final MapView mapView = creator.createMapView(map, panel);
+		final Vector<MindMapNode> visited = new Vector<>();
+		EventQueue.invokeAndWait(new Runnable() {
+			public void run() {
+				mapView.validate();
+				// below a node, all siblings are visited, then the move
+				// continues at the parent's next sibling:
+				mapView.selectAsTheOnlyOneSelected(mapView
+						.getNodeView((MindMapNode) parent.getChildAt(0)));
+				for (int keyCode : new int[] { KeyEvent.VK_DOWN,
+						KeyEvent.VK_DOWN, KeyEvent.VK_DOWN, KeyEvent.VK_UP }) {
+					move(mapView, keyCode);
+					visited.add(mapView.getSelected().getModel());
+				}
+				// below the root, only the ones on the same side:
+				mapView.selectAsTheOnlyOneSelected(mapView
+						.getNodeView(rootChildren[0]));
+				for (int keyCode : new int[] { KeyEvent.VK_DOWN,
+						KeyEvent.VK_DOWN, KeyEvent.VK_UP }) {
+					move(mapView, keyCode);
+					visited.add(mapView.getSelected().getModel());
+				}
+			}
+		});
+		assertEquals(Arrays.asList(parent.getChildAt(1), parent.getChildAt(2),
+				rootChildren[3], rootChildren[1], rootChildren[2],
+				rootChildren[2], rootChildren[0]), visited);
+	}
+
+	private void move(MapView pMapView, int pKeyCode) {
+		pMapView.move(new KeyEvent(pMapView, KeyEvent.KEY_PRESSED, 0, 0,
+				pKeyCode, KeyEvent.CHAR_UNDEFINED));
+	}
+
+	/**
+	 * After the edit of a single node only the path to the root is laid out
+	 * again. The siblings are moved at most, their subtrees stay valid.
+	 */
+	public void testSingleEditKeepsSiblingLayout() throws Exception {
+		MindMapNodeModel sibling = null;
+		for (int i = 0; i < 3; i++) {
+			sibling = new MindMapNodeModel("SIBLING" + i, mModel);
+			mChild1.insert(sibling, i);
+			for (int j = 0; j < 3; j++) {
+				sibling.insert(new MindMapNodeModel("LEAF " + i + "." + j,
+						mModel), j);
+			}
+		}
+		final MindMapNodeModel edited = (MindMapNodeModel) mChild1.getChildAt(0);
+		final MindMapNodeModel siblingModel = sibling;
+		final MapView mapView = new MapView(mModel, mController);
+		final CountingLayout[] siblingLayout = new CountingLayout[1];
+		// the layout happens on the event thread, only, like in the
+		// application:
+		EventQueue.invokeAndWait(new Runnable() {
+			public void run() {
+				mController.setView(mapView);
+				JPanel viewport = new JPanel(null);
+				viewport.setSize(400, 300);
+				viewport.add(mapView);
+				mapView.addNotify();
+				NodeView siblingView = mapView.getNodeView(siblingModel);
+				siblingLayout[0] = new CountingLayout(
+						(NodeViewLayout) siblingView.getLayout());
+				siblingView.setLayout(siblingLayout[0]);
+				mapView.validate();
+			}
+		});
+		final boolean[] valid = new boolean[3];
+		final int[] layouts = new int[1];
+		EventQueue.invokeAndWait(new Runnable() {
+			public void run() {
+				NodeView siblingView = mapView.getNodeView(siblingModel);
+				siblingLayout[0].mCount = 0;
+				edited.setText("EDITED WITH A MUCH LONGER TEXT\nAND A SECOND LINE");
+				mController.nodeRefresh(edited);
+				valid[0] = mapView.getNodeView(edited).isValid();
+				valid[1] = siblingView.isValid();
+				mapView.validate();
+				valid[2] = siblingView.isValid();
+				layouts[0] = siblingLayout[0].mCount;
+			}
+		});
+		assertFalse(valid[0]);
+		assertTrue(valid[1]);
+		assertTrue(valid[2]);
+		assertEquals(0, layouts[0]);
+	}
+
+	/**
+	 * Counts the layouts of a node view.
+	 */
+	private static class CountingLayout implements NodeViewLayout {
+		private final NodeViewLayout mLayout;
+		int mCount = 0;
+
+		CountingLayout(NodeViewLayout pLayout) {
+			mLayout = pLayout;
+		}
+
+		public void layoutContainer(Container pParent) {
+			mCount++;
+			mLayout.layoutContainer(pParent);
+		}
+
+		public void addLayoutComponent(String pName, Component pComponent) {
+			mLayout.addLayoutComponent(pName, pComponent);
+		}
+
+		public void removeLayoutComponent(Component pComponent) {
+			mLayout.removeLayoutComponent(pComponent);
+		}
+
+		public Dimension preferredLayoutSize(Container pParent) {
+			return mLayout.preferredLayoutSize(pParent);
+		}
+
+		public Dimension minimumLayoutSize(Container pParent) {
+			return mLayout.minimumLayoutSize(pParent);
+		}
+
+		public void layoutNodeMotionListenerView(NodeMotionListenerView pView) {
+			mLayout.layoutNodeMotionListenerView(pView);
+		}
+
+		public Point getMainViewOutPoint(NodeView pView, NodeView pTargetView,
+				Point pDestinationPoint) {
+			return mLayout.getMainViewOutPoint(pView, pTargetView,
+					pDestinationPoint);
+		}
+
+		public Point getMainViewInPoint(NodeView pView) {
+			return mLayout.getMainViewInPoint(pView);
+		}
+
+		public void layoutNodeFoldingComponent(
+				NodeFoldingComponent pFoldingComponent) {
+			mLayout.layoutNodeFoldingComponent(pFoldingComponent);
+		}
+	}
+
 	protected void layout(MapView mapView) {
 		NodeView root = mapView.getRoot();
 		LayoutManager layout = root.getLayout();
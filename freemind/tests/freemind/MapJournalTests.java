@@ -0,0 +1,198 @@
+/*FreeMind - A Program for creating and viewing Mindmaps
+ *Copyright (C) 2000-2014 Christian Foltin, Joerg Mueller, Daniel Polansky, Dimitri Polivaev and others.
+ *
+ *See COPYING for Details
+ *
+ *This program is free software; you can redistribute it and/or
+ *modify it under the terms of the GNU General Public License
+ *as published by the Free Software Foundation; either version 2
+ *of the License, or (at your option) any later version.
+ *
+ *This program is distributed in the hope that it will be useful,
+ *but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *GNU General Public License for more details.
+ *
+ *You should have received a copy of the GNU General Public License
+ *along with this program; if not, write to the Free Software
+ *Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package tests.freemind;
+
+import java.io.CharArrayWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.io.StringWriter;
+import java.util.Vector;
+
+import freemind.main.Resources;
+import freemind.main.Tools;
+import freemind.modes.ExtendedMapFeedbackImpl;
+import freemind.modes.MapAdapter;
+import freemind.modes.MindMapNode;
+import freemind.modes.mindmapmode.MapJournal;
+import freemind.modes.mindmapmode.MindMapMapModel;
+
+/**
+ * The save journal must restore exactly the saved changes.
+ */
+public class MapJournalTests extends FreeMindTestBase {
+
+	private File mBaseFile;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		mBaseFile = File.createTempFile("journal", ".mm");
+		writeBase("<map version=\"1.0.1\"><node TEXT=\"root\"/></map>\n");
+	}
+
+	protected void tearDown() throws Exception {
+		Resources.getInstance().getProperties().setProperty(
+				MindMapMapModel.RESOURCES_USE_SAVE_JOURNAL, "false");
+		MapJournal.getJournalFile(mBaseFile).delete();
+		mBaseFile.delete();
+		super.tearDown();
+	}
+
+	public void testRoundTrip() throws Exception {
+		MapJournal journal = new MapJournal(mBaseFile);
+		assertEquals(0, journal.open().size());
+		journal.add(MapJournal.ENTRY_ACTION, "first");
+		journal.add(MapJournal.ENTRY_NODE_ID, "0,1 ID_1");
+		journal.commit();
+		journal.add(MapJournal.ENTRY_ACTION, "not committed");
+		journal.close();
+
+		journal = new MapJournal(mBaseFile);
+		Vector<MapJournal.Entry> entries = journal.open();
+		journal.close();
+		assertEquals(2, entries.size());
+		assertEquals(MapJournal.ENTRY_ACTION, entries.get(0).getType());
+		assertEquals("first", entries.get(0).getContent());
+		assertEquals(MapJournal.ENTRY_NODE_ID, entries.get(1).getType());
+		assertEquals("0,1 ID_1", entries.get(1).getContent());
+	}
+
+	public void testTruncatedEntryIsDropped() throws Exception {
+		MapJournal journal = new MapJournal(mBaseFile);
+		journal.open();
+		journal.add(MapJournal.ENTRY_ACTION, "first");
+		journal.add(MapJournal.ENTRY_ACTION, "second");
+		journal.commit();
+		journal.close();
+		File journalFile = MapJournal.getJournalFile(mBaseFile);
+		RandomAccessFile file = new RandomAccessFile(journalFile, "rw");
+		file.setLength(file.length() - 3);
+		file.close();
+
+		journal = new MapJournal(mBaseFile);
+		Vector<MapJournal.Entry> entries = journal.open();
+		assertEquals(1, entries.size());
+		assertEquals("first", entries.get(0).getContent());
+		// the journal can be continued:
+		journal.add(MapJournal.ENTRY_ACTION, "third");
+		journal.commit();
+		journal.close();
+		journal = new MapJournal(mBaseFile);
+		entries = journal.open();
+		journal.close();
+		assertEquals(2, entries.size());
+		assertEquals("third", entries.get(1).getContent());
+	}
+
+	public void testForeignJournalIsIgnored() throws Exception {
+		MapJournal journal = new MapJournal(mBaseFile);
+		journal.open();
+		journal.add(MapJournal.ENTRY_ACTION, "first");
+		journal.commit();
+		journal.close();
+		// the map was written by somebody else:
+		writeBase("<map version=\"1.0.1\"><node TEXT=\"other\"/></map>\n");
+		journal = new MapJournal(mBaseFile);
+		assertEquals(0, journal.open().size());
+		journal.close();
+	}
+
+	public void testFold() throws Exception {
+		MapJournal journal = new MapJournal(mBaseFile);
+		journal.open();
+		journal.add(MapJournal.ENTRY_ACTION, "folded");
+		journal.commit();
+		MapJournal.FoldPoint foldPoint = journal.getFoldPoint();
+		journal.add(MapJournal.ENTRY_ACTION, "after the snapshot");
+		journal.commit();
+		CharArrayWriter snapshot = new CharArrayWriter();
+		snapshot.write("<map version=\"1.0.1\"><node TEXT=\"folded\"/></map>\n");
+		ExtendedMapFeedbackImpl mapFeedback = new ExtendedMapFeedbackImpl();
+		MindMapMapModel map = new MindMapMapModel(mapFeedback);
+		journal.fold(snapshot, foldPoint, map);
+		journal.close();
+
+		assertEquals(snapshot.toString(), Tools.getFile(mBaseFile));
+		journal = new MapJournal(mBaseFile);
+		Vector<MapJournal.Entry> entries = journal.open();
+		journal.close();
+		assertEquals(1, entries.size());
+		assertEquals("after the snapshot", entries.get(0).getContent());
+	}
+
+	public void testSaveAndReplay() throws Exception {
+		Resources.getInstance().getProperties().setProperty(
+				MindMapMapModel.RESOURCES_USE_SAVE_JOURNAL, "true");
+		String map = Tools.getFile(new File("tests/freemind/testmap.mm"));
+		ExtendedMapFeedbackImpl mapFeedback = new ExtendedMapFeedbackImpl();
+		MindMapMapModel model = load(mapFeedback,
+				new Tools.StringReaderCreator(map));
+		assertTrue(model.save(mBaseFile));
+		String base = Tools.getFile(mBaseFile);
+
+		MindMapNode root = model.getRootNode();
+		mapFeedback.setNodeText(root, "changed root");
+		MindMapNode newNode = mapFeedback.addNewNode(root, 0, false);
+		mapFeedback.setNodeText(newNode, "new node");
+		mapFeedback.deleteNode((MindMapNode) root.getChildAt(1));
+		assertTrue(model.save(mBaseFile));
+		// only the journal was written:
+		assertEquals(base, Tools.getFile(mBaseFile));
+		String expected = getXml(model);
+		model.destroy();
+
+		ExtendedMapFeedbackImpl replayFeedback = new ExtendedMapFeedbackImpl();
+		MindMapMapModel replayed = load(replayFeedback,
+				new Tools.FileReaderCreator(mBaseFile));
+		replayed.setFile(mBaseFile);
+		replayed.openJournal();
+		// the replayed actions have their own time stamps:
+		assertEquals(withoutTimeStamps(expected),
+				withoutTimeStamps(getXml(replayed)));
+		replayed.destroy();
+	}
+
+	private MindMapMapModel load(ExtendedMapFeedbackImpl pMapFeedback,
+			Tools.ReaderCreator pReaderCreator) throws Exception {
+		MindMapMapModel model = new MindMapMapModel(pMapFeedback);
+		pMapFeedback.setMap(model);
+		MindMapNode root = model.loadTree(pReaderCreator,
+				MapAdapter.sDontAskInstance);
+		model.setRoot(root);
+		return model;
+	}
+
+	private String getXml(MindMapMapModel pModel) throws Exception {
+		StringWriter writer = new StringWriter();
+		pModel.getXml(writer);
+		return writer.toString();
+	}
+
+	private String withoutTimeStamps(String pXml) {
+		return pXml.replaceAll("(CREATED|MODIFIED)=\"[0-9]*\"", "");
+	}
+
+	private void writeBase(String pContent) throws Exception {
+		FileOutputStream out = new FileOutputStream(mBaseFile);
+		out.write(pContent.getBytes("UTF-8"));
+		out.close();
+	}
+}
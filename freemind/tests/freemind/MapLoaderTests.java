@@ -0,0 +1,200 @@
+/*FreeMind - A Program for creating and viewing Mindmaps
+ *Copyright (C) 2000-2014 Christian Foltin, Joerg Mueller, Daniel Polansky, Dimitri Polivaev and others.
+ *
+ *See COPYING for Details
+ *
+ *This program is free software; you can redistribute it and/or
+ *modify it under the terms of the GNU General Public License
+ *as published by the Free Software Foundation; either version 2
+ *of the License, or (at your option) any later version.
+ *
+ *This program is distributed in the hope that it will be useful,
+ *but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *GNU General Public License for more details.
+ *
+ *You should have received a copy of the GNU General Public License
+ *along with this program; if not, write to the Free Software
+ *Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package tests.freemind;
+
+import java.io.ByteArrayOutputStream;
+import java.io.CharArrayWriter;
+import java.io.File;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Vector;
+
+import freemind.main.FreeMind;
+import freemind.main.Tools;
+import freemind.main.XMLParseException;
+import freemind.main.XMLPullParser;
+import freemind.modes.ExtendedMapFeedbackImpl;
+import freemind.modes.MapAdapter;
+import freemind.modes.MindMapNode;
+import freemind.modes.NodeAdapter;
+import freemind.modes.mindmapmode.MapVersionUpgrader;
+import freemind.modes.mindmapmode.MindMapMapModel;
+
+/**
+ * Compares the streaming map loader with the XMLElement based one.
+ */
+public class MapLoaderTests extends FreeMindTestBase {
+
+	private static final String FEATURE_MAP = "<map version=\""
+			+ FreeMind.XML_VERSION + "\">\n"
+			+ "<!-- comment -->\n"
+			+ "<attribute_registry><attribute_name NAME=\"a\"><attribute_value VALUE=\"b\"/></attribute_name></attribute_registry>\n"
+			+ "<node ID=\"ID_1\" TEXT=\"ROOT &amp; &lt;more&gt; &#xe4;&#228;\" COLOR=\"#ff0000\" BACKGROUND_COLOR=\"#00ff00\">\n"
+			+ "<font NAME=\"SansSerif\" SIZE=\"14\" BOLD=\"true\" ITALIC=\"true\"/>\n"
+			+ "<edge STYLE=\"bezier\" COLOR=\"#808080\" WIDTH=\"thin\"/>\n"
+			+ "<node ID=\"ID_2\" TEXT='single &apos;quoted&apos;\nwith newline' POSITION=\"left\" FOLDED=\"true\" VSHIFT=\"-3\" HGAP=\"20\" VGAP=\"5\" LINK=\"http://freemind.sf.net\" STYLE=\"bubble\">\n"
+			+ "<cloud COLOR=\"#f0f0f0\" WIDTH=\"2\"/>\n"
+			+ "<icon BUILTIN=\"idea\"/><icon BUILTIN=\"help\"/>\n"
+			+ "<attribute NAME=\"key\" VALUE=\"value &quot;quoted&quot;\"/>\n"
+			+ "<arrowlink DESTINATION=\"ID_3\" ENDARROW=\"Default\" ENDINCLINATION=\"10;20;\" ID=\"Arrow_ID_1\" STARTARROW=\"None\" STARTINCLINATION=\"30;40;\" COLOR=\"#0000ff\" WIDTH=\"2\"/>\n"
+			+ "<richcontent TYPE=\"NOTE\"><html>\n  <head>\n  </head>\n  <body>\n    <p>\n      a <b>note</b> &amp; <!-- <richcontent> --> &nbsp;\n    </p>\n  </body>\n</html>\n</richcontent>\n"
+			+ "<hook NAME=\"unknown/Hook.properties\"><Parameters VALUE=\"1\"/><text>some text</text></hook>\n"
+			+ "</node>\n"
+			+ "<node ID=\"ID_3\" TEXT=\"target\" POSITION=\"right\">\n"
+			+ "<linktarget COLOR=\"#0000ff\" DESTINATION=\"ID_3\" ENDARROW=\"Default\" ID=\"Arrow_ID_1\" SOURCE=\"ID_2\" STARTARROW=\"None\"/>\n"
+			+ "<richcontent TYPE=\"NODE\" ><html><body><p>rich</p></body></html></richcontent >\n"
+			+ "<node TEXT=\"leaf\"><font NAME=\"Serif\" SIZE=\"10\" STRIKETHROUGH=\"true\"/></node>\n"
+			+ "</node>\n"
+			+ "</node>\n"
+			+ "</map>\n";
+
+	public void testFeatureMap() throws Exception {
+		String result = loadAndSave(FEATURE_MAP, false);
+		assertTrue(result, result.indexOf("TEXT=\"ROOT &amp;") >= 0);
+		assertTrue(result, result.indexOf("<arrowlink") >= 0);
+		assertEquals(loadAndSave(FEATURE_MAP, true), result);
+	}
+
+	public void testTestMap() throws Exception {
+		String map = Tools.getFile(new File("tests/freemind/testmap.mm"));
+		assertNotNull(map);
+		String result = loadAndSave(map, false);
+		assertTrue(result, result.indexOf("Notetest") >= 0);
+		assertEquals(loadAndSave(map, true), result);
+	}
+
+	public void testNodeOnly() throws Exception {
+		String xml = "<node TEXT=\"pasted\"><node TEXT=\"child\"/></node>";
+		ExtendedMapFeedbackImpl mapFeedback = new ExtendedMapFeedbackImpl();
+		MindMapMapModel map = new MindMapMapModel(mapFeedback);
+		mapFeedback.setMap(map);
+		MindMapNode node = map.createNodeTreeFromXml(new StringReader(xml),
+				new HashMap<String, NodeAdapter>());
+		assertEquals("pasted", node.getText());
+		assertEquals(1, node.getChildCount());
+		assertEquals("child", ((MindMapNode) node.getChildAt(0)).getText());
+	}
+
+	public void testPullParserEvents() throws Exception {
+		XMLPullParser parser = new XMLPullParser(new StringReader(
+				"<?xml version='1.0'?><a x='1'><b y=\"2\"/><!-- c --><c>text &amp; more</c><d><![CDATA[<raw>]]></d></a> trailing"));
+		assertEquals(XMLPullParser.START_ELEMENT, parser.next());
+		assertEquals("a", parser.getLocalName());
+		assertEquals("1", parser.getAttributeValue("X"));
+		assertEquals(XMLPullParser.START_ELEMENT, parser.next());
+		assertEquals("b", parser.getLocalName());
+		assertTrue(parser.isEmptyElement());
+		assertEquals(XMLPullParser.END_ELEMENT, parser.next());
+		assertEquals(XMLPullParser.START_ELEMENT, parser.next());
+		assertEquals("c", parser.getLocalName());
+		assertEquals(XMLPullParser.CHARACTERS, parser.next());
+		assertEquals("text & more", parser.getText());
+		assertEquals(XMLPullParser.END_ELEMENT, parser.next());
+		assertEquals(XMLPullParser.START_ELEMENT, parser.next());
+		assertEquals(XMLPullParser.CHARACTERS, parser.next());
+		assertEquals("<raw>", parser.getText());
+		assertEquals(XMLPullParser.END_ELEMENT, parser.next());
+		assertEquals(XMLPullParser.END_ELEMENT, parser.next());
+		assertEquals("a", parser.getLocalName());
+		assertEquals(XMLPullParser.END_DOCUMENT, parser.next());
+	}
+
+	public void testPullParserErrors() throws Exception {
+		try {
+			XMLPullParser parser = new XMLPullParser(new StringReader(
+					"<a><b></a>"));
+			while (parser.next() != XMLPullParser.END_DOCUMENT) {
+			}
+			fail("Must throw.");
+		} catch (XMLParseException e) {
+		}
+		try {
+			XMLPullParser parser = new XMLPullParser(new StringReader(
+					"<a x='&unknown;'/>"));
+			parser.next();
+			fail("Must throw.");
+		} catch (XMLParseException e) {
+		}
+	}
+
+	public void testVersionUpgrader() throws Exception {
+		File dir = Files.createTempDirectory("upgrade").toFile();
+		File legacy = new File(dir, "legacy.mm");
+		File actual = new File(dir, "actual.mm");
+		File broken = new File(dir, "broken.mm");
+		writeMap(legacy, "<map version=\"0.9.0\"><node TEXT=\"old &#x1;map\">"
+				+ "<node TEXT=\"child\"/></node></map>");
+		writeMap(actual, FEATURE_MAP);
+		writeMap(broken, "<map version=\"0.9.0\"><node TEXT=\"broken\"></map>");
+		Vector<File> maps = new Vector<>();
+		MapVersionUpgrader.collectMaps(dir, maps);
+		assertEquals(3, maps.size());
+		MapVersionUpgrader upgrader = new MapVersionUpgrader(2, true,
+				new PrintStream(new ByteArrayOutputStream()));
+		upgrader.upgrade(maps);
+		assertEquals(1, upgrader.getUpgradedCount());
+		assertEquals(1, upgrader.getCurrentCount());
+		assertEquals(1, upgrader.getFailedCount());
+		String upgraded = Tools.getFile(legacy);
+		assertTrue(upgraded, upgraded.startsWith("<map version=\""
+				+ FreeMind.XML_VERSION + "\">"));
+		assertTrue(upgraded, upgraded.indexOf("TEXT=\"old map\"") >= 0);
+		assertTrue(upgraded, upgraded.indexOf("TEXT=\"child\"") >= 0);
+		assertTrue(new File(dir, "legacy.mm"
+				+ MapVersionUpgrader.BACKUP_EXTENSION).exists());
+		assertEquals(FEATURE_MAP, Tools.getFile(actual));
+		assertTrue(Tools.getFile(broken).indexOf("broken") >= 0);
+		for (File file : dir.listFiles()) {
+			file.delete();
+		}
+		dir.delete();
+	}
+
+	private void writeMap(File pFile, String pContent) throws Exception {
+		CharArrayWriter content = new CharArrayWriter();
+		content.write(pContent);
+		Tools.writeFileAtomically(pFile, content);
+	}
+
+	protected String loadAndSave(String pMap, boolean pLegacy)
+			throws Exception {
+		ExtendedMapFeedbackImpl mapFeedback = new ExtendedMapFeedbackImpl();
+		mapFeedback.setProperty(MapAdapter.RESOURCES_USE_LEGACY_XML_LOADER,
+				Boolean.toString(pLegacy));
+		try {
+			MindMapMapModel map = new MindMapMapModel(mapFeedback);
+			mapFeedback.setMap(map);
+			MindMapNode root = map.loadTree(new Tools.StringReaderCreator(
+					pMap), MapAdapter.sDontAskInstance);
+			map.setRoot(root);
+			StringWriter writer = new StringWriter();
+			map.getFilteredXml(writer);
+			String result = writer.toString();
+			return result.replaceAll("(CREATED|MODIFIED)=\"[0-9]*\"", "");
+		} finally {
+			mapFeedback.setProperty(
+					MapAdapter.RESOURCES_USE_LEGACY_XML_LOADER, "false");
+		}
+	}
+}
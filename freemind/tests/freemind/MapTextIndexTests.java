@@ -0,0 +1,110 @@
+/*FreeMind - A Program for creating and viewing Mindmaps
+ *Copyright (C) 2000-2014 Christian Foltin, Joerg Mueller, Daniel Polansky, Dimitri Polivaev and others.
+ *
+ *See COPYING for Details
+ *
+ *This program is free software; you can redistribute it and/or
+ *modify it under the terms of the GNU General Public License
+ *as published by the Free Software Foundation; either version 2
+ *of the License, or (at your option) any later version.
+ *
+ *This program is distributed in the hope that it will be useful,
+ *but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *GNU General Public License for more details.
+ *
+ *You should have received a copy of the GNU General Public License
+ *along with this program; if not, write to the Free Software
+ *Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package tests.freemind;
+
+import java.util.Arrays;
+import java.util.List;
+
+import freemind.main.Tools;
+import freemind.modes.ExtendedMapFeedbackImpl;
+import freemind.modes.MapAdapter;
+import freemind.modes.MapTextIndex;
+import freemind.modes.MindMapNode;
+import freemind.modes.mindmapmode.MindMapMapModel;
+
+/**
+ * The text index must find the same nodes as a scan of all node texts, also
+ * after the map was changed.
+ */
+public class MapTextIndexTests extends FreeMindTestBase {
+
+	private static final String INITIAL_MAP = "<map>"
+			+ "<node TEXT='Root'>"
+			+ "<node TEXT='Apple tree'>"
+			+ "<node TEXT='Green apple'/>"
+			+ "<node TEXT='&lt;html&gt;&lt;b&gt;Red&lt;/b&gt; apple&lt;/html&gt;'/>"
+			+ "</node>" + "<node TEXT='Pear'/>" + "</node>" + "</map>";
+
+	private ExtendedMapFeedbackImpl mMapFeedback;
+	private MindMapMapModel mMap;
+	private MindMapNode mRoot;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		mMapFeedback = new ExtendedMapFeedbackImpl();
+		mMap = new MindMapMapModel(mMapFeedback);
+		mMapFeedback.setMap(mMap);
+		mRoot = mMap.loadTree(new Tools.StringReaderCreator(INITIAL_MAP),
+				MapAdapter.sDontAskInstance);
+		mMap.setRoot(mRoot);
+	}
+
+	public void testPlainText() throws Exception {
+		MindMapNode red = (MindMapNode) ((MindMapNode) mRoot.getChildAt(0))
+				.getChildAt(1);
+		assertEquals("Red apple", red.getPlainText());
+		assertEquals("red apple", red.getLowerCasePlainText());
+		assertSame(red.getPlainText(), red.getPlainText());
+		assertEquals("", red.getPlainNoteText());
+		red.setNoteText("<html><i>Sour</i></html>");
+		assertEquals("Sour", red.getPlainNoteText());
+		red.setText("Red cherry");
+		assertEquals("red cherry", red.getLowerCasePlainText());
+	}
+
+	public void testFind() throws Exception {
+		MapTextIndex index = mMap.getTextIndex();
+		assertEquals(5, index.size());
+		assertEquals(3, find("apple").size());
+		assertEquals(1, find("red", "apple").size());
+		// html tags are not matched:
+		assertEquals(0, find("<b>").size());
+		// short terms are checked against all nodes:
+		assertEquals(1, find("pe").size());
+		assertEquals(0, find("banana").size());
+	}
+
+	public void testChanges() throws Exception {
+		MindMapNode tree = (MindMapNode) mRoot.getChildAt(0);
+		MindMapNode green = (MindMapNode) tree.getChildAt(0);
+		assertEquals(3, find("apple").size());
+		mMapFeedback.setNodeText(green, "Green pear");
+		assertEquals(2, find("apple").size());
+		assertEquals(2, find("pear").size());
+		assertEquals("green pear",
+				mMap.getTextIndex().getPlainLowerCaseText(green));
+		mMapFeedback.setNoteText(mRoot, "An apple a day");
+		assertEquals(0, find("apple a day").size());
+		assertEquals(1, mMap.getTextIndex()
+				.getMatchingNodes(Arrays.asList("apple a day"), true).size());
+		MindMapNode newNode = mMapFeedback.addNewNode(mRoot, 0, true);
+		mMapFeedback.setNodeText(newNode, "Apple pie");
+		assertEquals(3, find("apple").size());
+		mMapFeedback.deleteNode(tree);
+		List<MindMapNode> result = find("apple");
+		assertEquals(1, result.size());
+		assertSame(newNode, result.get(0));
+	}
+
+	private List<MindMapNode> find(String... pSubterms) {
+		return mMap.getTextIndex().getMatchingNodes(Arrays.asList(pSubterms),
+				false);
+	}
+}
@@ -25,12 +25,23 @@ package tests.freemind;
 
 import de.foltin.StringEncoder;
 import freemind.common.XmlBindingTools;
+import freemind.controller.actions.generated.instance.CompoundAction;
+import freemind.controller.actions.generated.instance.EditNodeAction;
+import freemind.controller.actions.generated.instance.HookNodeAction;
+import freemind.controller.actions.generated.instance.NodeChildParameter;
+import freemind.controller.actions.generated.instance.NodeListMember;
+import freemind.controller.actions.generated.instance.PasteNodeAction;
 import freemind.controller.actions.generated.instance.Pattern;
 import freemind.controller.actions.generated.instance.PatternChild;
 import freemind.controller.actions.generated.instance.Place;
 import freemind.controller.actions.generated.instance.Result;
 import freemind.controller.actions.generated.instance.Reversegeocode;
 import freemind.controller.actions.generated.instance.Searchresults;
+import freemind.controller.actions.generated.instance.TransferableContent;
+import freemind.controller.actions.generated.instance.TransferableFile;
+import freemind.controller.actions.generated.instance.XmlAction;
+import freemind.main.Tools;
+import freemind.main.XmlActionCopier;
 
 /**
  * @author foltin
@@ -109,4 +120,73 @@ public class MarshallerTests extends FreeMindTestBase {
 		assertEquals("Correct start", exp, content.substring(0, exp.length()));
 	}
 
+	public void testStructuralCopy() throws Exception {
+		CompoundAction compound = new CompoundAction();
+		EditNodeAction edit = new EditNodeAction();
+		edit.setNode("ID_1");
+		edit.setText("<html>\ntext &amp; \u00e4</html>");
+		compound.addChoice(edit);
+		PasteNodeAction paste = new PasteNodeAction();
+		paste.setNode("ID_2");
+		paste.setAsSibling(true);
+		TransferableContent content = new TransferableContent();
+		content.setTransferable("<node TEXT=\"pasted\"/>");
+		TransferableFile file = new TransferableFile();
+		file.setFileName("/tmp/file.mm");
+		content.addTransferableFile(file);
+		paste.setTransferableContent(content);
+		compound.addChoice(paste);
+		HookNodeAction hook = new HookNodeAction();
+		hook.setNode("ID_3");
+		hook.setHookName("hook");
+		NodeListMember member = new NodeListMember();
+		member.setNode("ID_4");
+		hook.addNodeListMember(member);
+		NodeChildParameter parameter = new NodeChildParameter();
+		parameter.setKey("key");
+		parameter.setValue("value");
+		hook.addNodeChildParameter(parameter);
+		compound.addChoice(hook);
+
+		XmlAction copy = Tools.deepCopy(compound);
+		assertNotSame(compound, copy);
+		String marshalled = Tools.marshall(compound);
+		assertNotNull(marshalled);
+		assertEquals(marshalled, Tools.marshall(copy));
+		CompoundAction compoundCopy = (CompoundAction) copy;
+		assertNotSame(edit, compoundCopy.getChoice(0));
+		PasteNodeAction pasteCopy = (PasteNodeAction) compoundCopy.getChoice(1);
+		assertNotSame(content, pasteCopy.getTransferableContent());
+		// the copy is independent of the original:
+		pasteCopy.getTransferableContent().clearTransferableFileList();
+		compoundCopy.addChoice(new EditNodeAction());
+		assertEquals(1, content.sizeTransferableFileList());
+		assertEquals(3, compound.sizeChoiceList());
+	}
+
+	public void testEstimatedSize() throws Exception {
+		EditNodeAction edit = new EditNodeAction();
+		edit.setNode("ID_1");
+		edit.setText("short");
+		long small = XmlActionCopier.getEstimatedSize(edit);
+		StringBuffer text = new StringBuffer();
+		for (int i = 0; i < 1000; i++) {
+			text.append("0123456789");
+		}
+		edit.setText(text.toString());
+		long large = XmlActionCopier.getEstimatedSize(edit);
+		assertTrue(large >= small + 2 * text.length() - 10);
+		CompoundAction compound = new CompoundAction();
+		compound.addChoice(edit);
+		compound.addChoice(Tools.deepCopy(edit));
+		assertTrue(XmlActionCopier.getEstimatedSize(compound) > 2 * large);
+		// the undo list adds to its estimate incrementally:
+		long before = XmlActionCopier.getEstimatedSize(compound);
+		EditNodeAction added = new EditNodeAction();
+		added.setText("added");
+		compound.addChoice(added);
+		assertEquals(before + XmlActionCopier.getEstimatedListEntrySize(added),
+				XmlActionCopier.getEstimatedSize(compound));
+	}
+
 }
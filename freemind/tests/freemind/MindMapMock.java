@@ -44,6 +44,7 @@ import freemind.modes.CloudAdapter;
 import freemind.modes.EdgeAdapter;
 import freemind.modes.MapFeedback;
 import freemind.modes.MapFeedbackAdapter;
+import freemind.modes.MapTextIndex;
 import freemind.modes.MindMap;
 import freemind.modes.MindMapLinkRegistry;
 import freemind.modes.MindMapNode;
@@ -53,6 +54,7 @@ import freemind.modes.NodeAdapter;
 public class MindMapMock implements MindMap {
 
 	private final String mapXmlString;
+	private int mChildHookCount = 0;
 
 	/**
      * 
@@ -258,6 +260,14 @@ public class MindMapMock implements MindMap {
 		return new SortedMapListModel();
 	}
 
+	/* (non-Javadoc)
+	 * @see freemind.modes.MindMap#getTextIndex()
+	 */
+	@Override
+	public MapTextIndex getTextIndex() {
+		return null;
+	}
+
 	/* (non-Javadoc)
 	 * @see freemind.modes.MindMap#loadTree(freemind.modes.ModeController.ReaderCreator, freemind.modes.MapAdapter.AskUserBeforeUpdateCallback)
 	 */
@@ -348,4 +358,28 @@ public class MindMapMock implements MindMap {
 	public void removeNodeFromParent(MindMapNode pNode) {
 	}
 
+	/* (non-Javadoc)
+	 * @see freemind.modes.MindMap#reorderChildren(freemind.modes.MindMapNode, java.util.List)
+	 */
+	@Override
+	public void reorderChildren(MindMapNode pParent,
+			List<MindMapNode> pNewOrder) {
+	}
+
+	/* (non-Javadoc)
+	 * @see freemind.modes.MindMap#getChildHookCount()
+	 */
+	@Override
+	public int getChildHookCount() {
+		return mChildHookCount;
+	}
+
+	/* (non-Javadoc)
+	 * @see freemind.modes.MindMap#changeChildHookCount(int)
+	 */
+	@Override
+	public void changeChildHookCount(int pDelta) {
+		mChildHookCount += pDelta;
+	}
+
 }
@@ -0,0 +1,111 @@
+/*FreeMind - A Program for creating and viewing Mindmaps
+ *Copyright (C) 2000-2014 Christian Foltin, Joerg Mueller, Daniel Polansky, Dimitri Polivaev and others.
+ *
+ *See COPYING for Details
+ *
+ *This program is free software; you can redistribute it and/or
+ *modify it under the terms of the GNU General Public License
+ *as published by the Free Software Foundation; either version 2
+ *of the License, or (at your option) any later version.
+ *
+ *This program is distributed in the hope that it will be useful,
+ *but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *GNU General Public License for more details.
+ *
+ *You should have received a copy of the GNU General Public License
+ *along with this program; if not, write to the Free Software
+ *Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package tests.freemind;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import freemind.modes.ExtendedMapFeedbackImpl;
+import freemind.modes.MindMapNode;
+import freemind.modes.NodeChildrenList;
+import freemind.modes.mindmapmode.MindMapMapModel;
+import freemind.modes.mindmapmode.MindMapNodeModel;
+
+/**
+ * The cached child positions must always match the positions in the list.
+ */
+public class NodeChildrenListTests extends FreeMindTestBase {
+
+	public void testPositionsFollowChanges() throws Exception {
+		MindMapMapModel map = createMap();
+		NodeChildrenList list = new NodeChildrenList();
+		ArrayList<MindMapNode> expected = new ArrayList<>();
+		ArrayList<MindMapNode> removed = new ArrayList<>();
+		Random random = new Random(4711);
+		for (int step = 0; step < 5000; step++) {
+			int size = expected.size();
+			int operation = random.nextInt(10);
+			if (operation < 4 || size == 0) {
+				int index = operation < 2 ? size : random.nextInt(size + 1);
+				MindMapNode node = new MindMapNodeModel(map);
+				list.add(index, node);
+				expected.add(index, node);
+			} else if (operation < 6) {
+				int index = random.nextInt(size);
+				removed.add(list.remove(index));
+				expected.remove(index);
+			} else if (operation < 7) {
+				MindMapNode node = expected.get(random.nextInt(size));
+				assertTrue(list.remove(node));
+				expected.remove(node);
+				removed.add(node);
+			} else if (operation < 8) {
+				int index = random.nextInt(size);
+				MindMapNode node = new MindMapNodeModel(map);
+				removed.add(list.set(index, node));
+				expected.set(index, node);
+			} else {
+				MindMapNode node = expected.get(random.nextInt(size));
+				assertEquals(expected.indexOf(node), list.indexOf(node));
+			}
+			if (step % 100 == 0) {
+				assertEquals(expected, list);
+				for (int i = 0; i < expected.size(); i++) {
+					assertEquals(i, list.indexOf(expected.get(i)));
+				}
+				for (MindMapNode node : removed) {
+					assertEquals(-1, list.indexOf(node));
+				}
+			}
+		}
+		list.clear();
+		assertEquals(0, list.size());
+		assertEquals(-1, list.indexOf(expected.get(0)));
+	}
+
+	public void testNodePositions() throws Exception {
+		MindMapMapModel map = createMap();
+		MindMapNodeModel parent = new MindMapNodeModel(map);
+		MindMapNodeModel first = new MindMapNodeModel(map);
+		MindMapNodeModel second = new MindMapNodeModel(map);
+		MindMapNodeModel third = new MindMapNodeModel(map);
+		parent.insert(first, -1);
+		parent.insert(third, -1);
+		parent.insert(second, 1);
+		assertEquals(0, parent.getChildPosition(first));
+		assertEquals(1, parent.getIndex(second));
+		assertEquals(2, parent.getChildPosition(third));
+		parent.remove(second);
+		assertEquals(-1, parent.getChildPosition(second));
+		assertEquals(1, parent.getChildPosition(third));
+		assertNull(second.getParent());
+		parent.remove(0);
+		assertEquals(0, parent.getChildPosition(third));
+		assertEquals(1, parent.getChildCount());
+	}
+
+	private MindMapMapModel createMap() {
+		ExtendedMapFeedbackImpl mapFeedback = new ExtendedMapFeedbackImpl();
+		MindMapMapModel map = new MindMapMapModel(mapFeedback);
+		mapFeedback.setMap(map);
+		return map;
+	}
+}
@@ -21,16 +21,27 @@
 package tests.freemind;
 
 import java.awt.Color;
+import java.awt.EventQueue;
 import java.awt.GraphicsEnvironment;
 import java.awt.Point;
 import java.awt.datatransfer.StringSelection;
 import java.io.IOException;
 import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 import java.util.Vector;
 
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+
+import accessories.plugins.SortNodes;
 import freemind.controller.actions.generated.instance.Pattern;
+import freemind.extensions.PermanentNodeHookAdapter;
 import freemind.main.FreeMind;
+import freemind.main.HtmlTools;
 import freemind.main.Tools;
+import freemind.modes.CompiledPattern;
 import freemind.modes.EdgeAdapter;
 import freemind.modes.ExtendedMapFeedbackImpl;
 import freemind.modes.MapAdapter;
@@ -38,10 +49,13 @@ import freemind.modes.MindIcon;
 import freemind.modes.MindMapArrowLink;
 import freemind.modes.MindMapLink;
 import freemind.modes.MindMapNode;
+import freemind.modes.NodeAdapter;
 import freemind.modes.StylePatternFactory;
 import freemind.modes.attributes.Attribute;
 import freemind.modes.mindmapmode.MindMapMapModel;
 import freemind.modes.mindmapmode.MindMapNodeModel;
+import freemind.modes.mindmapmode.actions.xml.ActionFilter;
+import freemind.modes.mindmapmode.actions.xml.ActionPair;
 
 /**
  * @author foltin
@@ -298,4 +312,367 @@ public class StandaloneMapTests extends FreeMindTestBase {
 		System.out.println(xmlResult);
 
 	}
+
+	public void testNodeChangesAreBatched() throws Exception {
+		ExtendedMapFeedbackImpl mapFeedback = new ExtendedMapFeedbackImpl();
+		final MindMapMapModel mMap = new MindMapMapModel(mapFeedback);
+		mapFeedback.setMap(mMap);
+		Tools.StringReaderCreator readerCreator = new Tools.StringReaderCreator(INITIAL_MAP);
+		MindMapNode root = mMap.loadTree(readerCreator,
+				MapAdapter.sDontAskInstance);
+		mMap.setRoot(root);
+		MindMapNode firstChild = (MindMapNode) root.getChildAt(0);
+		final Vector<TreeModelEvent> events = new Vector<>();
+		mMap.addTreeModelListener(new TreeModelListener() {
+			public void treeNodesChanged(TreeModelEvent pEvent) {
+				events.add(pEvent);
+			}
+
+			public void treeNodesInserted(TreeModelEvent pEvent) {
+			}
+
+			public void treeNodesRemoved(TreeModelEvent pEvent) {
+			}
+
+			public void treeStructureChanged(TreeModelEvent pEvent) {
+			}
+		});
+		// a transaction:
+		mapFeedback.setNodeText(firstChild, "changed");
+		assertEquals(1, events.size());
+		events.clear();
+		mapFeedback.startNodeChangeBatch();
+		for (int i = 2; i >= 0; i--) {
+			MindMapNode child = (MindMapNode) firstChild.getChildAt(i);
+			mapFeedback.setBold(child, true);
+			mapFeedback.setItalic(child, true);
+		}
+		assertEquals(0, events.size());
+		mapFeedback.endNodeChangeBatch();
+		// one event for all changed siblings, in the order of the children:
+		assertEquals(1, events.size());
+		TreeModelEvent event = events.get(0);
+		assertSame(firstChild, event.getTreePath().getLastPathComponent());
+		assertEquals(3, event.getChildren().length);
+		assertEquals(0, event.getChildIndices()[0]);
+		assertEquals(2, event.getChildIndices()[2]);
+		assertSame(firstChild.getChildAt(2), event.getChildren()[2]);
+	}
+
+	public void testReorderChildren() throws Exception {
+		ExtendedMapFeedbackImpl mapFeedback = new ExtendedMapFeedbackImpl();
+		final MindMapMapModel mMap = new MindMapMapModel(mapFeedback);
+		mapFeedback.setMap(mMap);
+		Tools.StringReaderCreator readerCreator = new Tools.StringReaderCreator(
+				"<map><node TEXT='ROOT'><node TEXT='Parent'>"
+						+ "<node TEXT='b 10'><attribute NAME='prio' VALUE='2'/></node>"
+						+ "<node TEXT='2015-07-05 a 9'/>"
+						+ "<node TEXT='C'><attribute NAME='prio' VALUE='10'/></node>"
+						+ "</node></node></map>");
+		MindMapNode root = mMap.loadTree(readerCreator,
+				MapAdapter.sDontAskInstance);
+		mMap.setRoot(root);
+		MindMapNode parent = (MindMapNode) root.getChildAt(0);
+		MindMapNode b = (MindMapNode) parent.getChildAt(0);
+		MindMapNode a = (MindMapNode) parent.getChildAt(1);
+		MindMapNode c = (MindMapNode) parent.getChildAt(2);
+		final Vector<ActionPair> pairs = new Vector<>();
+		mapFeedback.getActionRegistry().registerFilter(new ActionFilter() {
+			public ActionPair filterAction(ActionPair pPair) {
+				pairs.add(pPair);
+				return pPair;
+			}
+		});
+		final Vector<TreeModelEvent> events = new Vector<>();
+		parent.addTreeModelListener(new TreeModelListener() {
+			public void treeNodesChanged(TreeModelEvent pEvent) {
+			}
+
+			public void treeNodesInserted(TreeModelEvent pEvent) {
+				fail("Reordering must not insert.");
+			}
+
+			public void treeNodesRemoved(TreeModelEvent pEvent) {
+				fail("Reordering must not remove.");
+			}
+
+			public void treeStructureChanged(TreeModelEvent pEvent) {
+				events.add(pEvent);
+			}
+		});
+		List<MindMapNode> sorted = SortNodes.getSortedChildren(parent,
+				SortNodes.SORT_BY_TEXT, null);
+		assertEquals(Arrays.asList(a, b, c), sorted);
+		mapFeedback.reorderChildren(parent, sorted);
+		assertEquals(sorted, parent.getChildren());
+		assertSame(parent, a.getParentNode());
+		// one action and one event:
+		assertEquals(1, pairs.size());
+		assertEquals(1, events.size());
+		assertEquals(3, events.get(0).getChildren().length);
+		// sorted already, so the order is reversed:
+		assertEquals(Arrays.asList(c, b, a), SortNodes.getSortedChildren(
+				parent, SortNodes.SORT_BY_TEXT, null));
+		// the first number, then the nodes without number:
+		assertEquals(Arrays.asList(b, a, c), SortNodes.getSortedChildren(
+				parent, SortNodes.SORT_BY_NUMBER, null));
+		// the date, then the nodes without date. Sorted already, but only
+		// the nodes with date are reversed:
+		assertEquals(Arrays.asList(a, b, c), SortNodes.getSortedChildren(
+				parent, SortNodes.SORT_BY_DATE, null));
+		// numerical values, the node without attribute last:
+		assertEquals(Arrays.asList(b, c, a), SortNodes.getSortedChildren(
+				parent, SortNodes.SORT_BY_ATTRIBUTE, "prio"));
+		// undo restores the previous order:
+		mapFeedback.doTransaction("undo", pairs.get(0).reverse());
+		assertEquals(Arrays.asList(b, a, c), parent.getChildren());
+		// nothing to do:
+		pairs.clear();
+		mapFeedback.reorderChildren(parent, Arrays.asList(b, a, c));
+		assertEquals(0, pairs.size());
+	}
+
+	public void testSortMixedAttributeValues() throws Exception {
+		ExtendedMapFeedbackImpl mapFeedback = new ExtendedMapFeedbackImpl();
+		final MindMapMapModel mMap = new MindMapMapModel(mapFeedback);
+		mapFeedback.setMap(mMap);
+		StringBuffer xml = new StringBuffer(
+				"<map><node TEXT='ROOT'><node TEXT='Parent'>");
+		Random random = new Random(4711);
+		String[] texts = new String[] { "abc", "B", "x1", "10a", "Z" };
+		for (int i = 0; i < 200; i++) {
+			xml.append("<node TEXT='" + i + "'>");
+			switch (random.nextInt(3)) {
+			case 0:
+				xml.append("<attribute NAME='prio' VALUE='"
+						+ random.nextInt(50) + "'/>");
+				break;
+			case 1:
+				xml.append("<attribute NAME='prio' VALUE='"
+						+ texts[random.nextInt(texts.length)] + "'/>");
+				break;
+			default:
+				// without attribute
+			}
+			xml.append("</node>");
+		}
+		xml.append("</node></node></map>");
+		MindMapNode root = mMap.loadTree(new Tools.StringReaderCreator(
+				xml.toString()), MapAdapter.sDontAskInstance);
+		mMap.setRoot(root);
+		MindMapNode parent = (MindMapNode) root.getChildAt(0);
+		List<MindMapNode> sorted = SortNodes.getSortedChildren(parent,
+				SortNodes.SORT_BY_ATTRIBUTE, "prio");
+		assertEquals(200, sorted.size());
+		// the numbers ascending, then the texts, then the nodes without
+		// value:
+		assertMixedOrder(sorted, false);
+		mapFeedback.reorderChildren(parent, sorted);
+		// reversed, but the nodes without value stay last:
+		assertMixedOrder(SortNodes.getSortedChildren(parent,
+				SortNodes.SORT_BY_ATTRIBUTE, "prio"), true);
+	}
+
+	/**
+	 * @return 0 for numbers, 1 for texts and 2 for missing values.
+	 */
+	private int getValueClass(String pValue) {
+		if (pValue == null) {
+			return 2;
+		}
+		return pValue.matches("[0-9]+") ? 0 : 1;
+	}
+
+	private void assertMixedOrder(List<MindMapNode> pNodes, boolean pReversed) {
+		for (int i = 1; i < pNodes.size(); i++) {
+			String last = pNodes.get(i - 1).getAttribute("prio");
+			String value = pNodes.get(i).getAttribute("prio");
+			int lastClass = getValueClass(last);
+			int valueClass = getValueClass(value);
+			if (lastClass == 2 || valueClass == 2) {
+				assertTrue(valueClass == 2);
+				continue;
+			}
+			int comparison;
+			if (lastClass != valueClass) {
+				comparison = lastClass - valueClass;
+			} else if (lastClass == 0) {
+				comparison = Integer.parseInt(last) - Integer.parseInt(value);
+			} else {
+				comparison = last.compareToIgnoreCase(value);
+			}
+			assertTrue(last + " before " + value, pReversed ? comparison >= 0
+					: comparison <= 0);
+		}
+	}
+
+	public void testApplyPatternsByDepth() throws Exception {
+		ExtendedMapFeedbackImpl mapFeedback = new ExtendedMapFeedbackImpl();
+		final MindMapMapModel mMap = new MindMapMapModel(mapFeedback);
+		mapFeedback.setMap(mMap);
+		Tools.StringReaderCreator readerCreator = new Tools.StringReaderCreator(INITIAL_MAP);
+		MindMapNode root = mMap.loadTree(readerCreator,
+				MapAdapter.sDontAskInstance);
+		mMap.setRoot(root);
+		MindMapNode firstChild = (MindMapNode) root.getChildAt(0);
+		MindMapNode subChild = (MindMapNode) firstChild.getChildAt(1);
+		CompiledPattern[] styles = new CompiledPattern[2];
+		mapFeedback.setNodeColor(root, Color.RED);
+		styles[0] = new CompiledPattern(
+				StylePatternFactory.createPatternFromNode(root));
+		mapFeedback.setNodeColor(root, null);
+		mapFeedback.setBold(subChild, true);
+		mapFeedback.setNodeColor(subChild, Color.BLUE);
+		styles[1] = new CompiledPattern(
+				StylePatternFactory.createPatternFromNode(subChild));
+		mapFeedback.setBold(subChild, false);
+		assertTrue(StylePatternFactory.applyPatternsByDepth(root, 0, styles,
+				mapFeedback));
+		assertEquals(Color.RED, root.getColor());
+		assertFalse(root.isBold());
+		// deeper nodes get the last style:
+		assertEquals(Color.BLUE, firstChild.getColor());
+		assertTrue(firstChild.isBold());
+		assertEquals(Color.BLUE, subChild.getColor());
+		assertTrue(subChild.isBold());
+		// nothing to do anymore:
+		assertFalse(StylePatternFactory.applyPatternsByDepth(root, 0, styles,
+				mapFeedback));
+		// a subtree keeps its depth:
+		mapFeedback.setNodeColor(subChild, Color.GREEN);
+		assertTrue(StylePatternFactory.applyPatternsByDepth(firstChild, 1,
+				styles, mapFeedback));
+		assertEquals(Color.BLUE, subChild.getColor());
+	}
+
+	public void testApplyPatternsByDepthToSingleNode() throws Exception {
+		ExtendedMapFeedbackImpl mapFeedback = new ExtendedMapFeedbackImpl();
+		final MindMapMapModel mMap = new MindMapMapModel(mapFeedback);
+		mapFeedback.setMap(mMap);
+		MindMapNode root = mMap.loadTree(new Tools.StringReaderCreator(
+				INITIAL_MAP), MapAdapter.sDontAskInstance);
+		mMap.setRoot(root);
+		MindMapNode firstChild = (MindMapNode) root.getChildAt(0);
+		MindMapNode subChild = (MindMapNode) firstChild.getChildAt(1);
+		Color childColor = firstChild.getColor();
+		Color subChildColor = subChild.getColor();
+		mapFeedback.setNodeColor(root, Color.RED);
+		CompiledPattern[] styles = new CompiledPattern[] { new CompiledPattern(
+				StylePatternFactory.createPatternFromNode(root)) };
+		mapFeedback.setNodeColor(root, null);
+		assertTrue(StylePatternFactory.applyPatternsByDepth(root, 0, styles,
+				false, mapFeedback));
+		assertEquals(Color.RED, root.getColor());
+		// the children are left alone:
+		assertEquals(childColor, firstChild.getColor());
+		assertEquals(subChildColor, subChild.getColor());
+		assertFalse(StylePatternFactory.applyPatternsByDepth(root, 0, styles,
+				false, mapFeedback));
+	}
+
+	public void testChildHooksAreCounted() throws Exception {
+		ExtendedMapFeedbackImpl mapFeedback = new ExtendedMapFeedbackImpl();
+		final MindMapMapModel mMap = new MindMapMapModel(mapFeedback);
+		mapFeedback.setMap(mMap);
+		MindMapNode root = mMap.loadTree(new Tools.StringReaderCreator(
+				INITIAL_MAP), MapAdapter.sDontAskInstance);
+		mMap.setRoot(root);
+		MindMapNode formatMe = (MindMapNode) root.getChildAt(0);
+		MindMapNode child1 = (MindMapNode) formatMe.getChildAt(0);
+		assertEquals(0, mMap.getChildHookCount());
+		final Vector<String> calls = new Vector<>();
+		PermanentNodeHookAdapter childHook = new PermanentNodeHookAdapter() {
+			public void onAddChildren(MindMapNode pAddedChild) {
+				calls.add("add " + pAddedChild.getText());
+			}
+
+			public void onRemoveChildren(MindMapNode pOldChildNode,
+					MindMapNode pOldDad) {
+				calls.add("remove " + pOldChildNode.getText() + " from "
+						+ pOldDad.getText());
+			}
+		};
+		root.invokeHook(childHook);
+		// doesn't care about children:
+		formatMe.invokeHook(new PermanentNodeHookAdapter());
+		assertEquals(1, mMap.getChildHookCount());
+
+		MindMapNodeModel newNode = new MindMapNodeModel("New", mMap);
+		mMap.insertNodeInto(newNode, child1, 0);
+		mMap.removeNodeFromParent(newNode);
+		assertEquals(Arrays.asList("add New", "remove New from Child1"), calls);
+
+		root.removeHook(childHook);
+		assertEquals(0, mMap.getChildHookCount());
+		mMap.insertNodeInto(newNode, child1, 0);
+		assertEquals(2, calls.size());
+	}
+
+	public void testPasteTextAsSibling() throws Exception {
+		ExtendedMapFeedbackImpl mapFeedback = new ExtendedMapFeedbackImpl();
+		final MindMapMapModel mMap = new MindMapMapModel(mapFeedback);
+		mapFeedback.setMap(mMap);
+		MindMapNode root = mMap.loadTree(new Tools.StringReaderCreator(
+				INITIAL_MAP), MapAdapter.sDontAskInstance);
+		mMap.setRoot(root);
+		MindMapNode formatMe = (MindMapNode) root.getChildAt(0);
+		MindMapNode child2 = (MindMapNode) formatMe.getChildAt(1);
+		final Vector<ActionPair> pairs = new Vector<>();
+		mapFeedback.getActionRegistry().registerFilter(new ActionFilter() {
+			public ActionPair filterAction(ActionPair pPair) {
+				pairs.add(pPair);
+				return pPair;
+			}
+		});
+		assertTrue(mapFeedback.paste(new StringSelection(
+				"first\n  http://www.freemind.org/index.html\n\t\nsecond"),
+				child2, true, false));
+		assertEquals(5, formatMe.getChildCount());
+		MindMapNode first = (MindMapNode) formatMe.getChildAt(1);
+		assertEquals("first", first.getText());
+		assertEquals("freemind.org > Index", ((MindMapNode) first
+				.getChildAt(0)).getText());
+		assertEquals("http://www.freemind.org/index.html",
+				((MindMapNode) first.getChildAt(0)).getLink());
+		assertEquals("second", ((MindMapNode) formatMe.getChildAt(2))
+				.getText());
+		assertSame(child2, formatMe.getChildAt(3));
+		mapFeedback.doTransaction("undo", pairs.get(0).reverse());
+		assertEquals(3, formatMe.getChildCount());
+		assertSame(child2, formatMe.getChildAt(1));
+	}
+
+	public void testConvertHtmlInBackground() throws Exception {
+		ExtendedMapFeedbackImpl mapFeedback = new ExtendedMapFeedbackImpl();
+		final MindMapMapModel mMap = new MindMapMapModel(mapFeedback);
+		mapFeedback.setMap(mMap);
+		String html = "<html><body><p>Node <b>1</b><br>rich</p></body></html>";
+		String xml = "<map><node TEXT='ROOT'><node TEXT='"
+				+ HtmlTools.toXMLEscapedText(html) + "'/>"
+				+ "<node TEXT='Plain'/></node></map>";
+		MindMapNode root = mMap.loadTree(new Tools.StringReaderCreator(xml),
+				MapAdapter.sDontAskInstance);
+		mMap.setRoot(root);
+		NodeAdapter htmlNode = (NodeAdapter) root.getChildAt(0);
+		final NodeAdapter plainNode = (NodeAdapter) root.getChildAt(1);
+		String text = htmlNode.getUnconvertedText();
+		assertNotNull(text);
+		String expected = HtmlTools.getInstance().toXhtml(text);
+		plainNode.setNoteText(html);
+		final Thread[] thread = new Thread[1];
+		EventQueue.invokeAndWait(new Runnable() {
+			public void run() {
+				thread[0] = mMap.convertHtmlInBackground();
+				// changed meanwhile, so the converted note is discarded:
+				plainNode.setNoteText("<html><body>changed</body></html>");
+			}
+		});
+		assertNotNull(thread[0]);
+		thread[0].join();
+		Tools.waitForEventQueue();
+		assertNull(htmlNode.getUnconvertedText());
+		assertEquals(expected, htmlNode.getXmlText());
+		assertEquals("<html><body>changed</body></html>",
+				plainNode.getUnconvertedNoteText());
+	}
 }
@@ -21,19 +21,31 @@
 package tests.freemind;
 
 import java.awt.print.Paper;
+import java.io.CharArrayWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.Properties;
 import java.util.Vector;
 
+import javax.xml.transform.ErrorListener;
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.stream.StreamResult;
+
 import freemind.main.FreeMindSecurityManager;
 import freemind.main.HtmlTools;
+import freemind.main.InvalidXmlCharacterFilterReader;
 import freemind.main.Tools;
+import freemind.main.XMLSnapshot;
+import freemind.main.XsltTemplateCache;
 import freemind.modes.MapAdapter;
 import freemind.modes.mindmapmode.MindMapController;
 
@@ -333,4 +345,154 @@ public class ToolsTests extends FreeMindTestBase {
 		Tools.makeFileHidden(nonExisting, true);
 		
 	}
+
+	public void testWriteFileAtomically() throws Exception {
+		// not .mm: other tests load all maps of the temp directory.
+		File tempFile = File.createTempFile("atomic", ".xml");
+		try {
+			CharArrayWriter content = new CharArrayWriter();
+			content.write("<map version=\"1.1.0\">&#xe4;</map>\n");
+			Tools.writeFileAtomically(tempFile, content);
+			assertEquals(content.toString(), Tools.getFile(tempFile));
+			assertFalse(new File(tempFile.getAbsolutePath() + ".tmp").exists());
+			// a snapshot is encoded while writing:
+			XMLSnapshot snapshot = new XMLSnapshot();
+			snapshot.startElement("map");
+			snapshot.writeAttribute("version", "1.1.0\u00e4");
+			snapshot.endElement("map");
+			snapshot.close();
+			Tools.writeFileAtomically(tempFile, snapshot);
+			assertEquals("<map version=\"1.1.0&#xe4;\"/>\n",
+					Tools.getFile(tempFile));
+		} finally {
+			tempFile.delete();
+		}
+	}
+
+	public void testXsltTemplateCache() throws Exception {
+		File xslt = File.createTempFile("count", ".xsl");
+		xslt.deleteOnExit();
+		writeStylesheet(xslt, "count(//node)");
+		URL url = Tools.fileToUrl(xslt);
+		Templates templates = XsltTemplateCache.getTemplates(url);
+		assertSame(templates, XsltTemplateCache.getTemplates(url));
+		// many chunks through the pipe:
+		final int nodes = 20000;
+		XsltTemplateCache.XmlProducer producer = new XsltTemplateCache.XmlProducer() {
+			public void write(Writer pWriter) throws IOException {
+				pWriter.write("<map>");
+				for (int i = 0; i < nodes; i++) {
+					pWriter.write("<node TEXT='node " + i + "'/>");
+				}
+				pWriter.write("</map>");
+				pWriter.close();
+			}
+		};
+		StringWriter result = new StringWriter();
+		XsltTemplateCache.transform(XsltTemplateCache.newTransformer(url),
+				producer, new StreamResult(result));
+		assertEquals("" + nodes, result.toString());
+		// a changed stylesheet is compiled again:
+		writeStylesheet(xslt, "count(//map)");
+		xslt.setLastModified(xslt.lastModified() + 2000);
+		assertNotSame(templates, XsltTemplateCache.getTemplates(url));
+		result = new StringWriter();
+		XsltTemplateCache.transform(XsltTemplateCache.newTransformer(url),
+				producer, new StreamResult(result));
+		assertEquals("1", result.toString());
+	}
+
+	public void testXsltTransformThreads() throws Exception {
+		File xslt = File.createTempFile("count", ".xsl");
+		xslt.deleteOnExit();
+		writeStylesheet(xslt, "count(//node)");
+		URL url = Tools.fileToUrl(xslt);
+		// the producer writes on the calling thread:
+		final Thread[] producerThread = new Thread[1];
+		StringWriter result = new StringWriter();
+		XsltTemplateCache.transform(XsltTemplateCache.newTransformer(url),
+				new XsltTemplateCache.XmlProducer() {
+					public void write(Writer pWriter) throws IOException {
+						producerThread[0] = Thread.currentThread();
+						pWriter.write("<map><node/></map>");
+					}
+				}, new StreamResult(result));
+		assertSame(Thread.currentThread(), producerThread[0]);
+		assertEquals("1", result.toString());
+		// a failing transformation doesn't block a large producer:
+		Transformer transformer = XsltTemplateCache.newTransformer(url);
+		// the default listener of xalan only prints the parse errors:
+		transformer.setErrorListener(new ErrorListener() {
+			public void warning(TransformerException pException) {
+			}
+
+			public void error(TransformerException pException)
+					throws TransformerException {
+				throw pException;
+			}
+
+			public void fatalError(TransformerException pException)
+					throws TransformerException {
+				throw pException;
+			}
+		});
+		try {
+			XsltTemplateCache.transform(transformer,
+					new XsltTemplateCache.XmlProducer() {
+						public void write(Writer pWriter) throws IOException {
+							pWriter.write("<map></node>");
+							for (int i = 0; i < 20000; i++) {
+								pWriter.write("<node TEXT='node " + i + "'/>");
+							}
+						}
+					}, new StreamResult(new StringWriter()));
+			fail("Malformed XML must not be transformed.");
+		} catch (TransformerException e) {
+		}
+		// a failing producer is reported as such:
+		try {
+			XsltTemplateCache.transform(XsltTemplateCache.newTransformer(url),
+					new XsltTemplateCache.XmlProducer() {
+						public void write(Writer pWriter) throws IOException {
+							pWriter.write("<map>");
+							throw new IOException("producer");
+						}
+					}, new StreamResult(new StringWriter()));
+			fail("The producer's error must be thrown.");
+		} catch (IOException e) {
+			assertEquals("producer", e.getMessage());
+		}
+	}
+
+	public void testInvalidXmlCharacterFilterReader() throws Exception {
+		StringBuilder input = new StringBuilder();
+		// entities are split at the chunk borders of the reader:
+		for (int i = 0; i < 5000; i++) {
+			input.append("a\u0001&#x1;&#228;&amp;&#1;b&#xe4;");
+		}
+		input.append("&#x1");
+		String expected = HtmlTools.removeInvalidXmlCharacters(input
+				.toString());
+		Reader reader = new InvalidXmlCharacterFilterReader(new StringReader(
+				input.toString()));
+		StringWriter result = new StringWriter();
+		char[] buffer = new char[7];
+		int read;
+		while ((read = reader.read(buffer)) >= 0) {
+			result.write(buffer, 0, read);
+		}
+		assertEquals(expected, result.toString());
+		assertTrue(expected.endsWith("b&#xe4;&#x1;"));
+	}
+
+	private void writeStylesheet(File pFile, String pExpression)
+			throws IOException {
+		CharArrayWriter content = new CharArrayWriter();
+		content.write("<xsl:stylesheet version='1.0' "
+				+ "xmlns:xsl='http://www.w3.org/1999/XSL/Transform'>"
+				+ "<xsl:output method='text'/><xsl:template match='/'>"
+				+ "<xsl:value-of select='" + pExpression + "'/>"
+				+ "</xsl:template></xsl:stylesheet>");
+		Tools.writeFileAtomically(pFile, content);
+	}
 }
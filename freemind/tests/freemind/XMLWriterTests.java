@@ -0,0 +1,186 @@
+/*FreeMind - A Program for creating and viewing Mindmaps
+ *Copyright (C) 2000-2014 Christian Foltin, Joerg Mueller, Daniel Polansky, Dimitri Polivaev and others.
+ *
+ *See COPYING for Details
+ *
+ *This program is free software; you can redistribute it and/or
+ *modify it under the terms of the GNU General Public License
+ *as published by the Free Software Foundation; either version 2
+ *of the License, or (at your option) any later version.
+ *
+ *This program is distributed in the hope that it will be useful,
+ *but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *GNU General Public License for more details.
+ *
+ *You should have received a copy of the GNU General Public License
+ *along with this program; if not, write to the Free Software
+ *Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package tests.freemind;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import freemind.main.Tools;
+import freemind.main.XMLElement;
+import freemind.main.XMLSnapshot;
+import freemind.main.XMLWriter;
+import freemind.modes.ExtendedMapFeedbackImpl;
+import freemind.modes.MapAdapter;
+import freemind.modes.MindMapNode;
+import freemind.modes.mindmapmode.MindMapMapModel;
+
+/**
+ * The map writer must produce the same output as {@link XMLElement}.
+ */
+public class XMLWriterTests extends FreeMindTestBase {
+
+	private static final String SPECIAL_CHARACTERS = "a<b>c&d\"e'f\ng\th\u00e4\u20ac\u0001~ \u007f";
+
+	public void testEncoding() throws Exception {
+		XMLElement element = new XMLElement();
+		element.setName("icon");
+		element.setAttribute("BUILTIN", SPECIAL_CHARACTERS);
+		StringWriter expected = new StringWriter();
+		element.write(expected);
+
+		StringWriter result = new StringWriter();
+		XMLWriter writer = new XMLWriter(result);
+		writer.startElement("icon");
+		writer.writeAttribute("BUILTIN", SPECIAL_CHARACTERS);
+		writer.endElement("icon");
+		writer.finish();
+		assertEquals(expected.toString(), result.toString());
+	}
+
+	public void testElements() throws Exception {
+		XMLElement node = new XMLElement();
+		node.setName("node");
+		node.setAttribute("TEXT", "text");
+		XMLElement content = new XMLElement();
+		content.setName("richcontent");
+		content.setAttribute("TYPE", "NOTE");
+		content.setEncodedContent("<html>&#xe4;</html>\n");
+		node.addChild(content);
+		XMLElement empty = new XMLElement();
+		empty.setName("richcontent");
+		empty.setAttribute("TYPE", "NODE");
+		empty.setEncodedContent("");
+		node.addChild(empty);
+		StringWriter expected = new StringWriter();
+		node.write(expected);
+
+		StringWriter result = new StringWriter();
+		XMLWriter writer = new XMLWriter(result);
+		writer.startElement("node");
+		writer.writeAttribute("TEXT", "text");
+		writer.writeElementWithEncodedContent("richcontent", "TYPE", "NOTE",
+				"<html>&#xe4;</html>\n");
+		writer.writeElementWithEncodedContent("richcontent", "TYPE", "NODE",
+				"");
+		writer.endElement("node");
+		writer.finish();
+		assertEquals(expected.toString(), result.toString());
+	}
+
+	public void testLargeOutput() throws Exception {
+		StringBuffer text = new StringBuffer();
+		while (text.length() < 200000) {
+			text.append(SPECIAL_CHARACTERS);
+		}
+		XMLElement element = new XMLElement();
+		element.setName("node");
+		element.setAttribute("TEXT", text.toString());
+		StringWriter expected = new StringWriter();
+		element.write(expected);
+
+		StringWriter result = new StringWriter();
+		XMLWriter writer = new XMLWriter(result);
+		writer.writeElement(element);
+		writer.close();
+		assertEquals(expected.toString(), result.toString());
+	}
+
+	public void testWriteAfterClose() throws Exception {
+		XMLWriter writer = new XMLWriter(new StringWriter());
+		writer.close();
+		try {
+			writer.write('x');
+			fail("Writing to a closed writer must fail.");
+		} catch (IOException e) {
+			// expected.
+		}
+	}
+
+	public void testSaveIsStable() throws Exception {
+		String map = Tools.getFile(new java.io.File("tests/freemind/testmap.mm"));
+		String saved = loadAndSave(map);
+		assertEquals(saved, loadAndSave(saved));
+	}
+
+	public void testSnapshot() throws Exception {
+		MindMapMapModel map = load(Tools.getFile(new java.io.File(
+				"tests/freemind/testmap.mm")));
+		StringWriter expected = new StringWriter();
+		map.getXml(expected);
+		XMLSnapshot snapshot = new XMLSnapshot();
+		map.getXml(snapshot);
+		// later changes are not part of the snapshot:
+		map.getRootNode().setText("changed");
+		StringWriter result = new StringWriter();
+		XMLWriter writer = new XMLWriter(result);
+		snapshot.writeTo(writer);
+		writer.finish();
+		assertEquals(expected.toString(), result.toString());
+	}
+
+	public void testSnapshotOfAllOperations() throws Exception {
+		XMLElement element = new XMLElement();
+		element.setName("icon");
+		element.setAttribute("BUILTIN", SPECIAL_CHARACTERS);
+		StringWriter expected = new StringWriter();
+		writeAllOperations(new XMLWriter(expected), element);
+		XMLSnapshot snapshot = new XMLSnapshot();
+		writeAllOperations(snapshot, element);
+		StringWriter result = new StringWriter();
+		XMLWriter writer = new XMLWriter(result);
+		snapshot.writeTo(writer);
+		writer.finish();
+		assertEquals(expected.toString(), result.toString());
+	}
+
+	private void writeAllOperations(XMLWriter pWriter, XMLElement pElement)
+			throws IOException {
+		pWriter.write("<!-- ");
+		pWriter.writeEncoded(SPECIAL_CHARACTERS);
+		pWriter.write(" -->\n");
+		pWriter.startElement("node");
+		pWriter.writeAttribute("TEXT", SPECIAL_CHARACTERS);
+		pWriter.closeStartTag();
+		pWriter.writeElementWithEncodedContent("richcontent", "TYPE", "NOTE",
+				"<html>&#xe4;</html>\n");
+		pWriter.writeElementWithXmlContent("richcontent", "TYPE", "NODE",
+				"<html>\u00e4</html>\n");
+		pWriter.writeElement(pElement);
+		pWriter.endElement("node");
+		pWriter.close();
+	}
+
+	private String loadAndSave(String pMap) throws Exception {
+		StringWriter writer = new StringWriter();
+		load(pMap).getXml(writer);
+		return writer.toString();
+	}
+
+	private MindMapMapModel load(String pMap) throws Exception {
+		ExtendedMapFeedbackImpl mapFeedback = new ExtendedMapFeedbackImpl();
+		MindMapMapModel map = new MindMapMapModel(mapFeedback);
+		mapFeedback.setMap(map);
+		MindMapNode root = map.loadTree(new Tools.StringReaderCreator(pMap),
+				MapAdapter.sDontAskInstance);
+		map.setRoot(root);
+		return map;
+	}
+}
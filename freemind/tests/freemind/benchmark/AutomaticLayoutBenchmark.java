@@ -0,0 +1,106 @@
+/*FreeMind - A Program for creating and viewing Mindmaps
+ *Copyright (C) 2000-2014 Christian Foltin, Joerg Mueller, Daniel Polansky, Dimitri Polivaev and others.
+ *
+ *See COPYING for Details
+ *
+ *This program is free software; you can redistribute it and/or
+ *modify it under the terms of the GNU General Public License
+ *as published by the Free Software Foundation; either version 2
+ *of the License, or (at your option) any later version.
+ *
+ *This program is distributed in the hope that it will be useful,
+ *but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *GNU General Public License for more details.
+ *
+ *You should have received a copy of the GNU General Public License
+ *along with this program; if not, write to the Free Software
+ *Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package tests.freemind.benchmark;
+
+import java.io.File;
+
+import tests.freemind.FreeMindMainMock;
+import freemind.controller.actions.generated.instance.Pattern;
+import freemind.controller.actions.generated.instance.Patterns;
+import freemind.main.Resources;
+import freemind.main.Tools;
+import freemind.modes.CompiledPattern;
+import freemind.modes.ExtendedMapFeedbackImpl;
+import freemind.modes.MapAdapter;
+import freemind.modes.MindMapNode;
+import freemind.modes.StylePatternFactory;
+import freemind.modes.mindmapmode.MindMapMapModel;
+
+/**
+ * Formats a map with the default automatic layout patterns: once node by
+ * node (as the automatic layout did before), once as a single batch for the
+ * whole map and once more as a batch, when nothing has to be changed.
+ *
+ * Usage: java tests.freemind.benchmark.AutomaticLayoutBenchmark [nodes...]
+ * (default: 30000 nodes).
+ */
+public class AutomaticLayoutBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		new FreeMindMainMock();
+		Patterns patterns = StylePatternFactory.getPatternsFromString(Resources
+				.getInstance().getProperty("automaticFormat_level"));
+		CompiledPattern[] styles = new CompiledPattern[patterns
+				.sizeChoiceList()];
+		for (int i = 0; i < styles.length; i++) {
+			styles[i] = new CompiledPattern((Pattern) patterns.getChoice(i));
+		}
+		int[] sizes = BenchmarkMaps.getSizes(args, new int[] { 30000 });
+		for (int size : sizes) {
+			File file = File.createTempFile("benchmark_" + size + "_", ".mm");
+			file.deleteOnExit();
+			BenchmarkMaps.generateMap(file, size);
+
+			ExtendedMapFeedbackImpl mapFeedback = load(file);
+			long start = System.nanoTime();
+			applyNodeByNode(mapFeedback.getMap().getRootNode(), 0, styles,
+					mapFeedback);
+			long nodeByNode = System.nanoTime() - start;
+
+			mapFeedback = load(file);
+			MindMapNode root = mapFeedback.getMap().getRootNode();
+			start = System.nanoTime();
+			StylePatternFactory.applyPatternsByDepth(root, 0, styles,
+					mapFeedback);
+			long batch = System.nanoTime() - start;
+			start = System.nanoTime();
+			StylePatternFactory.applyPatternsByDepth(root, 0, styles,
+					mapFeedback);
+			long unchanged = System.nanoTime() - start;
+
+			System.out.println("Map with " + size + " nodes: node by node "
+					+ (nodeByNode / 1000000) + " ms, batch "
+					+ (batch / 1000000) + " ms, batch without changes "
+					+ (unchanged / 1000000) + " ms");
+			file.delete();
+		}
+		System.exit(0);
+	}
+
+	private static ExtendedMapFeedbackImpl load(File pFile) throws Exception {
+		ExtendedMapFeedbackImpl mapFeedback = new ExtendedMapFeedbackImpl();
+		MindMapMapModel map = new MindMapMapModel(mapFeedback);
+		mapFeedback.setMap(map);
+		MindMapNode root = map.loadTree(new Tools.FileReaderCreator(pFile),
+				MapAdapter.sDontAskInstance);
+		map.setRoot(root);
+		return mapFeedback;
+	}
+
+	private static void applyNodeByNode(MindMapNode pNode, int pDepth,
+			CompiledPattern[] pStyles, ExtendedMapFeedbackImpl pMapFeedback) {
+		pMapFeedback.applyPattern(pNode,
+				pStyles[Math.min(pDepth, pStyles.length - 1)].getPattern());
+		for (int i = 0; i < pNode.getChildCount(); i++) {
+			applyNodeByNode((MindMapNode) pNode.getChildAt(i), pDepth + 1,
+					pStyles, pMapFeedback);
+		}
+	}
+}
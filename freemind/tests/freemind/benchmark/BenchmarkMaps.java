@@ -0,0 +1,202 @@
+/*FreeMind - A Program for creating and viewing Mindmaps
+ *Copyright (C) 2000-2014 Christian Foltin, Joerg Mueller, Daniel Polansky, Dimitri Polivaev and others.
+ *
+ *See COPYING for Details
+ *
+ *This program is free software; you can redistribute it and/or
+ *modify it under the terms of the GNU General Public License
+ *as published by the Free Software Foundation; either version 2
+ *of the License, or (at your option) any later version.
+ *
+ *This program is distributed in the hope that it will be useful,
+ *but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *GNU General Public License for more details.
+ *
+ *You should have received a copy of the GNU General Public License
+ *along with this program; if not, write to the Free Software
+ *Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package tests.freemind.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+
+import freemind.main.FreeMind;
+
+/**
+ * Helpers for the benchmarks in this package: generated maps of a given size
+ * and the measurement of the peak heap.
+ */
+public class BenchmarkMaps {
+
+	private static final int CHILDREN_PER_NODE = 10;
+
+	/**
+	 * Writes a map with pNodeCount nodes. Every tenth node has a note, every
+	 * 25th node an arrow link, and the nodes carry the usual attributes,
+	 * icons, fonts, edges and clouds.
+	 */
+	public static void generateMap(File pFile, int pNodeCount)
+			throws IOException {
+		Writer writer = new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(pFile), "UTF-8"));
+		try {
+			writer.write("<map version=\"" + FreeMind.XML_VERSION + "\">\n");
+			writeNode(writer, 0, pNodeCount, 0);
+			writer.write("</map>\n");
+		} finally {
+			writer.close();
+		}
+	}
+
+	private static void writeNode(Writer pWriter, int id, int pMax,
+			int pDepth) throws IOException {
+		pWriter.write("<node CREATED=\"1160462630102\" ID=\"ID_" + id
+				+ "\" MODIFIED=\"1160462667140\"");
+		if (pDepth == 1) {
+			pWriter.write(id % 2 == 0 ? " POSITION=\"left\"" : " POSITION=\"right\"");
+		}
+		pWriter.write(" TEXT=\"Node &quot;" + id
+				+ "&quot; with some text &amp; umlauts &#xe4;&#xf6;\">\n");
+		if (id % 3 == 0) {
+			pWriter.write("<edge COLOR=\"#808080\" STYLE=\"bezier\" WIDTH=\"thin\"/>\n");
+			pWriter.write("<font BOLD=\"true\" NAME=\"SansSerif\" SIZE=\"12\"/>\n");
+		}
+		if (id % 7 == 0) {
+			pWriter.write("<cloud COLOR=\"#f0f0f0\"/>\n");
+			pWriter.write("<icon BUILTIN=\"idea\"/>\n");
+			pWriter.write("<attribute NAME=\"key" + id + "\" VALUE=\"value\"/>\n");
+		}
+		if (id % 10 == 0) {
+			pWriter.write("<richcontent TYPE=\"NOTE\"><html>\n  <head>\n\n  </head>\n  <body>\n    <p>\n      Note of <b>"
+					+ id + "</b>\n    </p>\n  </body>\n</html>\n</richcontent>\n");
+		}
+		if (id % 25 == 0 && id + 1 < pMax) {
+			pWriter.write("<arrowlink DESTINATION=\"ID_" + (id + 1)
+					+ "\" ENDARROW=\"Default\" ENDINCLINATION=\"10;20;\" ID=\"Arrow_ID_"
+					+ id
+					+ "\" STARTARROW=\"None\" STARTINCLINATION=\"30;40;\"/>\n");
+		}
+		// the children of node n are n*10+1 ... n*10+10 (as in a heap):
+		for (long child = (long) id * CHILDREN_PER_NODE + 1; child <= (long) id
+				* CHILDREN_PER_NODE + CHILDREN_PER_NODE
+				&& child < pMax; child++) {
+			writeNode(pWriter, (int) child, pMax, pDepth + 1);
+		}
+		pWriter.write("</node>\n");
+	}
+
+	/**
+	 * Writes a map with pNodeCount nodes of rich text: every node has a html
+	 * note, the even nodes carry html in the TEXT attribute (as maps of older
+	 * versions do) and the odd ones a rich content node text.
+	 */
+	public static void generateRichTextMap(File pFile, int pNodeCount)
+			throws IOException {
+		Writer writer = new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(pFile), "UTF-8"));
+		try {
+			writer.write("<map version=\"" + FreeMind.XML_VERSION + "\">\n");
+			writeRichTextNode(writer, 0, pNodeCount);
+			writer.write("</map>\n");
+		} finally {
+			writer.close();
+		}
+	}
+
+	private static void writeRichTextNode(Writer pWriter, int id, int pMax)
+			throws IOException {
+		pWriter.write("<node ID=\"ID_" + id + "\"");
+		if (id % 2 == 0) {
+			pWriter.write(" TEXT=\"&lt;html&gt;&lt;body&gt;&lt;p&gt;Node &lt;b&gt;"
+					+ id
+					+ "&lt;/b&gt;&lt;br&gt;with &lt;i&gt;rich&lt;/i&gt; text&lt;/p&gt;&lt;/body&gt;&lt;/html&gt;\">\n");
+		} else {
+			pWriter.write(">\n<richcontent TYPE=\"NODE\"><html>\n  <head>\n\n  </head>\n  <body>\n    <p>\n      Node <b>"
+					+ id
+					+ "</b><br/>with <i>rich</i> text\n    </p>\n  </body>\n</html>\n</richcontent>\n");
+		}
+		pWriter.write("<richcontent TYPE=\"NOTE\"><html>\n  <head>\n\n  </head>\n  <body>\n    <p>\n      Note of <b>"
+				+ id + "</b><br/>\n    </p>\n  </body>\n</html>\n</richcontent>\n");
+		for (long child = (long) id * CHILDREN_PER_NODE + 1; child <= (long) id
+				* CHILDREN_PER_NODE + CHILDREN_PER_NODE
+				&& child < pMax; child++) {
+			writeRichTextNode(pWriter, (int) child, pMax);
+		}
+		pWriter.write("</node>\n");
+	}
+
+	/**
+	 * Runs a full GC and resets the peak usage of all heap pools.
+	 *
+	 * @return the currently used heap.
+	 */
+	public static long resetPeakHeap() {
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		long used = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				pool.resetPeakUsage();
+				used += pool.getUsage().getUsed();
+			}
+		}
+		return used;
+	}
+
+	/**
+	 * @return the sum of the peak usages of all heap pools since the last
+	 *         {@link #resetPeakHeap()}.
+	 */
+	public static long getPeakHeap() {
+		long peak = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				peak += pool.getPeakUsage().getUsed();
+			}
+		}
+		return peak;
+	}
+
+	/**
+	 * @return the bytes allocated by the current thread so far (or 0 if the
+	 *         VM does not support this).
+	 */
+	public static long getAllocatedBytes() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory
+				.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) bean)
+					.getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return 0;
+	}
+
+	public static String toMegaBytes(long pBytes) {
+		return (pBytes / (1024 * 1024)) + " MB";
+	}
+
+	/**
+	 * @return the sizes given on the command line or the defaults.
+	 */
+	public static int[] getSizes(String[] pArgs, int[] pDefaults) {
+		if (pArgs.length == 0) {
+			return pDefaults;
+		}
+		int[] sizes = new int[pArgs.length];
+		for (int i = 0; i < pArgs.length; i++) {
+			sizes[i] = Integer.parseInt(pArgs[i]);
+		}
+		return sizes;
+	}
+}
@@ -0,0 +1,97 @@
+/*FreeMind - A Program for creating and viewing Mindmaps
+ *Copyright (C) 2000-2014 Christian Foltin, Joerg Mueller, Daniel Polansky, Dimitri Polivaev and others.
+ *
+ *See COPYING for Details
+ *
+ *This program is free software; you can redistribute it and/or
+ *modify it under the terms of the GNU General Public License
+ *as published by the Free Software Foundation; either version 2
+ *of the License, or (at your option) any later version.
+ *
+ *This program is distributed in the hope that it will be useful,
+ *but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *GNU General Public License for more details.
+ *
+ *You should have received a copy of the GNU General Public License
+ *along with this program; if not, write to the Free Software
+ *Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package tests.freemind.benchmark;
+
+import tests.freemind.FreeMindMainMock;
+import freemind.extensions.PermanentNodeHookAdapter;
+import freemind.modes.ExtendedMapFeedbackImpl;
+import freemind.modes.MindMapNode;
+import freemind.modes.mindmapmode.MindMapMapModel;
+import freemind.modes.mindmapmode.MindMapNodeModel;
+
+/**
+ * Inserts and removes many nodes at the bottom of a deep branch, whose nodes
+ * carry no hooks, hooks that don't care about children and finally a hook
+ * on the root that wants to know about all added and removed nodes.
+ *
+ * Usage: java tests.freemind.benchmark.ChildHookBenchmark [nodes...]
+ * (default: 10000 nodes at depth 100).
+ */
+public class ChildHookBenchmark {
+
+	private static final int DEPTH = 100;
+
+	private static final int REPETITIONS = 5;
+
+	public static void main(String[] args) throws Exception {
+		new FreeMindMainMock();
+		int[] sizes = BenchmarkMaps.getSizes(args, new int[] { 10000 });
+		for (int size : sizes) {
+			ExtendedMapFeedbackImpl mapFeedback = new ExtendedMapFeedbackImpl();
+			MindMapMapModel map = new MindMapMapModel(mapFeedback);
+			mapFeedback.setMap(map);
+			MindMapNode root = new MindMapNodeModel("root", map);
+			map.setRoot(root);
+			MindMapNode bottom = root;
+			for (int i = 0; i < DEPTH; i++) {
+				MindMapNode node = new MindMapNodeModel("level " + i, map);
+				map.insertNodeInto(node, bottom, 0);
+				bottom = node;
+			}
+			measure("No hooks", map, bottom, size);
+			for (MindMapNode node = bottom; node != null; node = node
+					.getParentNode()) {
+				node.invokeHook(new PermanentNodeHookAdapter());
+			}
+			measure("Other hooks", map, bottom, size);
+			root.invokeHook(new PermanentNodeHookAdapter() {
+				int mCount = 0;
+
+				public void onAddChildren(MindMapNode pAddedChild) {
+					mCount++;
+				}
+			});
+			measure("Child hook on root", map, bottom, size);
+		}
+		System.exit(0);
+	}
+
+	private static void measure(String pName, MindMapMapModel pMap,
+			MindMapNode pBottom, int pSize) {
+		MindMapNode[] nodes = new MindMapNode[pSize];
+		for (int i = 0; i < pSize; i++) {
+			nodes[i] = new MindMapNodeModel("node " + i, pMap);
+		}
+		long best = Long.MAX_VALUE;
+		for (int r = 0; r < REPETITIONS; r++) {
+			long start = System.nanoTime();
+			for (int i = 0; i < pSize; i++) {
+				pBottom.insert(nodes[i], -1);
+			}
+			for (int i = pSize - 1; i >= 0; i--) {
+				pBottom.remove(i);
+			}
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		System.out.println(pName + ": " + pSize
+				+ " nodes inserted and removed at depth " + DEPTH + " in "
+				+ (best / 1000000) + " ms");
+	}
+}
@@ -0,0 +1,92 @@
+/*FreeMind - A Program for creating and viewing Mindmaps
+ *Copyright (C) 2000-2014 Christian Foltin, Joerg Mueller, Daniel Polansky, Dimitri Polivaev and others.
+ *
+ *See COPYING for Details
+ *
+ *This program is free software; you can redistribute it and/or
+ *modify it under the terms of the GNU General Public License
+ *as published by the Free Software Foundation; either version 2
+ *of the License, or (at your option) any later version.
+ *
+ *This program is distributed in the hope that it will be useful,
+ *but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *GNU General Public License for more details.
+ *
+ *You should have received a copy of the GNU General Public License
+ *along with this program; if not, write to the Free Software
+ *Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package tests.freemind.benchmark;
+
+import java.awt.EventQueue;
+import java.io.File;
+import java.nio.file.Files;
+
+import tests.freemind.FreeMindMainMock;
+import freemind.modes.ExtendedMapFeedbackImpl;
+import freemind.modes.MindMapNode;
+import freemind.modes.filemode.FileMapModel;
+
+/**
+ * Opens a directory with many files in File mode and measures, how long the
+ * event dispatch thread is blocked by unfolding it and how long it takes
+ * until all files are shown.
+ *
+ * Usage: java tests.freemind.benchmark.DirectoryBenchmark [files...]
+ * (default: 100000 files).
+ */
+public class DirectoryBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		new FreeMindMainMock();
+		int[] sizes = BenchmarkMaps.getSizes(args, new int[] { 100000 });
+		for (int size : sizes) {
+			File directory = Files.createTempDirectory("benchmark").toFile();
+			for (int i = 0; i < size; i++) {
+				new File(directory, "file" + i + ".txt").createNewFile();
+			}
+			measure(directory, size);
+			for (File file : directory.listFiles()) {
+				file.delete();
+			}
+			directory.delete();
+		}
+		System.exit(0);
+	}
+
+	private static void measure(final File pDirectory, int pSize)
+			throws Exception {
+		final FileMapModel[] map = new FileMapModel[1];
+		final long[] blocked = new long[1];
+		long start = System.nanoTime();
+		EventQueue.invokeAndWait(new Runnable() {
+			public void run() {
+				long start = System.nanoTime();
+				map[0] = new FileMapModel(pDirectory,
+						new ExtendedMapFeedbackImpl());
+				map[0].getRootNode().childrenUnfolded();
+				blocked[0] = System.nanoTime() - start;
+			}
+		});
+		final MindMapNode root = map[0].getRootNode();
+		final int[] count = new int[1];
+		while (count[0] < pSize) {
+			EventQueue.invokeAndWait(new Runnable() {
+				public void run() {
+					count[0] = root.getChildCount();
+				}
+			});
+			Thread.sleep(1);
+		}
+		long total = System.nanoTime() - start;
+		EventQueue.invokeAndWait(new Runnable() {
+			public void run() {
+				map[0].destroy();
+			}
+		});
+		System.out.println(pSize + " files: unfolding blocked for "
+				+ (blocked[0] / 1000000) + " ms, all shown after "
+				+ (total / 1000000) + " ms");
+	}
+}
@@ -0,0 +1,114 @@
+/*FreeMind - A Program for creating and viewing Mindmaps
+ *Copyright (C) 2000-2014 Christian Foltin, Joerg Mueller, Daniel Polansky, Dimitri Polivaev and others.
+ *
+ *See COPYING for Details
+ *
+ *This program is free software; you can redistribute it and/or
+ *modify it under the terms of the GNU General Public License
+ *as published by the Free Software Foundation; either version 2
+ *of the License, or (at your option) any later version.
+ *
+ *This program is distributed in the hope that it will be useful,
+ *but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *GNU General Public License for more details.
+ *
+ *You should have received a copy of the GNU General Public License
+ *along with this program; if not, write to the Free Software
+ *Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package tests.freemind.benchmark;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.OutputStream;
+
+import javax.imageio.ImageIO;
+import javax.swing.JPanel;
+
+import tests.freemind.FreeMindMainMock;
+import freemind.view.mindmapview.IndependantMapViewCreator;
+import freemind.view.mindmapview.MapView;
+import freemind.view.mindmapview.TiledMapRenderer;
+
+/**
+ * Compares the PNG export of a generated map from a single image with the
+ * tiled PNG export. Reports time and peak heap of both.
+ *
+ * Usage: java -Xmx4g tests.freemind.benchmark.ImageExportBenchmark [nodes...]
+ * (default: 1000 10000 nodes).
+ */
+public class ImageExportBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		System.setProperty("java.awt.headless", "true");
+		FreeMindMainMock freeMindMain = new FreeMindMainMock();
+		int[] sizes = BenchmarkMaps.getSizes(args, new int[] { 1000, 10000 });
+		for (int size : sizes) {
+			File file = File.createTempFile("benchmark_" + size + "_", ".mm");
+			file.deleteOnExit();
+			BenchmarkMaps.generateMap(file, size);
+			JPanel parent = new JPanel();
+			parent.setBounds(new Rectangle(0, 0, 400, 600));
+			MapView mapView = new IndependantMapViewCreator()
+					.createMapViewForFile(file.getPath(), parent, freeMindMain);
+			mapView.getRoot().getMainView().doLayout();
+			parent.doLayout();
+			parent.validate();
+			parent.setBounds(mapView.getBounds());
+			Rectangle bounds = mapView.getInnerBounds();
+			System.out.println("Map with " + size + " nodes, " + bounds.width
+					+ "x" + bounds.height + " pixels:");
+
+			long base = BenchmarkMaps.resetPeakHeap();
+			long start = System.nanoTime();
+			try {
+				mapView.preparePrinting();
+				BufferedImage image = new BufferedImage(bounds.width,
+						bounds.height, BufferedImage.TYPE_INT_RGB);
+				Graphics2D g = image.createGraphics();
+				g.translate(-bounds.x, -bounds.y);
+				g.clipRect(bounds.x, bounds.y, bounds.width, bounds.height);
+				mapView.print(g);
+				g.dispose();
+				mapView.endPrinting();
+				ImageIO.write(image, "png", new CountingOutputStream());
+				System.out.println("  single image: "
+						+ (System.nanoTime() - start) / 1000000
+						+ " ms, peak heap +"
+						+ BenchmarkMaps.toMegaBytes(BenchmarkMaps.getPeakHeap()
+								- base));
+				image = null;
+			} catch (OutOfMemoryError e) {
+				mapView.endPrinting();
+				System.out.println("  single image: out of memory");
+			}
+
+			base = BenchmarkMaps.resetPeakHeap();
+			start = System.nanoTime();
+			CountingOutputStream out = new CountingOutputStream();
+			new TiledMapRenderer(mapView).writePng(out);
+			System.out.println("  tiled png:    "
+					+ (System.nanoTime() - start) / 1000000 + " ms, peak heap +"
+					+ BenchmarkMaps.toMegaBytes(BenchmarkMaps.getPeakHeap()
+							- base) + ", " + out.mCount / 1024 + " KB");
+			file.delete();
+		}
+		System.exit(0);
+	}
+
+	private static class CountingOutputStream extends OutputStream {
+		long mCount = 0;
+
+		public void write(int pByte) {
+			mCount++;
+		}
+
+		public void write(byte[] pBytes, int pOffset, int pLength) {
+			mCount += pLength;
+		}
+	}
+}
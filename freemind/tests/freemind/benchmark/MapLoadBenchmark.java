@@ -0,0 +1,91 @@
+/*FreeMind - A Program for creating and viewing Mindmaps
+ *Copyright (C) 2000-2014 Christian Foltin, Joerg Mueller, Daniel Polansky, Dimitri Polivaev and others.
+ *
+ *See COPYING for Details
+ *
+ *This program is free software; you can redistribute it and/or
+ *modify it under the terms of the GNU General Public License
+ *as published by the Free Software Foundation; either version 2
+ *of the License, or (at your option) any later version.
+ *
+ *This program is distributed in the hope that it will be useful,
+ *but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *GNU General Public License for more details.
+ *
+ *You should have received a copy of the GNU General Public License
+ *along with this program; if not, write to the Free Software
+ *Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package tests.freemind.benchmark;
+
+import java.io.File;
+
+import tests.freemind.FreeMindMainMock;
+import freemind.main.Tools;
+import freemind.modes.ExtendedMapFeedbackImpl;
+import freemind.modes.MapAdapter;
+import freemind.modes.MindMapNode;
+import freemind.modes.mindmapmode.MindMapMapModel;
+
+/**
+ * Compares the streaming map loader with the XMLElement based one: time until
+ * the root node is available and peak heap during the load.
+ *
+ * Usage: java -Xmx4g tests.freemind.benchmark.MapLoadBenchmark [nodes...]
+ * (default: 10000 100000 1000000 nodes).
+ */
+public class MapLoadBenchmark {
+
+	private static final int REPETITIONS = 3;
+
+	public static void main(String[] args) throws Exception {
+		new FreeMindMainMock();
+		int[] sizes = BenchmarkMaps.getSizes(args, new int[] { 10000,
+				100000, 1000000 });
+		for (int size : sizes) {
+			File file = File.createTempFile("benchmark_" + size + "_", ".mm");
+			file.deleteOnExit();
+			BenchmarkMaps.generateMap(file, size);
+			System.out.println("Map with " + size + " nodes, "
+					+ (file.length() / 1024) + " KB:");
+			for (boolean legacy : new boolean[] { true, false }) {
+				long bestTime = Long.MAX_VALUE;
+				long bestPeak = Long.MAX_VALUE;
+				for (int i = 0; i < REPETITIONS; i++) {
+					long baseline = BenchmarkMaps.resetPeakHeap();
+					long start = System.nanoTime();
+					MindMapNode root = load(file, legacy);
+					long time = System.nanoTime() - start;
+					long peak = BenchmarkMaps.getPeakHeap() - baseline;
+					if (root == null || root.getChildCount() == 0) {
+						throw new IllegalStateException("Map not loaded.");
+					}
+					bestTime = Math.min(bestTime, time);
+					bestPeak = Math.min(bestPeak, peak);
+				}
+				System.out.println("  " + (legacy ? "XMLElement loader: " : "streaming loader:  ")
+						+ (bestTime / 1000000) + " ms to root, peak heap "
+						+ BenchmarkMaps.toMegaBytes(bestPeak));
+			}
+			file.delete();
+		}
+		System.exit(0);
+	}
+
+	private static MindMapNode load(File pFile, boolean pLegacy)
+			throws Exception {
+		ExtendedMapFeedbackImpl mapFeedback = new ExtendedMapFeedbackImpl();
+		mapFeedback.setProperty(MapAdapter.RESOURCES_USE_LEGACY_XML_LOADER,
+				Boolean.toString(pLegacy));
+		MindMapMapModel map = new MindMapMapModel(mapFeedback);
+		mapFeedback.setMap(map);
+		try {
+			return map.loadTree(new Tools.FileReaderCreator(pFile),
+					MapAdapter.sDontAskInstance);
+		} finally {
+			map.destroy();
+		}
+	}
+}
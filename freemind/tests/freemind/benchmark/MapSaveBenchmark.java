@@ -0,0 +1,75 @@
+/*FreeMind - A Program for creating and viewing Mindmaps
+ *Copyright (C) 2000-2014 Christian Foltin, Joerg Mueller, Daniel Polansky, Dimitri Polivaev and others.
+ *
+ *See COPYING for Details
+ *
+ *This program is free software; you can redistribute it and/or
+ *modify it under the terms of the GNU General Public License
+ *as published by the Free Software Foundation; either version 2
+ *of the License, or (at your option) any later version.
+ *
+ *This program is distributed in the hope that it will be useful,
+ *but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *GNU General Public License for more details.
+ *
+ *You should have received a copy of the GNU General Public License
+ *along with this program; if not, write to the Free Software
+ *Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package tests.freemind.benchmark;
+
+import java.io.File;
+
+import tests.freemind.FreeMindMainMock;
+import freemind.main.Tools;
+import freemind.modes.ExtendedMapFeedbackImpl;
+import freemind.modes.MapAdapter;
+import freemind.modes.MindMapNode;
+import freemind.modes.mindmapmode.MindMapMapModel;
+
+/**
+ * Measures the time and the allocated bytes of saving generated maps.
+ *
+ * Usage: java -Xmx4g tests.freemind.benchmark.MapSaveBenchmark [nodes...]
+ * (default: 10000 100000 1000000 nodes).
+ */
+public class MapSaveBenchmark {
+
+	private static final int REPETITIONS = 5;
+
+	public static void main(String[] args) throws Exception {
+		new FreeMindMainMock();
+		int[] sizes = BenchmarkMaps.getSizes(args, new int[] { 10000,
+				100000, 1000000 });
+		for (int size : sizes) {
+			File file = File.createTempFile("benchmark_" + size + "_", ".mm");
+			file.deleteOnExit();
+			BenchmarkMaps.generateMap(file, size);
+			ExtendedMapFeedbackImpl mapFeedback = new ExtendedMapFeedbackImpl();
+			MindMapMapModel map = new MindMapMapModel(mapFeedback);
+			mapFeedback.setMap(map);
+			MindMapNode root = map.loadTree(new Tools.FileReaderCreator(file),
+					MapAdapter.sDontAskInstance);
+			map.setRoot(root);
+			long bestTime = Long.MAX_VALUE;
+			long bestAllocation = Long.MAX_VALUE;
+			for (int i = 0; i < REPETITIONS; i++) {
+				BenchmarkMaps.resetPeakHeap();
+				long allocated = BenchmarkMaps.getAllocatedBytes();
+				long start = System.nanoTime();
+				map.save(file);
+				bestTime = Math.min(bestTime, System.nanoTime() - start);
+				bestAllocation = Math.min(bestAllocation,
+						BenchmarkMaps.getAllocatedBytes() - allocated);
+			}
+			System.out.println("Map with " + size + " nodes, "
+					+ (file.length() / 1024) + " KB: save " + (bestTime / 1000000)
+					+ " ms, allocated " + BenchmarkMaps.toMegaBytes(bestAllocation));
+			map.destroy();
+			file.delete();
+		}
+		System.exit(0);
+	}
+}
@@ -0,0 +1,99 @@
+/*FreeMind - A Program for creating and viewing Mindmaps
+ *Copyright (C) 2000-2014 Christian Foltin, Joerg Mueller, Daniel Polansky, Dimitri Polivaev and others.
+ *
+ *See COPYING for Details
+ *
+ *This program is free software; you can redistribute it and/or
+ *modify it under the terms of the GNU General Public License
+ *as published by the Free Software Foundation; either version 2
+ *of the License, or (at your option) any later version.
+ *
+ *This program is distributed in the hope that it will be useful,
+ *but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *GNU General Public License for more details.
+ *
+ *You should have received a copy of the GNU General Public License
+ *along with this program; if not, write to the Free Software
+ *Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package tests.freemind.benchmark;
+
+import java.awt.datatransfer.StringSelection;
+import java.awt.datatransfer.Transferable;
+
+import tests.freemind.FreeMindMainMock;
+import freemind.controller.MindMapNodesSelection;
+import freemind.modes.ExtendedMapFeedbackImpl;
+import freemind.modes.MindMapNode;
+import freemind.modes.mindmapmode.MindMapMapModel;
+import freemind.modes.mindmapmode.MindMapNodeModel;
+
+/**
+ * Pastes an indented text outline and the same outline as nested html lists
+ * into an empty map, including the node counting for the undo action.
+ *
+ * Usage: java tests.freemind.benchmark.PasteBenchmark [lines...]
+ * (default: 20000 lines).
+ */
+public class PasteBenchmark {
+
+	private static final int REPETITIONS = 3;
+
+	public static void main(String[] args) throws Exception {
+		new FreeMindMainMock();
+		int[] sizes = BenchmarkMaps.getSizes(args, new int[] { 20000 });
+		for (int size : sizes) {
+			StringBuilder text = new StringBuilder();
+			StringBuilder html = new StringBuilder("<html><body><ul>");
+			for (int i = 0; i < size; i++) {
+				int level = i % 4;
+				for (int j = 0; j < level; j++) {
+					text.append("  ");
+				}
+				text.append("Line ").append(i)
+						.append(" see http://www.freemind.org/line")
+						.append(i).append('\n');
+				html.append("<li>Line ").append(i).append("</li>");
+				if (level < 3) {
+					html.append("<ul>");
+				} else {
+					html.append("</ul></ul></ul>");
+				}
+			}
+			html.append("</ul></body></html>");
+			measure("Text outline", new StringSelection(text.toString()),
+					size);
+			measure("Html lists", new MindMapNodesSelection(null, null,
+					null, null, html.toString(), null, null, null), size);
+		}
+		System.exit(0);
+	}
+
+	private static void measure(String pName, Transferable pContent,
+			int pSize) {
+		long best = Long.MAX_VALUE;
+		int nodes = 0;
+		for (int i = 0; i < REPETITIONS; i++) {
+			ExtendedMapFeedbackImpl mapFeedback = new ExtendedMapFeedbackImpl();
+			MindMapMapModel map = new MindMapMapModel(mapFeedback);
+			mapFeedback.setMap(map);
+			MindMapNode root = new MindMapNodeModel("root", map);
+			map.setRoot(root);
+			long start = System.nanoTime();
+			mapFeedback.paste(pContent, root, false, false);
+			best = Math.min(best, System.nanoTime() - start);
+			nodes = count(root) - 1;
+		}
+		System.out.println(pName + " with " + pSize + " lines (" + nodes
+				+ " nodes): " + (best / 1000000) + " ms");
+	}
+
+	private static int count(MindMapNode pNode) {
+		int count = 1;
+		for (int i = 0; i < pNode.getChildCount(); i++) {
+			count += count((MindMapNode) pNode.getChildAt(i));
+		}
+		return count;
+	}
+}
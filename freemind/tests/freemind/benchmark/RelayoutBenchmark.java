@@ -0,0 +1,110 @@
+/*FreeMind - A Program for creating and viewing Mindmaps
+ *Copyright (C) 2000-2014 Christian Foltin, Joerg Mueller, Daniel Polansky, Dimitri Polivaev and others.
+ *
+ *See COPYING for Details
+ *
+ *This program is free software; you can redistribute it and/or
+ *modify it under the terms of the GNU General Public License
+ *as published by the Free Software Foundation; either version 2
+ *of the License, or (at your option) any later version.
+ *
+ *This program is distributed in the hope that it will be useful,
+ *but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *GNU General Public License for more details.
+ *
+ *You should have received a copy of the GNU General Public License
+ *along with this program; if not, write to the Free Software
+ *Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package tests.freemind.benchmark;
+
+import java.awt.EventQueue;
+import java.awt.Rectangle;
+
+import javax.swing.JPanel;
+
+import tests.freemind.FreeMindMainMock;
+import freemind.modes.mindmapmode.MindMapMapModel;
+import freemind.modes.mindmapmode.MindMapNodeModel;
+import freemind.view.mindmapview.IndependantMapViewCreator;
+import freemind.view.mindmapview.MapView;
+import freemind.view.mindmapview.NodeView;
+
+/**
+ * Relayout after the edit of a single node in a map with 21021 unfolded
+ * nodes compared to a relayout of all node views. Only the path to the root
+ * and the siblings below the edited nodes should be placed again.
+ *
+ * Usage: java tests.freemind.benchmark.RelayoutBenchmark
+ */
+public class RelayoutBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		System.setProperty("java.awt.headless", "true");
+		new FreeMindMainMock();
+		final IndependantMapViewCreator creator = new IndependantMapViewCreator();
+		MindMapMapModel map = new MindMapMapModel(creator);
+		MindMapNodeModel root = new MindMapNodeModel("ROOT", map);
+		map.setRoot(root);
+		MindMapNodeModel leaf = null;
+		for (int i = 0; i < 20; i++) {
+			MindMapNodeModel child = new MindMapNodeModel("CHILD" + i, map);
+			root.insert(child, root.getChildCount());
+			for (int j = 0; j < 50; j++) {
+				MindMapNodeModel grandChild = new MindMapNodeModel("GRANDCHILD "
+						+ i + "." + j, map);
+				child.insert(grandChild, j);
+				for (int k = 0; k < 20; k++) {
+					leaf = new MindMapNodeModel("LEAF " + i + "." + j + "." + k,
+							map);
+					grandChild.insert(leaf, k);
+				}
+			}
+		}
+		JPanel parent = new JPanel(null);
+		parent.setBounds(new Rectangle(0, 0, 400, 300));
+		MapView mapView = creator.createMapView(map, parent);
+		long start = System.nanoTime();
+		mapView.validate();
+		long initial = System.nanoTime() - start;
+
+		// all node views are laid out again, but the sizes are known:
+		long full = Long.MAX_VALUE;
+		for (int i = 0; i < 3; i++) {
+			invalidateAll(mapView.getRoot());
+			start = System.nanoTime();
+			mapView.validate();
+			full = Math.min(full, System.nanoTime() - start);
+		}
+		// edit the last leaf (the deepest path) and a node in the middle:
+		MindMapNodeModel middle = (MindMapNodeModel) root.getChildAt(10)
+				.getChildAt(25);
+		long edit = Long.MAX_VALUE;
+		for (int i = 0; i < 10; i++) {
+			final MindMapNodeModel edited = (i % 2 == 0) ? leaf : middle;
+			edited.setText("EDITED " + i);
+			// revalidate works on the event thread, only:
+			EventQueue.invokeAndWait(new Runnable() {
+				public void run() {
+					creator.nodeRefresh(edited);
+				}
+			});
+			start = System.nanoTime();
+			mapView.validate();
+			edit = Math.min(edit, System.nanoTime() - start);
+		}
+		System.out.println("Layout of 21021 nodes: initial "
+				+ (initial / 1000000) + " ms, full relayout "
+				+ (full / 1000000) + " ms, relayout after a single edit "
+				+ (edit / 1000) + " us.");
+		System.exit(0);
+	}
+
+	private static void invalidateAll(NodeView pView) {
+		pView.invalidate();
+		for (NodeView child : pView.getChildrenViews()) {
+			invalidateAll(child);
+		}
+	}
+}
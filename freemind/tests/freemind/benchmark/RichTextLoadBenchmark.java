@@ -0,0 +1,105 @@
+/*FreeMind - A Program for creating and viewing Mindmaps
+ *Copyright (C) 2000-2014 Christian Foltin, Joerg Mueller, Daniel Polansky, Dimitri Polivaev and others.
+ *
+ *See COPYING for Details
+ *
+ *This program is free software; you can redistribute it and/or
+ *modify it under the terms of the GNU General Public License
+ *as published by the Free Software Foundation; either version 2
+ *of the License, or (at your option) any later version.
+ *
+ *This program is distributed in the hope that it will be useful,
+ *but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *GNU General Public License for more details.
+ *
+ *You should have received a copy of the GNU General Public License
+ *along with this program; if not, write to the Free Software
+ *Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package tests.freemind.benchmark;
+
+import java.awt.EventQueue;
+import java.io.CharArrayWriter;
+import java.io.File;
+
+import tests.freemind.FreeMindMainMock;
+import freemind.main.Tools;
+import freemind.modes.ExtendedMapFeedbackImpl;
+import freemind.modes.MapAdapter;
+import freemind.modes.MindMapNode;
+import freemind.modes.mindmapmode.MindMapMapModel;
+
+/**
+ * Loads a map in which every node has html text and a html note: time until
+ * the root node is available, time of a save right after the load, which
+ * needs the xhtml form of all texts, and time of a save after the background
+ * conversion ({@link MindMapMapModel#convertHtmlInBackground()}) finished.
+ *
+ * Usage: java tests.freemind.benchmark.RichTextLoadBenchmark [nodes...]
+ * (default: 10000 50000 nodes).
+ */
+public class RichTextLoadBenchmark {
+
+	private static final int REPETITIONS = 3;
+
+	public static void main(String[] args) throws Exception {
+		new FreeMindMainMock();
+		int[] sizes = BenchmarkMaps.getSizes(args, new int[] { 10000, 50000 });
+		for (int size : sizes) {
+			File file = File.createTempFile("benchmark_" + size + "_", ".mm");
+			file.deleteOnExit();
+			BenchmarkMaps.generateRichTextMap(file, size);
+			long bestLoad = Long.MAX_VALUE;
+			long bestSave = Long.MAX_VALUE;
+			long bestConvertedSave = Long.MAX_VALUE;
+			for (int i = 0; i < REPETITIONS; i++) {
+				ExtendedMapFeedbackImpl mapFeedback = new ExtendedMapFeedbackImpl();
+				MindMapMapModel map = new MindMapMapModel(mapFeedback);
+				mapFeedback.setMap(map);
+				long start = System.nanoTime();
+				MindMapNode root = map.loadTree(new Tools.FileReaderCreator(
+						file), MapAdapter.sDontAskInstance);
+				bestLoad = Math.min(bestLoad, System.nanoTime() - start);
+				map.setRoot(root);
+				start = System.nanoTime();
+				map.getXml(new CharArrayWriter());
+				bestSave = Math.min(bestSave, System.nanoTime() - start);
+				map.destroy();
+				bestConvertedSave = Math.min(bestConvertedSave,
+						timeSaveAfterConversion(file));
+			}
+			System.out.println("Map with " + size + " rich text nodes, "
+					+ (file.length() / 1024) + " KB: load "
+					+ (bestLoad / 1000000) + " ms, save "
+					+ (bestSave / 1000000) + " ms, save after conversion "
+					+ (bestConvertedSave / 1000000) + " ms");
+			file.delete();
+		}
+		System.exit(0);
+	}
+
+	private static long timeSaveAfterConversion(File pFile) throws Exception {
+		ExtendedMapFeedbackImpl mapFeedback = new ExtendedMapFeedbackImpl();
+		final MindMapMapModel map = new MindMapMapModel(mapFeedback);
+		mapFeedback.setMap(map);
+		map.setRoot(map.loadTree(new Tools.FileReaderCreator(pFile),
+				MapAdapter.sDontAskInstance));
+		final Thread[] conversion = new Thread[1];
+		EventQueue.invokeAndWait(new Runnable() {
+			public void run() {
+				conversion[0] = map.convertHtmlInBackground();
+			}
+		});
+		if (conversion[0] != null) {
+			conversion[0].join();
+		}
+		// the results are stored on the event thread:
+		Tools.waitForEventQueue();
+		long start = System.nanoTime();
+		map.getXml(new CharArrayWriter());
+		long time = System.nanoTime() - start;
+		map.destroy();
+		return time;
+	}
+}
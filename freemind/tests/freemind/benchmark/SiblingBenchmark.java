@@ -0,0 +1,158 @@
+/*FreeMind - A Program for creating and viewing Mindmaps
+ *Copyright (C) 2000-2014 Christian Foltin, Joerg Mueller, Daniel Polansky, Dimitri Polivaev and others.
+ *
+ *See COPYING for Details
+ *
+ *This program is free software; you can redistribute it and/or
+ *modify it under the terms of the GNU General Public License
+ *as published by the Free Software Foundation; either version 2
+ *of the License, or (at your option) any later version.
+ *
+ *This program is distributed in the hope that it will be useful,
+ *but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *GNU General Public License for more details.
+ *
+ *You should have received a copy of the GNU General Public License
+ *along with this program; if not, write to the Free Software
+ *Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package tests.freemind.benchmark;
+
+import java.awt.Rectangle;
+import java.awt.event.KeyEvent;
+import java.util.LinkedList;
+
+import javax.swing.JPanel;
+
+import tests.freemind.FreeMindMainMock;
+import freemind.modes.ExtendedMapFeedbackImpl;
+import freemind.modes.MindMap;
+import freemind.modes.MindMapNode;
+import freemind.modes.mindmapmode.MindMapMapModel;
+import freemind.modes.mindmapmode.MindMapNodeModel;
+import freemind.view.mindmapview.IndependantMapViewCreator;
+import freemind.view.mindmapview.MapView;
+import freemind.view.mindmapview.NodeView;
+
+/**
+ * Inserts many siblings under one parent and steps through them like the
+ * sibling navigation does (position of the current node, then the node next
+ * to it), once with the indexed child list and once with the linked list the
+ * nodes used before. Then the selection of a map view is moved down through
+ * all siblings and back with the cursor keys, below a child and below the
+ * root.
+ *
+ * Usage: java tests.freemind.benchmark.SiblingBenchmark [siblings...]
+ * (default: 50000 siblings, a tenth of them in the map view).
+ */
+public class SiblingBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		new FreeMindMainMock();
+		ExtendedMapFeedbackImpl mapFeedback = new ExtendedMapFeedbackImpl();
+		MindMapMapModel map = new MindMapMapModel(mapFeedback);
+		mapFeedback.setMap(map);
+		int[] sizes = BenchmarkMaps.getSizes(args, new int[] { 50000 });
+		for (int size : sizes) {
+			measure("Indexed list", new MindMapNodeModel(map), map, size);
+			measure("Linked list", new LinkedListNode(map), map, size);
+			measureViews(size / 10);
+		}
+		System.exit(0);
+	}
+
+	/** The children in a linked list like before. */
+	@SuppressWarnings("unchecked")
+	private static class LinkedListNode extends MindMapNodeModel {
+		LinkedListNode(MindMap pMap) {
+			super(pMap);
+			children = new LinkedList<>();
+		}
+	}
+
+	private static void measureViews(int pSize) {
+		IndependantMapViewCreator creator = new IndependantMapViewCreator();
+		MindMapMapModel map = new MindMapMapModel(creator);
+		MindMapNodeModel root = new MindMapNodeModel("root", map);
+		map.setRoot(root);
+		MindMapNodeModel parent = new MindMapNodeModel("parent", map);
+		root.insert(parent, 0);
+		for (int i = 0; i < pSize; i++) {
+			parent.insert(new MindMapNodeModel("child " + i, map), -1);
+			MindMapNodeModel rootChild = new MindMapNodeModel("root child "
+					+ i, map);
+			rootChild.setLeft(i % 2 == 0);
+			root.insert(rootChild, -1);
+		}
+		JPanel panel = new JPanel(null);
+		panel.setBounds(new Rectangle(0, 0, 400, 600));
+		MapView mapView = creator.createMapView(map, panel);
+		mapView.validate();
+		long below = navigateViews(mapView, parent);
+		long belowRoot = navigateViews(mapView, root);
+		System.out.println("Map view with " + pSize
+				+ " siblings: cursor down and up through all of them "
+				+ (below / 1000000) + " ms below a child, "
+				+ (belowRoot / 1000000) + " ms below the root (one side)");
+	}
+
+	private static long navigateViews(MapView pMapView, MindMapNode pParent) {
+		NodeView first = pMapView.getNodeView((MindMapNode) pParent
+				.getChildAt(0));
+		pMapView.selectAsTheOnlyOneSelected(first);
+		long start = System.nanoTime();
+		for (int keyCode : new int[] { KeyEvent.VK_DOWN, KeyEvent.VK_UP,
+				KeyEvent.VK_DOWN, KeyEvent.VK_UP }) {
+			while (true) {
+				NodeView selected = pMapView.getSelected();
+				pMapView.move(new KeyEvent(pMapView, KeyEvent.KEY_PRESSED, 0,
+						0, keyCode, KeyEvent.CHAR_UNDEFINED));
+				if (pMapView.getSelected() == selected) {
+					break;
+				}
+			}
+		}
+		return System.nanoTime() - start;
+	}
+
+	private static void measure(String pName, MindMapNodeModel pParent,
+			MindMapMapModel pMap, int pSize) {
+		long start = System.nanoTime();
+		for (int i = 0; i < pSize; i++) {
+			pParent.insert(new MindMapNodeModel(pMap), -1);
+		}
+		long append = System.nanoTime() - start;
+
+		// insert in front of every tenth node, like pasting as sibling:
+		start = System.nanoTime();
+		int inserted = pSize / 10;
+		for (int i = 0; i < inserted; i++) {
+			MindMapNode target = (MindMapNode) pParent.getChildAt(i * 10);
+			pParent.insert(new MindMapNodeModel(pMap),
+					pParent.getChildPosition(target));
+		}
+		long insert = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		int steps = 0;
+		MindMapNode node = (MindMapNode) pParent.getChildAt(0);
+		while (true) {
+			int position = pParent.getChildPosition(node);
+			if (position + 1 >= pParent.getChildCount()) {
+				break;
+			}
+			node = (MindMapNode) pParent.getChildAt(position + 1);
+			steps++;
+		}
+		for (; steps > 0; steps--) {
+			node = (MindMapNode) pParent.getChildAt(pParent.getIndex(node) - 1);
+		}
+		long navigate = System.nanoTime() - start;
+
+		System.out.println(pName + " with " + (pSize + inserted)
+				+ " siblings: append " + (append / 1000000) + " ms, insert "
+				+ (insert / 1000000) + " ms, navigate forth and back "
+				+ (navigate / 1000000) + " ms");
+	}
+}
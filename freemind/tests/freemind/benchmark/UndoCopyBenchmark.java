@@ -0,0 +1,107 @@
+/*FreeMind - A Program for creating and viewing Mindmaps
+ *Copyright (C) 2000-2014 Christian Foltin, Joerg Mueller, Daniel Polansky, Dimitri Polivaev and others.
+ *
+ *See COPYING for Details
+ *
+ *This program is free software; you can redistribute it and/or
+ *modify it under the terms of the GNU General Public License
+ *as published by the Free Software Foundation; either version 2
+ *of the License, or (at your option) any later version.
+ *
+ *This program is distributed in the hope that it will be useful,
+ *but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *GNU General Public License for more details.
+ *
+ *You should have received a copy of the GNU General Public License
+ *along with this program; if not, write to the Free Software
+ *Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package tests.freemind.benchmark;
+
+import java.io.File;
+
+import tests.freemind.FreeMindMainMock;
+import freemind.controller.actions.generated.instance.CutNodeAction;
+import freemind.controller.actions.generated.instance.EditNodeAction;
+import freemind.controller.actions.generated.instance.PasteNodeAction;
+import freemind.controller.actions.generated.instance.TransferableContent;
+import freemind.controller.actions.generated.instance.XmlAction;
+import freemind.main.Tools;
+import freemind.main.XmlActionCopier;
+
+/**
+ * Measures the copies UndoAction.add makes of each action pair: the former
+ * marshal/unmarshal round trip against the structural copy, for a small edit
+ * and for the paste of a map with many nodes.
+ *
+ * Usage: java tests.freemind.benchmark.UndoCopyBenchmark [nodes...]
+ * (default: 10000 nodes for the paste).
+ */
+public class UndoCopyBenchmark {
+
+	private static final int REPETITIONS = 5;
+
+	public static void main(String[] args) throws Exception {
+		new FreeMindMainMock();
+		EditNodeAction edit = new EditNodeAction();
+		edit.setNode("ID_1");
+		edit.setText("changed text");
+		EditNodeAction editUndo = new EditNodeAction();
+		editUndo.setNode("ID_1");
+		editUndo.setText("original text");
+		measure("Edit", edit, editUndo, 10000);
+
+		int[] sizes = BenchmarkMaps.getSizes(args, new int[] { 10000 });
+		for (int size : sizes) {
+			File file = File.createTempFile("benchmark_" + size + "_", ".mm");
+			BenchmarkMaps.generateMap(file, size);
+			PasteNodeAction paste = new PasteNodeAction();
+			paste.setNode("ID_0");
+			TransferableContent content = new TransferableContent();
+			content.setTransferable(Tools.getFile(file));
+			paste.setTransferableContent(content);
+			CutNodeAction cut = new CutNodeAction();
+			cut.setNode("ID_0");
+			measure("Paste of " + size + " nodes ("
+					+ (file.length() / 1024) + " KB)", paste, cut, 10);
+			file.delete();
+		}
+		System.exit(0);
+	}
+
+	private static void measure(String pName, XmlAction pDo, XmlAction pUndo,
+			int pCount) {
+		long bestMarshal = Long.MAX_VALUE;
+		long bestStructural = Long.MAX_VALUE;
+		long allocatedMarshal = 0;
+		long allocatedStructural = 0;
+		for (int i = 0; i < REPETITIONS; i++) {
+			long allocated = BenchmarkMaps.getAllocatedBytes();
+			long start = System.nanoTime();
+			for (int j = 0; j < pCount; j++) {
+				Tools.unMarshall(Tools.marshall(pDo));
+				Tools.unMarshall(Tools.marshall(pUndo));
+			}
+			bestMarshal = Math.min(bestMarshal, System.nanoTime() - start);
+			allocatedMarshal = BenchmarkMaps.getAllocatedBytes() - allocated;
+
+			allocated = BenchmarkMaps.getAllocatedBytes();
+			start = System.nanoTime();
+			for (int j = 0; j < pCount; j++) {
+				XmlActionCopier.copy(pDo);
+				XmlActionCopier.copy(pUndo);
+			}
+			bestStructural = Math.min(bestStructural, System.nanoTime()
+					- start);
+			allocatedStructural = BenchmarkMaps.getAllocatedBytes()
+					- allocated;
+		}
+		System.out.println(pName + ": marshal round trip "
+				+ (bestMarshal / 1000 / pCount) + " us, "
+				+ (allocatedMarshal / pCount) + " bytes; structural copy "
+				+ (bestStructural / 1000 / pCount) + " us, "
+				+ (allocatedStructural / pCount) + " bytes per add.");
+	}
+}
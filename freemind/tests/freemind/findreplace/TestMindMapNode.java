@@ -42,7 +42,7 @@ import javax.swing.tree.TreePath;
 import freemind.controller.filter.FilterInfo;
 import freemind.extensions.NodeHook;
 import freemind.extensions.PermanentNodeHook;
-import freemind.main.XMLElement;
+import freemind.main.HtmlTools;
 import freemind.modes.HistoryInformation;
 import freemind.modes.MapFeedback;
 import freemind.modes.MindIcon;
@@ -302,9 +302,8 @@ public final class TestMindMapNode implements MindMapNode {
 		return null;
 	}
 
-	public XMLElement save(Writer writer, MindMapLinkRegistry registry,
+	public void save(Writer writer, MindMapLinkRegistry registry,
 			boolean saveHidden, boolean saveChildren) throws IOException {
-		return null;
 	}
 
 	public Map<String, ImageIcon> getStateIcons() {
@@ -410,6 +409,13 @@ public final class TestMindMapNode implements MindMapNode {
 		return children;
 	}
 
+	public void reorderChildren(List<MindMapNode> pNewOrder) {
+		children.clear();
+		for (MindMapNode child : pNewOrder) {
+			children.add((TestMindMapNode) child);
+		}
+	}
+
 	public String getNoteText() {
 		return null;
 	}
@@ -417,6 +423,18 @@ public final class TestMindMapNode implements MindMapNode {
 	public void setNoteText(String noteText) {
 	}
 
+	public String getPlainText() {
+		return HtmlTools.htmlToPlain(text);
+	}
+
+	public String getLowerCasePlainText() {
+		return getPlainText().toLowerCase();
+	}
+
+	public String getPlainNoteText() {
+		return "";
+	}
+
 	public Attribute getAttribute(int pPosition) {
 		return null;
 	}